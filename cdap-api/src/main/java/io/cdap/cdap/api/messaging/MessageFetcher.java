@@ -20,6 +20,7 @@ import io.cdap.cdap.api.annotation.Beta;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -64,4 +65,30 @@ public interface MessageFetcher {
    */
   CloseableIterator<Message> fetch(String namespace, String topic, int limit,
                                    @Nullable String afterMessageId) throws TopicNotFoundException, IOException;
+
+  /**
+   * Fetches messages from the given topic that were published after a message, identified by the given
+   * message id. If there is no such message available, this method waits until new messages are published
+   * to the topic or the given timeout has elapsed, whichever comes first.
+   * The default implementation doesn't wait and is the same as calling {@link #fetch(String, String, int, String)}.
+   *
+   * @param namespace namespace of the topic
+   * @param topic name of the topic
+   * @param limit maximum number of messages to fetch
+   * @param afterMessageId message id returned from the {@link Message#getId()} method from a prior call to
+   *                       one of the {@code pollMessages} methods. If it is {@code null}, it will fetch from
+   *                       the first available message.
+   * @param timeout maximum time to wait for new messages
+   * @param unit the {@link TimeUnit} of the timeout
+   * @return a {@link CloseableIterator} of {@link Message}, which can be empty if there is no new message
+   *         published before the timeout
+   * @throws IllegalArgumentException if the topic name is invalid. A valid id should only contain alphanumeric
+   *                                  characters, {@code _}, or {@code -}.
+   * @throws IOException if there was a failure to communicate with the messaging system
+   * @throws TopicNotFoundException if the give topic doesn't exist
+   */
+  default CloseableIterator<Message> fetch(String namespace, String topic, int limit, @Nullable String afterMessageId,
+                                           long timeout, TimeUnit unit) throws TopicNotFoundException, IOException {
+    return fetch(namespace, topic, limit, afterMessageId);
+  }
 }
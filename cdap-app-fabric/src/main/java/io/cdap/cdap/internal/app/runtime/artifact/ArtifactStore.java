@@ -823,12 +823,13 @@ public class ArtifactStore {
   }
 
   private void deleteRangeFromTable(StructuredTable table, Range range) throws IOException {
+    List<Collection<Field<?>>> keys = new ArrayList<>();
     try (CloseableIterator<StructuredRow> iterator = table.scan(range, Integer.MAX_VALUE)) {
       while (iterator.hasNext()) {
-        StructuredRow row = iterator.next();
-        table.delete(row.getPrimaryKeys());
+        keys.add(iterator.next().getPrimaryKeys());
       }
     }
+    table.multiDelete(keys);
   }
 
   private Map.Entry<ArtifactDescriptor, ApplicationClass> extractApplicationClass(StructuredRow row) {
@@ -860,16 +861,19 @@ public class ArtifactStore {
     // write appClass metadata
     StructuredTable appTable = getTable(context, StoreDefinition.ArtifactStore.APP_DATA_TABLE);
     ArtifactCell artifactkeys = new ArtifactCell(artifactId);
+    List<Collection<Field<?>>> rows = new ArrayList<>();
     for (ApplicationClass appClass : classes.getApps()) {
       // a:{namespace}:{classname}
       AppClassKey appClassKey = new AppClassKey(artifactId.getNamespace().toEntityId(), appClass.getClassName());
       Field<String> appDataField = Fields.stringField(StoreDefinition.ArtifactStore.APP_DATA_FIELD,
                                                       GSON.toJson(new AppData(appClass, artifactLocation)));
-      appTable.upsert(concatFields(appClassKey.keys, artifactkeys.keys, Collections.singleton(appDataField)));
+      rows.add(concatFields(appClassKey.keys, artifactkeys.keys, Collections.singleton(appDataField)));
     }
+    appTable.multiUpsert(rows);
 
     // write pluginClass metadata, we loop twice to only access to one table at a time to prevent deadlock
     StructuredTable pluginTable = getTable(context, StoreDefinition.ArtifactStore.PLUGIN_DATA_TABLE);
+    rows = new ArrayList<>();
     for (PluginClass pluginClass : classes.getPlugins()) {
       // write metadata for each artifact this plugin extends
       for (ArtifactRange artifactRange : data.meta.getUsableBy()) {
@@ -880,12 +884,14 @@ public class ArtifactStore {
         Field<String> pluginDataField = Fields.stringField(StoreDefinition.ArtifactStore.PLUGIN_DATA_FIELD,
                                                            GSON.toJson(new PluginData(pluginClass, artifactLocation,
                                                                                       artifactRange)));
-        pluginTable.upsert(concatFields(pluginKey.keys, artifactkeys.keys, Collections.singleton(pluginDataField)));
+        rows.add(concatFields(pluginKey.keys, artifactkeys.keys, Collections.singleton(pluginDataField)));
       }
     }
+    pluginTable.multiUpsert(rows);
 
     // write universal plugin class metadata
     StructuredTable uniPluginTable = getTable(context, StoreDefinition.ArtifactStore.UNIV_PLUGIN_DATA_TABLE);
+    rows = new ArrayList<>();
     for (PluginClass pluginClass : classes.getPlugins()) {
       // If the artifact is deployed without any parent, add a special row to indicate that it can be used
       // by any other artifact in the same namespace.
@@ -896,9 +902,10 @@ public class ArtifactStore {
         Field<String> pluginDataField = Fields.stringField(StoreDefinition.ArtifactStore.PLUGIN_DATA_FIELD,
                                                            GSON.toJson(new PluginData(pluginClass, artifactLocation,
                                                                                       null)));
-        uniPluginTable.upsert(concatFields(pluginKey.keys, artifactkeys.keys, Collections.singleton(pluginDataField)));
+        rows.add(concatFields(pluginKey.keys, artifactkeys.keys, Collections.singleton(pluginDataField)));
       }
     }
+    uniPluginTable.multiUpsert(rows);
   }
 
   private Collection<Field<?>> concatFields(Collection<Field<?>> fields1, Collection<Field<?>> fields2) {
@@ -931,6 +938,7 @@ public class ArtifactStore {
 
     // delete old plugins, we loop twice to only access to one table at a time to prevent deadlock
     StructuredTable pluginDataTable = getTable(context, StoreDefinition.ArtifactStore.PLUGIN_DATA_TABLE);
+    List<Collection<Field<?>>> keys = new ArrayList<>();
     for (PluginClass pluginClass : oldMeta.meta.getClasses().getPlugins()) {
       // delete metadata for each artifact this plugin extends
       for (ArtifactRange artifactRange : oldMeta.meta.getUsableBy()) {
@@ -938,19 +946,22 @@ public class ArtifactStore {
         PluginKeyPrefix pluginKey = new PluginKeyPrefix(artifactRange.getNamespace(),
                                                         artifactRange.getName(), pluginClass.getType(),
                                                         pluginClass.getName());
-        pluginDataTable.delete(concatFields(pluginKey.keys, artifactCell.keys));
+        keys.add(concatFields(pluginKey.keys, artifactCell.keys));
       }
     }
+    pluginDataTable.multiDelete(keys);
 
     // Delete the universal plugin row
     StructuredTable uniPluginTable = getTable(context, StoreDefinition.ArtifactStore.UNIV_PLUGIN_DATA_TABLE);
+    keys = new ArrayList<>();
     for (PluginClass pluginClass : oldMeta.meta.getClasses().getPlugins()) {
       if (oldMeta.meta.getUsableBy().isEmpty()) {
         UniversalPluginKeyPrefix pluginKey = new UniversalPluginKeyPrefix(artifactId.getNamespace().getId(),
                                                                           pluginClass.getType(), pluginClass.getName());
-        uniPluginTable.delete(concatFields(pluginKey.keys, artifactCell.keys));
+        keys.add(concatFields(pluginKey.keys, artifactCell.keys));
       }
     }
+    uniPluginTable.multiDelete(keys);
 
     // delete the old jar file
     try {
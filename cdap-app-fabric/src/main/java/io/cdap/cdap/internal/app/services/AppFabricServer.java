@@ -72,6 +72,7 @@ public class AppFabricServer extends AbstractIdleService {
   private final ProvisioningService provisioningService;
   private final BootstrapService bootstrapService;
   private final SystemAppManagementService systemAppManagementService;
+  private final TableBackfillService tableBackfillService;
   private final CConfiguration cConf;
   private final SConfiguration sConf;
   private final boolean sslEnabled;
@@ -98,7 +99,8 @@ public class AppFabricServer extends AbstractIdleService {
                          CoreSchedulerService coreSchedulerService,
                          ProvisioningService provisioningService,
                          BootstrapService bootstrapService,
-                         SystemAppManagementService systemAppManagementService) {
+                         SystemAppManagementService systemAppManagementService,
+                         TableBackfillService tableBackfillService) {
     this.hostname = hostname;
     this.discoveryService = discoveryService;
     this.handlers = handlers;
@@ -116,6 +118,7 @@ public class AppFabricServer extends AbstractIdleService {
     this.provisioningService = provisioningService;
     this.bootstrapService = bootstrapService;
     this.systemAppManagementService = systemAppManagementService;
+    this.tableBackfillService = tableBackfillService;
   }
 
   /**
@@ -134,7 +137,8 @@ public class AppFabricServer extends AbstractIdleService {
         programRuntimeService.start(),
         programNotificationSubscriberService.start(),
         runRecordCorrectorService.start(),
-        coreSchedulerService.start()
+        coreSchedulerService.start(),
+        tableBackfillService.start()
       )
     ).get();
 
@@ -176,6 +180,7 @@ public class AppFabricServer extends AbstractIdleService {
     programNotificationSubscriberService.stopAndWait();
     runRecordCorrectorService.stopAndWait();
     provisioningService.stopAndWait();
+    tableBackfillService.stopAndWait();
   }
 
   private Cancellable startHttpService(NettyHttpService httpService) throws Exception {
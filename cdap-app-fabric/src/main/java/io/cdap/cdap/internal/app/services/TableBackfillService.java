@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.internal.app.services;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import com.google.inject.Inject;
+import io.cdap.cdap.data2.metadata.lineage.LineageTable;
+import io.cdap.cdap.data2.metadata.lineage.field.FieldLineageTable;
+import io.cdap.cdap.internal.app.store.AppMetadataStore;
+import io.cdap.cdap.spi.data.transaction.TransactionRunner;
+import io.cdap.cdap.store.TableBackfill;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service that runs the {@link TableBackfill TableBackfills} of the system tables once, in the background after
+ * startup. Readers of the backfilled data fall back to reading the source tables until a backfill is completed.
+ * A failed backfill is retried until it completes or the service is stopped.
+ */
+public class TableBackfillService extends AbstractExecutionThreadService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TableBackfillService.class);
+  private static final List<TableBackfill> BACKFILLS = ImmutableList.of(
+    AppMetadataStore.RUN_RECORD_TIME_INDEX_BACKFILL,
+    LineageTable.LINEAGE_GRAPH_BACKFILL,
+    FieldLineageTable.DAILY_SUMMARY_BACKFILL
+  );
+  private static final int BATCH_SIZE = 1000;
+  private static final long RETRY_DELAY_SECS = 60L;
+
+  private final TransactionRunner transactionRunner;
+  private Thread runThread;
+
+  @Inject
+  TableBackfillService(TransactionRunner transactionRunner) {
+    this.transactionRunner = transactionRunner;
+  }
+
+  @Override
+  protected void startUp() {
+    runThread = Thread.currentThread();
+  }
+
+  @Override
+  protected void run() {
+    for (TableBackfill backfill : BACKFILLS) {
+      while (isRunning()) {
+        try {
+          backfill.run(transactionRunner, BATCH_SIZE);
+          break;
+        } catch (Exception e) {
+          LOG.warn("Failed to build {}. Will retry in {} seconds.", backfill.getName(), RETRY_DELAY_SECS, e);
+        }
+        try {
+          TimeUnit.SECONDS.sleep(RETRY_DELAY_SECS);
+        } catch (InterruptedException e) {
+          // Expected on stopping
+          return;
+        }
+      }
+    }
+  }
+
+  @Override
+  protected void triggerShutdown() {
+    if (runThread != null) {
+      runThread.interrupt();
+    }
+  }
+}
@@ -60,6 +60,7 @@ import io.cdap.cdap.spi.data.table.field.Field;
 import io.cdap.cdap.spi.data.table.field.Fields;
 import io.cdap.cdap.spi.data.table.field.Range;
 import io.cdap.cdap.store.StoreDefinition;
+import io.cdap.cdap.store.TableBackfill;
 import org.apache.twill.api.RunId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -96,6 +97,17 @@ import javax.annotation.Nullable;
  * The run count will have the row key of format:
  * runRecordCount|namespace|app|version|programtype|program
  *
+ * Run records are also indexed by time buckets, for finding the runs that were running in a time range:
+ *
+ * runRecordActive|0|start time bucket|namespace|app|version|programtype|program|runid
+ * runRecordCompleted|level|start time bucket|namespace|app|version|programtype|program|runid
+ *
+ * An active run is indexed by the hour bucket of its start time. A completed run is indexed by a level that depends
+ * on how long it ran, and by the bucket of its start time of the size of that level. The runs of a level lasted less
+ * than the bucket size, hence a range query only scans the buckets from one bucket before the range start on each
+ * level. The last level has the runs that lasted longer or have no stop time, which are few. Every run has a single
+ * index row. The start and stop times are kept in the index row for filtering.
+ *
  * These rows get deleted whenever state changes, with a new record written on top. In addition, workflow node state
  * is stored as:
  *
@@ -118,6 +130,15 @@ public class AppMetadataStore {
 
   private static final String TYPE_COUNT = "runRecordCount";
   private static final String TYPE_RUN_RECORD_UPGRADE_COUNT = "runRecordUpgradeCount";
+  private static final String TYPE_RUN_RECORD_TIME_INDEX = "runRecordTimeIndex";
+  private static final long RUN_TIME_BUCKET_SECS = TimeUnit.HOURS.toSeconds(1);
+  // The bucket sizes of the completed run time index levels. The runs of a level lasted less than the bucket size,
+  // except for the last level, which has the runs that lasted longer than that or have no stop time.
+  private static final long[] COMPLETED_RUN_TIME_BUCKET_SECS = {
+    TimeUnit.HOURS.toSeconds(1), TimeUnit.DAYS.toSeconds(1), TimeUnit.DAYS.toSeconds(30), TimeUnit.DAYS.toSeconds(30)
+  };
+  // Maximum number of run records read at a time when deleting run records
+  private static final int DELETE_BATCH_SIZE = 1000;
   private static final String SMALLEST_POSSIBLE_STRING = "";
 
   private static final Map<ProgramRunStatus, String> STATUS_TYPE_MAP = ImmutableMap.<ProgramRunStatus, String>builder()
@@ -131,10 +152,32 @@ public class AppMetadataStore {
     .put(ProgramRunStatus.REJECTED, TYPE_RUN_RECORD_COMPLETED)
     .build();
 
+  /**
+   * Builds the run record time index for the run records written before the index existed.
+   */
+  public static final TableBackfill RUN_RECORD_TIME_INDEX_BACKFILL = new TableBackfill("run record time index") {
+    @Override
+    public boolean isCompleted(StructuredTableContext context) throws IOException {
+      return create(context).isRunRecordTimeIndexBuilt();
+    }
+
+    @Override
+    protected void setCompleted(StructuredTableContext context) throws IOException {
+      create(context).setRunRecordTimeIndexBuilt();
+    }
+
+    @Nullable
+    @Override
+    protected Range backfill(StructuredTableContext context, Range range, int batchSize) throws IOException {
+      return create(context).buildRunRecordTimeIndex(range, batchSize);
+    }
+  };
+
   private final StructuredTableContext context;
   private StructuredTable applicationSpecificationTable;
   private StructuredTable workflowNodeStateTable;
   private StructuredTable runRecordsTable;
+  private StructuredTable runRecordsTimeIndexTable;
   private StructuredTable workflowsTable;
   private StructuredTable programCountsTable;
   private StructuredTable subscriberStateTable;
@@ -183,6 +226,17 @@ public class AppMetadataStore {
     return runRecordsTable;
   }
 
+  private StructuredTable getRunRecordsTimeIndexTable() {
+    try {
+      if (runRecordsTimeIndexTable == null) {
+        runRecordsTimeIndexTable = context.getTable(StoreDefinition.AppMetadataStore.RUN_RECORDS_TIME_INDEX);
+      }
+    } catch (TableNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+    return runRecordsTimeIndexTable;
+  }
+
   private StructuredTable getWorkflowsTable() {
     try {
       if (workflowsTable == null) {
@@ -515,14 +569,12 @@ public class AppMetadataStore {
       return null;
     }
 
-    List<Field<?>> key = getProgramRunInvertedTimeKey(TYPE_RUN_RECORD_ACTIVE, programRunId, existing.getStartTs());
     ProgramRunCluster cluster = new ProgramRunCluster(ProgramRunClusterStatus.PROVISIONED, null, numNodes);
     RunRecordDetail meta = RunRecordDetail.builder(existing)
       .setCluster(cluster)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(TYPE_RUN_RECORD_ACTIVE, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunClusterStatus.PROVISIONED, programRunId);
     return meta;
   }
@@ -553,16 +605,13 @@ public class AppMetadataStore {
 
     delete(existing);
 
-    List<Field<?>> key = getProgramRunInvertedTimeKey(TYPE_RUN_RECORD_COMPLETED, programRunId, existing.getStartTs());
-
     ProgramRunCluster cluster = new ProgramRunCluster(ProgramRunClusterStatus.DEPROVISIONING, null,
                                                       existing.getCluster().getNumNodes());
     RunRecordDetail meta = RunRecordDetail.builder(existing)
       .setCluster(cluster)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(TYPE_RUN_RECORD_COMPLETED, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunClusterStatus.DEPROVISIONING, programRunId);
     return meta;
   }
@@ -594,7 +643,6 @@ public class AppMetadataStore {
     }
 
     delete(existing);
-    List<Field<?>> key = getProgramRunInvertedTimeKey(TYPE_RUN_RECORD_COMPLETED, programRunId, existing.getStartTs());
 
     ProgramRunCluster cluster = new ProgramRunCluster(ProgramRunClusterStatus.DEPROVISIONED, endTs,
                                                       existing.getCluster().getNumNodes());
@@ -602,8 +650,7 @@ public class AppMetadataStore {
       .setCluster(cluster)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(TYPE_RUN_RECORD_COMPLETED, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunClusterStatus.DEPROVISIONED, programRunId);
     return meta;
   }
@@ -634,7 +681,6 @@ public class AppMetadataStore {
     }
 
     delete(existing);
-    List<Field<?>> key = getProgramRunInvertedTimeKey(TYPE_RUN_RECORD_COMPLETED, programRunId, existing.getStartTs());
 
     ProgramRunCluster cluster = new ProgramRunCluster(ProgramRunClusterStatus.ORPHANED, endTs,
                                                       existing.getCluster().getNumNodes());
@@ -642,8 +688,7 @@ public class AppMetadataStore {
       .setCluster(cluster)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(TYPE_RUN_RECORD_COMPLETED, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunClusterStatus.ORPHANED, programRunId);
     return meta;
   }
@@ -692,10 +737,7 @@ public class AppMetadataStore {
    * Writes a new {@link RunRecordDetail} and increments the run count of a program.
    */
   private void writeNewRunRecord(RunRecordDetail meta, String typeRunRecordCompleted) throws IOException {
-    List<Field<?>> fields = getProgramRunInvertedTimeKey(typeRunRecordCompleted,
-                                                         meta.getProgramRunId(), meta.getStartTs());
-    writeToStructuredTableWithPrimaryKeys(fields, meta, getRunRecordsTable(),
-                                          StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(typeRunRecordCompleted, meta);
     List<Field<?>> countKey = getProgramCountPrimaryKeys(TYPE_COUNT, meta.getProgramRunId().getParent());
     getProgramCountsTable().increment(countKey, StoreDefinition.AppMetadataStore.COUNTS, 1L);
   }
@@ -733,14 +775,12 @@ public class AppMetadataStore {
 
     // Delete the old run record
     delete(existing);
-    List<Field<?>> key = getProgramRunInvertedTimeKey(TYPE_RUN_RECORD_ACTIVE, programRunId, existing.getStartTs());
     meta = RunRecordDetail.builder(existing)
       .setStatus(ProgramRunStatus.STARTING)
       .setTwillRunId(twillRunId)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(TYPE_RUN_RECORD_ACTIVE, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunStatus.STARTING, programRunId);
     return meta;
   }
@@ -777,7 +817,6 @@ public class AppMetadataStore {
 
     // Delete the old run record
     delete(existing);
-    List<Field<?>> key = getProgramRunInvertedTimeKey(TYPE_RUN_RECORD_ACTIVE, programRunId, existing.getStartTs());
 
     // The existing record's properties already contains the workflowRunId
     RunRecordDetail meta = RunRecordDetail.builder(existing)
@@ -786,8 +825,7 @@ public class AppMetadataStore {
       .setTwillRunId(twillRunId)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(TYPE_RUN_RECORD_ACTIVE, meta);
     LOG.trace("Recorded {} for program {}", ProgramRunStatus.RUNNING, programRunId);
     return meta;
   }
@@ -852,7 +890,6 @@ public class AppMetadataStore {
     }
     // Delete the old run record
     delete(existing);
-    List<Field<?>> key = getProgramRunInvertedTimeKey(TYPE_RUN_RECORD_ACTIVE, programRunId, existing.getStartTs());
     RunRecordDetail.Builder builder = RunRecordDetail.builder(existing).setStatus(toStatus).setSourceId(sourceId);
     if (timestamp != -1) {
       if (action.equals("resume")) {
@@ -862,8 +899,7 @@ public class AppMetadataStore {
       }
     }
     RunRecordDetail meta = builder.build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(TYPE_RUN_RECORD_ACTIVE, meta);
     LOG.trace("Recorded {} for program {}", toStatus, programRunId);
     return meta;
   }
@@ -903,14 +939,12 @@ public class AppMetadataStore {
       addWorkflowNodeState(programRunId, systemArgs, runStatus, failureCause, sourceId);
     }
 
-    List<Field<?>> key = getProgramRunInvertedTimeKey(TYPE_RUN_RECORD_COMPLETED, programRunId, existing.getStartTs());
     RunRecordDetail meta = RunRecordDetail.builder(existing)
       .setStopTime(stopTs)
       .setStatus(runStatus)
       .setSourceId(sourceId)
       .build();
-    writeToStructuredTableWithPrimaryKeys(
-      key, meta, getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    writeRunRecord(TYPE_RUN_RECORD_COMPLETED, meta);
     LOG.trace("Recorded {} for program {}", runStatus, programRunId);
     return meta;
   }
@@ -1017,7 +1051,8 @@ public class AppMetadataStore {
 
   /**
    * Get active runs in all namespaces with a filter, active runs means program run with status STARTING, PENDING,
-   * RUNNING or SUSPENDED.
+   * RUNNING or SUSPENDED. Only the active run records are scanned, and the ones that do not match the filter are
+   * not kept, hence this scales with the number of active runs rather than the run history.
    *
    * @param filter filter to filter run record
    * @return map of run id to run record meta
@@ -1175,9 +1210,20 @@ public class AppMetadataStore {
 
   private void delete(RunRecordDetail record) throws IOException {
     ProgramRunId programRunId = record.getProgramRunId();
-    List<Field<?>> key = getProgramRunInvertedTimeKey(STATUS_TYPE_MAP.get(record.getStatus()), programRunId,
-                                              record.getStartTs());
+    String recordType = STATUS_TYPE_MAP.get(record.getStatus());
+    List<Field<?>> key = getProgramRunInvertedTimeKey(recordType, programRunId, record.getStartTs());
     getRunRecordsTable().delete(key);
+    getRunRecordsTimeIndexTable().delete(getRunTimeIndexRow(recordType, record, false));
+  }
+
+  /**
+   * Writes the given run record and its time index row.
+   */
+  private void writeRunRecord(String recordType, RunRecordDetail meta) throws IOException {
+    List<Field<?>> key = getProgramRunInvertedTimeKey(recordType, meta.getProgramRunId(), meta.getStartTs());
+    writeToStructuredTableWithPrimaryKeys(key, meta, getRunRecordsTable(),
+                                          StoreDefinition.AppMetadataStore.RUN_RECORD_DATA);
+    getRunRecordsTimeIndexTable().upsert(getRunTimeIndexRow(recordType, meta, true));
   }
 
   /**
@@ -1358,25 +1404,52 @@ public class AppMetadataStore {
   public void deleteProgramHistory(String namespaceId, String appId, String versionId)
     throws IOException {
     ApplicationId applicationId = new ApplicationId(namespaceId, appId, versionId);
-    getRunRecordsTable()
-      .deleteAll(Range.singleton(getRunRecordApplicationPrefix(TYPE_RUN_RECORD_ACTIVE, applicationId)));
-    getRunRecordsTable()
-      .deleteAll(Range.singleton(getRunRecordApplicationPrefix(TYPE_RUN_RECORD_COMPLETED, applicationId)));
+    deleteRunRecords(Range.singleton(getRunRecordApplicationPrefix(TYPE_RUN_RECORD_ACTIVE, applicationId)));
+    deleteRunRecords(Range.singleton(getRunRecordApplicationPrefix(TYPE_RUN_RECORD_COMPLETED, applicationId)));
     getProgramCountsTable().deleteAll(Range.singleton(getCountApplicationPrefix(TYPE_COUNT, applicationId)));
     getProgramCountsTable().deleteAll(
       Range.singleton(getCountApplicationPrefix(TYPE_RUN_RECORD_UPGRADE_COUNT, applicationId)));
   }
 
   public void deleteProgramHistory(NamespaceId namespaceId) throws IOException {
-    getRunRecordsTable().deleteAll(
-      Range.singleton(getRunRecordNamespacePrefix(TYPE_RUN_RECORD_ACTIVE, namespaceId)));
-    getRunRecordsTable().deleteAll(Range.singleton(
-      getRunRecordNamespacePrefix(TYPE_RUN_RECORD_COMPLETED, namespaceId)));
+    deleteRunRecords(Range.singleton(getRunRecordNamespacePrefix(TYPE_RUN_RECORD_ACTIVE, namespaceId)));
+    deleteRunRecords(Range.singleton(getRunRecordNamespacePrefix(TYPE_RUN_RECORD_COMPLETED, namespaceId)));
     getProgramCountsTable().deleteAll(Range.singleton(getCountNamespacePrefix(TYPE_COUNT, namespaceId)));
     getProgramCountsTable().deleteAll(Range.singleton(
       getCountNamespacePrefix(TYPE_RUN_RECORD_UPGRADE_COUNT, namespaceId)));
   }
 
+  /**
+   * Deletes the run records in the given range together with their time index rows. The index rows are keyed by
+   * time, hence they are found from the run records, which are read {@link #DELETE_BATCH_SIZE} at a time to bound
+   * the memory used.
+   */
+  private void deleteRunRecords(Range range) throws IOException {
+    Range remaining = range;
+    while (remaining != null) {
+      List<List<Field<?>>> indexKeys = new ArrayList<>();
+      List<Field<?>> lastKeys = null;
+      int count = 0;
+      try (CloseableIterator<StructuredRow> iterator = getRunRecordsTable().scan(remaining, DELETE_BATCH_SIZE)) {
+        while (iterator.hasNext()) {
+          StructuredRow row = iterator.next();
+          lastKeys = new ArrayList<>(row.getPrimaryKeys());
+          count++;
+          // A row deleted earlier in the same transaction can still be scanned, without its values
+          if (row.getString(StoreDefinition.AppMetadataStore.RUN_RECORD_DATA) == null) {
+            continue;
+          }
+          String recordType = row.getString(StoreDefinition.AppMetadataStore.RUN_STATUS);
+          indexKeys.add(getRunTimeIndexRow(recordType, deserializeRunRecordMeta(row), false));
+        }
+      }
+      getRunRecordsTimeIndexTable().multiDelete(indexKeys);
+      remaining = count < DELETE_BATCH_SIZE
+        ? null : Range.create(lastKeys, Range.Bound.EXCLUSIVE, range.getEnd(), range.getEndBound());
+    }
+    getRunRecordsTable().deleteAll(range);
+  }
+
   /**
    * Sets the {@link WorkflowToken} for the given workflow run.
    *
@@ -1414,10 +1487,6 @@ public class AppMetadataStore {
    */
   public Set<RunId> getRunningInRangeCompleted(long startTimeInSecs, long endTimeInSecs)
     throws IOException {
-    // This method scans a large amount of data and may timeout. However, the previous implementation would
-    // simply return incomplete data. We have doubled the amount of time each transaction can take by using two
-    // transactions - and can further get all namespaces from the smaller app spec table and do one transaction per
-    // namespace if necessary.
     return getRunningInRangeForStatus(TYPE_RUN_RECORD_COMPLETED, startTimeInSecs, endTimeInSecs);
   }
 
@@ -1426,10 +1495,6 @@ public class AppMetadataStore {
    */
   public Set<RunId> getRunningInRangeActive(long startTimeInSecs, long endTimeInSecs)
     throws IOException {
-    // This method scans a large amount of data and may timeout. However, the previous implementation would
-    // simply return incomplete data. We have doubled the amount of time each transaction can take by using two
-    // transactions - and can further get all namespaces from the smaller app spec table and do one transaction per
-    // namespace if necessary.
     return getRunningInRangeForStatus(TYPE_RUN_RECORD_ACTIVE, startTimeInSecs, endTimeInSecs);
   }
 
@@ -1515,24 +1580,133 @@ public class AppMetadataStore {
   @VisibleForTesting
   Set<RunId> getRunningInRangeForStatus(String statusKey, long startTimeInSecs,
                                         long endTimeInSecs) throws IOException {
-    // Create time filter to get running programs between start and end time
-    Predicate<RunRecordDetail> timeFilter = (runRecordMeta) ->
-      runRecordMeta.getStartTs() < endTimeInSecs &&
-        (runRecordMeta.getStopTs() == null || runRecordMeta.getStopTs() >= startTimeInSecs);
-
-    List<Field<?>> prefix = getRunRecordStatusPrefix(statusKey);
-    return getRuns(Range.singleton(prefix), ProgramRunStatus.ALL, Integer.MAX_VALUE, null, timeFilter).values().stream()
-      .map(RunRecordDetail::getPid)
-      .map(RunIds::fromString)
+    if (!isRunRecordTimeIndexBuilt()) {
+      // The index doesn't cover the run records written before it existed until it is built
+      Predicate<RunRecordDetail> timeFilter = (runRecordMeta) ->
+        runRecordMeta.getStartTs() < endTimeInSecs &&
+          (runRecordMeta.getStopTs() == null || runRecordMeta.getStopTs() >= startTimeInSecs);
+
+      List<Field<?>> prefix = getRunRecordStatusPrefix(statusKey);
+      return getRuns(Range.singleton(prefix), ProgramRunStatus.ALL, Integer.MAX_VALUE, null, timeFilter).values()
+        .stream()
+        .map(RunRecordDetail::getPid)
+        .map(RunIds::fromString)
+        .collect(Collectors.toSet());
+    }
+
+    // Active runs are indexed by the start time bucket, hence the ones started before the end time are scanned.
+    // Completed runs of each level lasted less than the bucket size of the level, hence only the ones started up to
+    // one bucket before the start time are scanned, except for the last level. The exact times are then filtered
+    // from the index rows.
+    long lastStartTime = Math.max(0L, endTimeInSecs - 1);
+    List<Range> ranges = new ArrayList<>();
+    if (TYPE_RUN_RECORD_ACTIVE.equals(statusKey)) {
+      ranges.add(getRunTimeIndexRange(statusKey, 0, 0L, getRunTimeBucket(lastStartTime, RUN_TIME_BUCKET_SECS)));
+    } else {
+      int lastLevel = COMPLETED_RUN_TIME_BUCKET_SECS.length - 1;
+      for (int level = 0; level < lastLevel; level++) {
+        long bucketSecs = COMPLETED_RUN_TIME_BUCKET_SECS[level];
+        long firstStartTime = Math.max(0L, startTimeInSecs - bucketSecs);
+        ranges.add(getRunTimeIndexRange(statusKey, level, getRunTimeBucket(firstStartTime, bucketSecs),
+                                        getRunTimeBucket(lastStartTime, bucketSecs)));
+      }
+      ranges.add(getRunTimeIndexRange(statusKey, lastLevel, 0L,
+                                      getRunTimeBucket(lastStartTime, COMPLETED_RUN_TIME_BUCKET_SECS[lastLevel])));
+    }
+
+    List<List<Field<?>>> runRecordKeys = new ArrayList<>();
+    try (CloseableIterator<StructuredRow> iterator = getRunRecordsTimeIndexTable().multiScan(ranges,
+                                                                                            Integer.MAX_VALUE)) {
+      while (iterator.hasNext()) {
+        StructuredRow row = iterator.next();
+        Long startTs = row.getLong(StoreDefinition.AppMetadataStore.RUN_START_TIME);
+        Long stopTs = row.getLong(StoreDefinition.AppMetadataStore.RUN_STOP_TIME);
+        if (startTs != null && startTs < endTimeInSecs && (stopTs == null || stopTs >= startTimeInSecs)) {
+          runRecordKeys.add(getRunRecordKeyFromTimeIndex(statusKey, row, startTs));
+        }
+      }
+    }
+
+    // The backfill may have indexed a run record that a concurrent state change has since replaced, hence only the
+    // index rows that still have their run record are returned.
+    return getRunRecordsTable().multiRead(runRecordKeys).stream()
+      .map(row -> RunIds.fromString(row.getString(StoreDefinition.AppMetadataStore.RUN_FIELD)))
       .collect(Collectors.toSet());
   }
 
+  /**
+   * Returns the key of the run record of the given time index row.
+   */
+  private List<Field<?>> getRunRecordKeyFromTimeIndex(String recordType, StructuredRow indexRow, long startTs) {
+    List<Field<?>> fields = new ArrayList<>();
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.RUN_STATUS, recordType));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.NAMESPACE_FIELD,
+                                  indexRow.getString(StoreDefinition.AppMetadataStore.NAMESPACE_FIELD)));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.APPLICATION_FIELD,
+                                  indexRow.getString(StoreDefinition.AppMetadataStore.APPLICATION_FIELD)));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.VERSION_FIELD,
+                                  indexRow.getString(StoreDefinition.AppMetadataStore.VERSION_FIELD)));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.PROGRAM_TYPE_FIELD,
+                                  indexRow.getString(StoreDefinition.AppMetadataStore.PROGRAM_TYPE_FIELD)));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.PROGRAM_FIELD,
+                                  indexRow.getString(StoreDefinition.AppMetadataStore.PROGRAM_FIELD)));
+    fields.add(Fields.longField(StoreDefinition.AppMetadataStore.RUN_START_TIME, getInvertedTsKeyPart(startTs)));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.RUN_FIELD,
+                                  indexRow.getString(StoreDefinition.AppMetadataStore.RUN_FIELD)));
+    return fields;
+  }
+
+  /**
+   * Returns whether the run record time index has been built for the run records written before the index existed.
+   */
+  public boolean isRunRecordTimeIndexBuilt() throws IOException {
+    return getProgramCountsTable().read(getRunRecordTimeIndexMarkerKeys()).isPresent();
+  }
+
+  /**
+   * Marks the run record time index as built.
+   */
+  public void setRunRecordTimeIndexBuilt() throws IOException {
+    List<Field<?>> keys = getRunRecordTimeIndexMarkerKeys();
+    keys.add(Fields.longField(StoreDefinition.AppMetadataStore.COUNTS, 1L));
+    getProgramCountsTable().upsert(keys);
+  }
+
+  /**
+   * Writes the time index rows for a batch of existing run records.
+   *
+   * A concurrent state change of a run may replace its run record after it is read here, which leaves the index row
+   * of the previous state behind. Such index rows are skipped by the readers, which only return the index rows that
+   * still have their run record.
+   *
+   * @param range the range of run records to index
+   * @param batchSize maximum number of run records to index
+   * @return the range of the remaining run records to index, or {@code null} if all run records in the given range
+   *         are indexed
+   */
+  @Nullable
+  public Range buildRunRecordTimeIndex(Range range, int batchSize) throws IOException {
+    List<Field<?>> lastKeys = null;
+    List<List<Field<?>>> indexRows = new ArrayList<>();
+    try (CloseableIterator<StructuredRow> iterator = getRunRecordsTable().scan(range, batchSize)) {
+      while (iterator.hasNext()) {
+        StructuredRow row = iterator.next();
+        String recordType = row.getString(StoreDefinition.AppMetadataStore.RUN_STATUS);
+        indexRows.add(getRunTimeIndexRow(recordType, deserializeRunRecordMeta(row), true));
+        lastKeys = new ArrayList<>(row.getPrimaryKeys());
+      }
+    }
+    getRunRecordsTimeIndexTable().multiUpsert(indexRows);
+    return indexRows.size() < batchSize ? null : Range.from(lastKeys, Range.Bound.EXCLUSIVE);
+  }
+
   @VisibleForTesting
   // USE ONLY IN TESTS: WILL DELETE ALL METADATA STORE INFO
   public void deleteAllAppMetadataTables() throws IOException {
     deleteTable(getApplicationSpecificationTable(), StoreDefinition.AppMetadataStore.NAMESPACE_FIELD);
     deleteTable(getWorkflowNodeStateTable(), StoreDefinition.AppMetadataStore.NAMESPACE_FIELD);
     deleteTable(getRunRecordsTable(), StoreDefinition.AppMetadataStore.RUN_STATUS);
+    deleteTable(getRunRecordsTimeIndexTable(), StoreDefinition.AppMetadataStore.RUN_STATUS);
     deleteTable(getWorkflowsTable(), StoreDefinition.AppMetadataStore.NAMESPACE_FIELD);
     deleteTable(getProgramCountsTable(), StoreDefinition.AppMetadataStore.COUNT_TYPE);
     deleteTable(getSubscriberStateTable(), StoreDefinition.AppMetadataStore.SUBSCRIBER_TOPIC);
@@ -1703,6 +1877,68 @@ public class AppMetadataStore {
     return fields;
   }
 
+  /**
+   * Returns the time index row of the given run record.
+   *
+   * @param recordType the type of the run record
+   * @param record the run record
+   * @param withValues {@code true} to include the non-key fields for writing, {@code false} for only the keys
+   */
+  private List<Field<?>> getRunTimeIndexRow(String recordType, RunRecordDetail record, boolean withValues) {
+    int level = 0;
+    long bucketSecs = RUN_TIME_BUCKET_SECS;
+    Long stopTs = record.getStopTs();
+    if (!TYPE_RUN_RECORD_ACTIVE.equals(recordType)) {
+      // The first level with a bucket larger than the run duration, or the last level
+      int lastLevel = COMPLETED_RUN_TIME_BUCKET_SECS.length - 1;
+      while (level < lastLevel
+        && (stopTs == null || stopTs - record.getStartTs() >= COMPLETED_RUN_TIME_BUCKET_SECS[level])) {
+        level++;
+      }
+      bucketSecs = COMPLETED_RUN_TIME_BUCKET_SECS[level];
+    }
+
+    List<Field<?>> fields = new ArrayList<>();
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.RUN_STATUS, recordType));
+    fields.add(Fields.intField(StoreDefinition.AppMetadataStore.RUN_TIME_LEVEL, level));
+    fields.add(Fields.longField(StoreDefinition.AppMetadataStore.RUN_TIME_BUCKET,
+                                getRunTimeBucket(record.getStartTs(), bucketSecs)));
+    addProgramPrimaryKeys(record.getProgramRunId().getParent(), fields);
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.RUN_FIELD, record.getPid()));
+    if (withValues) {
+      fields.add(Fields.longField(StoreDefinition.AppMetadataStore.RUN_START_TIME, record.getStartTs()));
+      fields.add(Fields.longField(StoreDefinition.AppMetadataStore.RUN_STOP_TIME, stopTs));
+    }
+    return fields;
+  }
+
+  private Range getRunTimeIndexRange(String recordType, int level, long firstBucket, long lastBucket) {
+    return Range.create(
+      ImmutableList.of(Fields.stringField(StoreDefinition.AppMetadataStore.RUN_STATUS, recordType),
+                       Fields.intField(StoreDefinition.AppMetadataStore.RUN_TIME_LEVEL, level),
+                       Fields.longField(StoreDefinition.AppMetadataStore.RUN_TIME_BUCKET, firstBucket)),
+      Range.Bound.INCLUSIVE,
+      ImmutableList.of(Fields.stringField(StoreDefinition.AppMetadataStore.RUN_STATUS, recordType),
+                       Fields.intField(StoreDefinition.AppMetadataStore.RUN_TIME_LEVEL, level),
+                       Fields.longField(StoreDefinition.AppMetadataStore.RUN_TIME_BUCKET, lastBucket)),
+      Range.Bound.INCLUSIVE);
+  }
+
+  private long getRunTimeBucket(long timeInSecs, long bucketSecs) {
+    return timeInSecs - timeInSecs % bucketSecs;
+  }
+
+  private List<Field<?>> getRunRecordTimeIndexMarkerKeys() {
+    List<Field<?>> fields = new ArrayList<>();
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.COUNT_TYPE, TYPE_RUN_RECORD_TIME_INDEX));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.NAMESPACE_FIELD, SMALLEST_POSSIBLE_STRING));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.APPLICATION_FIELD, SMALLEST_POSSIBLE_STRING));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.VERSION_FIELD, SMALLEST_POSSIBLE_STRING));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.PROGRAM_TYPE_FIELD, SMALLEST_POSSIBLE_STRING));
+    fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.PROGRAM_FIELD, SMALLEST_POSSIBLE_STRING));
+    return fields;
+  }
+
   private List<Field<?>> getProgramCountPrimaryKeys(String type, ProgramId programId) {
     List<Field<?>> fields = new ArrayList<>();
     fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.COUNT_TYPE, type));
@@ -32,6 +32,7 @@ import io.cdap.cdap.common.app.RunIds;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.data2.metadata.lineage.field.DefaultFieldLineageReader;
 import io.cdap.cdap.data2.metadata.lineage.field.EndPointField;
+import io.cdap.cdap.data2.metadata.lineage.field.EndPointLineageSummary;
 import io.cdap.cdap.data2.metadata.lineage.field.FieldLineageInfo;
 import io.cdap.cdap.data2.metadata.lineage.field.FieldLineageReader;
 import io.cdap.cdap.proto.id.DatasetId;
@@ -153,18 +154,17 @@ public class FieldLineageAdmin {
   public DatasetFieldLineageSummary getDatasetFieldLineage(Constants.FieldLineage.Direction direction,
                                                            EndPoint endPoint,
                                                            long start, long end) throws IOException {
-    Set<String> lineageFields = fieldLineageReader.getFields(endPoint, start, end);
+    EndPointLineageSummary summary = fieldLineageReader.getSummary(endPoint, start, end);
+    Set<String> lineageFields = summary.getFields();
     Map<DatasetId, Set<FieldRelation>> incomingRelations = new HashMap<>();
     Map<DatasetId, Set<FieldRelation>> outgoingRelations = new HashMap<>();
     Map<DatasetId, Integer> fieldCount = new HashMap<>();
     for (String field : lineageFields) {
-      EndPointField endPointField = new EndPointField(endPoint, field);
-
       // compute the incoming field level lineage
       if (direction == Constants.FieldLineage.Direction.INCOMING ||
         direction == Constants.FieldLineage.Direction.BOTH) {
         Map<DatasetId, Set<String>> incomingSummary =
-          convertSummaryToDatasetMap(fieldLineageReader.getIncomingSummary(endPointField, start, end));
+          convertSummaryToDatasetMap(summary.getIncomingSummary(field));
         // compute the field count for all incoming datasets
         incomingSummary.keySet().forEach(datasetId -> {
           fieldCount.computeIfAbsent(
@@ -179,7 +179,7 @@ public class FieldLineageAdmin {
       if (direction == Constants.FieldLineage.Direction.OUTGOING ||
         direction == Constants.FieldLineage.Direction.BOTH) {
         Map<DatasetId, Set<String>> outgoingSummary =
-          convertSummaryToDatasetMap(fieldLineageReader.getOutgoingSummary(endPointField, start, end));
+          convertSummaryToDatasetMap(summary.getOutgoingSummary(field));
         // compute the field count for all outgoing datasets
         outgoingSummary.keySet().forEach(datasetId -> {
           fieldCount.computeIfAbsent(
@@ -134,48 +134,49 @@ public class LineageAdmin {
     // this map is to map the inner program run id to the workflow run id, this is needed to collapse the inner
     // program and local datasets
     Map<ProgramRunId, ProgramRunId> programWorkflowMap = new HashMap<>();
+    // the relations of the programs fetched so far, the relations of a dataset are taken from the programs that
+    // accessed it, which are then visited at the same level
+    Map<ProgramId, Set<Relation>> programRelationsCache = new HashMap<>();
 
     toVisitDatasets.add(sourceData);
     for (int i = 0; i < levels; ++i) {
       LOG.trace("Level {}", i);
       toVisitPrograms.clear();
-      for (DatasetId d : toVisitDatasets) {
-        if (visitedDatasets.add(d)) {
-          LOG.trace("Visiting dataset {}", d);
-          // Fetch related programs, the programs will be the inner programs which access the datasets. For example,
-          // mapreduce or spark program in a workflow
-          Set<Relation> programRelations = lineageStoreReader.getRelations(d, scanRange.getStart(), scanRange.getEnd(),
-                                                                           scanRange.getFilter());
-          LOG.trace("Got program relations {}", programRelations);
-
-          // if we want to roll up lineage for workflow, we need to figure out what workflow these programs are related
-          // to and find out all the inner programs of that workflow, the workflow run id can also be used to
-          // determine if a dataset is local dataset. The local dataset always ends with the workflow run id
-          if (rollUpWorkflow) {
-            computeWorkflowInnerPrograms(toVisitPrograms, programWorkflowMap, programRelations);
-          }
-
-          // add to the relations, replace the inner program with the workflow using the map, ignore the
-          // local datasets relations, the local dataset always ends with the run id of the workflow
-          filterAndAddRelations(rollUpWorkflow, relations, programWorkflowMap, programRelations);
-          toVisitPrograms.addAll(programRelations.stream().map(Relation::getProgram).collect(Collectors.toSet()));
+      Set<DatasetId> datasets = toVisitDatasets.stream().filter(visitedDatasets::add).collect(Collectors.toSet());
+      Map<DatasetId, Set<Relation>> datasetsRelations = getDatasetRelations(datasets, scanRange, programRelationsCache);
+      for (DatasetId d : datasets) {
+        LOG.trace("Visiting dataset {}", d);
+        // Fetch related programs, the programs will be the inner programs which access the datasets. For example,
+        // mapreduce or spark program in a workflow
+        Set<Relation> programRelations = datasetsRelations.get(d);
+        LOG.trace("Got program relations {}", programRelations);
+
+        // if we want to roll up lineage for workflow, we need to figure out what workflow these programs are related
+        // to and find out all the inner programs of that workflow, the workflow run id can also be used to
+        // determine if a dataset is local dataset. The local dataset always ends with the workflow run id
+        if (rollUpWorkflow) {
+          computeWorkflowInnerPrograms(toVisitPrograms, programWorkflowMap, programRelations);
         }
+
+        // add to the relations, replace the inner program with the workflow using the map, ignore the
+        // local datasets relations, the local dataset always ends with the run id of the workflow
+        filterAndAddRelations(rollUpWorkflow, relations, programWorkflowMap, programRelations);
+        toVisitPrograms.addAll(programRelations.stream().map(Relation::getProgram).collect(Collectors.toSet()));
       }
 
       toVisitDatasets.clear();
-      for (ProgramId p : toVisitPrograms) {
-        if (visitedPrograms.add(p)) {
-          LOG.trace("Visiting program {}", p);
-          // Fetch related datasets
-          Set<Relation> datasetRelations = lineageStoreReader.getRelations(p, scanRange.getStart(),
-                                                                           scanRange.getEnd(), scanRange.getFilter());
-          LOG.trace("Got data relations {}", datasetRelations);
-          Set<DatasetId> localDatasets = filterAndAddRelations(rollUpWorkflow, relations,
-                                                               programWorkflowMap, datasetRelations);
-          toVisitDatasets.addAll(
-            datasetRelations.stream().map(relation -> (DatasetId) relation.getData())
-              .filter(datasetId -> !localDatasets.contains(datasetId)).collect(Collectors.toSet()));
-        }
+      Set<ProgramId> programs = toVisitPrograms.stream().filter(visitedPrograms::add).collect(Collectors.toSet());
+      Map<ProgramId, Set<Relation>> programsRelations = getProgramRelations(programs, scanRange, programRelationsCache);
+      for (ProgramId p : programs) {
+        LOG.trace("Visiting program {}", p);
+        // Fetch related datasets
+        Set<Relation> datasetRelations = programsRelations.get(p);
+        LOG.trace("Got data relations {}", datasetRelations);
+        Set<DatasetId> localDatasets = filterAndAddRelations(rollUpWorkflow, relations,
+                                                             programWorkflowMap, datasetRelations);
+        toVisitDatasets.addAll(
+          datasetRelations.stream().map(relation -> (DatasetId) relation.getData())
+            .filter(datasetId -> !localDatasets.contains(datasetId)).collect(Collectors.toSet()));
       }
     }
 
@@ -185,6 +186,53 @@ public class LineageAdmin {
     return lineage;
   }
 
+  /**
+   * Fetches the relations of the given datasets. If the lineage graph is available, the relations are taken from
+   * the relations of the programs that accessed the datasets according to the graph, such that only the accesses
+   * of the programs are read. Otherwise the accesses of each dataset are read.
+   */
+  private Map<DatasetId, Set<Relation>> getDatasetRelations(Set<DatasetId> datasets, ScanRangeWithFilter scanRange,
+                                                            Map<ProgramId, Set<Relation>> programRelationsCache) {
+    Map<DatasetId, Set<Relation>> datasetRelations = new HashMap<>();
+    if (datasets.isEmpty()) {
+      return datasetRelations;
+    }
+    Map<DatasetId, Set<ProgramId>> accessingPrograms =
+      lineageStoreReader.getAccessingPrograms(datasets, scanRange.getStart(), scanRange.getEnd());
+    if (accessingPrograms == null) {
+      for (DatasetId dataset : datasets) {
+        datasetRelations.put(dataset, lineageStoreReader.getRelations(dataset, scanRange.getStart(),
+                                                                      scanRange.getEnd(), scanRange.getFilter()));
+      }
+      return datasetRelations;
+    }
+
+    Set<ProgramId> programs = accessingPrograms.values().stream()
+      .flatMap(Set::stream).collect(Collectors.toSet());
+    Map<ProgramId, Set<Relation>> programRelations = getProgramRelations(programs, scanRange, programRelationsCache);
+    for (DatasetId dataset : datasets) {
+      datasetRelations.put(dataset, accessingPrograms.get(dataset).stream()
+        .flatMap(program -> programRelations.get(program).stream())
+        .filter(relation -> dataset.equals(relation.getData()))
+        .collect(Collectors.toSet()));
+    }
+    return datasetRelations;
+  }
+
+  /**
+   * Fetches the relations of the given programs, reading only the ones that are not fetched yet.
+   */
+  private Map<ProgramId, Set<Relation>> getProgramRelations(Set<ProgramId> programs, ScanRangeWithFilter scanRange,
+                                                            Map<ProgramId, Set<Relation>> programRelationsCache) {
+    Set<ProgramId> toFetch = programs.stream()
+      .filter(program -> !programRelationsCache.containsKey(program)).collect(Collectors.toSet());
+    if (!toFetch.isEmpty()) {
+      programRelationsCache.putAll(lineageStoreReader.getRelations(toFetch, scanRange.getStart(), scanRange.getEnd(),
+                                                                   scanRange.getFilter()));
+    }
+    return programRelationsCache;
+  }
+
   /**
    * Filter the relations based on the rollUp flag, if set to true, the method will replace the inner program with
    * the workflow using the map and ignore the local datasets relations. The local dataset always ends with the run
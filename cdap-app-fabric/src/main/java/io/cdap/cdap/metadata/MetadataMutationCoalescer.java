@@ -0,0 +1,169 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metadata;
+
+import io.cdap.cdap.api.metadata.MetadataEntity;
+import io.cdap.cdap.spi.metadata.Metadata;
+import io.cdap.cdap.spi.metadata.MetadataKind;
+import io.cdap.cdap.spi.metadata.MetadataMutation;
+import io.cdap.cdap.spi.metadata.ScopedName;
+import io.cdap.cdap.spi.metadata.ScopedNameOfKind;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Collects {@link MetadataMutation}s and merges the mutations of the same entity, so that they can be applied
+ * with few calls to {@link io.cdap.cdap.spi.metadata.MetadataStorage#batch}. The mutations of each entity are
+ * merged in the order they are added:
+ * <ul>
+ *   <li>A drop supersedes all previous mutations of the entity;</li>
+ *   <li>Consecutive updates are merged into one update, with later property values taking precedence;</li>
+ *   <li>Tags and properties that are removed by a remove are dropped from the preceding updates;</li>
+ *   <li>Consecutive removes of tags and properties by name are merged into one remove.</li>
+ * </ul>
+ *
+ * This class is not thread safe.
+ */
+final class MetadataMutationCoalescer {
+
+  private final Map<MetadataEntity, List<MetadataMutation>> mutations = new LinkedHashMap<>();
+  private int addedCount;
+
+  /**
+   * Adds a mutation, merging it with the previous mutations of the same entity if possible.
+   */
+  void add(MetadataMutation mutation) {
+    addedCount++;
+    List<MetadataMutation> pending = mutations.computeIfAbsent(mutation.getEntity(), e -> new ArrayList<>());
+    switch (mutation.getType()) {
+      case DROP:
+        pending.clear();
+        pending.add(mutation);
+        break;
+      case UPDATE:
+        MetadataMutation last = getLast(pending);
+        if (last instanceof MetadataMutation.Update) {
+          pending.set(pending.size() - 1, merge((MetadataMutation.Update) last, (MetadataMutation.Update) mutation));
+        } else {
+          pending.add(mutation);
+        }
+        break;
+      case REMOVE:
+        addRemove(pending, (MetadataMutation.Remove) mutation);
+        break;
+      default:
+        pending.add(mutation);
+    }
+  }
+
+  /**
+   * Returns {@code true} if there is no mutation to apply.
+   */
+  boolean isEmpty() {
+    return mutations.isEmpty();
+  }
+
+  /**
+   * Returns the number of mutations added since the last call to {@link #drain()}.
+   */
+  int getAddedCount() {
+    return addedCount;
+  }
+
+  /**
+   * Returns the merged mutations and resets this coalescer. The mutations are grouped into batches that must be
+   * applied in order, each of them containing at most one mutation per entity.
+   */
+  List<List<MetadataMutation>> drain() {
+    List<List<MetadataMutation>> batches = new ArrayList<>();
+    for (List<MetadataMutation> pending : mutations.values()) {
+      for (int i = 0; i < pending.size(); i++) {
+        if (batches.size() <= i) {
+          batches.add(new ArrayList<>());
+        }
+        batches.get(i).add(pending.get(i));
+      }
+    }
+    mutations.clear();
+    addedCount = 0;
+    return batches;
+  }
+
+  private void addRemove(List<MetadataMutation> pending, MetadataMutation.Remove remove) {
+    // Drop the removed tags and properties from the updates since the last create or drop
+    for (int i = pending.size() - 1; i >= 0; i--) {
+      MetadataMutation mutation = pending.get(i);
+      if (mutation instanceof MetadataMutation.Update) {
+        Metadata remaining = filter(((MetadataMutation.Update) mutation).getUpdates(), remove);
+        if (remaining.isEmpty()) {
+          pending.remove(i);
+        } else {
+          pending.set(i, new MetadataMutation.Update(remove.getEntity(), remaining));
+        }
+      } else if (!(mutation instanceof MetadataMutation.Remove)) {
+        break;
+      }
+    }
+
+    MetadataMutation last = getLast(pending);
+    if (last instanceof MetadataMutation.Remove && ((MetadataMutation.Remove) last).getRemovals() != null
+      && remove.getRemovals() != null) {
+      Set<ScopedNameOfKind> removals = new HashSet<>(((MetadataMutation.Remove) last).getRemovals());
+      removals.addAll(remove.getRemovals());
+      pending.set(pending.size() - 1, new MetadataMutation.Remove(remove.getEntity(), removals));
+    } else {
+      pending.add(remove);
+    }
+  }
+
+  private static MetadataMutation getLast(List<MetadataMutation> pending) {
+    return pending.isEmpty() ? null : pending.get(pending.size() - 1);
+  }
+
+  private static MetadataMutation.Update merge(MetadataMutation.Update first, MetadataMutation.Update second) {
+    Set<ScopedName> tags = new HashSet<>(first.getUpdates().getTags());
+    tags.addAll(second.getUpdates().getTags());
+    Map<ScopedName, String> properties = new HashMap<>(first.getUpdates().getProperties());
+    properties.putAll(second.getUpdates().getProperties());
+    return new MetadataMutation.Update(first.getEntity(), new Metadata(tags, properties));
+  }
+
+  /**
+   * Returns the given metadata without the tags and properties removed by the given remove mutation.
+   */
+  private static Metadata filter(Metadata metadata, MetadataMutation.Remove remove) {
+    Set<ScopedName> tags = new HashSet<>(metadata.getTags());
+    tags.removeIf(isRemoved(remove, MetadataKind.TAG));
+    Map<ScopedName, String> properties = new HashMap<>(metadata.getProperties());
+    properties.keySet().removeIf(isRemoved(remove, MetadataKind.PROPERTY));
+    return new Metadata(tags, properties);
+  }
+
+  private static Predicate<ScopedName> isRemoved(MetadataMutation.Remove remove, MetadataKind kind) {
+    if (remove.getRemovals() != null) {
+      return name -> remove.getRemovals().contains(new ScopedNameOfKind(kind, name));
+    }
+    return name -> remove.getKinds().contains(kind) && remove.getScopes().contains(name.getScope());
+  }
+}
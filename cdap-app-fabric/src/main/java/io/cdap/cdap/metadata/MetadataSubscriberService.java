@@ -26,6 +26,7 @@ import io.cdap.cdap.api.messaging.MessagingContext;
 import io.cdap.cdap.api.metadata.MetadataEntity;
 import io.cdap.cdap.api.metadata.MetadataScope;
 import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.api.metrics.MetricsContext;
 import io.cdap.cdap.common.ConflictException;
 import io.cdap.cdap.common.InvalidMetadataException;
 import io.cdap.cdap.common.conf.CConfiguration;
@@ -75,6 +76,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import javax.annotation.Nullable;
@@ -103,6 +105,11 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
     new ScopedNameOfKind(MetadataKind.PROPERTY, MetadataScope.SYSTEM, MetadataConstants.CREATION_TIME_KEY),
     MetadataDirective.PRESERVE);
 
+  // metadata operations are applied in batches at the end of each fetch, hence there is no need to wait for
+  // or force a refresh of the index after each write
+  private static final MutationOptions BATCH_OPTIONS = MutationOptions.builder()
+    .setAsynchronous(true).setRefresh(false).build();
+
   private final CConfiguration cConf;
   private final MetadataStorage metadataStorage;
   private final MultiThreadMessagingContext messagingContext;
@@ -183,6 +190,8 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
                                  Iterator<ImmutablePair<String, MetadataMessage>> messages)
     throws IOException, ConflictException {
     Map<MetadataMessage.Type, MetadataMessageProcessor> processors = new HashMap<>();
+    MetadataMutationCoalescer coalescer = new MetadataMutationCoalescer();
+    long firstPublishTime = 0L;
 
     // Loop over all fetched messages and process them with corresponding MetadataMessageProcessor
     while (messages.hasNext()) {
@@ -202,7 +211,7 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
           case WORKFLOW_STATE:
             return new WorkflowProcessor();
           case METADATA_OPERATION:
-            return new MetadataOperationProcessor(cConf);
+            return new MetadataOperationProcessor(cConf, coalescer);
           case PROFILE_ASSIGNMENT:
           case PROFILE_UNASSIGNMENT:
           case ENTITY_CREATION:
@@ -220,6 +229,14 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
         LOG.warn("Unsupported metadata message type {}. Message ignored.", message.getType());
         continue;
       }
+      if (processor instanceof MetadataOperationProcessor) {
+        if (coalescer.isEmpty()) {
+          firstPublishTime = getMessagePublishTime(messageId);
+        }
+      } else if (processor instanceof ProfileMetadataMessageProcessor) {
+        // profile messages also write to the metadata storage, hence apply all previous operations first
+        applyMutations(coalescer, firstPublishTime);
+      }
       try {
         processor.processMessage(message, structuredTableContext);
         conflictCount = 0;
@@ -238,6 +255,29 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
         throw e;
       }
     }
+    applyMutations(coalescer, firstPublishTime);
+  }
+
+  /**
+   * Applies the mutations collected by the given {@link MetadataMutationCoalescer} to the metadata storage.
+   *
+   * @param coalescer the coalescer that collected the mutations
+   * @param firstPublishTime the publish time of the first message that produced the mutations
+   */
+  private void applyMutations(MetadataMutationCoalescer coalescer, long firstPublishTime) throws IOException {
+    if (coalescer.isEmpty()) {
+      return;
+    }
+    int addedCount = coalescer.getAddedCount();
+    int batchSize = 0;
+    for (List<MetadataMutation> batch : coalescer.drain()) {
+      metadataStorage.batch(batch, BATCH_OPTIONS);
+      batchSize += batch.size();
+    }
+    MetricsContext metricsContext = getMetricsContext();
+    metricsContext.gauge(Constants.Metrics.MetadataStorage.BATCH_SIZE, batchSize);
+    metricsContext.increment(Constants.Metrics.MetadataStorage.BATCH_COALESCED, addedCount - batchSize);
+    metricsContext.gauge(Constants.Metrics.MetadataStorage.BATCH_DELAY, System.currentTimeMillis() - firstPublishTime);
   }
 
   /**
@@ -348,8 +388,11 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
    */
   private class MetadataOperationProcessor extends MetadataValidator implements MetadataMessageProcessor {
 
-    MetadataOperationProcessor(CConfiguration cConf) {
+    private final MetadataMutationCoalescer coalescer;
+
+    MetadataOperationProcessor(CConfiguration cConf, MetadataMutationCoalescer coalescer) {
       super(cConf);
+      this.coalescer = coalescer;
     }
 
     @Override
@@ -364,11 +407,11 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
           MetadataOperation.Create create = (MetadataOperation.Create) operation;
           MetadataMutation mutation = new MetadataMutation.Create(
             entity, new Metadata(MetadataScope.SYSTEM, create.getTags(), create.getProperties()), CREATE_DIRECTIVES);
-          metadataStorage.apply(mutation, MutationOptions.DEFAULT);
+          coalescer.add(mutation);
           break;
         }
         case DROP: {
-          metadataStorage.apply(new MetadataMutation.Drop(operation.getEntity()), MutationOptions.DEFAULT);
+          coalescer.add(new MetadataMutation.Drop(operation.getEntity()));
           break;
         }
         case PUT: {
@@ -380,8 +423,7 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
               validateProperties(entity, props);
               validateTags(entity, tags);
             }
-            metadataStorage.apply(
-              new MetadataMutation.Update(entity, new Metadata(put.getScope(), tags, props)), MutationOptions.DEFAULT);
+            coalescer.add(new MetadataMutation.Update(entity, new Metadata(put.getScope(), tags, props)));
           } catch (InvalidMetadataException e) {
             LOG.warn("Ignoring invalid metadata operation {} from TMS: {}", operation,
                      GSON.toJson(message.getRawPayload()), e);
@@ -399,23 +441,22 @@ public class MetadataSubscriberService extends AbstractMessagingSubscriberServic
             delete.getTags().forEach(
               name -> toDelete.add(new ScopedNameOfKind(MetadataKind.TAG, delete.getScope(), name)));
           }
-          metadataStorage.apply(new MetadataMutation.Remove(entity, toDelete), MutationOptions.DEFAULT);
+          coalescer.add(new MetadataMutation.Remove(entity, toDelete));
           break;
         }
         case DELETE_ALL: {
           MetadataScope scope = ((MetadataOperation.DeleteAll) operation).getScope();
-          metadataStorage.apply(new MetadataMutation.Remove(entity, scope), MutationOptions.DEFAULT);
+          coalescer.add(new MetadataMutation.Remove(entity, scope));
           break;
         }
         case DELETE_ALL_PROPERTIES: {
           MetadataScope scope = ((MetadataOperation.DeleteAllProperties) operation).getScope();
-          metadataStorage.apply(new MetadataMutation.Remove(entity, scope, MetadataKind.PROPERTY),
-                                MutationOptions.DEFAULT);
+          coalescer.add(new MetadataMutation.Remove(entity, scope, MetadataKind.PROPERTY));
           break;
         }
         case DELETE_ALL_TAGS: {
           MetadataScope scope = ((MetadataOperation.DeleteAllTags) operation).getScope();
-          metadataStorage.apply(new MetadataMutation.Remove(entity, scope, MetadataKind.TAG), MutationOptions.DEFAULT);
+          coalescer.add(new MetadataMutation.Remove(entity, scope, MetadataKind.TAG));
           break;
         }
         default:
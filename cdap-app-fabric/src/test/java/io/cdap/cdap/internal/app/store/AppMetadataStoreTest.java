@@ -34,8 +34,11 @@ import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.ProfileId;
 import io.cdap.cdap.proto.id.ProgramId;
 import io.cdap.cdap.proto.id.ProgramRunId;
+import io.cdap.cdap.spi.data.table.field.Field;
+import io.cdap.cdap.spi.data.table.field.Fields;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import io.cdap.cdap.spi.data.transaction.TransactionRunners;
+import io.cdap.cdap.store.StoreDefinition;
 import org.apache.twill.api.RunId;
 import org.junit.Assert;
 import org.junit.Before;
@@ -321,6 +324,148 @@ public abstract class AppMetadataStoreTest {
             TimeUnit.MILLISECONDS.toSeconds(1000), TimeUnit.MILLISECONDS.toSeconds(10000));
   }
 
+  @Test
+  public void testRunningInRangeAcrossTimeBuckets() throws Exception {
+    ApplicationId application = NamespaceId.DEFAULT.app("app");
+    ProgramId program = application.program(ProgramType.WORKFLOW, "program");
+    long startTime = TimeUnit.HOURS.toSeconds(1) + 100;
+    long stopTime = TimeUnit.HOURS.toSeconds(5);
+    ProgramRunId activeRun = program.run(RunIds.generate(TimeUnit.SECONDS.toMillis(startTime)));
+    ProgramRunId completedRun = program.run(RunIds.generate(TimeUnit.SECONDS.toMillis(startTime)));
+
+    // Add an active run and a run that completed a few hours after it started
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      recordProvisionAndStart(activeRun, store);
+      store.recordProgramRunning(activeRun, startTime, null,
+                                 AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+      recordProvisionAndStart(completedRun, store);
+      store.recordProgramRunning(completedRun, startTime, null,
+                                 AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+      store.recordProgramStop(completedRun, stopTime, ProgramRunStatus.COMPLETED, null,
+                              AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+    });
+
+    // The run records are scanned until the time index is built
+    verifyRunningInRange(activeRun, completedRun, startTime, stopTime);
+
+    // Build the time index one run record at a time. The last batch finds no more run records.
+    Assert.assertEquals(3, AppMetadataStore.RUN_RECORD_TIME_INDEX_BACKFILL.run(transactionRunner, 1));
+    Assert.assertEquals(0, AppMetadataStore.RUN_RECORD_TIME_INDEX_BACKFILL.run(transactionRunner, 1));
+    verifyRunningInRange(activeRun, completedRun, startTime, stopTime);
+
+    // Deleting the run records should also remove them from the time index
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      store.deleteProgramHistory(application.getNamespace(), application.getApplication(), application.getVersion());
+      Assert.assertTrue(store.getRunningInRangeActive(0, Long.MAX_VALUE).isEmpty());
+      Assert.assertTrue(store.getRunningInRangeCompleted(0, Long.MAX_VALUE).isEmpty());
+    });
+  }
+
+  @Test
+  public void testRunningInRangeLongRun() throws Exception {
+    ApplicationId application = NamespaceId.DEFAULT.app("longRunApp");
+    ProgramId program = application.program(ProgramType.WORKFLOW, "program");
+    long startTime = TimeUnit.DAYS.toSeconds(1);
+    long stopTime = TimeUnit.DAYS.toSeconds(100);
+    ProgramRunId longRun = program.run(RunIds.generate(TimeUnit.SECONDS.toMillis(startTime)));
+
+    // Add a run that completed many days after it started, after the time index is built
+    AppMetadataStore.RUN_RECORD_TIME_INDEX_BACKFILL.run(transactionRunner, 100);
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      recordProvisionAndStart(longRun, store);
+      store.recordProgramRunning(longRun, startTime, null,
+                                 AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+      store.recordProgramStop(longRun, stopTime, ProgramRunStatus.COMPLETED, null,
+                              AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+    });
+
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      long rangeStart = TimeUnit.DAYS.toSeconds(50);
+      Assert.assertEquals(Collections.singleton(longRun.getRun()),
+                          toRunIds(store.getRunningInRangeCompleted(rangeStart, rangeStart + 10)));
+      Assert.assertTrue(store.getRunningInRangeCompleted(stopTime + 1, stopTime + 10).isEmpty());
+      store.deleteProgramHistory(application.getNamespace(), application.getApplication(), application.getVersion());
+    });
+  }
+
+  @Test
+  public void testRunningInRangeStaleTimeIndex() throws Exception {
+    ApplicationId application = NamespaceId.DEFAULT.app("staleIndexApp");
+    ProgramId program = application.program(ProgramType.WORKFLOW, "program");
+    long startTime = TimeUnit.HOURS.toSeconds(1);
+    long stopTime = TimeUnit.HOURS.toSeconds(2);
+    ProgramRunId run = program.run(RunIds.generate(TimeUnit.SECONDS.toMillis(startTime)));
+
+    AppMetadataStore.RUN_RECORD_TIME_INDEX_BACKFILL.run(transactionRunner, 100);
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      recordProvisionAndStart(run, store);
+      store.recordProgramRunning(run, startTime, null,
+                                 AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+      store.recordProgramStop(run, stopTime, ProgramRunStatus.COMPLETED, null,
+                              AppFabricTestHelper.createSourceId(sourceId.incrementAndGet()));
+    });
+
+    // Add the active index row that a backfill racing with the stop of the run would leave behind
+    TransactionRunners.run(transactionRunner, context -> {
+      List<Field<?>> fields = new ArrayList<>();
+      fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.RUN_STATUS, "runRecordActive"));
+      fields.add(Fields.intField(StoreDefinition.AppMetadataStore.RUN_TIME_LEVEL, 0));
+      fields.add(Fields.longField(StoreDefinition.AppMetadataStore.RUN_TIME_BUCKET, startTime));
+      fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.NAMESPACE_FIELD, program.getNamespace()));
+      fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.APPLICATION_FIELD, program.getApplication()));
+      fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.VERSION_FIELD, program.getVersion()));
+      fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.PROGRAM_TYPE_FIELD, program.getType().name()));
+      fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.PROGRAM_FIELD, program.getProgram()));
+      fields.add(Fields.stringField(StoreDefinition.AppMetadataStore.RUN_FIELD, run.getRun()));
+      fields.add(Fields.longField(StoreDefinition.AppMetadataStore.RUN_START_TIME, startTime));
+      fields.add(Fields.longField(StoreDefinition.AppMetadataStore.RUN_STOP_TIME, null));
+      context.getTable(StoreDefinition.AppMetadataStore.RUN_RECORDS_TIME_INDEX).upsert(fields);
+    });
+
+    // The stale index row has no active run record, hence the run is only returned as completed
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      Assert.assertTrue(store.getRunningInRangeActive(startTime, stopTime).isEmpty());
+      Assert.assertEquals(Collections.singleton(run.getRun()),
+                          toRunIds(store.getRunningInRangeCompleted(startTime, stopTime)));
+      store.deleteProgramHistory(application.getNamespace(), application.getApplication(), application.getVersion());
+    });
+  }
+
+  private void verifyRunningInRange(ProgramRunId activeRun, ProgramRunId completedRun, long startTime, long stopTime) {
+    TransactionRunners.run(transactionRunner, context -> {
+      AppMetadataStore store = AppMetadataStore.create(context);
+      long rangeStart = TimeUnit.HOURS.toSeconds(3);
+      Assert.assertEquals(Collections.singleton(activeRun.getRun()),
+                          toRunIds(store.getRunningInRangeActive(rangeStart, rangeStart + 10)));
+      Assert.assertEquals(Collections.singleton(completedRun.getRun()),
+                          toRunIds(store.getRunningInRangeCompleted(rangeStart, rangeStart + 10)));
+
+      // Nothing was running before the runs started
+      Assert.assertTrue(store.getRunningInRangeActive(0, startTime).isEmpty());
+      Assert.assertTrue(store.getRunningInRangeCompleted(0, startTime).isEmpty());
+
+      // Both runs were running in the hour the completed run stopped
+      Assert.assertEquals(2, store.getRunningInRangeActive(stopTime - 10, stopTime).size()
+        + store.getRunningInRangeCompleted(stopTime - 10, stopTime).size());
+
+      // Only the active run is running after the completed run stopped
+      rangeStart = stopTime + TimeUnit.HOURS.toSeconds(2);
+      Assert.assertEquals(Collections.singleton(activeRun.getRun()),
+                          toRunIds(store.getRunningInRangeActive(rangeStart, rangeStart + 10)));
+      Assert.assertTrue(store.getRunningInRangeCompleted(rangeStart, rangeStart + 10).isEmpty());
+    });
+  }
+
+  private Set<String> toRunIds(Set<RunId> runIds) {
+    return runIds.stream().map(RunId::getId).collect(Collectors.toSet());
+  }
+
   private void runScan(final Set<Long> expected, final long startTime, final long stopTime) {
     TransactionRunners.run(transactionRunner, context -> {
       AppMetadataStore metadataStoreDataset = AppMetadataStore.create(context);
@@ -104,7 +104,7 @@ public class LineageAdminTest extends AppFabricTestBase {
   }
 
   @Test
-  public void testSimpleLineage() {
+  public void testSimpleLineage() throws Exception {
     // Lineage for D3 -> P2 -> D2 -> P1 -> D1
     TransactionRunner transactionRunner = getInjector().getInstance(TransactionRunner.class);
     LineageStoreReader lineageReader = new DefaultLineageStoreReader(transactionRunner);
@@ -161,6 +161,13 @@ public class LineageAdminTest extends AppFabricTestBase {
       ),
       oneLevelLineage.getRelations());
 
+    // The lineage is the same when it is computed from the lineage graph
+    LineageTable.LINEAGE_GRAPH_BACKFILL.run(transactionRunner, 1);
+    Assert.assertEquals(expectedLineage,
+                        lineageAdmin.computeLineage(dataset1, 500, System.currentTimeMillis() + 10000, 100));
+    Assert.assertEquals(oneLevelLineage,
+                        lineageAdmin.computeLineage(dataset1, 500, System.currentTimeMillis() + 10000, 1));
+
     // Assert that in a different namespace both lineage and metadata should be empty
     NamespaceId customNamespace = new NamespaceId("custom_namespace");
     DatasetId customDataset1 = customNamespace.dataset(dataset1.getEntityName());
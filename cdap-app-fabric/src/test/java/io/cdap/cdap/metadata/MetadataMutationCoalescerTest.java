@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metadata;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.cdap.cdap.api.metadata.MetadataEntity;
+import io.cdap.cdap.api.metadata.MetadataScope;
+import io.cdap.cdap.spi.metadata.Metadata;
+import io.cdap.cdap.spi.metadata.MetadataKind;
+import io.cdap.cdap.spi.metadata.MetadataMutation;
+import io.cdap.cdap.spi.metadata.ScopedNameOfKind;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Test {@link MetadataMutationCoalescer}.
+ */
+public class MetadataMutationCoalescerTest {
+
+  private final MetadataEntity entity1 = MetadataEntity.ofDataset("ns", "ds1");
+  private final MetadataEntity entity2 = MetadataEntity.ofDataset("ns", "ds2");
+
+  @Test
+  public void testMergeUpdates() {
+    MetadataMutationCoalescer coalescer = new MetadataMutationCoalescer();
+    coalescer.add(new MetadataMutation.Update(entity1, new Metadata(MetadataScope.USER, ImmutableSet.of("t1"),
+                                                                    ImmutableMap.of("k1", "v1", "k2", "v2"))));
+    coalescer.add(new MetadataMutation.Update(entity2, new Metadata(MetadataScope.USER, ImmutableSet.of("t1"))));
+    coalescer.add(new MetadataMutation.Update(entity1, new Metadata(MetadataScope.USER, ImmutableSet.of("t2"),
+                                                                    ImmutableMap.of("k2", "v3"))));
+    Assert.assertEquals(3, coalescer.getAddedCount());
+
+    Assert.assertEquals(
+      Collections.singletonList(Arrays.asList(
+        new MetadataMutation.Update(entity1, new Metadata(MetadataScope.USER, ImmutableSet.of("t1", "t2"),
+                                                          ImmutableMap.of("k1", "v1", "k2", "v3"))),
+        new MetadataMutation.Update(entity2, new Metadata(MetadataScope.USER, ImmutableSet.of("t1"))))),
+      coalescer.drain());
+    Assert.assertTrue(coalescer.isEmpty());
+    Assert.assertEquals(0, coalescer.getAddedCount());
+  }
+
+  @Test
+  public void testDropSupersedes() {
+    MetadataMutationCoalescer coalescer = new MetadataMutationCoalescer();
+    coalescer.add(new MetadataMutation.Update(entity1, new Metadata(MetadataScope.USER, ImmutableSet.of("t1"))));
+    coalescer.add(new MetadataMutation.Remove(entity1, MetadataScope.SYSTEM));
+    coalescer.add(new MetadataMutation.Drop(entity1));
+
+    Assert.assertEquals(Collections.singletonList(Collections.singletonList(new MetadataMutation.Drop(entity1))),
+                        coalescer.drain());
+  }
+
+  @Test
+  public void testRemoveSupersedesUpdate() {
+    MetadataMutationCoalescer coalescer = new MetadataMutationCoalescer();
+    coalescer.add(new MetadataMutation.Update(entity1, new Metadata(MetadataScope.USER, ImmutableSet.of("t1", "t2"),
+                                                                    ImmutableMap.of("k1", "v1"))));
+    coalescer.add(new MetadataMutation.Remove(entity1, ImmutableSet.of(
+      new ScopedNameOfKind(MetadataKind.TAG, MetadataScope.USER, "t1"))));
+    coalescer.add(new MetadataMutation.Remove(entity1, ImmutableSet.of(
+      new ScopedNameOfKind(MetadataKind.PROPERTY, MetadataScope.USER, "k1"))));
+
+    // The removed tags and properties are dropped from the update, and the removes are merged
+    Assert.assertEquals(
+      Arrays.asList(
+        Collections.singletonList(
+          new MetadataMutation.Update(entity1, new Metadata(MetadataScope.USER, ImmutableSet.of("t2")))),
+        Collections.singletonList(new MetadataMutation.Remove(entity1, ImmutableSet.of(
+          new ScopedNameOfKind(MetadataKind.TAG, MetadataScope.USER, "t1"),
+          new ScopedNameOfKind(MetadataKind.PROPERTY, MetadataScope.USER, "k1"))))),
+      coalescer.drain());
+
+    // An update that is entirely removed is dropped
+    coalescer.add(new MetadataMutation.Update(entity1, new Metadata(MetadataScope.USER, ImmutableSet.of("t1"))));
+    coalescer.add(new MetadataMutation.Update(entity2, new Metadata(MetadataScope.USER, ImmutableSet.of("t1"))));
+    coalescer.add(new MetadataMutation.Remove(entity1, MetadataScope.USER, MetadataKind.TAG));
+    Assert.assertEquals(
+      Collections.singletonList(Arrays.asList(
+        new MetadataMutation.Remove(entity1, MetadataScope.USER, MetadataKind.TAG),
+        new MetadataMutation.Update(entity2, new Metadata(MetadataScope.USER, ImmutableSet.of("t1"))))),
+      coalescer.drain());
+  }
+
+  @Test
+  public void testOrderPreserved() {
+    MetadataMutationCoalescer coalescer = new MetadataMutationCoalescer();
+    MetadataMutation create = new MetadataMutation.Create(
+      entity1, new Metadata(MetadataScope.SYSTEM, ImmutableSet.of("t1")), Collections.emptyMap());
+    MetadataMutation update = new MetadataMutation.Update(
+      entity1, new Metadata(MetadataScope.USER, ImmutableSet.of("t2")));
+    MetadataMutation remove = new MetadataMutation.Remove(entity2, MetadataScope.USER);
+    coalescer.add(create);
+    coalescer.add(remove);
+    coalescer.add(update);
+
+    // Mutations of the same entity that cannot be merged are applied in separate batches
+    Assert.assertEquals(Arrays.asList(Arrays.asList(create, remove), Collections.singletonList(update)),
+                        coalescer.drain());
+  }
+}
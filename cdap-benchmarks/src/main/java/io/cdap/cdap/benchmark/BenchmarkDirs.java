@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.cdap.benchmark;
+
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.utils.DirUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Helper for managing the local directories used by benchmarks.
+ */
+final class BenchmarkDirs {
+
+  private BenchmarkDirs() {
+    // no-op
+  }
+
+  /**
+   * Creates a new temporary directory for a benchmark run.
+   */
+  static File createTempDir(String prefix) throws IOException {
+    return Files.createTempDirectory(prefix).toFile();
+  }
+
+  /**
+   * Creates a {@link CConfiguration} that stores all local data under the given directory.
+   */
+  static CConfiguration createCConf(File localDataDir) {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, localDataDir.getAbsolutePath());
+    return cConf;
+  }
+
+  /**
+   * Deletes the given directory recursively.
+   */
+  static void delete(File dir) throws IOException {
+    DirUtils.deleteDirectoryContents(dir);
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.cdap.benchmark;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.DatasetContext;
+import io.cdap.cdap.api.dataset.DatasetSpecification;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.data2.dataset2.lib.table.BufferingTable;
+import io.cdap.cdap.data2.dataset2.lib.table.leveldb.LevelDBTable;
+import io.cdap.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableService;
+import org.apache.tephra.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for the transactional buffer flush of {@link BufferingTable}, using the {@link LevelDBTable}
+ * implementation. Each invocation buffers a batch of writes in a transaction and commits it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BufferingTableBenchmark {
+
+  @Param({"1000"})
+  private int rowsPerTx;
+
+  @Param({"10"})
+  private int columnsPerRow;
+
+  @Param({"100"})
+  private int valueSize;
+
+  private File localDir;
+  private LevelDBTableService service;
+  private LevelDBTable table;
+  private byte[][] columns;
+  private byte[][] values;
+  private long writePointer;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    localDir = BenchmarkDirs.createTempDir("buffering-table-benchmark");
+    CConfiguration cConf = BenchmarkDirs.createCConf(localDir);
+    service = new LevelDBTableService();
+    service.setConfiguration(cConf);
+
+    DatasetSpecification spec = DatasetSpecification.builder("benchmark", "table").build();
+    table = new LevelDBTable(DatasetContext.from("default"), "benchmark", service, cConf, spec);
+    service.ensureTableExists(table.getTableName());
+
+    columns = new byte[columnsPerRow][];
+    values = new byte[columnsPerRow][];
+    for (int i = 0; i < columnsPerRow; i++) {
+      columns[i] = Bytes.toBytes("c" + i);
+      values[i] = new byte[valueSize];
+      ThreadLocalRandom.current().nextBytes(values[i]);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    table.close();
+    service.close();
+    BenchmarkDirs.delete(localDir);
+  }
+
+  @Benchmark
+  public boolean flush() throws Exception {
+    writePointer++;
+    table.startTx(new Transaction(writePointer - 1, writePointer, new long[0], new long[0],
+                                  Transaction.NO_TX_IN_PROGRESS));
+    int startRow = ThreadLocalRandom.current().nextInt();
+    for (int i = 0; i < rowsPerTx; i++) {
+      table.put(Bytes.toBytes(startRow + i), columns, values);
+    }
+    boolean committed = table.commitTx();
+    table.postTxCommit();
+    return committed;
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.cdap.benchmark;
+
+import com.google.common.reflect.TypeToken;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.common.io.BinaryEncoder;
+import io.cdap.cdap.common.io.DatumWriter;
+import io.cdap.cdap.internal.io.ASMDatumWriterFactory;
+import io.cdap.cdap.internal.io.ASMFieldAccessorFactory;
+import io.cdap.cdap.internal.io.ReflectionSchemaGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for encoding objects with {@link DatumWriter} generated by the {@code DatumWriterGenerator}
+ * through the {@link ASMDatumWriterFactory}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DatumWriterBenchmark {
+
+  private DatumWriter<Record> datumWriter;
+  private Record record;
+  private ByteArrayOutputStream output;
+  private BinaryEncoder encoder;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    Schema schema = new ReflectionSchemaGenerator().generate(Record.class);
+    datumWriter = new ASMDatumWriterFactory(new ASMFieldAccessorFactory()).create(TypeToken.of(Record.class), schema);
+    record = new Record();
+    output = new ByteArrayOutputStream(4096);
+    encoder = new BinaryEncoder(output);
+  }
+
+  @Benchmark
+  public int encode() throws IOException {
+    output.reset();
+    datumWriter.encode(record, encoder);
+    return output.size();
+  }
+
+  /**
+   * A record with a mix of primitive, string and collection fields.
+   */
+  public static final class Record {
+    private final int intField = 12345;
+    private final long longField = System.currentTimeMillis();
+    private final double doubleField = 3.14159d;
+    private final boolean booleanField = true;
+    private final String stringField = "The quick brown fox jumps over the lazy dog";
+    private final List<String> listField = new ArrayList<>();
+    private final Map<String, Long> mapField = new HashMap<>();
+    private final Inner inner = new Inner();
+
+    Record() {
+      for (int i = 0; i < 10; i++) {
+        listField.add("item" + i);
+        mapField.put("key" + i, (long) i);
+      }
+    }
+  }
+
+  /**
+   * A nested record.
+   */
+  public static final class Inner {
+    private final String name = "inner";
+    private final int[] values = {1, 2, 3, 4, 5, 6, 7, 8};
+  }
+}
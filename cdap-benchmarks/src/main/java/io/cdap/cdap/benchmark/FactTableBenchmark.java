@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.cdap.benchmark;
+
+import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
+import io.cdap.cdap.api.dataset.lib.cube.MeasureType;
+import io.cdap.cdap.api.dataset.lib.cube.Measurement;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.data2.dataset2.lib.table.MetricsTable;
+import io.cdap.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
+import io.cdap.cdap.data2.dataset2.lib.table.leveldb.LevelDBMetricsTable;
+import io.cdap.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableService;
+import io.cdap.cdap.data2.dataset2.lib.timeseries.EntityTable;
+import io.cdap.cdap.data2.dataset2.lib.timeseries.Fact;
+import io.cdap.cdap.data2.dataset2.lib.timeseries.FactScan;
+import io.cdap.cdap.data2.dataset2.lib.timeseries.FactScanResult;
+import io.cdap.cdap.data2.dataset2.lib.timeseries.FactScanner;
+import io.cdap.cdap.data2.dataset2.lib.timeseries.FactTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link FactTable#add(List)} and {@link FactTable#scan(FactScan)} on top of
+ * {@link LevelDBMetricsTable}, which is the metrics storage used in sandbox.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@org.openjdk.jmh.annotations.Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FactTableBenchmark {
+
+  private static final String NAMESPACE = "system";
+  private static final int RESOLUTION = 1;
+  private static final int ROLL_TIME = 3600;
+
+  @Param({"1000"})
+  private int factsPerAdd;
+
+  @Param({"100"})
+  private int programCount;
+
+  @Param({"10"})
+  private int metricCount;
+
+  @Param({"3600"})
+  private int scanSeconds;
+
+  private File localDir;
+  private LevelDBTableService service;
+  private FactTable factTable;
+  private List<List<DimensionValue>> dimensions;
+  private long baseTime;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    localDir = BenchmarkDirs.createTempDir("fact-table-benchmark");
+    CConfiguration cConf = BenchmarkDirs.createCConf(localDir);
+    service = new LevelDBTableService();
+    service.setConfiguration(cConf);
+
+    factTable = new FactTable(createMetricsTable(cConf, "metrics.ts.1"),
+                              new EntityTable(createMetricsTable(cConf, "metrics.entity")), RESOLUTION, ROLL_TIME);
+
+    dimensions = new ArrayList<>(programCount);
+    for (int i = 0; i < programCount; i++) {
+      dimensions.add(Arrays.asList(new DimensionValue("ns", "default"),
+                                   new DimensionValue("app", "app" + (i % 10)),
+                                   new DimensionValue("program", "program" + i)));
+    }
+
+    // Populates an hour of data for the scan benchmark
+    baseTime = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - scanSeconds;
+    for (int i = 0; i < scanSeconds; i++) {
+      factTable.add(createFacts(baseTime + i, programCount));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    factTable.close();
+    service.close();
+    BenchmarkDirs.delete(localDir);
+  }
+
+  @Benchmark
+  public void add() {
+    long timestamp = baseTime + ThreadLocalRandom.current().nextInt(scanSeconds);
+    factTable.add(createFacts(timestamp, factsPerAdd));
+  }
+
+  @Benchmark
+  public void scan(Blackhole blackhole) {
+    List<DimensionValue> dimensionValues = dimensions.get(ThreadLocalRandom.current().nextInt(programCount));
+    FactScan scan = new FactScan(baseTime, baseTime + scanSeconds, "metric0", dimensionValues);
+    FactScanner scanner = factTable.scan(scan);
+    try {
+      while (scanner.hasNext()) {
+        FactScanResult result = scanner.next();
+        for (TimeValue timeValue : result) {
+          blackhole.consume(timeValue);
+        }
+      }
+    } finally {
+      scanner.close();
+    }
+  }
+
+  private List<Fact> createFacts(long timestamp, int count) {
+    List<Fact> facts = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      facts.add(new Fact(timestamp, dimensions.get(i % programCount),
+                         new Measurement("metric" + (i % metricCount), MeasureType.COUNTER, 1L)));
+    }
+    return facts;
+  }
+
+  private MetricsTable createMetricsTable(CConfiguration cConf, String tableName) throws IOException {
+    service.ensureTableExists(PrefixedNamespaces.namespace(cConf, NAMESPACE, tableName));
+    return new LevelDBMetricsTable(NAMESPACE, tableName, service, cConf);
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.cdap.benchmark;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Scanner;
+import io.cdap.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableCore;
+import io.cdap.cdap.data2.dataset2.lib.table.leveldb.LevelDBTableService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link LevelDBTableCore} scan and increment operations. The {@code concurrent*}
+ * benchmarks run the increments with multiple threads to measure contention between concurrent writers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LevelDBTableCoreBenchmark {
+
+  private static final String TABLE_NAME = "benchmark";
+  private static final byte[] COLUMN = Bytes.toBytes("c");
+
+  @Param({"10000"})
+  private int rowCount;
+
+  @Param({"10"})
+  private int columnsPerRow;
+
+  @Param({"1000"})
+  private int scanRows;
+
+  private File localDir;
+  private LevelDBTableService service;
+  private LevelDBTableCore core;
+  private byte[][] columns;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    localDir = BenchmarkDirs.createTempDir("leveldb-benchmark");
+    service = new LevelDBTableService();
+    service.setConfiguration(BenchmarkDirs.createCConf(localDir));
+    service.ensureTableExists(TABLE_NAME);
+    core = new LevelDBTableCore(TABLE_NAME, service);
+
+    columns = new byte[columnsPerRow][];
+    for (int i = 0; i < columnsPerRow; i++) {
+      columns[i] = Bytes.toBytes("c" + i);
+    }
+
+    Map<byte[], Map<byte[], byte[]>> changes = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    for (int i = 0; i < rowCount; i++) {
+      Map<byte[], byte[]> row = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      for (byte[] column : columns) {
+        row.put(column, Bytes.toBytes((long) i));
+      }
+      changes.put(getRowKey(i), row);
+    }
+    core.persist(changes, Long.MAX_VALUE);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    service.close();
+    BenchmarkDirs.delete(localDir);
+  }
+
+  @Benchmark
+  public void scan(Blackhole blackhole) throws IOException {
+    int startRow = ThreadLocalRandom.current().nextInt(Math.max(1, rowCount - scanRows));
+    try (Scanner scanner = core.scan(getRowKey(startRow), getRowKey(startRow + scanRows), null, null, null)) {
+      Row row = scanner.next();
+      while (row != null) {
+        blackhole.consume(row);
+        row = scanner.next();
+      }
+    }
+  }
+
+  @Benchmark
+  public Object increment() throws IOException {
+    byte[] row = getRowKey(ThreadLocalRandom.current().nextInt(rowCount));
+    return core.increment(row, Collections.singletonMap(COLUMN, 1L));
+  }
+
+  @Benchmark
+  public void batchIncrement() throws IOException {
+    // Simulates the metrics table writes, which increment multiple columns over multiple rows
+    NavigableMap<byte[], NavigableMap<byte[], Long>> updates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    int startRow = ThreadLocalRandom.current().nextInt(Math.max(1, rowCount - 10));
+    for (int i = startRow; i < startRow + 10; i++) {
+      NavigableMap<byte[], Long> increments = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+      for (byte[] column : columns) {
+        increments.put(column, 1L);
+      }
+      updates.put(getRowKey(i), increments);
+    }
+    core.increment(updates);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Object concurrentIncrement() throws IOException {
+    // Increments on random rows from multiple threads, which only contend when hitting the same row lock stripe
+    return increment();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void concurrentBatchIncrement() throws IOException {
+    batchIncrement();
+  }
+
+  private static byte[] getRowKey(int row) {
+    return Bytes.toBytes(String.format("row%08d", row));
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.cdap.benchmark;
+
+import com.google.common.util.concurrent.Service;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.guice.ConfigModule;
+import io.cdap.cdap.common.guice.InMemoryDiscoveryModule;
+import io.cdap.cdap.common.metrics.NoOpMetricsCollectionService;
+import io.cdap.cdap.messaging.MessagingService;
+import io.cdap.cdap.messaging.StoreRequest;
+import io.cdap.cdap.messaging.TopicMetadata;
+import io.cdap.cdap.messaging.client.StoreRequestBuilder;
+import io.cdap.cdap.messaging.data.RawMessage;
+import io.cdap.cdap.messaging.guice.MessagingServerRuntimeModule;
+import io.cdap.cdap.messaging.service.CoreMessagingService;
+import io.cdap.cdap.proto.id.NamespaceId;
+import io.cdap.cdap.proto.id.TopicId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for publishing and fetching through the {@link CoreMessagingService} backed by LevelDB tables.
+ * Run the publish benchmark with multiple threads (e.g. {@code -t 16}) to measure group commit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MessagingServiceBenchmark {
+
+  private static final int PREPOPULATE_MESSAGES = 100000;
+
+  @Param({"100", "1024"})
+  private int payloadSize;
+
+  @Param({"1", "100"})
+  private int messagesPerRequest;
+
+  @Param({"100"})
+  private int fetchLimit;
+
+  private File localDir;
+  private MessagingService messagingService;
+  private TopicId publishTopic;
+  private TopicId fetchTopic;
+  private List<byte[]> payloads;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    localDir = BenchmarkDirs.createTempDir("tms-benchmark");
+    CConfiguration cConf = BenchmarkDirs.createCConf(localDir);
+
+    Injector injector = Guice.createInjector(
+      new ConfigModule(cConf),
+      new InMemoryDiscoveryModule(),
+      new MessagingServerRuntimeModule().getStandaloneModules(),
+      new AbstractModule() {
+        @Override
+        protected void configure() {
+          bind(MetricsCollectionService.class).toInstance(new NoOpMetricsCollectionService());
+        }
+      }
+    );
+    messagingService = injector.getInstance(MessagingService.class);
+    if (messagingService instanceof Service) {
+      ((Service) messagingService).startAndWait();
+    }
+
+    publishTopic = NamespaceId.SYSTEM.topic("publish");
+    fetchTopic = NamespaceId.SYSTEM.topic("fetch");
+    messagingService.createTopic(new TopicMetadata(publishTopic));
+    messagingService.createTopic(new TopicMetadata(fetchTopic));
+
+    payloads = new ArrayList<>(messagesPerRequest);
+    for (int i = 0; i < messagesPerRequest; i++) {
+      byte[] payload = new byte[payloadSize];
+      ThreadLocalRandom.current().nextBytes(payload);
+      payloads.add(payload);
+    }
+
+    // Pre-populate the topic for the fetch benchmark
+    for (int count = 0; count < PREPOPULATE_MESSAGES; count += messagesPerRequest) {
+      messagingService.publish(createStoreRequest(fetchTopic));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    if (messagingService instanceof Service) {
+      ((Service) messagingService).stopAndWait();
+    }
+    BenchmarkDirs.delete(localDir);
+  }
+
+  @Benchmark
+  public Object publish() throws Exception {
+    return messagingService.publish(createStoreRequest(publishTopic));
+  }
+
+  @Benchmark
+  public void fetch(Blackhole blackhole) throws Exception {
+    try (CloseableIterator<RawMessage> iterator = messagingService.prepareFetch(fetchTopic)
+      .setLimit(fetchLimit)
+      .fetch()) {
+      while (iterator.hasNext()) {
+        blackhole.consume(iterator.next());
+      }
+    }
+  }
+
+  private StoreRequest createStoreRequest(TopicId topicId) {
+    return StoreRequestBuilder.of(topicId).addPayloads(payloads).build();
+  }
+}
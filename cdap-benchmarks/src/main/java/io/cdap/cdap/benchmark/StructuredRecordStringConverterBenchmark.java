@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.cdap.benchmark;
+
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.data.format.StructuredRecord;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.format.StructuredRecordStringConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for converting {@link StructuredRecord} from and to string using {@link StructuredRecordStringConverter}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StructuredRecordStringConverterBenchmark {
+
+  private static final String DELIMITER = ",";
+
+  private Schema schema;
+  private Schema flatSchema;
+  private StructuredRecord record;
+  private StructuredRecord flatRecord;
+  private String json;
+  private String delimited;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    flatSchema = Schema.recordOf(
+      "flat",
+      Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("score", Schema.of(Schema.Type.DOUBLE)),
+      Schema.Field.of("active", Schema.of(Schema.Type.BOOLEAN)),
+      Schema.Field.of("comment", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+
+    schema = Schema.recordOf(
+      "record",
+      Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("tags", Schema.arrayOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("attributes", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("nested", flatSchema));
+
+    flatRecord = StructuredRecord.builder(flatSchema)
+      .set("id", 1234567890L)
+      .set("name", "benchmark record")
+      .set("score", 98.6d)
+      .set("active", true)
+      .set("comment", "The quick brown fox jumps over the lazy dog")
+      .build();
+
+    record = StructuredRecord.builder(schema)
+      .set("id", 1234567890L)
+      .set("name", "benchmark record")
+      .set("tags", Arrays.asList("tag1", "tag2", "tag3", "tag4"))
+      .set("attributes", ImmutableMap.of("k1", "v1", "k2", "v2", "k3", "v3"))
+      .set("nested", flatRecord)
+      .build();
+
+    json = StructuredRecordStringConverter.toJsonString(record);
+    delimited = StructuredRecordStringConverter.toDelimitedString(flatRecord, DELIMITER);
+  }
+
+  @Benchmark
+  public String toJsonString() throws IOException {
+    return StructuredRecordStringConverter.toJsonString(record);
+  }
+
+  @Benchmark
+  public StructuredRecord fromJsonString() throws IOException {
+    return StructuredRecordStringConverter.fromJsonString(json, schema);
+  }
+
+  @Benchmark
+  public String toDelimitedString() {
+    return StructuredRecordStringConverter.toDelimitedString(flatRecord, DELIMITER);
+  }
+
+  @Benchmark
+  public StructuredRecord fromDelimitedString() {
+    return StructuredRecordStringConverter.fromDelimitedString(delimited, DELIMITER, flatSchema);
+  }
+}
@@ -465,6 +465,7 @@ public final class Constants {
     public static final String DATA_STORAGE_SQL_PASSWORD = "data.storage.sql.jdbc.password";
     public static final String DATA_STORAGE_SQL_PROPERTY_PREFIX = "data.storage.sql.jdbc.property.";
     public static final String DATA_STORAGE_SQL_CONNECTION_SIZE = "data.storage.sql.jdbc.connection.pool.size";
+    public static final String DATA_STORAGE_SQL_STATEMENT_POOL_SIZE = "data.storage.sql.jdbc.statement.pool.size";
 
     // used for Guice named bindings
     public static final String TABLE_TYPE = "table.type";
@@ -598,6 +599,7 @@ public final class Constants {
     public static final String SERVICE_DESCRIPTION = "Service to handle metrics requests.";
     public static final String PROCESSOR_MAX_DELAY_MS = "metrics.processor.max.delay.ms";
     public static final String QUEUE_SIZE = "metrics.processor.queue.size";
+    public static final String PROCESSOR_MAX_BUFFERED_CELLS = "metrics.processor.max.buffered.cells";
 
     public static final String ENTITY_TABLE_NAME = "metrics.data.entity.tableName";
     public static final String METRICS_TABLE_PREFIX = "metrics.data.table.prefix";
@@ -610,6 +612,8 @@ public final class Constants {
     public static final String RETENTION_SECONDS = "metrics.data.table.retention.resolution.";
     public static final int MINUTE_RESOLUTION = 60;
     public static final int HOUR_RESOLUTION = 3600;
+    public static final int DAY_RESOLUTION = 86400;
+    public static final String DAY_RESOLUTION_ENABLED = "metrics.data.table.day.resolution.enabled";
     public static final long PROCESS_INTERVAL_MILLIS = 60000;
     public static final String RETENTION_SECONDS_SUFFIX = ".seconds";
 
@@ -754,6 +758,10 @@ public final class Constants {
       public static final long MAX_MINUTE_RESOLUTION_QUERY_INTERVAL = 600;
       // Number of seconds to subtract from current timestamp when query without "end" time.
       public static final long QUERY_SECOND_DELAY = 2;
+      // Maximum number of data points to keep in the query result cache, 0 to disable the cache.
+      public static final String CACHE_MAX_DATA_POINTS = "metrics.query.cache.max.data.points";
+      public static final String CACHE_CLOSED_BUCKET_DELAY_SECONDS = "metrics.query.cache.closed.bucket.delay.seconds";
+      public static final String CACHE_EXPIRATION_SECONDS = "metrics.query.cache.expiration.seconds";
     }
 
     /**
@@ -778,6 +786,8 @@ public final class Constants {
       public static final String ACTIVE_CONNECTIONS = "structured.table.connection.active";
       public static final String IDLE_CONNECTIONS = "structured.table.connection.idle";
       public static final String ERROR_CONNECTIONS = "structured.table.connection.error";
+      public static final String STATEMENT_CACHE_HIT = "structured.table.statement.cache.hit";
+      public static final String STATEMENT_CACHE_MISS = "structured.table.statement.cache.miss";
     }
 
     /**
@@ -785,6 +795,9 @@ public final class Constants {
      */
     public static final class MetadataStorage {
       public static final String METRICS_PREFIX = "metadata.storage.";
+      public static final String BATCH_SIZE = "metadata.storage.batch.size";
+      public static final String BATCH_COALESCED = "metadata.storage.batch.coalesced";
+      public static final String BATCH_DELAY = "metadata.storage.batch.delay.ms";
     }
   }
 
@@ -914,6 +927,7 @@ public final class Constants {
     public static final String APPENDER_QUEUE_SIZE = "log.queue.size";
     public static final String NUM_PARTITIONS = "log.publish.num.partitions";
     public static final String LOG_PUBLISH_PARTITION_KEY = "log.publish.partition.key";
+    public static final String LOG_READER_PARALLELISM = "log.reader.parallelism";
 
     public static final String PIPELINE_CONFIG_DIR = "log.process.pipeline.config.dir";
     public static final String PIPELINE_LIBRARY_DIR = "log.process.pipeline.lib.dir";
@@ -1320,6 +1334,7 @@ public final class Constants {
     public static final String STORAGE_PROVIDER_IMPLEMENTATION = "metadata.storage.implementation";
     public static final String STORAGE_PROVIDER_NOSQL = "nosql";
     public static final String STORAGE_PROVIDER_ELASTICSEARCH = "elastic";
+    public static final String STORAGE_PROVIDER_LUCENE = "lucene";
   }
 
   /**
@@ -1339,8 +1354,15 @@ public final class Constants {
 
     public static final String LOCAL_DATA_DIR = "messaging.local.data.dir";
     public static final String LOCAL_DATA_CLEANUP_FREQUENCY = "messaging.local.data.cleanup.frequency.secs";
+    public static final String LOCAL_STORAGE_IMPLEMENTATION = "messaging.local.storage.implementation";
+    public static final String LOCAL_SEGMENT_SIZE_MB = "messaging.local.segment.size.mb";
+    public static final String LOCAL_SEGMENT_INDEX_INTERVAL_BYTES = "messaging.local.segment.index.interval.bytes";
+
+    public static final String LOCAL_STORAGE_LEVELDB = "leveldb";
+    public static final String LOCAL_STORAGE_SEGMENT = "segment";
 
     public static final String CACHE_SIZE_MB = "messaging.cache.size.mb";
+    public static final String PAYLOAD_CACHE_SIZE_MB = "messaging.payload.cache.size.mb";
 
     public static final String HBASE_MAX_SCAN_THREADS = "messaging.hbase.max.scan.threads";
     public static final String HBASE_SCAN_CACHE_ROWS = "messaging.hbase.scan.cache.rows";
@@ -1353,6 +1375,7 @@ public final class Constants {
     public static final String TABLE_CACHE_EXPIRATION_SECONDS = "messaging.table.expiration.seconds";
     public static final String TABLE_HBASE_SPLIT_POLICY = "messaging.table.hbase.split.policy";
     public static final String TOPIC_DEFAULT_TTL_SECONDS = "messaging.topic.default.ttl.seconds";
+    public static final String TOPIC_DEFAULT_COMPRESSION = "messaging.topic.default.compression";
     public static final String COPROCESSOR_METADATA_CACHE_UPDATE_FREQUENCY_SECONDS =
       "messaging.coprocessor.metadata.cache.update.frequency.seconds";
 
@@ -1360,6 +1383,7 @@ public final class Constants {
     public static final String HTTP_SERVER_EXECUTOR_THREADS = "messaging.http.server.executor.threads";
     public static final String HTTP_SERVER_MAX_REQUEST_SIZE_MB = "messaging.http.server.max.request.size.mb";
     public static final String HTTP_SERVER_CONSUME_CHUNK_SIZE = "messaging.http.server.consume.chunk.size";
+    public static final String HTTP_SERVER_POLL_MAX_TIMEOUT_MS = "messaging.http.server.poll.max.timeout.ms";
 
     // Distributed mode related configurations
     public static final String HA_FENCING_DELAY_SECONDS = "messaging.ha.fencing.delay.seconds";
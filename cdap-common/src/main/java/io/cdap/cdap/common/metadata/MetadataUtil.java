@@ -51,4 +51,46 @@ public final class MetadataUtil {
     }
     return entity;
   }
+
+  /**
+   * Translate a metadata entity into a document id, for storage providers that index the metadata of each entity
+   * as one document. The version of a versioned entity is not part of the id.
+   */
+  public static String toDocumentId(MetadataEntity entity) {
+    StringBuilder builder = new StringBuilder(entity.getType());
+    char sep = ':';
+    for (MetadataEntity.KeyValue kv : entity) {
+      // TODO (CDAP-13597): Handle versioning of metadata entities in a better way
+      // if it is a versioned entity then ignore the version
+      if (isVersionedEntityType(entity.getType()) && MetadataEntity.VERSION.equalsIgnoreCase(kv.getKey())) {
+        continue;
+      }
+      builder.append(sep).append(kv.getKey()).append('=').append(kv.getValue());
+      sep = ',';
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Translate a document id created by {@link #toDocumentId(MetadataEntity)} into a metadata entity.
+   */
+  public static MetadataEntity toMetadataEntity(String documentId) {
+    int index = documentId.indexOf(':');
+    if (index < 0) {
+      throw new IllegalArgumentException("Document Id must be of the form 'type:k=v,...' but is " + documentId);
+    }
+    String type = documentId.substring(0, index);
+    MetadataEntity.Builder builder = MetadataEntity.builder();
+    for (String part : documentId.substring(index + 1).split(",")) {
+      String[] parts = part.split("=", 2);
+      if (parts[0].equals(type)) {
+        builder.appendAsType(parts[0], parts[1]);
+      } else {
+        builder.append(parts[0], parts[1]);
+      }
+    }
+    // TODO (CDAP-13597): Handle versioning of metadata entities in a better way
+    // if it is a versioned entity then add the default version
+    return addVersionIfNeeded(builder.build());
+  }
 }
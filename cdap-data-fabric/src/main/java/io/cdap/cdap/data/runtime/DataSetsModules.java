@@ -22,6 +22,7 @@ import com.google.inject.Module;
 import com.google.inject.PrivateModule;
 import com.google.inject.Provider;
 import com.google.inject.Scopes;
+import com.google.inject.name.Named;
 import com.google.inject.name.Names;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
@@ -44,6 +45,7 @@ import io.cdap.cdap.data2.registry.BasicUsageRegistry;
 import io.cdap.cdap.data2.registry.UsageRegistry;
 import io.cdap.cdap.data2.registry.UsageWriter;
 import io.cdap.cdap.metadata.elastic.ElasticsearchMetadataStorage;
+import io.cdap.cdap.metadata.lucene.LuceneMetadataStorage;
 import io.cdap.cdap.security.impersonation.OwnerStore;
 import io.cdap.cdap.spi.metadata.MetadataStorage;
 import io.cdap.cdap.spi.metadata.dataset.DatasetMetadataStorage;
@@ -57,6 +59,7 @@ public class DataSetsModules extends RuntimeModule {
 
   public static final String BASE_DATASET_FRAMEWORK = "basicDatasetFramework";
   public static final String SPI_BASE_IMPL = "spiBaseImplementation";
+  static final String DISTRIBUTED = "distributedDatasetsModule";
 
   @Override
   public Module getInMemoryModules() {
@@ -104,18 +107,19 @@ public class DataSetsModules extends RuntimeModule {
 
   @Override
   public Module getStandaloneModules() {
-    return getModule();
+    return getModule(false);
   }
 
   @Override
   public Module getDistributedModules() {
-    return getModule();
+    return getModule(true);
   }
 
-  private Module getModule() {
+  private Module getModule(boolean distributed) {
     return new PrivateModule() {
       @Override
       protected void configure() {
+        bindConstant().annotatedWith(Names.named(DISTRIBUTED)).to(distributed);
         bind(DatasetDefinitionRegistryFactory.class)
           .to(DefaultDatasetDefinitionRegistryFactory.class).in(Scopes.SINGLETON);
 
@@ -164,11 +168,14 @@ class MetadataStorageProvider implements Provider<MetadataStorage> {
 
   private final Injector injector;
   private final CConfiguration cConf;
+  private final boolean distributed;
 
   @Inject
-  MetadataStorageProvider(CConfiguration cConf, Injector injector) {
+  MetadataStorageProvider(CConfiguration cConf, Injector injector,
+                          @Named(DataSetsModules.DISTRIBUTED) boolean distributed) {
     this.cConf = cConf;
     this.injector = injector;
+    this.distributed = distributed;
   }
 
   @Override
@@ -181,8 +188,18 @@ class MetadataStorageProvider implements Provider<MetadataStorage> {
     if (Constants.Metadata.STORAGE_PROVIDER_ELASTICSEARCH.equalsIgnoreCase(config)) {
       return injector.getInstance(ElasticsearchMetadataStorage.class);
     }
+    if (Constants.Metadata.STORAGE_PROVIDER_LUCENE.equalsIgnoreCase(config)) {
+      // the Lucene index is local to a single process, it cannot be shared by the services of a distributed CDAP
+      if (distributed) {
+        throw new IllegalArgumentException("MetadataStorage '" + config + "' is only supported in CDAP standalone. " +
+                                             "Use '" + Constants.Metadata.STORAGE_PROVIDER_NOSQL + "' or '" +
+                                             Constants.Metadata.STORAGE_PROVIDER_ELASTICSEARCH + "' instead.");
+      }
+      return injector.getInstance(LuceneMetadataStorage.class);
+    }
     throw new IllegalArgumentException("Unsupported MetadataStorage '" + config + "'. Only '" +
-                                         Constants.Metadata.STORAGE_PROVIDER_NOSQL + "' and '" +
-                                         Constants.Metadata.STORAGE_PROVIDER_ELASTICSEARCH + "' are allowed.");
+                                         Constants.Metadata.STORAGE_PROVIDER_NOSQL + "', '" +
+                                         Constants.Metadata.STORAGE_PROVIDER_ELASTICSEARCH + "' and '" +
+                                         Constants.Metadata.STORAGE_PROVIDER_LUCENE + "' are allowed.");
   }
 }
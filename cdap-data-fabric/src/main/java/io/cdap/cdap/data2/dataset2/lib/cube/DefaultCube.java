@@ -16,15 +16,10 @@
 
 package io.cdap.cdap.data2.dataset2.lib.cube;
 
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.PeekingIterator;
 import com.google.common.collect.Sets;
-import com.google.common.collect.Table;
 import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
 import io.cdap.cdap.api.dataset.lib.cube.AggregationOption;
@@ -35,15 +30,14 @@ import io.cdap.cdap.api.dataset.lib.cube.CubeFact;
 import io.cdap.cdap.api.dataset.lib.cube.CubeQuery;
 import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
 import io.cdap.cdap.api.dataset.lib.cube.TimeSeries;
-import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
 import io.cdap.cdap.api.dataset.metrics.MeteredDataset;
 import io.cdap.cdap.api.metrics.MetricsCollector;
 import io.cdap.cdap.common.utils.ImmutablePair;
 import io.cdap.cdap.data2.dataset2.lib.timeseries.Fact;
 import io.cdap.cdap.data2.dataset2.lib.timeseries.FactScan;
-import io.cdap.cdap.data2.dataset2.lib.timeseries.FactScanResult;
 import io.cdap.cdap.data2.dataset2.lib.timeseries.FactScanner;
 import io.cdap.cdap.data2.dataset2.lib.timeseries.FactTable;
+import io.cdap.cdap.data2.dataset2.lib.timeseries.FactTableWriter;
 import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,20 +45,21 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
-import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
 import javax.annotation.Nullable;
 
 /**
@@ -76,13 +71,15 @@ public class DefaultCube implements Cube, MeteredDataset {
   private static final DimensionValueComparator DIMENSION_VALUE_COMPARATOR = new DimensionValueComparator();
   // hard-limit on max records to scan
   private static final int MAX_RECORDS_TO_SCAN = 100 * 1000;
-  private static final EnumSet<AggregationOption> PARTITION_AGG_OPTIONS = EnumSet.of(AggregationOption.LATEST,
-                                                                                     AggregationOption.SUM);
+  // default maximum number of cells buffered per resolution for asynchronous add
+  private static final int DEFAULT_MAX_BUFFERED_CELLS = 100 * 1000;
 
   private final Map<Integer, FactTable> resolutionToFactTable;
+  private final Map<Integer, FactTableWriter> resolutionToFactTableWriter;
   private final Map<String, ? extends Aggregation> aggregations;
   private final Map<String, AggregationAlias> aggregationAliasMap;
   private final ExecutorService executorService;
+  private final IntToLongFunction dataStartTimes;
 
   @Nullable
   private MetricsCollector metrics;
@@ -90,15 +87,53 @@ public class DefaultCube implements Cube, MeteredDataset {
   public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
                      Map<String, ? extends Aggregation> aggregations,
                      Map<String, AggregationAlias> aggregationAliasMap) {
+    this(resolutions, factTableSupplier, aggregations, aggregationAliasMap, DEFAULT_MAX_BUFFERED_CELLS);
+  }
+
+  /**
+   * Creates an instance of {@link DefaultCube}.
+   *
+   * @param maxBufferedCells maximum number of cells per resolution to buffer for {@link #addAsync(Collection)}
+   *                         while a write to the resolution table is in progress
+   */
+  public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
+                     Map<String, ? extends Aggregation> aggregations,
+                     Map<String, AggregationAlias> aggregationAliasMap, int maxBufferedCells) {
+    this(resolutions, factTableSupplier, aggregations, aggregationAliasMap, maxBufferedCells, resolution -> 0L);
+  }
+
+  /**
+   * Creates an instance of {@link DefaultCube}.
+   *
+   * @param maxBufferedCells maximum number of cells per resolution to buffer for {@link #addAsync(Collection)}
+   *                         while a write to the resolution table is in progress
+   * @param dataStartTimes function that returns, for a resolution, the earliest timestamp in seconds from which the
+   *                       table of that resolution holds complete data, i.e. after the table was created and within
+   *                       its retention. A coarser table is only used in query planning for buckets starting from it.
+   */
+  public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
+                     Map<String, ? extends Aggregation> aggregations,
+                     Map<String, AggregationAlias> aggregationAliasMap, int maxBufferedCells,
+                     IntToLongFunction dataStartTimes) {
+    this.dataStartTimes = dataStartTimes;
     this.aggregations = aggregations;
     this.resolutionToFactTable = Maps.newHashMap();
     for (int resolution : resolutions) {
       resolutionToFactTable.put(resolution, factTableSupplier.get(resolution, 3600));
     }
     this.aggregationAliasMap = aggregationAliasMap;
-    this.executorService = new ThreadPoolExecutor(0, resolutions.length, 30, TimeUnit.SECONDS,
-                                                  new LinkedBlockingQueue<>(),
-                                                  Threads.createDaemonThreadFactory("metrics-table-%d"));
+    // With an unbounded queue, the pool never grows beyond the core size. Use one core thread per resolution table
+    // so that tables are written in parallel, and let idle threads time out.
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(resolutions.length, resolutions.length, 30, TimeUnit.SECONDS,
+                                                         new LinkedBlockingQueue<>(),
+                                                         Threads.createDaemonThreadFactory("metrics-table-%d"));
+    executor.allowCoreThreadTimeOut(true);
+    this.executorService = executor;
+    this.resolutionToFactTableWriter = Maps.newHashMap();
+    for (Map.Entry<Integer, FactTable> entry : resolutionToFactTable.entrySet()) {
+      resolutionToFactTableWriter.put(entry.getKey(),
+                                      new FactTableWriter(entry.getValue(), executorService, maxBufferedCells));
+    }
   }
 
   @Override
@@ -108,29 +143,7 @@ public class DefaultCube implements Cube, MeteredDataset {
 
   @Override
   public void add(Collection<? extends CubeFact> facts) {
-    List<Fact> toWrite = Lists.newArrayList();
-    int dimValuesCount = 0;
-    for (CubeFact fact : facts) {
-      for (Map.Entry<String, ? extends Aggregation> aggEntry : aggregations.entrySet()) {
-        Aggregation agg = aggEntry.getValue();
-        AggregationAlias aggregationAlias = null;
-
-        if (aggregationAliasMap.containsKey(aggEntry.getKey())) {
-          aggregationAlias = aggregationAliasMap.get(aggEntry.getKey());
-        }
-
-        if (agg.accept(fact)) {
-          List<DimensionValue> dimensionValues = Lists.newArrayList();
-          for (String dimensionName : agg.getDimensionNames()) {
-            String dimensionValueKey =
-              aggregationAlias == null ? dimensionName : aggregationAlias.getAlias(dimensionName);
-            dimensionValues.add(new DimensionValue(dimensionName, fact.getDimensionValues().get(dimensionValueKey)));
-            dimValuesCount++;
-          }
-          toWrite.add(new Fact(fact.getTimestamp(), dimensionValues, fact.getMeasurements()));
-        }
-      }
-    }
+    List<Fact> toWrite = createFacts(facts);
 
     Map<Integer, Future<?>> futures = new HashMap<>();
     for (Map.Entry<Integer, FactTable> table : resolutionToFactTable.entrySet()) {
@@ -162,8 +175,74 @@ public class DefaultCube implements Cube, MeteredDataset {
       throw new RuntimeException(failedMessage.append(".").toString(), failedException);
     }
 
+    incrementAddMetrics(facts.size(), toWrite);
+  }
+
+  /**
+   * Adds the given facts asynchronously. Facts are aggregated in memory with facts from other calls and written
+   * to the resolution tables in the background. This method only blocks when the amount of buffered facts reaches
+   * the limit. Facts added through this method shouldn't be mixed with the ones through {@link #add(Collection)}.
+   *
+   * @param facts the facts to add
+   * @return a {@link CompletableFuture} that will be completed when the facts are written to all resolution tables
+   * @throws InterruptedException if interrupted while waiting for space in the buffer
+   */
+  public CompletableFuture<Void> addAsync(Collection<? extends CubeFact> facts) throws InterruptedException {
+    List<Fact> toWrite = createFacts(facts);
+
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    for (FactTableWriter writer : resolutionToFactTableWriter.values()) {
+      futures.add(writer.add(toWrite));
+    }
+    incrementAddMetrics(facts.size(), toWrite);
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+  }
+
+  /**
+   * Returns a {@link CompletableFuture} that will be completed when all the facts added through
+   * {@link #addAsync(Collection)} so far are written.
+   */
+  public CompletableFuture<Void> flush() {
+    return CompletableFuture.allOf(resolutionToFactTableWriter.values().stream()
+                                     .map(FactTableWriter::flush)
+                                     .toArray(CompletableFuture[]::new));
+  }
+
+  /**
+   * Creates the {@link Fact}s to be written to resolution tables from the given {@link CubeFact}s.
+   */
+  private List<Fact> createFacts(Collection<? extends CubeFact> facts) {
+    List<Fact> toWrite = Lists.newArrayList();
+    for (CubeFact fact : facts) {
+      for (Map.Entry<String, ? extends Aggregation> aggEntry : aggregations.entrySet()) {
+        Aggregation agg = aggEntry.getValue();
+        AggregationAlias aggregationAlias = null;
+
+        if (aggregationAliasMap.containsKey(aggEntry.getKey())) {
+          aggregationAlias = aggregationAliasMap.get(aggEntry.getKey());
+        }
+
+        if (agg.accept(fact)) {
+          List<DimensionValue> dimensionValues = Lists.newArrayList();
+          for (String dimensionName : agg.getDimensionNames()) {
+            String dimensionValueKey =
+              aggregationAlias == null ? dimensionName : aggregationAlias.getAlias(dimensionName);
+            dimensionValues.add(new DimensionValue(dimensionName, fact.getDimensionValues().get(dimensionValueKey)));
+          }
+          toWrite.add(new Fact(fact.getTimestamp(), dimensionValues, fact.getMeasurements()));
+        }
+      }
+    }
+    return toWrite;
+  }
+
+  private void incrementAddMetrics(int cubeFactCount, List<Fact> toWrite) {
+    int dimValuesCount = 0;
+    for (Fact fact : toWrite) {
+      dimValuesCount += fact.getDimensionValues().size();
+    }
     incrementMetric("cube.cubeFact.add.request.count", 1);
-    incrementMetric("cube.cubeFact.added.count", facts.size());
+    incrementMetric("cube.cubeFact.added.count", cubeFactCount);
     incrementMetric("cube.tsFact.created.count", toWrite.size());
     incrementMetric("cube.tsFact.created.dimValues.count", dimValuesCount);
     incrementMetric("cube.tsFact.added.count", toWrite.size() * resolutionToFactTable.size());
@@ -203,6 +282,9 @@ public class DefaultCube implements Cube, MeteredDataset {
       'measureName'='read.ops'
       'measureType'='COUNTER'
 
+      If the query sums up counters over the whole time range, the time range is split into whole buckets of the
+      coarsest resolution table possible, with partial buckets at the edges scanned from finer resolution tables.
+
       3) While scanning build a table: dimension values -> time -> value. Use measureType as values aggregate
          function if needed.
     */
@@ -242,25 +324,28 @@ public class DefaultCube implements Cube, MeteredDataset {
     incrementMetric("cube.query.agg." + aggName + ".count", 1);
     incrementMetric("cube.query.res." + query.getResolution() + ".count", 1);
 
-    // 2) build a scan for a query
+    // 2) build scans for a query
     List<DimensionValue> dimensionValues = Lists.newArrayList();
     for (String dimensionName : agg.getDimensionNames()) {
       // if not defined in query, will be set as null, which means "any"
       dimensionValues.add(new DimensionValue(dimensionName, query.getDimensionValues().get(dimensionName)));
     }
 
-    FactScan scan = new FactScan(query.getStartTs(), query.getEndTs(),
-                                 query.getMeasurements().keySet(), dimensionValues);
+    List<Integer> resolutions = getPlanResolutions(query);
+    List<ImmutablePair<Integer, FactScan>> scans = new ArrayList<>();
+    planScans(query, dimensionValues, resolutions, resolutions.size() - 1,
+              query.getStartTs(), query.getEndTs(), scans);
+    if (scans.size() > 1) {
+      incrementMetric("cube.query.planned.count", 1);
+    }
 
     // 3) execute scan query
-    FactTable table = resolutionToFactTable.get(query.getResolution());
-    FactScanner scanner = table.scan(scan);
-    Table<Map<String, String>, String, Map<Long, Long>> resultMap = getTimeSeries(query, scanner);
+    TimeSeriesAggregator aggregator = getTimeSeries(query, dimensionValues, resolutions, scans);
 
     incrementMetric("cube.query.request.success.count", 1);
-    incrementMetric("cube.query.result.size", resultMap.size());
+    incrementMetric("cube.query.result.size", aggregator.size());
 
-    Collection<TimeSeries> timeSeries = convertToQueryResult(query, resultMap);
+    Collection<TimeSeries> timeSeries = aggregator.getTimeSeries();
     incrementMetric("cube.query.result.timeseries.count", timeSeries.size());
 
     return timeSeries;
@@ -374,133 +459,130 @@ public class DefaultCube implements Cube, MeteredDataset {
     return currentBest;
   }
 
-  private Table<Map<String, String>, String, Map<Long, Long>> getTimeSeries(CubeQuery query, FactScanner scanner) {
-    // {dimension values, measure} -> {time -> value}s
-    Table<Map<String, String>, String, Map<Long, Long>> result = HashBasedTable.create();
-
-    int count = 0;
-    while (scanner.hasNext()) {
-      FactScanResult next = scanner.next();
-      incrementMetric("cube.query.scan.records.count", 1);
-
-      boolean skip = false;
-      // using tree map, as we are using it as a key for a map
-      Map<String, String> seriesDimensions = Maps.newTreeMap();
-      for (String dimensionName : query.getGroupByDimensions()) {
-        // todo: use Map<String, String> instead of List<DimensionValue> into a String, String, everywhere
-        for (DimensionValue dimensionValue : next.getDimensionValues()) {
-          if (dimensionName.equals(dimensionValue.getName())) {
-            if (dimensionValue.getValue() == null) {
-              // Currently, we do NOT return null as grouped by value.
-              // Depending on whether dimension is required or not the records with null value in it may or may not be
-              // in aggregation. At this moment, the choosing of the aggregation for query doesn't look at this, so
-              // potentially null may or may not be included in results, depending on the aggregation selected
-              // querying. We don't want to produce inconsistent results varying due to different aggregations selected,
-              // so don't return nulls in any of those cases.
-              skip = true;
-              continue;
-            }
-            seriesDimensions.put(dimensionName, dimensionValue.getValue());
-            break;
-          }
+  /**
+   * Returns the resolutions of the tables to plan the scans of the given query with, from the finest to the
+   * coarsest, each being a multiple of the previous one. A query that sums up counters over the whole time range,
+   * i.e. one with {@link AggregationOption#SUM} and a limit of one, is answered from the coarsest resolution table
+   * that has whole buckets with complete data within the time range, with the rest of the time range answered from
+   * finer resolution tables. All other queries are answered by a single scan on the table of the query resolution.
+   */
+  private List<Integer> getPlanResolutions(CubeQuery query) {
+    List<Integer> resolutions = new ArrayList<>();
+    resolutions.add(query.getResolution());
+    if (isRangeSumQuery(query)) {
+      for (int resolution : new TreeSet<>(resolutionToFactTable.keySet())) {
+        int coarsest = resolutions.get(resolutions.size() - 1);
+        if (resolution > coarsest && resolution != Integer.MAX_VALUE && resolution % coarsest == 0) {
+          resolutions.add(resolution);
         }
       }
+    }
+    return resolutions;
+  }
 
-      if (skip) {
-        incrementMetric("cube.query.scan.skipped.count", 1);
-        continue;
-      }
+  /**
+   * Plans the scans for the given inclusive time range, using the resolution at the given index and the finer ones.
+   * The resulting scans cover the time range exactly once.
+   */
+  private void planScans(CubeQuery query, List<DimensionValue> dimensionValues, List<Integer> resolutions,
+                         int resolutionIdx, long startTs, long endTs, List<ImmutablePair<Integer, FactScan>> scans) {
+    if (startTs > endTs) {
+      return;
+    }
+    int resolution = resolutions.get(resolutionIdx);
+    if (resolutionIdx == 0) {
+      scans.add(new ImmutablePair<>(resolution, new FactScan(startTs, endTs, query.getMeasurements().keySet(),
+                                                             dimensionValues)));
+      return;
+    }
 
-      for (TimeValue timeValue : next) {
-        Map<Long, Long> timeValues = result.get(seriesDimensions, next.getMeasureName());
-        if (timeValues == null) {
-          result.put(seriesDimensions, next.getMeasureName(), Maps.<Long, Long>newHashMap());
-        }
+    long dataStartTs = Math.max(startTs, dataStartTimes.applyAsLong(resolution));
+    if (dataStartTs > endTs) {
+      planScans(query, dimensionValues, resolutions, resolutionIdx - 1, startTs, endTs, scans);
+      return;
+    }
 
-        AggregationFunction function = query.getMeasurements().get(next.getMeasureName());
-        if (AggregationFunction.SUM == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value == null ? 0 : value;
-          value += timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.MAX == function) {
-          Long value = result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value != null && value > timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.MIN == function) {
-          Long value =  result.get(seriesDimensions, next.getMeasureName()).get(timeValue.getTimestamp());
-          value = value != null && value < timeValue.getValue() ? value : timeValue.getValue();
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), value);
-        } else if (AggregationFunction.LATEST == function) {
-          result.get(seriesDimensions, next.getMeasureName()).put(timeValue.getTimestamp(), timeValue.getValue());
-        } else {
-          // should never happen: developer error
-          throw new RuntimeException("Unknown MeasureType: " + function);
-        }
-      }
-      if (++count >= MAX_RECORDS_TO_SCAN) {
-        break;
+    // whole buckets of this resolution within the time range with complete data are [firstBucketTs, endBucketTs)
+    long firstBucketTs = (dataStartTs + resolution - 1) / resolution * resolution;
+    long endBucketTs = (endTs + 1) / resolution * resolution;
+    if (firstBucketTs >= endBucketTs) {
+      planScans(query, dimensionValues, resolutions, resolutionIdx - 1, startTs, endTs, scans);
+      return;
+    }
+
+    planScans(query, dimensionValues, resolutions, resolutionIdx - 1, startTs, firstBucketTs - 1, scans);
+    scans.add(new ImmutablePair<>(resolution, new FactScan(firstBucketTs, endBucketTs - 1,
+                                                           query.getMeasurements().keySet(), dimensionValues)));
+    planScans(query, dimensionValues, resolutions, resolutionIdx - 1, endBucketTs, endTs, scans);
+  }
+
+  /**
+   * Returns {@code true} if the query result is the sum of counters over the whole time range, which can be
+   * computed from any combination of resolution tables that covers the time range exactly once.
+   */
+  private boolean isRangeSumQuery(CubeQuery query) {
+    if (query.getResolution() == Integer.MAX_VALUE || query.getLimit() != 1 ||
+      query.getAggregationOption() != AggregationOption.SUM || query.getInterpolator() != null) {
+      return false;
+    }
+    for (AggregationFunction function : query.getMeasurements().values()) {
+      if (function != AggregationFunction.SUM) {
+        return false;
       }
     }
-    return result;
+    return true;
   }
 
-  private Collection<TimeSeries> convertToQueryResult(
-    CubeQuery query, Table<Map<String, String>, String, Map<Long, Long>> resultTable) {
-    List<TimeSeries> result = new ArrayList<>();
-    // iterating each groupValue dimensions
-    for (Map.Entry<Map<String, String>, Map<String, Map<Long, Long>>> row : resultTable.rowMap().entrySet()) {
-      // iterating each measure
-      for (Map.Entry<String, Map<Long, Long>> measureEntry : row.getValue().entrySet()) {
-        // generating time series for a grouping and a measure
-        int count = 0;
-        List<TimeValue> timeValues = new ArrayList<>();
-        for (Map.Entry<Long, Long> timeValue : measureEntry.getValue().entrySet()) {
-          timeValues.add(new TimeValue(timeValue.getKey(), timeValue.getValue()));
-        }
-        Collections.sort(timeValues);
-        List<TimeValue> resultTimeValues = new ArrayList<>();
+  private TimeSeriesAggregator getTimeSeries(CubeQuery query, List<DimensionValue> dimensionValues,
+                                             List<Integer> resolutions, List<ImmutablePair<Integer, FactScan>> scans) {
+    // {dimension values, measure} -> {time -> value}s
+    TimeSeriesAggregator result = new TimeSeriesAggregator(query);
+    int[] counts = new int[2];
+    scan(scans, result, counts);
+
+    // A data point from a coarser table has the bucket start as the timestamp. If it is the latest data point of
+    // a series, the result timestamp would be different from the one answered by the query resolution table only.
+    // Replace such buckets with scans on the finer tables, until the latest data points of all series come from the
+    // query resolution table.
+    ImmutablePair<Integer, Long> bucket = result.getLatestCoarseBucket();
+    while (bucket != null && counts[0] < MAX_RECORDS_TO_SCAN) {
+      int resolution = bucket.getFirst();
+      long bucketTs = bucket.getSecond();
+      result.remove(resolution, bucketTs);
+
+      List<ImmutablePair<Integer, FactScan>> bucketScans = new ArrayList<>();
+      planScans(query, dimensionValues, resolutions, resolutions.indexOf(resolution) - 1,
+                bucketTs, bucketTs + resolution - 1, bucketScans);
+      scan(bucketScans, result, counts);
+      bucket = result.getLatestCoarseBucket();
+    }
 
-        AggregationOption aggregationOption = query.getAggregationOption();
-        // this should not happen in production, since the check has been made in the handler
-        if (query.getLimit() <= 0) {
-          throw new IllegalArgumentException("The query limit cannot be less than 0");
-        }
-        // only partition the data points if the data points are larger than the required limit and only do it for
-        // option LATEST and SUM.
-        if (query.getLimit() < timeValues.size() && PARTITION_AGG_OPTIONS.contains(aggregationOption)) {
-          int partitionSize = timeValues.size() / query.getLimit();
-          int remainder = timeValues.size() % query.getLimit();
-          // ignore the first reminderth data points
-          for (List<TimeValue> interval : Iterables.partition(timeValues.subList(remainder,
-                                                                                 timeValues.size()), partitionSize)) {
-            // for LATEST we only need to get the last data point in the interval
-            if (aggregationOption.equals(AggregationOption.LATEST)) {
-              resultTimeValues.add(interval.get(interval.size() - 1));
-              continue;
-            }
-            // for SUM we want to sum up all the values in the interval
-            if (aggregationOption.equals(AggregationOption.SUM)) {
-              long sum = interval.stream().mapToLong(TimeValue::getValue).sum();
-              resultTimeValues.add(new TimeValue(interval.get(interval.size() - 1).getTimestamp(), sum));
-            }
-          }
-        } else {
-          // TODO: CDAP-15565 remove the interpolation logic since it is never maintained and adds huge complexity
-          PeekingIterator<TimeValue> timeValueItor = Iterators.peekingIterator(
-            new TimeSeriesInterpolator(timeValues, query.getInterpolator(), query.getResolution()).iterator());
-          while (timeValueItor.hasNext()) {
-            TimeValue timeValue = timeValueItor.next();
-            resultTimeValues.add(new TimeValue(timeValue.getTimestamp(), timeValue.getValue()));
-            if (++count >= query.getLimit()) {
-              break;
-            }
+    incrementMetric("cube.query.scan.records.count", counts[0]);
+    if (counts[1] > 0) {
+      incrementMetric("cube.query.scan.skipped.count", counts[1]);
+    }
+    return result;
+  }
+
+  /**
+   * Executes the given scans and adds the results to the given {@link TimeSeriesAggregator}.
+   *
+   * @param counts an array for accumulating the number of records scanned and the number of records skipped
+   */
+  private void scan(List<ImmutablePair<Integer, FactScan>> scans, TimeSeriesAggregator result, int[] counts) {
+    for (ImmutablePair<Integer, FactScan> scan : scans) {
+      FactScanner scanner = resolutionToFactTable.get(scan.getFirst()).scan(scan.getSecond());
+      try {
+        while (counts[0] < MAX_RECORDS_TO_SCAN && scanner.hasNext()) {
+          if (!result.add(scanner.next(), scan.getFirst())) {
+            counts[1]++;
           }
+          counts[0]++;
         }
-        result.add(new TimeSeries(measureEntry.getKey(), row.getKey(), resultTimeValues));
+      } finally {
+        scanner.close();
       }
     }
-    return result;
   }
 
   @Override
@@ -511,6 +593,9 @@ public class DefaultCube implements Cube, MeteredDataset {
   @Override
   public void close() throws IOException {
     try {
+      for (FactTableWriter writer : resolutionToFactTableWriter.values()) {
+        writer.close();
+      }
       for (FactTable factTable : resolutionToFactTable.values()) {
         factTable.close();
       }
@@ -0,0 +1,429 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.cube;
+
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationOption;
+import io.cdap.cdap.api.dataset.lib.cube.CubeQuery;
+import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
+import io.cdap.cdap.api.dataset.lib.cube.Interpolator;
+import io.cdap.cdap.api.dataset.lib.cube.TimeSeries;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.common.utils.ImmutablePair;
+import io.cdap.cdap.data2.dataset2.lib.timeseries.FactScanResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Aggregates {@link FactScanResult}s of a {@link CubeQuery} into {@link TimeSeries}.
+ *
+ * Each series is identified by the group by dimension values and the measure name. Data points of a series are
+ * aggregated with the {@link AggregationFunction} of the measure into a primitive open addressing hash table keyed
+ * by timestamp, hence no object is created per data point while scanning. Sorting, partitioning, interpolation and
+ * limit are applied on the primitive arrays when the result is produced, and only the data points to be returned
+ * are turned into {@link TimeValue}s.
+ *
+ * This class is not thread safe.
+ */
+final class TimeSeriesAggregator {
+
+  private static final EnumSet<AggregationOption> PARTITION_AGG_OPTIONS = EnumSet.of(AggregationOption.LATEST,
+                                                                                     AggregationOption.SUM);
+
+  private final CubeQuery query;
+  private final String[] groupByDimensions;
+  private final Map<SeriesKey, Series> series;
+
+  TimeSeriesAggregator(CubeQuery query) {
+    this.query = query;
+    this.groupByDimensions = query.getGroupByDimensions().toArray(new String[0]);
+    this.series = new LinkedHashMap<>();
+  }
+
+  /**
+   * Adds the data points in the given {@link FactScanResult} scanned from the table of the query resolution to the
+   * corresponding series.
+   *
+   * @return {@code true} if the result is added; {@code false} if it is skipped because it has {@code null} value
+   *         for one of the group by dimensions
+   */
+  boolean add(FactScanResult result) {
+    return add(result, query.getResolution());
+  }
+
+  /**
+   * Adds the data points in the given {@link FactScanResult} scanned from the table of the given resolution to the
+   * corresponding series.
+   *
+   * @return {@code true} if the result is added; {@code false} if it is skipped because it has {@code null} value
+   *         for one of the group by dimensions
+   */
+  boolean add(FactScanResult result, int resolution) {
+    String[] values = new String[groupByDimensions.length];
+    List<DimensionValue> dimensionValues = result.getDimensionValues();
+    for (int i = 0; i < groupByDimensions.length; i++) {
+      for (DimensionValue dimensionValue : dimensionValues) {
+        if (groupByDimensions[i].equals(dimensionValue.getName())) {
+          if (dimensionValue.getValue() == null) {
+            // Currently, we do NOT return null as grouped by value.
+            // Depending on whether dimension is required or not the records with null value in it may or may not be
+            // in aggregation. At this moment, the choosing of the aggregation for query doesn't look at this, so
+            // potentially null may or may not be included in results, depending on the aggregation selected
+            // querying. We don't want to produce inconsistent results varying due to different aggregations selected,
+            // so don't return nulls in any of those cases.
+            return false;
+          }
+          values[i] = dimensionValue.getValue();
+          break;
+        }
+      }
+    }
+
+    AggregationFunction function = query.getMeasurements().get(result.getMeasureName());
+    if (function == null) {
+      // should never happen: developer error
+      throw new RuntimeException("Unknown MeasureType: " + function);
+    }
+
+    SeriesKey key = new SeriesKey(result.getMeasureName(), values);
+    Series timeSeries = series.get(key);
+    if (timeSeries == null) {
+      timeSeries = new Series();
+      series.put(key, timeSeries);
+    }
+
+    Iterator<TimeValue> iterator = result.iterator();
+    while (iterator.hasNext()) {
+      TimeValue timeValue = iterator.next();
+      timeSeries.aggregate(timeValue.getTimestamp(), timeValue.getValue(), function, resolution);
+    }
+    return true;
+  }
+
+  /**
+   * Returns the resolution and timestamp of the latest bucket among all series whose latest data point comes from a
+   * table coarser than the query resolution, or {@code null} if the latest data points of all series come from the
+   * table of the query resolution.
+   */
+  @Nullable
+  ImmutablePair<Integer, Long> getLatestCoarseBucket() {
+    ImmutablePair<Integer, Long> result = null;
+    for (Series timeSeries : series.values()) {
+      int idx = timeSeries.latestIndex();
+      if (idx >= 0 && timeSeries.resolutions[idx] != query.getResolution()
+        && (result == null || timeSeries.timestamps[idx] > result.getSecond())) {
+        result = new ImmutablePair<>(timeSeries.resolutions[idx], timeSeries.timestamps[idx]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Removes the data points of the given timestamp that come from the table of the given resolution from all series.
+   */
+  void remove(int resolution, long timestamp) {
+    for (Series timeSeries : series.values()) {
+      timeSeries.remove(resolution, timestamp);
+    }
+  }
+
+  /**
+   * Returns the number of series.
+   */
+  int size() {
+    return series.size();
+  }
+
+  /**
+   * Returns the aggregated {@link TimeSeries}, with the aggregation option, interpolation and limit of the query
+   * applied.
+   */
+  List<TimeSeries> getTimeSeries() {
+    List<TimeSeries> result = new ArrayList<>(series.size());
+    if (series.isEmpty()) {
+      return result;
+    }
+
+    // this should not happen in production, since the check has been made in the handler
+    if (query.getLimit() <= 0) {
+      throw new IllegalArgumentException("The query limit cannot be less than 0");
+    }
+
+    // The series are grouped by the dimension values, then by the measure name, in hash order, which is the order
+    // the cube query results always had
+    Map<Map<String, String>, Map<String, TimeSeries>> groups = new HashMap<>();
+    for (Map.Entry<SeriesKey, Series> entry : series.entrySet()) {
+      if (entry.getValue().size == 0) {
+        // all data points of the series have been removed
+        continue;
+      }
+      SeriesKey key = entry.getKey();
+      // using tree map, to be consistent with the dimension values ordering of the series
+      Map<String, String> dimensions = new TreeMap<>();
+      for (int i = 0; i < groupByDimensions.length; i++) {
+        if (key.dimensionValues[i] != null) {
+          dimensions.put(groupByDimensions[i], key.dimensionValues[i]);
+        }
+      }
+      groups.computeIfAbsent(dimensions, k -> new HashMap<>())
+        .put(key.measureName, new TimeSeries(key.measureName, dimensions, entry.getValue().toTimeValues()));
+    }
+    groups.values().forEach(group -> result.addAll(group.values()));
+    return result;
+  }
+
+  /**
+   * Identifies a series by the measure name and the group by dimension values.
+   */
+  private static final class SeriesKey {
+
+    private final String measureName;
+    private final String[] dimensionValues;
+    private final int hashCode;
+
+    SeriesKey(String measureName, String[] dimensionValues) {
+      this.measureName = measureName;
+      this.dimensionValues = dimensionValues;
+      this.hashCode = 31 * measureName.hashCode() + Arrays.hashCode(dimensionValues);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      SeriesKey other = (SeriesKey) o;
+      return hashCode == other.hashCode && measureName.equals(other.measureName) &&
+        Arrays.equals(dimensionValues, other.dimensionValues);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * Data points of a series, stored in an open addressing hash table with linear probing keyed by timestamp.
+   */
+  private final class Series {
+
+    private long[] timestamps = new long[16];
+    private long[] values = new long[16];
+    private int[] resolutions = new int[16];
+    private boolean[] occupied = new boolean[16];
+    private int size;
+
+    void aggregate(long timestamp, long value, AggregationFunction function, int resolution) {
+      int idx = indexOf(timestamp, timestamps, occupied);
+      if (!occupied[idx]) {
+        occupied[idx] = true;
+        timestamps[idx] = timestamp;
+        values[idx] = value;
+        resolutions[idx] = resolution;
+        if (++size * 2 > timestamps.length) {
+          resize();
+        }
+        return;
+      }
+
+      switch (function) {
+        case SUM:
+          values[idx] += value;
+          break;
+        case MAX:
+          values[idx] = Math.max(values[idx], value);
+          break;
+        case MIN:
+          values[idx] = Math.min(values[idx], value);
+          break;
+        case LATEST:
+          values[idx] = value;
+          break;
+        default:
+          // should never happen: developer error
+          throw new RuntimeException("Unknown MeasureType: " + function);
+      }
+    }
+
+    /**
+     * Returns the index of the data point with the largest timestamp, or {@code -1} if the series is empty.
+     */
+    int latestIndex() {
+      int result = -1;
+      for (int i = 0; i < timestamps.length; i++) {
+        if (occupied[i] && (result < 0 || timestamps[i] > timestamps[result])) {
+          result = i;
+        }
+      }
+      return result;
+    }
+
+    void remove(int resolution, long timestamp) {
+      int idx = indexOf(timestamp, timestamps, occupied);
+      if (!occupied[idx] || resolutions[idx] != resolution) {
+        return;
+      }
+      // Rehash all the remaining data points, so that linear probing still finds them. This only happens for
+      // a few coarse buckets per query.
+      occupied[idx] = false;
+      size--;
+      rehash(timestamps.length);
+    }
+
+    /**
+     * Returns the sorted data points with the aggregation option, interpolation and limit of the query applied.
+     */
+    List<TimeValue> toTimeValues() {
+      // Compact the table into sorted arrays
+      long[] sortedTimestamps = new long[size];
+      int count = 0;
+      for (int i = 0; i < timestamps.length; i++) {
+        if (occupied[i]) {
+          sortedTimestamps[count++] = timestamps[i];
+        }
+      }
+      Arrays.sort(sortedTimestamps);
+      long[] sortedValues = new long[size];
+      for (int i = 0; i < size; i++) {
+        sortedValues[i] = values[indexOf(sortedTimestamps[i], timestamps, occupied)];
+      }
+
+      int limit = query.getLimit();
+      AggregationOption aggregationOption = query.getAggregationOption();
+
+      // only partition the data points if the data points are larger than the required limit and only do it for
+      // option LATEST and SUM.
+      if (limit < size && PARTITION_AGG_OPTIONS.contains(aggregationOption)) {
+        return partition(sortedTimestamps, sortedValues, limit, aggregationOption);
+      }
+      // TODO: CDAP-15565 remove the interpolation logic since it is never maintained and adds huge complexity
+      return interpolate(sortedTimestamps, sortedValues, limit);
+    }
+
+    /**
+     * Partitions the data points into limit number of intervals, ignoring the first remainder data points,
+     * and aggregates each interval into one data point.
+     */
+    private List<TimeValue> partition(long[] timestamps, long[] values, int limit, AggregationOption option) {
+      int partitionSize = size / limit;
+      int remainder = size % limit;
+      List<TimeValue> result = new ArrayList<>(limit);
+      for (int start = remainder; start < size; start += partitionSize) {
+        int last = start + partitionSize - 1;
+        if (option == AggregationOption.LATEST) {
+          // for LATEST we only need to get the last data point in the interval
+          result.add(new TimeValue(timestamps[last], values[last]));
+        } else {
+          // for SUM we want to sum up all the values in the interval
+          long sum = 0L;
+          for (int i = start; i <= last; i++) {
+            sum += values[i];
+          }
+          result.add(new TimeValue(timestamps[last], sum));
+        }
+      }
+      return result;
+    }
+
+    /**
+     * Returns at most limit number of data points, filling in the missing data points between actual data points
+     * with the query interpolator if there is one. Without an interpolator, only the actual data points are returned.
+     */
+    private List<TimeValue> interpolate(long[] timestamps, long[] values, int limit) {
+      if (size == 0) {
+        return Collections.emptyList();
+      }
+      Interpolator interpolator = query.getInterpolator();
+      int resolution = query.getResolution();
+
+      List<TimeValue> result = new ArrayList<>();
+      // index of the next actual data point
+      int next = 0;
+      long currentTs = timestamps[0];
+      while (next < size && result.size() < limit) {
+        long value = 0L;
+        if (timestamps[next] == currentTs) {
+          value = values[next];
+          next++;
+        } else if (interpolator != null && next > 0) {
+          // don't interpolate unless we're in between data points
+          value = interpolator.interpolate(new TimeValue(timestamps[next - 1], values[next - 1]),
+                                           new TimeValue(timestamps[next], values[next]), currentTs);
+        }
+        result.add(new TimeValue(currentTs, value));
+        if (next < size) {
+          // increment the currentTs by resolution to get the next data point.
+          currentTs = interpolator == null ? timestamps[next] : currentTs + resolution;
+        }
+      }
+      return result;
+    }
+
+    private void resize() {
+      rehash(timestamps.length * 2);
+    }
+
+    private void rehash(int length) {
+      long[] oldTimestamps = timestamps;
+      long[] oldValues = values;
+      int[] oldResolutions = resolutions;
+      boolean[] oldOccupied = occupied;
+
+      timestamps = new long[length];
+      values = new long[length];
+      resolutions = new int[length];
+      occupied = new boolean[length];
+      for (int i = 0; i < oldTimestamps.length; i++) {
+        if (oldOccupied[i]) {
+          int idx = indexOf(oldTimestamps[i], timestamps, occupied);
+          occupied[idx] = true;
+          timestamps[idx] = oldTimestamps[i];
+          values[idx] = oldValues[i];
+          resolutions[idx] = oldResolutions[i];
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the index of the given timestamp in the hash table, or the index of the empty slot for inserting
+   * the timestamp if it is not in the table. The table length must be a power of two.
+   */
+  private static int indexOf(long timestamp, long[] timestamps, boolean[] occupied) {
+    int mask = timestamps.length - 1;
+    long hash = timestamp * 0x9E3779B97F4A7C15L;
+    int idx = (int) (hash ^ (hash >>> 32)) & mask;
+    while (occupied[idx] && timestamps[idx] != timestamp) {
+      idx = (idx + 1) & mask;
+    }
+    return idx;
+  }
+}
@@ -23,8 +23,10 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.Striped;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.data2.util.TableId;
@@ -40,9 +42,12 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
 
 import static org.iq80.leveldb.impl.Iq80DBFactory.factory;
 
@@ -54,6 +59,9 @@ public class LevelDBTableService implements AutoCloseable {
 
   private static final Logger LOG = LoggerFactory.getLogger(LevelDBTableService.class);
 
+  // Number of lock stripes shared by all tables for serializing read-modify-write operations on the same row
+  private static final int ROW_LOCK_STRIPES = 1024;
+
   private int blockSize;
   private long cacheSize;
   private String basePath;
@@ -61,6 +69,7 @@ public class LevelDBTableService implements AutoCloseable {
   private boolean isClosed;
 
   private final ConcurrentMap<String, DB> tables = Maps.newConcurrentMap();
+  private final Striped<Lock> rowLocks = Striped.lock(ROW_LOCK_STRIPES);
 
   /**
    * To avoid database locking issues make sure that the single LevelDBTableService instance
@@ -171,6 +180,20 @@ public class LevelDBTableService implements AutoCloseable {
     return writeOptions;
   }
 
+  /**
+   * Returns the locks for serializing read-modify-write operations on the given rows of a table. Locks are shared
+   * by all {@link LevelDBTableCore} instances of the same table and are returned in a consistent order, such that
+   * acquiring them in iteration order cannot deadlock.
+   */
+  Iterable<Lock> getRowLocks(String tableName, Collection<byte[]> rows) {
+    List<Integer> keys = new ArrayList<>(rows.size());
+    int tableHash = tableName.hashCode();
+    for (byte[] row : rows) {
+      keys.add(31 * tableHash + Bytes.hashCode(row));
+    }
+    return rowLocks.bulkGet(keys);
+  }
+
   public DB getTable(String tableName) throws IOException {
     ensureOpen();
     DB db = tables.get(tableName);
@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.timeseries;
+
+import io.cdap.cdap.api.common.Bytes;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * An in-memory buffer of {@link FactTable} cells that aggregates values written to the same row and column
+ * before they are written to the underlying table. Column delta and values are kept in primitive arrays per row,
+ * hence no boxed object is created per cell until the buffer is being written out.
+ *
+ * A cell is either an increment or a put. Same as {@link FactTable#add(java.util.List)}, which writes all puts
+ * before the increments, increments to a cell are added on top of the put value regardless of the order they are
+ * buffered, and a cell with any put is written as a put with the increments folded in. Writing the same buffer
+ * more than once therefore doesn't give the same result as writing once.
+ *
+ * This class is not thread safe.
+ */
+final class FactBuffer {
+
+  private final NavigableMap<byte[], RowBuffer> rows = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+  private int size;
+
+  /**
+   * Returns the number of cells in this buffer.
+   */
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Adds the given value to the cell.
+   */
+  void increment(byte[] rowKey, short column, long value) {
+    RowBuffer row = getRow(rowKey);
+    row.increments[row.indexOf(column)] += value;
+  }
+
+  /**
+   * Adds the given value to the cell and marks the cell to be written as a put.
+   */
+  void incrementAsPut(byte[] rowKey, short column, long value) {
+    RowBuffer row = getRow(rowKey);
+    int idx = row.indexOf(column);
+    row.puts[idx] += value;
+    row.isPut[idx] = true;
+  }
+
+  /**
+   * Sets the cell value and marks the cell to be written as a put. Increments buffered for the cell are kept.
+   */
+  void put(byte[] rowKey, short column, long value) {
+    RowBuffer row = getRow(rowKey);
+    int idx = row.indexOf(column);
+    row.puts[idx] = value;
+    row.isPut[idx] = true;
+  }
+
+  /**
+   * Collects the buffered cells into the given puts and increments maps.
+   */
+  void collect(NavigableMap<byte[], NavigableMap<byte[], Long>> puts,
+               NavigableMap<byte[], NavigableMap<byte[], Long>> increments) {
+    for (Map.Entry<byte[], RowBuffer> entry : rows.entrySet()) {
+      entry.getValue().collect(entry.getKey(), puts, increments);
+    }
+  }
+
+  private RowBuffer getRow(byte[] rowKey) {
+    RowBuffer row = rows.get(rowKey);
+    if (row == null) {
+      row = new RowBuffer();
+      rows.put(rowKey, row);
+    }
+    return row;
+  }
+
+  /**
+   * Buffered cells of a single row. Rows typically have a handful of columns, hence linear search is used.
+   */
+  private final class RowBuffer {
+
+    private short[] columns = new short[4];
+    private long[] puts = new long[4];
+    private long[] increments = new long[4];
+    private boolean[] isPut = new boolean[4];
+    private int count;
+
+    void collect(byte[] rowKey, NavigableMap<byte[], NavigableMap<byte[], Long>> putsOut,
+                 NavigableMap<byte[], NavigableMap<byte[], Long>> incrementsOut) {
+      for (int i = 0; i < count; i++) {
+        NavigableMap<byte[], NavigableMap<byte[], Long>> target = isPut[i] ? putsOut : incrementsOut;
+        SortedMap<byte[], Long> row = target.computeIfAbsent(rowKey, k -> new TreeMap<>(Bytes.BYTES_COMPARATOR));
+        row.put(Bytes.toBytes(columns[i]), isPut[i] ? puts[i] + increments[i] : increments[i]);
+      }
+    }
+
+    /**
+     * Returns the index of the given column, adding the column if it is not in the row yet.
+     */
+    private int indexOf(short column) {
+      for (int i = 0; i < count; i++) {
+        if (columns[i] == column) {
+          return i;
+        }
+      }
+      if (count == columns.length) {
+        columns = Arrays.copyOf(columns, count * 2);
+        puts = Arrays.copyOf(puts, count * 2);
+        increments = Arrays.copyOf(increments, count * 2);
+        isPut = Arrays.copyOf(isPut, count * 2);
+      }
+      columns[count] = column;
+      size++;
+      return count++;
+    }
+  }
+}
@@ -49,7 +49,6 @@ import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Objects;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
@@ -114,19 +113,22 @@ public final class FactTable implements Closeable {
   }
 
   public void add(List<Fact> facts) {
-    // Simply collecting all rows/cols/values that need to be put to the underlying table.
-    NavigableMap<byte[], NavigableMap<byte[], Long>> gaugesTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    NavigableMap<byte[], NavigableMap<byte[], Long>> incrementsTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    FactBuffer buffer = new FactBuffer();
+    aggregate(facts, buffer);
+    write(buffer);
+  }
 
-    // this map is used to store metrics which was COUNTER type, but can be considered as GAUGE, which means it is
-    // guaranteed to be a new row key in the underlying table.
-    NavigableMap<byte[], NavigableMap<byte[], Long>> incGaugeTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+  /**
+   * Aggregates the given facts into the given {@link FactBuffer}. The buffer can hold facts from previous calls
+   * that are not yet written, as long as it will be written to this table through {@link #write(FactBuffer)}.
+   */
+  void aggregate(List<Fact> facts, FactBuffer buffer) {
     // this map is used to store the updated timestamp for the cache
     Map<FactCacheKey, Long> cacheUpdates = new HashMap<>();
     for (Fact fact : facts) {
       for (Measurement measurement : fact.getMeasurements()) {
         byte[] rowKey = codec.createRowKey(fact.getDimensionValues(), measurement.getName(), fact.getTimestamp());
-        byte[] column = codec.createColumn(fact.getTimestamp());
+        short column = Bytes.toShort(codec.createColumn(fact.getTimestamp()));
 
         if (MeasureType.COUNTER == measurement.getType()) {
           if (factCounterCache != null) {
@@ -136,13 +138,13 @@ public final class FactTable implements Closeable {
             Long existingTs = factCounterCache.getIfPresent(cacheKey);
 
             // if there is no existing ts or existing ts is greater than or equal to the current ts, this metric value
-            // cannot be considered as a gauge, and we should update the incrementsTable
+            // cannot be considered as a gauge, and we should increment the cell
             if (existingTs == null || existingTs >= tsToResolution) {
-              inc(incrementsTable, rowKey, column, measurement.getValue());
+              buffer.increment(rowKey, column, measurement.getValue());
               // if the current ts is greater than existing ts, then we can consider this metric as a newly seen metric
               // and perform gauge on this metric
             } else {
-              inc(incGaugeTable, rowKey, column, measurement.getValue());
+              buffer.incrementAsPut(rowKey, column, measurement.getValue());
             }
 
             // if there is no existing value or the current ts is greater than the existing ts, the value in the cache
@@ -152,20 +154,28 @@ public final class FactTable implements Closeable {
                 cacheKey, (key, oldValue) -> oldValue == null || tsToResolution > oldValue ? tsToResolution : oldValue);
             }
           } else {
-            inc(incrementsTable, rowKey, column, measurement.getValue());
+            buffer.increment(rowKey, column, measurement.getValue());
           }
         } else {
-          gaugesTable
-            .computeIfAbsent(rowKey, k -> Maps.newTreeMap(Bytes.BYTES_COMPARATOR))
-            .put(column, measurement.getValue());
+          buffer.put(rowKey, column, measurement.getValue());
         }
       }
     }
 
     if (factCounterCache != null) {
-      gaugesTable.putAll(incGaugeTable);
       factCounterCache.putAll(cacheUpdates);
     }
+  }
+
+  /**
+   * Writes all cells in the given {@link FactBuffer} to the underlying table.
+   */
+  void write(FactBuffer buffer) {
+    // Simply collecting all rows/cols/values that need to be put to the underlying table.
+    NavigableMap<byte[], NavigableMap<byte[], Long>> gaugesTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    NavigableMap<byte[], NavigableMap<byte[], Long>> incrementsTable = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    buffer.collect(gaugesTable, incrementsTable);
+
     // todo: replace with single call, to be able to optimize rpcs in underlying table
     timeSeriesTable.put(gaugesTable);
     timeSeriesTable.increment(incrementsTable);
@@ -175,6 +185,15 @@ public final class FactTable implements Closeable {
     }
   }
 
+  int getResolution() {
+    return resolution;
+  }
+
+  @Nullable
+  MetricsCollector getMetricsCollector() {
+    return metrics;
+  }
+
   private class MeasureNameComparator implements Comparator<String> {
     private final Map<String, Long> measureNameToEntityIdMap;
 
@@ -477,21 +496,6 @@ public final class FactTable implements Closeable {
     return new FuzzyRowFilter(ImmutableList.of(new ImmutablePair<>(startRow, fuzzyRowMask)));
   }
 
-  // todo: shouldn't we aggregate "before" writing to FactTable? We could do it really efficient outside
-  //       also: the underlying datasets will do aggregation in memory anyways
-  private static void inc(NavigableMap<byte[], NavigableMap<byte[], Long>> incrementsTable,
-                          byte[] rowKey, byte[] column, long value) {
-    NavigableMap<byte[], Long> values = incrementsTable.computeIfAbsent(rowKey,
-                                                                        k -> new TreeMap<>(Bytes.BYTES_COMPARATOR));
-    Long oldValue = values.get(column);
-    long newValue = value;
-    if (oldValue != null) {
-      newValue += oldValue;
-    }
-
-    values.put(column, newValue);
-  }
-
   class FactCacheKey {
     private final List<DimensionValue> dimensionValues;
     private final String metricName;
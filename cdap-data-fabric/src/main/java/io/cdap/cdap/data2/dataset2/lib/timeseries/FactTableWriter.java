@@ -0,0 +1,225 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.timeseries;
+
+import com.google.common.base.Preconditions;
+import io.cdap.cdap.api.metrics.MetricsCollector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Writes {@link Fact}s to a {@link FactTable} asynchronously with group commit.
+ *
+ * Facts added through {@link #add(List)} are aggregated into a {@link FactBuffer}. Whenever there is no write
+ * in progress, a flush loop is submitted to the {@link Executor} that swaps out the buffer and writes it to the
+ * table, until there is nothing left in the buffer. Facts added while a write is in progress are therefore
+ * aggregated with each other and written together in the next round, so that the number of writes to the table
+ * is bounded by the table latency instead of the number of calls.
+ *
+ * When the buffer reaches the maximum number of cells while a write is in progress, {@link #add(List)} blocks until
+ * the buffer is swapped out, which throttles the caller to the rate the table can sustain.
+ *
+ * The following metrics are emitted through the {@link MetricsCollector} of the {@link FactTable}:
+ *
+ * <pre>
+ *   factTable.[resolution].writer.backpressure.ms - time spent by callers blocked on a full buffer
+ *   factTable.[resolution].writer.flush.lag.ms    - time from the first fact added to a buffer until it is written
+ *   factTable.[resolution].writer.flush.cells     - number of cells in the last written buffer
+ * </pre>
+ *
+ * The {@link FactTable} shouldn't be written through other means while this writer is in use.
+ */
+@ThreadSafe
+public final class FactTableWriter implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FactTableWriter.class);
+
+  private final FactTable factTable;
+  private final Executor flushExecutor;
+  private final int maxBufferedCells;
+  private final String backpressureMetric;
+  private final String flushLagMetric;
+  private final String flushCellsMetric;
+  private final Object lock = new Object();
+
+  // All fields below are guarded by the lock
+  private FactBuffer buffer;
+  private CompletableFuture<Void> bufferCompletion;
+  private long bufferStartTime;
+  private CompletableFuture<Void> flushCompletion;
+  private boolean flushing;
+  private boolean closed;
+
+  /**
+   * Constructor.
+   *
+   * @param factTable the {@link FactTable} to write to
+   * @param flushExecutor the {@link Executor} for running the flush loop
+   * @param maxBufferedCells maximum number of cells to buffer while a write is in progress
+   */
+  public FactTableWriter(FactTable factTable, Executor flushExecutor, int maxBufferedCells) {
+    Preconditions.checkArgument(maxBufferedCells > 0, "Maximum buffered cells must be > 0");
+    this.factTable = factTable;
+    this.flushExecutor = flushExecutor;
+    this.maxBufferedCells = maxBufferedCells;
+    this.backpressureMetric = "factTable." + factTable.getResolution() + ".writer.backpressure.ms";
+    this.flushLagMetric = "factTable." + factTable.getResolution() + ".writer.flush.lag.ms";
+    this.flushCellsMetric = "factTable." + factTable.getResolution() + ".writer.flush.cells";
+    this.buffer = new FactBuffer();
+    this.bufferCompletion = new CompletableFuture<>();
+    this.flushCompletion = CompletableFuture.completedFuture(null);
+  }
+
+  /**
+   * Adds the given facts to be written. This method blocks if the buffer is full.
+   *
+   * @param facts the facts to add
+   * @return a {@link CompletableFuture} that will be completed when the facts are written to the table. If the
+   *         write failed, the future will be completed exceptionally with the failure.
+   * @throws InterruptedException if interrupted while waiting for space in the buffer
+   */
+  public CompletableFuture<Void> add(List<Fact> facts) throws InterruptedException {
+    CompletableFuture<Void> completion;
+    boolean startFlush = false;
+
+    synchronized (lock) {
+      long blockStartTime = 0L;
+      while (!closed && flushing && buffer.size() >= maxBufferedCells) {
+        if (blockStartTime == 0L) {
+          blockStartTime = System.nanoTime();
+        }
+        lock.wait();
+      }
+      if (blockStartTime != 0L) {
+        emitIncrement(backpressureMetric, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - blockStartTime));
+      }
+      Preconditions.checkState(!closed, "The fact table writer is already closed");
+
+      if (buffer.isEmpty()) {
+        bufferStartTime = System.currentTimeMillis();
+      }
+      factTable.aggregate(facts, buffer);
+      if (buffer.isEmpty()) {
+        // Nothing to write
+        return flushCompletion;
+      }
+      completion = bufferCompletion;
+
+      if (!flushing) {
+        flushing = true;
+        startFlush = true;
+      }
+    }
+
+    if (startFlush) {
+      try {
+        flushExecutor.execute(this::flushLoop);
+      } catch (RejectedExecutionException e) {
+        // Write in the calling thread if the executor is not accepting task anymore, e.g. during shutdown
+        LOG.debug("Flush executor is not accepting task. Flushing fact table in the calling thread.");
+        flushLoop();
+      }
+    }
+    return completion;
+  }
+
+  /**
+   * Returns a {@link CompletableFuture} that will be completed when all the facts added so far are written.
+   */
+  public CompletableFuture<Void> flush() {
+    synchronized (lock) {
+      return buffer.isEmpty() ? flushCompletion : bufferCompletion;
+    }
+  }
+
+  /**
+   * Waits for all the facts added so far to be written. No more facts can be added after this method is called.
+   */
+  @Override
+  public void close() {
+    CompletableFuture<Void> completion;
+    synchronized (lock) {
+      closed = true;
+      lock.notifyAll();
+      completion = buffer.isEmpty() ? flushCompletion : bufferCompletion;
+    }
+    try {
+      completion.join();
+    } catch (Exception e) {
+      LOG.warn("Failed to write buffered facts to the fact table of resolution {}", factTable.getResolution(), e);
+    }
+  }
+
+  /**
+   * Writes the buffer to the table until the buffer is empty. This method must be called after setting the
+   * flushing flag to {@code true} and it will reset the flag before returning.
+   */
+  private void flushLoop() {
+    while (true) {
+      FactBuffer toFlush;
+      CompletableFuture<Void> completion;
+      long startTime;
+
+      synchronized (lock) {
+        if (buffer.isEmpty()) {
+          flushing = false;
+          lock.notifyAll();
+          return;
+        }
+        toFlush = buffer;
+        completion = bufferCompletion;
+        startTime = bufferStartTime;
+        buffer = new FactBuffer();
+        bufferCompletion = new CompletableFuture<>();
+        flushCompletion = completion;
+        // Wake up callers blocked on a full buffer
+        lock.notifyAll();
+      }
+
+      try {
+        factTable.write(toFlush);
+        completion.complete(null);
+      } catch (Throwable t) {
+        completion.completeExceptionally(t);
+      }
+      emitGauge(flushLagMetric, System.currentTimeMillis() - startTime);
+      emitGauge(flushCellsMetric, toFlush.size());
+    }
+  }
+
+  private void emitIncrement(String metricName, long value) {
+    MetricsCollector metrics = factTable.getMetricsCollector();
+    if (metrics != null) {
+      metrics.increment(metricName, value);
+    }
+  }
+
+  private void emitGauge(String metricName, long value) {
+    MetricsCollector metrics = factTable.getMetricsCollector();
+    if (metrics != null) {
+      metrics.gauge(metricName, value);
+    }
+  }
+}
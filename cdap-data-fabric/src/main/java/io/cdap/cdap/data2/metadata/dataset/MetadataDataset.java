@@ -57,6 +57,7 @@ import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.NamespacedEntityId;
 import io.cdap.cdap.spi.metadata.MetadataConstants;
 
+import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -695,26 +696,13 @@ public class MetadataDataset extends AbstractDataset {
       DEFAULT_INDEX_COLUMN.getColumn() : DEFAULT_INDEX_COLUMN.getCrossNamespaceColumn();
 
     for (SearchTerm searchTerm : getSearchTerms(request)) {
-      Scanner scanner;
-      if (searchTerm.isPrefix()) {
-        // if prefixed search get start and stop key
-        byte[] startKey = Bytes.toBytes(searchTerm.getTerm());
-        @SuppressWarnings("ConstantConditions")
-        byte[] stopKey = Bytes.stopKeyForPrefix(startKey);
-        scanner = indexedTable.scanByIndex(Bytes.toBytes(column), startKey, stopKey);
-      } else {
-        byte[] value = Bytes.toBytes(searchTerm.getTerm());
-        scanner = indexedTable.readByIndex(Bytes.toBytes(column), value);
-      }
-      try {
+      try (Scanner scanner = scanDefaultIndex(column, searchTerm)) {
         Row next;
         while ((next = scanner.next()) != null) {
           Optional<MetadataEntry> metadataEntry = parseRow(next, column, request.getTypes(),
                                                            request.shouldShowHidden());
           metadataEntry.ifPresent(results::add);
         }
-      } finally {
-        scanner.close();
       }
     }
 
@@ -722,6 +710,87 @@ public class MetadataDataset extends AbstractDataset {
     return new SearchResults(results, Collections.emptyList());
   }
 
+  /**
+   * Scores the entities that match the specified search query using the default index. The score of an entity is
+   * the number of index entries that match the search terms, which is the same as the weight used for ranking the
+   * results of {@link #search(SearchRequest)} with {@link SortInfo#DEFAULT}. As in search, index entries without a
+   * metadata value are not counted. Different from search, the metadata value of an entity and key is read once for
+   * all of its matching index entries, and only the scores of the matching entities are kept in memory, rather than
+   * an entry for every match. Sorting, limit, offset and cursors of the request are ignored.
+   *
+   * @param request the search request
+   * @return a map from each matching {@link MetadataEntity} to its score
+   */
+  public Map<MetadataEntity, Integer> scoreByDefaultIndex(SearchRequest request) {
+    Map<MetadataEntity, Integer> scores = new HashMap<>();
+    // whether the metadata value row of an entity and key has a value
+    Map<MDSKey, Boolean> hasValues = new HashMap<>();
+    String column = request.isNamespaced() ?
+      DEFAULT_INDEX_COLUMN.getColumn() : DEFAULT_INDEX_COLUMN.getCrossNamespaceColumn();
+
+    for (SearchTerm searchTerm : getSearchTerms(request)) {
+      try (Scanner scanner = scanDefaultIndex(column, searchTerm)) {
+        Row next;
+        while ((next = scanner.next()) != null) {
+          Optional<MetadataEntity> entity = parseEntity(next, column, request.getTypes(), request.shouldShowHidden());
+          if (!entity.isPresent()) {
+            continue;
+          }
+          String key = MetadataKey.extractMetadataKey(next.getRow());
+          boolean hasValue = hasValues.computeIfAbsent(MetadataKey.createValueRowKey(entity.get(), key),
+                                                       valueKey -> getMetadata(entity.get(), key) != null);
+          if (hasValue) {
+            scores.merge(entity.get(), 1, Integer::sum);
+          }
+        }
+      }
+    }
+    return scores;
+  }
+
+  /**
+   * Scans the entities that match the specified search query using the default index, in the order of the entities,
+   * with the same scores as {@link #scoreByDefaultIndex(SearchRequest)}. This is only possible if all the search
+   * terms are exact terms: the index entries of an exact term are ordered by entity, so the entries of all the terms
+   * can be merged by entity, and only the entity being scored is kept in memory. The entries of a prefix term are
+   * ordered by the indexed value instead.
+   *
+   * @param request the search request
+   * @return a scanner of the matching entities, or {@code null} if the query has a prefix term
+   */
+  @Nullable
+  public EntityScoreScanner scanScoresByDefaultIndex(SearchRequest request) {
+    List<SearchTerm> searchTerms = new ArrayList<>();
+    getSearchTerms(request).forEach(searchTerms::add);
+    if (searchTerms.stream().anyMatch(SearchTerm::isPrefix)) {
+      return null;
+    }
+    String column = request.isNamespaced() ?
+      DEFAULT_INDEX_COLUMN.getColumn() : DEFAULT_INDEX_COLUMN.getCrossNamespaceColumn();
+    EntityScoreScanner scanner = new EntityScoreScanner(column, request);
+    try {
+      for (SearchTerm searchTerm : searchTerms) {
+        scanner.addTerm(scanDefaultIndex(column, searchTerm));
+      }
+    } catch (RuntimeException e) {
+      scanner.close();
+      throw e;
+    }
+    return scanner;
+  }
+
+  private Scanner scanDefaultIndex(String column, SearchTerm searchTerm) {
+    if (searchTerm.isPrefix()) {
+      // if prefixed search get start and stop key
+      byte[] startKey = Bytes.toBytes(searchTerm.getTerm());
+      @SuppressWarnings("ConstantConditions")
+      byte[] stopKey = Bytes.stopKeyForPrefix(startKey);
+      return indexedTable.scanByIndex(Bytes.toBytes(column), startKey, stopKey);
+    }
+    byte[] value = Bytes.toBytes(searchTerm.getTerm());
+    return indexedTable.readByIndex(Bytes.toBytes(column), value);
+  }
+
   private SearchResults searchByCustomIndex(SearchRequest request) throws BadRequestException {
     SortInfo sortInfo = request.getSortInfo();
     int offset = request.getOffset();
@@ -743,6 +812,10 @@ public class MetadataDataset extends AbstractDataset {
 
     String cursor = request.getCursor();
     for (SearchTerm searchTerm : getSearchTerms(request)) {
+      if (results.size() >= fetchSize) {
+        // no need to scan for more search terms once all the results and cursors are filled
+        break;
+      }
       // start key will be the start key for the namespace, or the start key for the cursor if its defined
       // 'ns1:' for namespace 'ns1' without a cursor, 'ns1:abc' for namespace 'ns1' with cursor 'abc'
       byte[] namespaceStartKey = Bytes.toBytes(searchTerm.getTerm());
@@ -789,6 +862,19 @@ public class MetadataDataset extends AbstractDataset {
   // so return an Optional
   private Optional<MetadataEntry> parseRow(Row rowToProcess, String indexColumn,
                                            Set<String> entityFilter, boolean showHidden) {
+    Optional<MetadataEntity> metadataEntity = parseEntity(rowToProcess, indexColumn, entityFilter, showHidden);
+    if (!metadataEntity.isPresent()) {
+      return Optional.empty();
+    }
+    String key = MetadataKey.extractMetadataKey(rowToProcess.getRow());
+    MetadataEntry entry = getMetadata(metadataEntity.get(), key);
+    return Optional.ofNullable(entry);
+  }
+
+  // there may not be an index value in the row or it may be for a different targetType (entityFilter),
+  // so return an Optional
+  private Optional<MetadataEntity> parseEntity(Row rowToProcess, String indexColumn,
+                                               Set<String> entityFilter, boolean showHidden) {
     String rowValue = rowToProcess.getString(indexColumn);
     if (rowValue == null) {
       return Optional.empty();
@@ -813,10 +899,7 @@ public class MetadataDataset extends AbstractDataset {
     } catch (IllegalArgumentException e) {
       // ignore. For custom entities we don't really want to hide them if they start with _
     }
-
-    String key = MetadataKey.extractMetadataKey(rowKey);
-    MetadataEntry entry = getMetadata(metadataEntity, key);
-    return Optional.ofNullable(entry);
+    return Optional.of(metadataEntity);
   }
 
   /**
@@ -1175,6 +1258,138 @@ public class MetadataDataset extends AbstractDataset {
 
   }
 
+  /**
+   * Scans the entities that match exact search terms in entity order, by merging the index entries of the terms.
+   * See {@link #scanScoresByDefaultIndex(SearchRequest)}.
+   */
+  public final class EntityScoreScanner implements Closeable {
+
+    private final String column;
+    private final SearchRequest request;
+    private final List<TermScanner> termScanners = new ArrayList<>();
+    private MetadataEntity entity;
+    private byte[] entityKey;
+    private int score;
+    private boolean ordered = true;
+
+    private EntityScoreScanner(String column, SearchRequest request) {
+      this.column = column;
+      this.request = request;
+    }
+
+    private void addTerm(Scanner scanner) {
+      TermScanner termScanner = new TermScanner(scanner);
+      termScanners.add(termScanner);
+      termScanner.advance();
+    }
+
+    /**
+     * Moves to the next matching entity.
+     *
+     * @return {@code true} if there is a next entity, or {@code false} if there are no more entities, or if the
+     *         index entries are found out of entity order, which {@link #isOrdered()} tells
+     */
+    public boolean next() {
+      while (ordered) {
+        TermScanner first = null;
+        for (TermScanner termScanner : termScanners) {
+          if (termScanner.entity != null
+            && (first == null || Bytes.compareTo(termScanner.entityKey, first.entityKey) < 0)) {
+            first = termScanner;
+          }
+        }
+        if (first == null) {
+          return false;
+        }
+        // The entries of an entity can be interleaved with those of another entity of the same type, if the parts of
+        // the other entity start with the parts and the metadata key of this one
+        if (entityKey != null && Bytes.compareTo(first.entityKey, entityKey) <= 0) {
+          ordered = false;
+          return false;
+        }
+
+        MetadataEntity nextEntity = first.entity;
+        byte[] nextEntityKey = first.entityKey;
+        // whether the metadata value row of each key of the entity has a value
+        Map<String, Boolean> hasValues = new HashMap<>();
+        int nextScore = 0;
+        for (TermScanner termScanner : termScanners) {
+          while (termScanner.entity != null && Bytes.equals(termScanner.entityKey, nextEntityKey)) {
+            String key = MetadataKey.extractMetadataKey(termScanner.row.getRow());
+            if (hasValues.computeIfAbsent(key, k -> getMetadata(nextEntity, k) != null)) {
+              nextScore++;
+            }
+            termScanner.advance();
+          }
+        }
+        entity = nextEntity;
+        entityKey = nextEntityKey;
+        score = nextScore;
+        if (score > 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Returns whether all the index entries were found in entity order so far. If not, the entities must be scored
+     * with {@link #scoreByDefaultIndex(SearchRequest)} instead.
+     */
+    public boolean isOrdered() {
+      return ordered;
+    }
+
+    public MetadataEntity getEntity() {
+      return entity;
+    }
+
+    /**
+     * Returns the key of the current entity, which gives the order of the entities of every metadata dataset.
+     */
+    public byte[] getEntityKey() {
+      return entityKey;
+    }
+
+    public int getScore() {
+      return score;
+    }
+
+    @Override
+    public void close() {
+      termScanners.forEach(termScanner -> termScanner.scanner.close());
+    }
+
+    /**
+     * The index entries of a search term that pass the filters of the request.
+     */
+    private final class TermScanner {
+
+      private final Scanner scanner;
+      private Row row;
+      private MetadataEntity entity;
+      private byte[] entityKey;
+
+      private TermScanner(Scanner scanner) {
+        this.scanner = scanner;
+      }
+
+      private void advance() {
+        while ((row = scanner.next()) != null) {
+          Optional<MetadataEntity> metadataEntity = parseEntity(row, column, request.getTypes(),
+                                                                request.shouldShowHidden());
+          if (metadataEntity.isPresent()) {
+            entity = metadataEntity.get();
+            entityKey = MetadataKey.createValueRowKey(entity, null).getKey();
+            return;
+          }
+        }
+        entity = null;
+        entityKey = null;
+      }
+    }
+  }
+
   /**
    * Represents the complete metadata of a {@link MetadataEntity} including its properties and tags.
    */
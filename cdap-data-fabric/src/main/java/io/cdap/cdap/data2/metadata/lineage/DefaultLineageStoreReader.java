@@ -26,8 +26,11 @@ import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import io.cdap.cdap.spi.data.transaction.TransactionRunners;
 import org.apache.tephra.TransactionExecutor;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
+import javax.annotation.Nullable;
 
 /**
  * Implementation of {@link LineageStoreReader} for reading lineage information from {@link LineageTable}.
@@ -80,6 +83,53 @@ public class DefaultLineageStoreReader implements LineageStoreReader {
     return execute(input -> input.getRelations(program, start, end, filter));
   }
 
+  /**
+   * Fetch the programs that accessed each of the given datasets for a given period, from the lineage graph.
+   * The graph is bucketed by run start time, hence this may include programs whose runs started shortly before
+   * or after the period. The adjacency of all the datasets is read in a single transaction.
+   *
+   * @param datasetInstances datasets for which to fetch the programs
+   * @param start start time period
+   * @param end end time period
+   * @return the programs that accessed each dataset, or {@code null} if the lineage graph is not built yet
+   */
+  @Nullable
+  @Override
+  public Map<DatasetId, Set<ProgramId>> getAccessingPrograms(Set<DatasetId> datasetInstances, long start, long end) {
+    return execute(input -> {
+      if (!input.isLineageGraphBuilt()) {
+        return null;
+      }
+      Map<DatasetId, Set<ProgramId>> programs = new HashMap<>();
+      for (DatasetId datasetInstance : datasetInstances) {
+        programs.put(datasetInstance, input.getAccessingPrograms(datasetInstance, start, end));
+      }
+      return programs;
+    });
+  }
+
+  /**
+   * Fetch program-dataset access information for each of the given programs for a given period, in a single
+   * transaction.
+   *
+   * @param programs programs for which to fetch access information
+   * @param start start time period
+   * @param end end time period
+   * @param filter filter to be applied on result set
+   * @return program-dataset access information of each program
+   */
+  @Override
+  public Map<ProgramId, Set<Relation>> getRelations(Set<ProgramId> programs, long start, long end,
+                                                   Predicate<Relation> filter) {
+    return execute(input -> {
+      Map<ProgramId, Set<Relation>> relations = new HashMap<>();
+      for (ProgramId program : programs) {
+        relations.put(program, input.getRelations(program, start, end, filter));
+      }
+      return relations;
+    });
+  }
+
   private <T> T execute(TransactionExecutor.Function<LineageTable, T> func) {
     return TransactionRunners.run(transactionRunner, context -> {
       LineageTable lineageTable = LineageTable.create(context);
@@ -21,8 +21,10 @@ import io.cdap.cdap.proto.id.NamespacedEntityId;
 import io.cdap.cdap.proto.id.ProgramId;
 import io.cdap.cdap.proto.id.ProgramRunId;
 
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
+import javax.annotation.Nullable;
 
 /**
  * This interface defines method to read from lineage store.
@@ -56,4 +58,29 @@ public interface LineageStoreReader {
    * @return program-dataset access information
    */
   Set<Relation> getRelations(ProgramId program, long start, long end, Predicate<Relation> filter);
+
+  /**
+   * Fetch the programs that accessed each of the given datasets for a given period, from the lineage graph.
+   * This may include programs that have no access in the period, but never misses one.
+   *
+   * @param datasetInstances datasets for which to fetch the programs
+   * @param start start time period
+   * @param end end time period
+   * @return the programs that accessed each dataset, or {@code null} if the lineage graph is not available, in
+   *         which case the access information of the datasets should be fetched instead
+   */
+  @Nullable
+  Map<DatasetId, Set<ProgramId>> getAccessingPrograms(Set<DatasetId> datasetInstances, long start, long end);
+
+  /**
+   * Fetch program-dataset access information for each of the given programs for a given period.
+   *
+   * @param programs programs for which to fetch access information
+   * @param start start time period
+   * @param end end time period
+   * @param filter filter to be applied on result set
+   * @return program-dataset access information of each program
+   */
+  Map<ProgramId, Set<Relation>> getRelations(Set<ProgramId> programs, long start, long end,
+                                            Predicate<Relation> filter);
 }
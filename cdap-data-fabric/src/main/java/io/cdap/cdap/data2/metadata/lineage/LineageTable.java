@@ -23,6 +23,7 @@ import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.common.app.RunIds;
 import io.cdap.cdap.proto.ProgramType;
 import io.cdap.cdap.proto.id.DatasetId;
+import io.cdap.cdap.proto.id.EntityId;
 import io.cdap.cdap.proto.id.NamespacedEntityId;
 import io.cdap.cdap.proto.id.ProgramId;
 import io.cdap.cdap.proto.id.ProgramRunId;
@@ -34,27 +35,72 @@ import io.cdap.cdap.spi.data.table.field.Field;
 import io.cdap.cdap.spi.data.table.field.Fields;
 import io.cdap.cdap.spi.data.table.field.Range;
 import io.cdap.cdap.store.StoreDefinition;
+import io.cdap.cdap.store.TableBackfill;
 import org.apache.twill.api.RunId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
+import javax.annotation.Nullable;
 
 /**
  * Dataset to store/retrieve Dataset accesses of a Program.
+ *
+ * Besides the individual accesses, this maintains the lineage graph: an edge from each dataset to each program that
+ * accessed it, and back, for every hour in which a run of the program started. Each edge counts the accesses, such
+ * that the programs and datasets reachable from a dataset can be found without reading every access.
+ *
+ * Maintaining the graph makes recording an access more expensive: besides the two access rows, it reads the dataset
+ * access row to find whether the access is the first one of the run, and if so, reads the edge and writes the two
+ * edges with the access counted. Repeated accesses of a run only cost the extra read.
+ *
+ * Accesses are never removed other than by {@link #deleteAll()}, which removes the graph as well. Hence the edges are
+ * retained as long as the accesses they count.
  */
 public class LineageTable {
 
   private static final Logger LOG = LoggerFactory.getLogger(LineageTable.class);
 
+  private static final long GRAPH_TIME_BUCKET_MILLIS = TimeUnit.HOURS.toMillis(1);
+  // the row that marks the lineage graph as complete, it sorts before all edges
+  private static final List<Field<?>> GRAPH_BUILT_MARKER_KEYS = ImmutableList.of(
+    Fields.stringField(StoreDefinition.LineageStore.NODE_FIELD, ""),
+    Fields.longField(StoreDefinition.LineageStore.TIME_BUCKET_FIELD, 0L),
+    Fields.stringField(StoreDefinition.LineageStore.NEIGHBOR_FIELD, ""));
+
+  /**
+   * Builds the lineage graph for the accesses recorded before the graph existed.
+   */
+  public static final TableBackfill LINEAGE_GRAPH_BACKFILL = new TableBackfill("lineage graph") {
+    @Override
+    public boolean isCompleted(StructuredTableContext context) throws IOException {
+      return create(context).isLineageGraphBuilt();
+    }
+
+    @Override
+    protected void setCompleted(StructuredTableContext context) throws IOException {
+      create(context).setLineageGraphBuilt();
+    }
+
+    @Nullable
+    @Override
+    protected Range backfill(StructuredTableContext context, Range range, int batchSize) throws IOException {
+      return create(context).buildLineageGraph(range, batchSize);
+    }
+  };
+
   private final StructuredTableContext structuredTableContext;
   private StructuredTable datasetTable;
   private StructuredTable programTable;
+  private StructuredTable graphTable;
 
   /**
    * Gets an instance of {@link LineageTable}.
@@ -93,10 +139,22 @@ public class LineageTable {
     return programTable;
   }
 
+  private StructuredTable getGraphTable() {
+    if (graphTable == null) {
+      try {
+        graphTable = structuredTableContext.getTable(StoreDefinition.LineageStore.LINEAGE_GRAPH_TABLE);
+      } catch (TableNotFoundException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return graphTable;
+  }
+
   @VisibleForTesting
   public void deleteAll() throws IOException {
     getDatasetTable().deleteAll(Range.all());
     getProgramTable().deleteAll(Range.all());
+    getGraphTable().deleteAll(Range.all());
   }
 
   /**
@@ -112,11 +170,192 @@ public class LineageTable {
     LOG.trace("Recording access run={}, dataset={}, accessType={}, accessTime={}",
               run, datasetInstance, accessType, accessTimeMillis);
     List<Field<?>> datasetFields = getDatasetKey(datasetInstance, run, accessType);
+    // repeated accesses of the same run only update the access time, the graph is only updated by the first one
+    boolean newAccess = !getDatasetTable().read(datasetFields).isPresent();
     addAccessTime(datasetFields, accessTimeMillis);
     getDatasetTable().upsert(datasetFields);
     List<Field<?>> programFields = getProgramKey(run, datasetInstance, accessType);
     addAccessTime(programFields, accessTimeMillis);
     getProgramTable().upsert(programFields);
+
+    if (newAccess) {
+      long timeBucket = getGraphTimeBucket(RunIds.getTime(RunIds.fromString(run.getRun()), TimeUnit.MILLISECONDS));
+      addGraphEdgeAccess(datasetInstance, run.getParent(), timeBucket, accessTimeMillis);
+    }
+  }
+
+  /**
+   * Returns the programs that accessed a dataset, for runs that started in the time buckets of the given period.
+   * This may include programs whose runs started shortly before or after the period.
+   *
+   * @param datasetInstance dataset for which to fetch the programs
+   * @param start start time period
+   * @param end end time period
+   * @return the programs that accessed the dataset
+   */
+  public Set<ProgramId> getAccessingPrograms(DatasetId datasetInstance, long start, long end) throws IOException {
+    Set<ProgramId> programs = new HashSet<>();
+    for (EntityId neighbor : scanGraphNeighbors(datasetInstance, start, end)) {
+      programs.add((ProgramId) neighbor);
+    }
+    return programs;
+  }
+
+  /**
+   * Returns the datasets accessed by a program, for runs that started in the time buckets of the given period.
+   * This may include datasets accessed by runs that started shortly before or after the period.
+   *
+   * @param program program for which to fetch the datasets
+   * @param start start time period
+   * @param end end time period
+   * @return the datasets accessed by the program
+   */
+  public Set<DatasetId> getAccessedDatasets(ProgramId program, long start, long end) throws IOException {
+    Set<DatasetId> datasets = new HashSet<>();
+    for (EntityId neighbor : scanGraphNeighbors(program, start, end)) {
+      datasets.add((DatasetId) neighbor);
+    }
+    return datasets;
+  }
+
+  /**
+   * Returns the number of accesses counted by the lineage graph edge from a node to a neighbor, for the runs that
+   * started in the time bucket of the given time, or 0 if there is no such edge.
+   */
+  @VisibleForTesting
+  long getGraphAccessCount(NamespacedEntityId node, NamespacedEntityId neighbor, long time) throws IOException {
+    List<Field<?>> fields = getGraphKey(node, getGraphTimeBucket(time));
+    fields.add(Fields.stringField(StoreDefinition.LineageStore.NEIGHBOR_FIELD, neighbor.toString()));
+    return getGraphTable().read(fields)
+      .map(row -> row.getLong(StoreDefinition.LineageStore.ACCESS_COUNT_FIELD))
+      .orElse(0L);
+  }
+
+  /**
+   * Returns whether the lineage graph contains the edges of all the accesses in this table. This is not the case
+   * for accesses recorded before the lineage graph existed, until {@link #setLineageGraphBuilt()} is called.
+   */
+  public boolean isLineageGraphBuilt() throws IOException {
+    return getGraphTable().read(GRAPH_BUILT_MARKER_KEYS).isPresent();
+  }
+
+  /**
+   * Marks the lineage graph as built.
+   */
+  public void setLineageGraphBuilt() throws IOException {
+    List<Field<?>> fields = new ArrayList<>(GRAPH_BUILT_MARKER_KEYS);
+    fields.add(Fields.longField(StoreDefinition.LineageStore.ACCESS_COUNT_FIELD, 0L));
+    fields.add(Fields.longField(StoreDefinition.LineageStore.ACCESS_TIME_FIELD, System.currentTimeMillis()));
+    getGraphTable().upsert(fields);
+  }
+
+  /**
+   * Adds the lineage graph edges for a batch of existing accesses. Since the edges are computed from all the accesses
+   * they cover, a batch can be repeated, and accesses can be recorded while the graph is built, without counting any
+   * access twice.
+   *
+   * @param range the range of accesses in the program lineage table to add
+   * @param batchSize maximum number of accesses to add
+   * @return the range of the remaining accesses to add, or {@code null} if all accesses in the given range are added
+   */
+  @Nullable
+  public Range buildLineageGraph(Range range, int batchSize) throws IOException {
+    Set<GraphEdge> edges = new HashSet<>();
+    List<Field<?>> lastKeys = null;
+    int count = 0;
+    try (CloseableIterator<StructuredRow> iterator = getProgramTable().scan(range, batchSize)) {
+      while (iterator.hasNext()) {
+        StructuredRow row = iterator.next();
+        long startTime = invertTime(row.getLong(StoreDefinition.LineageStore.START_TIME_FIELD));
+        edges.add(new GraphEdge(getDatasetFromRow(row), getProgramFromRow(row), getGraphTimeBucket(startTime)));
+        lastKeys = new ArrayList<>(row.getPrimaryKeys());
+        count++;
+      }
+    }
+    for (GraphEdge edge : edges) {
+      updateGraphEdges(edge.dataset, edge.program, edge.timeBucket);
+    }
+    return count < batchSize || lastKeys == null ? null : Range.from(lastKeys, Range.Bound.EXCLUSIVE);
+  }
+
+  /**
+   * Counts a new access in the edges between a dataset and a program for a time bucket. Only the edge is read, such
+   * that the cost does not depend on the number of accesses in the time bucket. Transactions that write the same
+   * edges concurrently conflict, hence no access is lost.
+   */
+  private void addGraphEdgeAccess(DatasetId dataset, ProgramId program, long timeBucket,
+                                  long accessTimeMillis) throws IOException {
+    List<Field<?>> fields = getGraphKey(dataset, timeBucket);
+    fields.add(Fields.stringField(StoreDefinition.LineageStore.NEIGHBOR_FIELD, program.toString()));
+    long accessCount = 1;
+    Optional<StructuredRow> edge = getGraphTable().read(fields);
+    if (edge.isPresent()) {
+      accessCount += edge.get().getLong(StoreDefinition.LineageStore.ACCESS_COUNT_FIELD);
+      accessTimeMillis = Math.max(accessTimeMillis, edge.get().getLong(StoreDefinition.LineageStore.ACCESS_TIME_FIELD));
+    }
+    writeGraphEdge(dataset, program, timeBucket, accessCount, accessTimeMillis);
+    writeGraphEdge(program, dataset, timeBucket, accessCount, accessTimeMillis);
+  }
+
+  /**
+   * Writes the edges between a dataset and a program for a time bucket. The access count and time are computed from
+   * the accesses of the program to the dataset by the runs that started in the time bucket, rather than added to the
+   * existing edges, such that writing the edges again does not count an access twice. Transactions that write the
+   * same edges concurrently conflict, hence an edge always reflects the accesses committed before it.
+   */
+  private void updateGraphEdges(DatasetId dataset, ProgramId program, long timeBucket) throws IOException {
+    long accessCount = 0;
+    long accessTimeMillis = 0;
+    // the start time is inverted in the key, hence the end of the time bucket comes first
+    Range range = Range.create(getProgramScanKey(program, timeBucket + GRAPH_TIME_BUCKET_MILLIS - 1),
+                               Range.Bound.INCLUSIVE,
+                               getProgramScanKey(program, timeBucket), Range.Bound.INCLUSIVE);
+    try (CloseableIterator<StructuredRow> iterator = getProgramTable().scan(range, Integer.MAX_VALUE)) {
+      while (iterator.hasNext()) {
+        StructuredRow row = iterator.next();
+        if (dataset.equals(getDatasetFromRow(row))) {
+          accessCount++;
+          accessTimeMillis = Math.max(accessTimeMillis, row.getLong(StoreDefinition.LineageStore.ACCESS_TIME_FIELD));
+        }
+      }
+    }
+    writeGraphEdge(dataset, program, timeBucket, accessCount, accessTimeMillis);
+    writeGraphEdge(program, dataset, timeBucket, accessCount, accessTimeMillis);
+  }
+
+  private void writeGraphEdge(NamespacedEntityId node, NamespacedEntityId neighbor, long timeBucket,
+                              long accessCount, long accessTimeMillis) throws IOException {
+    List<Field<?>> fields = getGraphKey(node, timeBucket);
+    fields.add(Fields.stringField(StoreDefinition.LineageStore.NEIGHBOR_FIELD, neighbor.toString()));
+    fields.add(Fields.longField(StoreDefinition.LineageStore.ACCESS_COUNT_FIELD, accessCount));
+    fields.add(Fields.longField(StoreDefinition.LineageStore.ACCESS_TIME_FIELD, accessTimeMillis));
+    getGraphTable().upsert(fields);
+  }
+
+  private Set<EntityId> scanGraphNeighbors(NamespacedEntityId node, long start, long end) throws IOException {
+    // cover the same run start times as the scans of the accesses, which include both ends of the period
+    long startBucket = getGraphTimeBucket(start == 0 ? start : start - 1);
+    long endBucket = getGraphTimeBucket(end == Long.MAX_VALUE ? end : end + 1);
+    Range range = Range.create(getGraphKey(node, startBucket), Range.Bound.INCLUSIVE,
+                               getGraphKey(node, endBucket), Range.Bound.INCLUSIVE);
+    Set<EntityId> neighbors = new HashSet<>();
+    try (CloseableIterator<StructuredRow> iterator = getGraphTable().scan(range, Integer.MAX_VALUE)) {
+      while (iterator.hasNext()) {
+        neighbors.add(EntityId.fromString(iterator.next().getString(StoreDefinition.LineageStore.NEIGHBOR_FIELD)));
+      }
+    }
+    return neighbors;
+  }
+
+  private List<Field<?>> getGraphKey(NamespacedEntityId node, long timeBucket) {
+    List<Field<?>> fields = new ArrayList<>();
+    fields.add(Fields.stringField(StoreDefinition.LineageStore.NODE_FIELD, node.toString()));
+    fields.add(Fields.longField(StoreDefinition.LineageStore.TIME_BUCKET_FIELD, timeBucket));
+    return fields;
+  }
+
+  private static long getGraphTimeBucket(long timeMillis) {
+    return timeMillis - timeMillis % GRAPH_TIME_BUCKET_MILLIS;
   }
 
   /**
@@ -323,6 +562,40 @@ public class LineageTable {
     return invertTime(RunIds.getTime(RunIds.fromString(run.getRun()), TimeUnit.MILLISECONDS));
   }
 
+  /**
+   * An edge of the lineage graph, used to aggregate the accesses while building the graph.
+   */
+  private static final class GraphEdge {
+    private final DatasetId dataset;
+    private final ProgramId program;
+    private final long timeBucket;
+
+    private GraphEdge(DatasetId dataset, ProgramId program, long timeBucket) {
+      this.dataset = dataset;
+      this.program = program;
+      this.timeBucket = timeBucket;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      GraphEdge that = (GraphEdge) o;
+      return timeBucket == that.timeBucket &&
+        Objects.equals(dataset, that.dataset) &&
+        Objects.equals(program, that.program);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(dataset, program, timeBucket);
+    }
+  }
+
   private Relation toRelation(StructuredRow row) {
     RunId runId = RunIds.fromString(row.getString(StoreDefinition.LineageStore.RUN_FIELD));
     LOG.trace("Got runId {}", runId);
@@ -44,9 +44,14 @@ public class DefaultFieldLineageReader implements FieldLineageReader {
 
   @Override
   public Set<String> getFields(EndPoint endPoint, long start, long end) {
+    return getSummary(endPoint, start, end).getFields();
+  }
+
+  @Override
+  public EndPointLineageSummary getSummary(EndPoint endPoint, long start, long end) {
     return TransactionRunners.run(transactionRunner, context -> {
       FieldLineageTable fieldLineageTable = FieldLineageTable.create(context);
-      return fieldLineageTable.getFields(endPoint, start, end);
+      return fieldLineageTable.getSummary(endPoint, start, end);
     });
   }
 
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.metadata.lineage.field;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The field level lineage of all the fields of an EndPoint over a time range, that is, the incoming and outgoing
+ * summary of each field.
+ */
+public final class EndPointLineageSummary {
+
+  private final Map<String, Set<EndPointField>> incomingSummary;
+  private final Map<String, Set<EndPointField>> outgoingSummary;
+
+  public EndPointLineageSummary(Map<String, Set<EndPointField>> incomingSummary,
+                             Map<String, Set<EndPointField>> outgoingSummary) {
+    this.incomingSummary = incomingSummary;
+    this.outgoingSummary = outgoingSummary;
+  }
+
+  /**
+   * Returns the fields read and/or written to the EndPoint.
+   */
+  public Set<String> getFields() {
+    Set<String> fields = new HashSet<>(incomingSummary.keySet());
+    fields.addAll(outgoingSummary.keySet());
+    return fields;
+  }
+
+  /**
+   * Returns the EndPointFields which participated in the computation of the given field.
+   */
+  public Set<EndPointField> getIncomingSummary(String field) {
+    return incomingSummary.getOrDefault(field, Collections.emptySet());
+  }
+
+  /**
+   * Returns the EndPointFields which were computed from the given field.
+   */
+  public Set<EndPointField> getOutgoingSummary(String field) {
+    return outgoingSummary.getOrDefault(field, Collections.emptySet());
+  }
+}
@@ -20,7 +20,9 @@ import io.cdap.cdap.api.lineage.field.EndPoint;
 import io.cdap.cdap.api.lineage.field.WriteOperation;
 import io.cdap.cdap.proto.metadata.lineage.ProgramRunOperations;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -62,6 +64,26 @@ public interface FieldLineageReader {
    */
   Set<EndPointField> getOutgoingSummary(EndPointField endPointField, long start, long end);
 
+  /**
+   * Get the incoming and outgoing summary of all the fields of the specified EndPoint over a given time range.
+   * The fields of the summary are the same as the ones returned by {@link #getFields(EndPoint, long, long)}.
+   *
+   * @param endPoint the EndPoint for which the summary is to be returned
+   * @param start start time (inclusive) in milliseconds
+   * @param end end time (exclusive) in milliseconds
+   * @return the summary of all the fields of the EndPoint
+   */
+  default EndPointLineageSummary getSummary(EndPoint endPoint, long start, long end) {
+    Map<String, Set<EndPointField>> incomingSummary = new HashMap<>();
+    Map<String, Set<EndPointField>> outgoingSummary = new HashMap<>();
+    for (String field : getFields(endPoint, start, end)) {
+      EndPointField endPointField = new EndPointField(endPoint, field);
+      incomingSummary.put(field, getIncomingSummary(endPointField, start, end));
+      outgoingSummary.put(field, getOutgoingSummary(endPointField, start, end));
+    }
+    return new EndPointLineageSummary(incomingSummary, outgoingSummary);
+  }
+
   /**
    * Get the list of operations which were responsible for computing the given field
    * of the specified EndPoint over a given time range. Along with the operations, program
@@ -37,12 +37,17 @@ import io.cdap.cdap.spi.data.table.field.Field;
 import io.cdap.cdap.spi.data.table.field.Fields;
 import io.cdap.cdap.spi.data.table.field.Range;
 import io.cdap.cdap.store.StoreDefinition;
+import io.cdap.cdap.store.TableBackfill;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -55,6 +60,12 @@ import javax.annotation.Nullable;
 
 /**
  * Dataset to store/retrieve field level lineage information.
+ *
+ * Besides the lineage of each program run, the incoming and outgoing summaries of all the fields of an EndPoint are
+ * kept per day of the program run start time and per checksum, such that the summaries of an EndPoint over a long
+ * time range can be read without reading the lineage of every program run. Program runs usually repeat the lineage
+ * of the previous runs, hence there are only a few checksums per day. A daily summary row only depends on its key,
+ * so it is written without reading it and concurrent writers cannot lose each other's lineage.
  */
 public class FieldLineageTable {
 
@@ -69,12 +80,44 @@ public class FieldLineageTable {
   private static final Type SET_FIELD_TYPE = new TypeToken<HashSet<String>>() { }.getType();
   private static final Type SET_ENDPOINT_FIELD_TYPE = new TypeToken<HashSet<EndPointField>>() { }.getType();
   private static final Type SET_OPERATION_TYPE = new TypeToken<HashSet<Operation>>() { }.getType();
+  private static final Type SUMMARY_TYPE = new TypeToken<HashMap<String, HashSet<EndPointField>>>() { }.getType();
+
+  private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+  // the row that marks the daily summaries as complete, it sorts before all the summaries
+  private static final List<Field<?>> DAILY_SUMMARY_BUILT_MARKER_KEYS = Collections.unmodifiableList(Arrays.asList(
+    Fields.stringField(StoreDefinition.FieldLineageStore.DIRECTION_FIELD, ""),
+    Fields.stringField(StoreDefinition.FieldLineageStore.ENDPOINT_NAMESPACE_FIELD, ""),
+    Fields.stringField(StoreDefinition.FieldLineageStore.ENDPOINT_NAME_FIELD, ""),
+    Fields.longField(StoreDefinition.FieldLineageStore.DAY_FIELD, 0L),
+    Fields.longField(StoreDefinition.FieldLineageStore.CHECKSUM_FIELD, 0L)));
+
+  /**
+   * Builds the daily summaries for the field lineage added before the daily summaries existed.
+   */
+  public static final TableBackfill DAILY_SUMMARY_BACKFILL = new TableBackfill("field lineage daily summaries") {
+    @Override
+    public boolean isCompleted(StructuredTableContext context) throws IOException {
+      return create(context).isDailySummaryBuilt();
+    }
+
+    @Override
+    protected void setCompleted(StructuredTableContext context) throws IOException {
+      create(context).setDailySummaryBuilt();
+    }
+
+    @Nullable
+    @Override
+    protected Range backfill(StructuredTableContext context, Range range, int batchSize) throws IOException {
+      return create(context).buildDailySummaries(range, batchSize);
+    }
+  };
 
   private final StructuredTableContext structuredTableContext;
   private StructuredTable endpointChecksumTable;
   private StructuredTable operationsTable;
   private StructuredTable destinationFieldsTable;
   private StructuredTable summaryFieldsTable;
+  private StructuredTable dailySummaryTable;
 
   private FieldLineageTable(StructuredTableContext structuredTableContext) {
     this.structuredTableContext = structuredTableContext;
@@ -123,6 +166,14 @@ public class FieldLineageTable {
     return summaryFieldsTable;
   }
 
+  private StructuredTable getDailySummaryTable() {
+    if (dailySummaryTable == null) {
+      dailySummaryTable =
+        structuredTableContext.getTable(StoreDefinition.FieldLineageStore.DAILY_SUMMARY_TABLE);
+    }
+    return dailySummaryTable;
+  }
+
   /**
    * Store the field lineage information.
    *
@@ -134,15 +185,18 @@ public class FieldLineageTable {
       writeOperation(checksum, info.getOperations());
 
       Map<EndPoint, Set<String>> destinationFields = info.getDestinationFields();
+      List<Collection<Field<?>>> destinationRows = new ArrayList<>(destinationFields.size());
       for (Map.Entry<EndPoint, Set<String>> entry : destinationFields.entrySet()) {
-        addDestinationEntry(checksum, entry.getKey(), GSON.toJson(entry.getValue()));
+        destinationRows.add(createDestinationEntry(checksum, entry.getKey(), GSON.toJson(entry.getValue())));
       }
+      getDestinationFieldsTable().multiUpsert(destinationRows);
 
       addSummary(checksum, INCOMING_DIRECTION_MARKER, info.getIncomingSummary());
       addSummary(checksum, OUTGOING_DIRECTION_MARKER, info.getOutgoingSummary());
     }
 
     addFieldLineageInfoReferenceRecords(programRunId, info);
+    addDailySummaries(programRunId, info);
   }
 
   @VisibleForTesting
@@ -151,6 +205,7 @@ public class FieldLineageTable {
     getDestinationFieldsTable().deleteAll(Range.all());
     getOperationsTable().deleteAll(Range.all());
     getSummaryFieldsTable().deleteAll(Range.all());
+    getDailySummaryTable().deleteAll(Range.all());
   }
 
   @Nullable
@@ -172,9 +227,91 @@ public class FieldLineageTable {
 
   private void addSummary(long checksum, String direction, Map<EndPointField, Set<EndPointField>> summary)
     throws IOException {
+    List<Collection<Field<?>>> rows = new ArrayList<>(summary.size());
     for (Map.Entry<EndPointField, Set<EndPointField>> entry : summary.entrySet()) {
-      addSummaryEntry(checksum, direction, entry.getKey(), GSON.toJson(entry.getValue()));
+      rows.add(createSummaryEntry(checksum, direction, entry.getKey(), GSON.toJson(entry.getValue())));
     }
+    getSummaryFieldsTable().multiUpsert(rows);
+  }
+
+  private void addDailySummaries(ProgramRunId programRunId, FieldLineageInfo info) throws IOException {
+    long day = getDay(RunIds.getTime(RunIds.fromString(programRunId.getEntityName()), TimeUnit.MILLISECONDS));
+    long checksum = info.getChecksum();
+    for (EndPoint destination : info.getDestinations()) {
+      Map<String, Set<EndPointField>> summary = new HashMap<>();
+      for (String field : info.getDestinationFields().getOrDefault(destination, Collections.emptySet())) {
+        summary.put(field, new HashSet<>());
+      }
+      mergeSummary(summary, getEndPointSummary(destination, info.getIncomingSummary()));
+      writeDailySummary(INCOMING_DIRECTION_MARKER, destination, day, checksum, summary);
+    }
+    for (EndPoint source : info.getSources()) {
+      writeDailySummary(OUTGOING_DIRECTION_MARKER, source, day, checksum,
+                        getEndPointSummary(source, info.getOutgoingSummary()));
+    }
+  }
+
+  private void writeDailySummary(String direction, EndPoint endPoint, long day, long checksum,
+                                 Map<String, Set<EndPointField>> summary) throws IOException {
+    if (summary.isEmpty()) {
+      return;
+    }
+    List<Field<?>> fields = getDailySummaryKey(direction, endPoint, day);
+    fields.add(Fields.longField(StoreDefinition.FieldLineageStore.CHECKSUM_FIELD, checksum));
+    fields.add(Fields.stringField(StoreDefinition.FieldLineageStore.SUMMARY_DATA_FIELD, GSON.toJson(summary)));
+    getDailySummaryTable().upsert(fields);
+  }
+
+  /**
+   * Returns whether the daily summaries contain the lineage of all the program runs in this table. This is not
+   * the case for lineage added before the daily summaries existed, until {@link #setDailySummaryBuilt()} is called.
+   */
+  public boolean isDailySummaryBuilt() throws IOException {
+    return getDailySummaryTable().read(DAILY_SUMMARY_BUILT_MARKER_KEYS).isPresent();
+  }
+
+  /**
+   * Marks the daily summaries as built.
+   */
+  public void setDailySummaryBuilt() throws IOException {
+    List<Field<?>> fields = new ArrayList<>(DAILY_SUMMARY_BUILT_MARKER_KEYS);
+    fields.add(Fields.stringField(StoreDefinition.FieldLineageStore.SUMMARY_DATA_FIELD, GSON.toJson(new HashMap<>())));
+    getDailySummaryTable().upsert(fields);
+  }
+
+  /**
+   * Adds the lineage of a batch of existing program runs to the daily summaries. Writing the summary of the same
+   * lineage more than once doesn't change it, hence lineage added while the summaries are built needs no special
+   * handling.
+   *
+   * @param range the range of rows in the endpoint checksum table to add
+   * @param batchSize maximum number of rows to add
+   * @return the range of the remaining rows to add, or {@code null} if all rows in the given range are added
+   */
+  @Nullable
+  public Range buildDailySummaries(Range range, int batchSize) throws IOException {
+    // the program runs of a day mostly share the same lineage, which only needs to be written once
+    Set<List<Field<?>>> written = new HashSet<>();
+    List<Field<?>> lastKeys = null;
+    int count = 0;
+    try (CloseableIterator<StructuredRow> iterator = getEndpointChecksumTable().scan(range, batchSize)) {
+      while (iterator.hasNext()) {
+        StructuredRow row = iterator.next();
+        String direction = row.getString(StoreDefinition.FieldLineageStore.DIRECTION_FIELD);
+        EndPoint endPoint = EndPoint.of(row.getString(StoreDefinition.FieldLineageStore.ENDPOINT_NAMESPACE_FIELD),
+                                        row.getString(StoreDefinition.FieldLineageStore.ENDPOINT_NAME_FIELD));
+        long day = getDay(invertTime(row.getLong(StoreDefinition.FieldLineageStore.START_TIME_FIELD)));
+        long checksum = row.getLong(StoreDefinition.FieldLineageStore.CHECKSUM_FIELD);
+        List<Field<?>> key = getDailySummaryKey(direction, endPoint, day);
+        key.add(Fields.longField(StoreDefinition.FieldLineageStore.CHECKSUM_FIELD, checksum));
+        if (written.add(key)) {
+          writeDailySummary(direction, endPoint, day, checksum, getChecksumSummary(checksum, direction, endPoint));
+        }
+        lastKeys = new ArrayList<>(row.getPrimaryKeys());
+        count++;
+      }
+    }
+    return count < batchSize || lastKeys == null ? null : Range.from(lastKeys, Range.Bound.EXCLUSIVE);
   }
 
   /**
@@ -188,36 +325,39 @@ public class FieldLineageTable {
    */
   private void addFieldLineageInfoReferenceRecords(ProgramRunId programRunId, FieldLineageInfo info)
     throws IOException {
+    List<Collection<Field<?>>> rows = new ArrayList<>();
     // For all the destinations, operations represents incoming lineage
     for (EndPoint destination : info.getDestinations()) {
-      addOperationReferenceRecord(INCOMING_DIRECTION_MARKER, destination, programRunId, info.getChecksum());
+      rows.add(createOperationReferenceRecord(INCOMING_DIRECTION_MARKER, destination, programRunId,
+                                              info.getChecksum()));
     }
 
     // For all the sources, operations represents the outgoing lineage
     for (EndPoint source : info.getSources()) {
-      addOperationReferenceRecord(OUTGOING_DIRECTION_MARKER, source, programRunId, info.getChecksum());
+      rows.add(createOperationReferenceRecord(OUTGOING_DIRECTION_MARKER, source, programRunId, info.getChecksum()));
     }
+    getEndpointChecksumTable().multiUpsert(rows);
   }
 
-  private void addOperationReferenceRecord(String direction, EndPoint endPoint, ProgramRunId programRunId,
-                                           long checksum) throws IOException {
+  private List<Field<?>> createOperationReferenceRecord(String direction, EndPoint endPoint,
+                                                        ProgramRunId programRunId, long checksum) {
     List<Field<?>> fields = getOperationReferenceRowKey(direction, endPoint, programRunId);
     fields.add(Fields.longField(StoreDefinition.FieldLineageStore.CHECKSUM_FIELD, checksum));
     fields.add(Fields.stringField(StoreDefinition.FieldLineageStore.PROGRAM_RUN_FIELD, GSON.toJson(programRunId)));
-    getEndpointChecksumTable().upsert(fields);
+    return fields;
   }
 
-  private void addSummaryEntry(long checksum, String direction, EndPointField endPointField, String data)
-    throws IOException {
+  private List<Field<?>> createSummaryEntry(long checksum, String direction, EndPointField endPointField,
+                                            String data) {
     List<Field<?>> fields = getSummaryKey(checksum, direction, endPointField);
     fields.add(Fields.stringField(StoreDefinition.FieldLineageStore.DESTINATION_DATA_FIELD, data));
-    getSummaryFieldsTable().upsert(fields);
+    return fields;
   }
 
-  private void addDestinationEntry(long checksum, EndPoint endPoint, String data) throws IOException {
+  private List<Field<?>> createDestinationEntry(long checksum, EndPoint endPoint, String data) {
     List<Field<?>> fields = getDestinationKeys(checksum, endPoint);
     fields.add(Fields.stringField(StoreDefinition.FieldLineageStore.DESTINATION_DATA_FIELD, data));
-    getDestinationFieldsTable().upsert(fields);
+    return fields;
   }
 
   /**
@@ -334,6 +474,133 @@ public class FieldLineageTable {
     return result;
   }
 
+  /**
+   * Get the incoming and outgoing summary of all the fields of the specified EndPoint over a given time range.
+   * The days that are entirely in the time range are read from the daily summaries, while the lineage of the
+   * program runs in the remaining parts of the time range is read per program run. Until the daily summaries are
+   * built, the lineage of all the program runs in the time range is read per program run.
+   *
+   * @param endPoint the EndPoint for which the summary is to be returned
+   * @param start start time (inclusive) in milliseconds
+   * @param end end time (exclusive) in milliseconds
+   * @return the summary of all the fields of the EndPoint
+   */
+  public EndPointLineageSummary getSummary(EndPoint endPoint, long start, long end) throws IOException {
+    Map<String, Set<EndPointField>> incomingSummary = new HashMap<>();
+    Map<String, Set<EndPointField>> outgoingSummary = new HashMap<>();
+    long firstDay = getDay(start) == start ? start : getDay(start) + DAY_MILLIS;
+    long lastDay = getDay(end);
+    if (firstDay >= lastDay || !isDailySummaryBuilt()) {
+      addChecksumSummaries(INCOMING_DIRECTION_MARKER, endPoint, start, end, incomingSummary);
+      addChecksumSummaries(OUTGOING_DIRECTION_MARKER, endPoint, start, end, outgoingSummary);
+    } else {
+      addChecksumSummaries(INCOMING_DIRECTION_MARKER, endPoint, start, firstDay, incomingSummary);
+      addChecksumSummaries(OUTGOING_DIRECTION_MARKER, endPoint, start, firstDay, outgoingSummary);
+      addDailySummaries(INCOMING_DIRECTION_MARKER, endPoint, firstDay, lastDay, incomingSummary);
+      addDailySummaries(OUTGOING_DIRECTION_MARKER, endPoint, firstDay, lastDay, outgoingSummary);
+      addChecksumSummaries(INCOMING_DIRECTION_MARKER, endPoint, lastDay, end, incomingSummary);
+      addChecksumSummaries(OUTGOING_DIRECTION_MARKER, endPoint, lastDay, end, outgoingSummary);
+    }
+    return new EndPointLineageSummary(incomingSummary, outgoingSummary);
+  }
+
+  private void addChecksumSummaries(String direction, EndPoint endPoint, long start, long end,
+                                    Map<String, Set<EndPointField>> summary) throws IOException {
+    if (start >= end) {
+      return;
+    }
+    for (long checksum : getChecksumsWithProgramRunsInRange(direction, endPoint, start, end).keySet()) {
+      mergeSummary(summary, getChecksumSummary(checksum, direction, endPoint));
+    }
+  }
+
+  private void addDailySummaries(String direction, EndPoint endPoint, long firstDay, long lastDay,
+                                 Map<String, Set<EndPointField>> summary) throws IOException {
+    Range range = Range.create(getDailySummaryKey(direction, endPoint, firstDay), Range.Bound.INCLUSIVE,
+                               getDailySummaryKey(direction, endPoint, lastDay), Range.Bound.EXCLUSIVE);
+    try (CloseableIterator<StructuredRow> iterator = getDailySummaryTable().scan(range, Integer.MAX_VALUE)) {
+      while (iterator.hasNext()) {
+        mergeSummary(summary, parseSummary(iterator.next()));
+      }
+    }
+  }
+
+  /**
+   * Returns the summary of the fields of an EndPoint in the given direction from the lineage with the given checksum.
+   * The incoming summary includes the destination fields, which may not have an incoming summary.
+   */
+  private Map<String, Set<EndPointField>> getChecksumSummary(long checksum, String direction,
+                                                             EndPoint endPoint) throws IOException {
+    Map<String, Set<EndPointField>> summary = new HashMap<>();
+    if (INCOMING_DIRECTION_MARKER.equals(direction)) {
+      Optional<StructuredRow> row = getDestinationFieldsTable().read(getDestinationKeys(checksum, endPoint));
+      if (row.isPresent()) {
+        try {
+          Set<String> fields =
+            GSON.fromJson(row.get().getString(StoreDefinition.FieldLineageStore.DESTINATION_DATA_FIELD),
+                          SET_FIELD_TYPE);
+          if (fields != null) {
+            fields.forEach(field -> summary.put(field, new HashSet<>()));
+          }
+        } catch (JsonSyntaxException e) {
+          LOG.warn(String.format("Failed to parse json from checksum %d'.", checksum));
+        }
+      }
+    }
+
+    List<Field<?>> prefix = getSummaryPrefix(checksum, direction, endPoint);
+    try (CloseableIterator<StructuredRow> iterator =
+      getSummaryFieldsTable().scan(Range.singleton(prefix), Integer.MAX_VALUE)) {
+      while (iterator.hasNext()) {
+        StructuredRow row = iterator.next();
+        Set<EndPointField> endPointFields = summary.computeIfAbsent(
+          row.getString(StoreDefinition.FieldLineageStore.ENDPOINT_FIELD), k -> new HashSet<>());
+        try {
+          Set<EndPointField> value =
+            GSON.fromJson(row.getString(StoreDefinition.FieldLineageStore.DESTINATION_DATA_FIELD),
+                          SET_ENDPOINT_FIELD_TYPE);
+          if (value != null) {
+            endPointFields.addAll(value);
+          }
+        } catch (JsonSyntaxException e) {
+          LOG.warn(String.format("Failed to parse json from checksum %d.", checksum));
+        }
+      }
+    }
+    return summary;
+  }
+
+  private Map<String, Set<EndPointField>> getEndPointSummary(EndPoint endPoint,
+                                                             Map<EndPointField, Set<EndPointField>> summary) {
+    Map<String, Set<EndPointField>> result = new HashMap<>();
+    for (Map.Entry<EndPointField, Set<EndPointField>> entry : summary.entrySet()) {
+      if (endPoint.equals(entry.getKey().getEndPoint())) {
+        result.computeIfAbsent(entry.getKey().getField(), k -> new HashSet<>()).addAll(entry.getValue());
+      }
+    }
+    return result;
+  }
+
+  private Map<String, Set<EndPointField>> parseSummary(StructuredRow row) {
+    String value = row.getString(StoreDefinition.FieldLineageStore.SUMMARY_DATA_FIELD);
+    try {
+      Map<String, Set<EndPointField>> summary = GSON.fromJson(value, SUMMARY_TYPE);
+      if (summary != null) {
+        return summary;
+      }
+    } catch (JsonSyntaxException e) {
+      LOG.warn(String.format("Failed to parse json from the summary of day %d.",
+                             row.getLong(StoreDefinition.FieldLineageStore.DAY_FIELD)));
+    }
+    return new HashMap<>();
+  }
+
+  private void mergeSummary(Map<String, Set<EndPointField>> summary, Map<String, Set<EndPointField>> other) {
+    for (Map.Entry<String, Set<EndPointField>> entry : other.entrySet()) {
+      summary.computeIfAbsent(entry.getKey(), k -> new HashSet<>()).addAll(entry.getValue());
+    }
+  }
+
   /**
    * Get the set of operations which were responsible for computing the fields
    * of the specified EndPoint over a given time range. Along with the operations, program
@@ -476,6 +743,18 @@ public class FieldLineageTable {
     return fields;
   }
 
+  private List<Field<?>> getDailySummaryKey(String direction, EndPoint endPoint, long day) {
+    List<Field<?>> fields = new ArrayList<>();
+    fields.add(Fields.stringField(StoreDefinition.FieldLineageStore.DIRECTION_FIELD, direction));
+    addEndPoint(fields, endPoint);
+    fields.add(Fields.longField(StoreDefinition.FieldLineageStore.DAY_FIELD, day));
+    return fields;
+  }
+
+  private static long getDay(long timeMillis) {
+    return timeMillis - timeMillis % DAY_MILLIS;
+  }
+
   private List<Field<?>> getOperationsKey(long checksum) {
     List<Field<?>> fields = new ArrayList<>();
     fields.add(Fields.longField(StoreDefinition.FieldLineageStore.CHECKSUM_FIELD, checksum));
@@ -40,6 +40,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
@@ -74,6 +75,19 @@ public final class NoSqlStructuredTable implements StructuredTable {
     table.put(convertFieldsToBytes(fields));
   }
 
+  @Override
+  public void multiUpsert(Collection<? extends Collection<Field<?>>> multiFields) throws InvalidFieldException {
+    LOG.trace("Table {}: Write multiple rows {}", schema.getTableId(), multiFields);
+    // Validate and convert all rows before writing any, the writes are buffered until the transaction commits
+    List<Put> puts = new ArrayList<>(multiFields.size());
+    for (Collection<Field<?>> fields : multiFields) {
+      puts.add(convertFieldsToBytes(fields));
+    }
+    for (Put put : puts) {
+      table.put(put);
+    }
+  }
+
   @Override
   public Optional<StructuredRow> read(Collection<Field<?>> keys) throws InvalidFieldException {
     LOG.trace("Table {}: Read with keys {}", schema.getTableId(), keys);
@@ -212,6 +226,18 @@ public final class NoSqlStructuredTable implements StructuredTable {
     table.delete(convertKeyToBytes(keys, false));
   }
 
+  @Override
+  public void multiDelete(Collection<? extends Collection<Field<?>>> multiKeys) throws InvalidFieldException {
+    LOG.trace("Table {}: Delete with multiple keys {}", schema.getTableId(), multiKeys);
+    List<byte[]> rows = new ArrayList<>(multiKeys.size());
+    for (Collection<Field<?>> keys : multiKeys) {
+      rows.add(convertKeyToBytes(keys, false));
+    }
+    for (byte[] row : rows) {
+      table.delete(row);
+    }
+  }
+
   @Override
   public void deleteAll(Range keyRange) throws InvalidFieldException, IOException {
     LOG.trace("Table {}: DeleteAll with range {}", schema.getTableId(), keyRange);
@@ -37,7 +37,6 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -51,6 +50,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import javax.annotation.Nullable;
@@ -61,13 +61,21 @@ import javax.annotation.Nullable;
 public class PostgresSqlStructuredTable implements StructuredTable {
   private static final Logger LOG = LoggerFactory.getLogger(PostgresSqlStructuredTable.class);
   private static final int SCAN_FETCH_SIZE = 100;
+  private static final int MAX_BATCH_SIZE = 1000;
 
   private final Connection connection;
+  private final PreparedStatementCache statementCache;
   private final StructuredTableSchema tableSchema;
   private final FieldValidator fieldValidator;
 
   public PostgresSqlStructuredTable(Connection connection, StructuredTableSchema tableSchema) {
+    this(connection, new PreparedStatementCache(connection, 0), tableSchema);
+  }
+
+  PostgresSqlStructuredTable(Connection connection, PreparedStatementCache statementCache,
+                             StructuredTableSchema tableSchema) {
     this.connection = connection;
+    this.statementCache = statementCache;
     this.tableSchema = tableSchema;
     this.fieldValidator = new FieldValidator(tableSchema);
   }
@@ -75,15 +83,20 @@ public class PostgresSqlStructuredTable implements StructuredTable {
   @Override
   public void upsert(Collection<Field<?>> fields) throws InvalidFieldException, IOException {
     LOG.trace("Table {}: Write fields {}", tableSchema.getTableId(), fields);
-    Set<String> fieldNames = fields.stream().map(Field::getName).collect(Collectors.toSet());
-    if (!fieldNames.containsAll(tableSchema.getPrimaryKeys())) {
-      throw new InvalidFieldException(tableSchema.getTableId(), fields,
-                                      String.format("Given fields %s do not contain all the " +
-                                                      "primary keys %s", fieldNames, tableSchema.getPrimaryKeys()));
-    }
+    validateUpsertFields(fields);
     upsertInternal(fields);
   }
 
+  @Override
+  public void multiUpsert(Collection<? extends Collection<Field<?>>> multiFields)
+    throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Write multiple rows {}", tableSchema.getTableId(), multiFields);
+    for (Collection<Field<?>> fields : multiFields) {
+      validateUpsertFields(fields);
+    }
+    executeBatches(multiFields, fields -> getWriteSqlQuery(fields, null), "write to");
+  }
+
   @Override
   public Optional<StructuredRow> read(Collection<Field<?>> keys) throws InvalidFieldException, IOException {
     return readRow(keys, null);
@@ -121,7 +134,8 @@ public class PostgresSqlStructuredTable implements StructuredTable {
       .flatMap(Collection::stream)
       .forEach(field -> keyFields.computeIfAbsent(field.getName(), k -> new LinkedHashSet<>()).add(field));
 
-    try (PreparedStatement statement = prepareMultiReadQuery(keyFields)) {
+    try (PreparedStatementCache.CachedStatement cached = prepareMultiReadQuery(keyFields)) {
+      PreparedStatement statement = cached.getStatement();
       LOG.trace("SQL statement: {}", statement);
       Collection<StructuredRow> result = new ArrayList<>();
       try (ResultSet resultSet = statement.executeQuery()) {
@@ -142,7 +156,8 @@ public class PostgresSqlStructuredTable implements StructuredTable {
    * @param keyFields a map from field name to set of field values to query
    * @return a SELECT query ready to be used for creating prepared statement
    */
-  private PreparedStatement prepareMultiReadQuery(Map<String, Set<Field<?>>> keyFields) throws SQLException {
+  private PreparedStatementCache.CachedStatement prepareMultiReadQuery(Map<String, Set<Field<?>>> keyFields)
+    throws SQLException {
     StringBuilder queryString =
       new StringBuilder("SELECT ")
         .append("*")
@@ -160,11 +175,15 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     );
     queryString.append(";");
 
-    PreparedStatement preparedStatement = connection.prepareStatement(queryString.toString());
-
-    // Set fields to the statement
-    setFields(preparedStatement, keyFields.values().stream().flatMap(Collection::stream)::iterator, 1);
-    return preparedStatement;
+    PreparedStatementCache.CachedStatement cached = statementCache.prepare(queryString.toString());
+    try {
+      // Set fields to the statement
+      setFields(cached.getStatement(), keyFields.values().stream().flatMap(Collection::stream)::iterator, 1);
+      return cached;
+    } catch (SQLException | RuntimeException e) {
+      cached.close();
+      throw e;
+    }
   }
 
   /**
@@ -191,16 +210,19 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     fieldValidator.validatePrimaryKeys(keyRange.getEnd(), true);
     String scanQuery = getScanQuery(keyRange, limit);
 
-    // We don't close the statement here because once it is closed, the result set is also closed.
+    // We don't release the statement here because once it is reused, the result set is closed.
+    PreparedStatementCache.CachedStatement cached = null;
     try {
-      PreparedStatement statement = connection.prepareStatement(scanQuery);
+      cached = statementCache.prepare(scanQuery);
+      PreparedStatement statement = cached.getStatement();
       statement.setFetchSize(SCAN_FETCH_SIZE);
       setStatementFieldByRange(keyRange, statement);
       LOG.trace("SQL statement: {}", statement);
 
       ResultSet resultSet = statement.executeQuery();
-      return new ResultSetIterator(statement, resultSet, tableSchema);
+      return new ResultSetIterator(cached, resultSet, tableSchema);
     } catch (SQLException e) {
+      closeQuietly(cached);
       throw new IOException(String.format("Failed to scan from table %s with range %s",
                                           tableSchema.getTableId().getName(), keyRange), e);
     }
@@ -237,14 +259,17 @@ public class PostgresSqlStructuredTable implements StructuredTable {
       return scan(Range.all(), limit);
     }
 
+    PreparedStatementCache.CachedStatement cached = null;
     try {
-      // Don't close the statement. Leave it to the ResultSetIterator.close() to close it.
-      PreparedStatement statement = prepareMultiScanQuery(keyFields, rangeScans, limit);
+      // Don't release the statement. Leave it to the ResultSetIterator.close() to release it.
+      cached = prepareMultiScanQuery(keyFields, rangeScans, limit);
+      PreparedStatement statement = cached.getStatement();
       LOG.trace("MultiScan SQL statement: {}", statement);
 
       ResultSet resultSet = statement.executeQuery();
-      return new ResultSetIterator(statement, resultSet, tableSchema);
+      return new ResultSetIterator(cached, resultSet, tableSchema);
     } catch (SQLException e) {
+      closeQuietly(cached);
       throw new IOException(String.format("Failed to scan from table %s with ranges %s",
                                           tableSchema.getTableId().getName(), keyRanges), e);
     }
@@ -263,8 +288,9 @@ public class PostgresSqlStructuredTable implements StructuredTable {
    * @param limit number of result
    * @return a select query
    */
-  private PreparedStatement prepareMultiScanQuery(Map<String, Set<Field<?>>> keyFields,
-                                                  Collection<Range> ranges, int limit) throws SQLException {
+  private PreparedStatementCache.CachedStatement prepareMultiScanQuery(Map<String, Set<Field<?>>> keyFields,
+                                                                      Collection<Range> ranges,
+                                                                      int limit) throws SQLException {
     StringBuilder query = new StringBuilder("SELECT * FROM ")
       .append(tableSchema.getTableId().getName()).append(" WHERE ");
 
@@ -293,15 +319,21 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     query.append(getOrderByClause(tableSchema.getPrimaryKeys()));
     query.append(" LIMIT ").append(limit).append(";");
 
-    PreparedStatement statement = connection.prepareStatement(query.toString());
-    statement.setFetchSize(SCAN_FETCH_SIZE);
+    PreparedStatementCache.CachedStatement cached = statementCache.prepare(query.toString());
+    try {
+      PreparedStatement statement = cached.getStatement();
+      statement.setFetchSize(SCAN_FETCH_SIZE);
 
-    // Set the parameters
-    int index = setFields(statement, keyFields.values().stream().flatMap(Collection::stream)::iterator, 1);
-    for (Range range : ranges) {
-      index = setStatementFieldByRange(range, statement, index);
+      // Set the parameters
+      int index = setFields(statement, keyFields.values().stream().flatMap(Collection::stream)::iterator, 1);
+      for (Range range : ranges) {
+        index = setStatementFieldByRange(range, statement, index);
+      }
+      return cached;
+    } catch (SQLException | RuntimeException e) {
+      cached.close();
+      throw e;
     }
-    return statement;
   }
 
   @Override
@@ -313,15 +345,18 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     }
 
     String sql = getReadQuery(Collections.singleton(index), null, false);
-    // We don't close the statement here because once it is closed, the result set is also closed.
+    // We don't release the statement here because once it is reused, the result set is closed.
+    PreparedStatementCache.CachedStatement cached = null;
     try {
-      PreparedStatement statement = connection.prepareStatement(sql);
+      cached = statementCache.prepare(sql);
+      PreparedStatement statement = cached.getStatement();
       statement.setFetchSize(SCAN_FETCH_SIZE);
       setField(statement, index, 1);
       LOG.trace("SQL statement: {}", statement);
       ResultSet resultSet = statement.executeQuery();
-      return new ResultSetIterator(statement, resultSet, tableSchema);
+      return new ResultSetIterator(cached, resultSet, tableSchema);
     } catch (SQLException e) {
+      closeQuietly(cached);
       throw new IOException(String.format("Failed to scan from table %s with index %s",
                                           tableSchema.getTableId().getName(), index), e);
     }
@@ -350,7 +385,8 @@ public class PostgresSqlStructuredTable implements StructuredTable {
 
     // First compare
     String readQuery = getReadQuery(keys, Collections.singleton(oldValue.getName()), true);
-    try (PreparedStatement statement = connection.prepareStatement(readQuery)) {
+    try (PreparedStatementCache.CachedStatement cached = statementCache.prepare(readQuery)) {
+      PreparedStatement statement = cached.getStatement();
       int index = 1;
       for (Field<?> key : keys) {
         setField(statement, key, index);
@@ -406,7 +442,8 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     // If the row does not exist, insert it with long field = amount
     fieldsWithValue.add(Fields.longField(column, amount));
     String sql = getWriteSqlQuery(fieldsWithValue, column);
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatementCache.CachedStatement cached = statementCache.prepare(sql)) {
+      PreparedStatement statement = cached.getStatement();
       int index = 1;
       for (Field<?> key : fieldsWithValue) {
         setField(statement, key, index);
@@ -427,7 +464,8 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     LOG.trace("Table {}: Delete with keys {}", tableSchema.getTableId(), keys);
     fieldValidator.validatePrimaryKeys(keys, false);
     String sqlQuery = getDeleteQuery(keys);
-    try (PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
+    try (PreparedStatementCache.CachedStatement cached = statementCache.prepare(sqlQuery)) {
+      PreparedStatement statement = cached.getStatement();
       int index = 1;
       for (Field<?> key : keys) {
         setField(statement, key, index);
@@ -441,13 +479,24 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     }
   }
 
+  @Override
+  public void multiDelete(Collection<? extends Collection<Field<?>>> multiKeys)
+    throws InvalidFieldException, IOException {
+    LOG.trace("Table {}: Delete with multiple keys {}", tableSchema.getTableId(), multiKeys);
+    for (Collection<Field<?>> keys : multiKeys) {
+      fieldValidator.validatePrimaryKeys(keys, false);
+    }
+    executeBatches(multiKeys, this::getDeleteQuery, "delete from");
+  }
+
   @Override
   public void deleteAll(Range keyRange) throws InvalidFieldException, IOException {
     LOG.trace("Table {}: DeleteAll with range {}", tableSchema.getTableId(), keyRange);
     fieldValidator.validatePrimaryKeys(keyRange.getBegin(), true);
     fieldValidator.validatePrimaryKeys(keyRange.getEnd(), true);
     String sql = getDeleteAllStatement(keyRange);
-    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+    try (PreparedStatementCache.CachedStatement cached = statementCache.prepare(sql)) {
+      PreparedStatement statement = cached.getStatement();
       setStatementFieldByRange(keyRange, statement);
       LOG.trace("SQL statement: {}", statement);
 
@@ -467,9 +516,78 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     }
   }
 
+  private void validateUpsertFields(Collection<Field<?>> fields) throws InvalidFieldException {
+    Set<String> fieldNames = fields.stream().map(Field::getName).collect(Collectors.toSet());
+    if (!fieldNames.containsAll(tableSchema.getPrimaryKeys())) {
+      throw new InvalidFieldException(tableSchema.getTableId(), fields,
+                                      String.format("Given fields %s do not contain all the " +
+                                                      "primary keys %s", fieldNames, tableSchema.getPrimaryKeys()));
+    }
+  }
+
+  /**
+   * Executes a statement for each of the given rows with JDBC batches. Consecutive rows with the same SQL query are
+   * added to the same batch, so that the rows are applied in the given order.
+   *
+   * @param rows the fields of each row
+   * @param queryFunction function to create the SQL query for the fields of a row
+   * @param operation description of the operation for the error message
+   */
+  private void executeBatches(Collection<? extends Collection<Field<?>>> rows,
+                              Function<Collection<Field<?>>, String> queryFunction,
+                              String operation) throws InvalidFieldException, IOException {
+    PreparedStatementCache.CachedStatement cached = null;
+    PreparedStatement statement = null;
+    String currentQuery = null;
+    int batchSize = 0;
+    try {
+      for (Collection<Field<?>> fields : rows) {
+        String query = queryFunction.apply(fields);
+        if (!query.equals(currentQuery) || batchSize >= MAX_BATCH_SIZE) {
+          if (statement != null) {
+            statement.executeBatch();
+            if (!query.equals(currentQuery)) {
+              cached.close();
+              cached = null;
+              statement = null;
+            }
+          }
+          if (statement == null) {
+            cached = statementCache.prepare(query);
+            statement = cached.getStatement();
+            currentQuery = query;
+          }
+          batchSize = 0;
+        }
+        int index = 1;
+        for (Field<?> field : fields) {
+          setField(statement, field, index);
+          index++;
+        }
+        statement.addBatch();
+        batchSize++;
+      }
+      if (statement != null && batchSize > 0) {
+        statement.executeBatch();
+      }
+    } catch (SQLException e) {
+      throw new IOException(String.format("Failed to %s table %s with %d rows",
+                                          operation, tableSchema.getTableId().getName(), rows.size()), e);
+    } finally {
+      closeQuietly(cached);
+    }
+  }
+
+  private static void closeQuietly(@Nullable PreparedStatementCache.CachedStatement cached) {
+    if (cached != null) {
+      cached.close();
+    }
+  }
+
   private void upsertInternal(Collection<Field<?>> fields) throws IOException {
     String sqlQuery = getWriteSqlQuery(fields, null);
-    try (PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
+    try (PreparedStatementCache.CachedStatement cached = statementCache.prepare(sqlQuery)) {
+      PreparedStatement statement = cached.getStatement();
       int index = 1;
       for (Field<?> field : fields) {
         setField(statement, field, index);
@@ -495,7 +613,8 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     LOG.trace("Table {}: Read with keys {} and columns {}", tableSchema.getTableId(), keys, columns);
     fieldValidator.validatePrimaryKeys(keys, false);
     String readQuery = getReadQuery(keys, columns, false);
-    try (PreparedStatement statement = connection.prepareStatement(readQuery)) {
+    try (PreparedStatementCache.CachedStatement cached = statementCache.prepare(readQuery)) {
+      PreparedStatement statement = cached.getStatement();
       int index = 1;
       for (Field<?> key : keys) {
         setField(statement, key, index);
@@ -760,13 +879,14 @@ public class PostgresSqlStructuredTable implements StructuredTable {
   }
 
   private static final class ResultSetIterator extends AbstractCloseableIterator<StructuredRow> {
-    private final Statement statement;
+    private final PreparedStatementCache.CachedStatement statement;
     private final ResultSet resultSet;
     private final Set<String> columnNames;
     private final StructuredTableSchema schema;
 
 
-    ResultSetIterator(Statement statement, ResultSet resultSet, StructuredTableSchema schema) throws SQLException {
+    ResultSetIterator(PreparedStatementCache.CachedStatement statement, ResultSet resultSet,
+                      StructuredTableSchema schema) throws SQLException {
       this.statement = statement;
       this.resultSet = resultSet;
       this.columnNames = createColNames(resultSet.getMetaData());
@@ -793,10 +913,11 @@ public class PostgresSqlStructuredTable implements StructuredTable {
     @Override
     public void close() {
       try {
-        statement.close();
         resultSet.close();
       } catch (SQLException e) {
         LOG.warn("Failed to close the result set", e);
+      } finally {
+        statement.close();
       }
     }
 
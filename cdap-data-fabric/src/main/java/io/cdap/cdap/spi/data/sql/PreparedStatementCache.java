@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.spi.data.sql;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A cache of {@link PreparedStatement} of a {@link Connection}, keyed by the SQL query. The SQL query contains the
+ * table name and the query shape, hence the same statement is reused for repeated operations on the same table,
+ * which also allows the JDBC driver to switch to a server side prepared statement.
+ *
+ * A statement is removed from the cache while it is being used, so that operations with open result sets never
+ * share the same statement. This class is not thread safe, same as the {@link Connection}.
+ *
+ * The cached statements are still open, hence they count against the limit of open statements of a connection that
+ * pools its statements. Such a connection fails to prepare a statement when the limit is reached instead of waiting,
+ * in which case the cached statements are closed to make room and the statement is prepared again.
+ */
+final class PreparedStatementCache implements AutoCloseable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PreparedStatementCache.class);
+
+  private final Connection connection;
+  private final Map<String, PreparedStatement> statements;
+  private int hits;
+  private int misses;
+  private boolean closed;
+
+  PreparedStatementCache(Connection connection, int maxSize) {
+    this.connection = connection;
+    this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+        if (size() > maxSize) {
+          closeQuietly(eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns a {@link CachedStatement} for the given SQL query. The statement must be released by calling
+   * {@link CachedStatement#close()} once it is no longer used.
+   */
+  CachedStatement prepare(String sql) throws SQLException {
+    PreparedStatement statement = statements.remove(sql);
+    if (statement != null && !statement.isClosed()) {
+      hits++;
+    } else {
+      misses++;
+      statement = prepareStatement(sql);
+    }
+    return new CachedStatement(sql, statement);
+  }
+
+  private PreparedStatement prepareStatement(String sql) throws SQLException {
+    try {
+      return connection.prepareStatement(sql);
+    } catch (SQLException e) {
+      // A statement pool reports that it has no more statements with a NoSuchElementException
+      if (!(e.getCause() instanceof NoSuchElementException) || statements.isEmpty()) {
+        throw e;
+      }
+      LOG.debug("Closing {} cached statements since no more statements can be opened", statements.size(), e);
+      closeCached();
+      return connection.prepareStatement(sql);
+    }
+  }
+
+  /**
+   * Returns the number of times a cached statement was reused.
+   */
+  int getHits() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of times a new statement was prepared.
+   */
+  int getMisses() {
+    return misses;
+  }
+
+  /**
+   * Closes all the cached statements. Statements that are still in use are closed when released.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    closeCached();
+  }
+
+  private void closeCached() {
+    List<PreparedStatement> cached = new ArrayList<>(statements.values());
+    statements.clear();
+    cached.forEach(PreparedStatementCache::closeQuietly);
+  }
+
+  private void release(String sql, PreparedStatement statement) {
+    try {
+      if (closed || statement.isClosed() || statements.containsKey(sql)) {
+        closeQuietly(statement);
+        return;
+      }
+      statement.clearParameters();
+      statement.clearBatch();
+      statements.put(sql, statement);
+    } catch (SQLException e) {
+      closeQuietly(statement);
+    }
+  }
+
+  private static void closeQuietly(PreparedStatement statement) {
+    try {
+      statement.close();
+    } catch (SQLException e) {
+      LOG.warn("Failed to close the SQL statement", e);
+    }
+  }
+
+  /**
+   * A {@link PreparedStatement} checked out from the cache, which is returned to the cache on {@link #close()}.
+   */
+  final class CachedStatement implements AutoCloseable {
+
+    private final String sql;
+    private final PreparedStatement statement;
+    private boolean released;
+
+    private CachedStatement(String sql, PreparedStatement statement) {
+      this.sql = sql;
+      this.statement = statement;
+    }
+
+    PreparedStatement getStatement() {
+      return statement;
+    }
+
+    @Override
+    public void close() {
+      if (!released) {
+        released = true;
+        release(sql, statement);
+      }
+    }
+  }
+}
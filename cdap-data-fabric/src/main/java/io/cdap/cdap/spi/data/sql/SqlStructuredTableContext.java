@@ -35,13 +35,22 @@ import java.sql.Connection;
 public class SqlStructuredTableContext implements StructuredTableContext {
   private final StructuredTableAdmin admin;
   private final Connection connection;
+  private final PreparedStatementCache statementCache;
   private final MetricsCollector metricsCollector;
   private final boolean emitTimeMetrics;
 
   public SqlStructuredTableContext(StructuredTableAdmin structuredTableAdmin, Connection connection,
                                    MetricsCollector metricsCollector, boolean emitTimeMetrics) {
+    this(structuredTableAdmin, connection, new PreparedStatementCache(connection, 0), metricsCollector,
+         emitTimeMetrics);
+  }
+
+  SqlStructuredTableContext(StructuredTableAdmin structuredTableAdmin, Connection connection,
+                            PreparedStatementCache statementCache, MetricsCollector metricsCollector,
+                            boolean emitTimeMetrics) {
     this.admin = structuredTableAdmin;
     this.connection = connection;
+    this.statementCache = statementCache;
     this.metricsCollector = metricsCollector;
     this.emitTimeMetrics = emitTimeMetrics;
   }
@@ -54,7 +63,8 @@ public class SqlStructuredTableContext implements StructuredTableContext {
       throw new TableNotFoundException(tableId);
     }
     return new MetricStructuredTable(
-      tableId, new PostgresSqlStructuredTable(connection, new StructuredTableSchema(specification)),
+      tableId, new PostgresSqlStructuredTable(connection, statementCache,
+                                              new StructuredTableSchema(specification)),
       metricsCollector, emitTimeMetrics);
   }
 }
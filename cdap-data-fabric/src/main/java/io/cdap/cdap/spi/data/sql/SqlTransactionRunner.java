@@ -37,6 +37,9 @@ import javax.sql.DataSource;
  */
 public class SqlTransactionRunner implements TransactionRunner {
   private static final Logger LOG = LoggerFactory.getLogger(SqlTransactionRunner.class);
+  // Max number of idle prepared statements cached for the duration of a transaction. Statements closed at the end of
+  // the transaction are only reused by later transactions if the DataSource pools the statements of each connection.
+  public static final int STATEMENT_CACHE_SIZE = 64;
 
   private final StructuredTableAdmin admin;
   private final DataSource dataSource;
@@ -66,12 +69,14 @@ public class SqlTransactionRunner implements TransactionRunner {
       throw new TransactionException("Unable to get connection to the sql database", e);
     }
 
+    MetricsContext metricsCollector = metricsCollectionService.getContext(Constants.Metrics.STORAGE_METRICS_TAGS);
+    PreparedStatementCache statementCache = new PreparedStatementCache(connection, STATEMENT_CACHE_SIZE);
     try {
-      MetricsContext metricsCollector = metricsCollectionService.getContext(Constants.Metrics.STORAGE_METRICS_TAGS);
       metricsCollector.increment(Constants.Metrics.StructuredTable.TRANSACTION_COUNT, 1L);
       connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
       connection.setAutoCommit(false);
-      runnable.run(new SqlStructuredTableContext(admin, connection, metricsCollector, emitTimeMetrics));
+      runnable.run(new SqlStructuredTableContext(admin, connection, statementCache,
+                                                 metricsCollector, emitTimeMetrics));
       connection.commit();
     } catch (Exception e) {
       Throwable cause = e.getCause();
@@ -80,6 +85,9 @@ public class SqlTransactionRunner implements TransactionRunner {
       }
       rollback(connection, new TransactionException("Failed to execute the sql queries.", e));
     } finally {
+      statementCache.close();
+      metricsCollector.increment(Constants.Metrics.StructuredTable.STATEMENT_CACHE_HIT, statementCache.getHits());
+      metricsCollector.increment(Constants.Metrics.StructuredTable.STATEMENT_CACHE_MISS, statementCache.getMisses());
       try {
         connection.close();
       } catch (SQLException e) {
@@ -25,6 +25,7 @@ import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.conf.SConfiguration;
 import io.cdap.cdap.common.lang.DirectoryClassLoader;
+import io.cdap.cdap.spi.data.sql.SqlTransactionRunner;
 import org.apache.commons.dbcp2.ConnectionFactory;
 import org.apache.commons.dbcp2.DriverManagerConnectionFactory;
 import org.apache.commons.dbcp2.PoolableConnection;
@@ -94,6 +95,14 @@ public class DataSourceProvider implements Provider<DataSource> {
 
     ConnectionFactory connectionFactory = new DriverManagerConnectionFactory(jdbcUrl, properties);
     PoolableConnectionFactory poolableConnectionFactory = new PoolableConnectionFactory(connectionFactory, null);
+    // Pool the prepared statements of each connection, so that they are reused across transactions.
+    // The statements kept by a transaction count as open, hence the pool cannot be smaller than that.
+    int statementPoolSize = cConf.getInt(Constants.Dataset.DATA_STORAGE_SQL_STATEMENT_POOL_SIZE);
+    if (statementPoolSize > 0) {
+      poolableConnectionFactory.setPoolStatements(true);
+      poolableConnectionFactory.setMaxOpenPreparedStatements(
+        Math.max(statementPoolSize, SqlTransactionRunner.STATEMENT_CACHE_SIZE * 2));
+    }
     // The GenericObjectPool is thread safe according to the javadoc,
     // the PoolingDataSource will be thread safe as long as the connectin pool is thread-safe
     GenericObjectPool<PoolableConnection> connectionPool = new GenericObjectPool<>(poolableConnectionFactory);
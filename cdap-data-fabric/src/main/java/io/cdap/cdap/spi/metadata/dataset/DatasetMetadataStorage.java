@@ -26,13 +26,13 @@ import io.cdap.cdap.api.dataset.DatasetDefinition;
 import io.cdap.cdap.api.metadata.MetadataEntity;
 import io.cdap.cdap.api.metadata.MetadataScope;
 import io.cdap.cdap.common.conf.Constants;
-import io.cdap.cdap.common.metadata.Cursor;
 import io.cdap.cdap.common.utils.ImmutablePair;
 import io.cdap.cdap.data2.metadata.dataset.MetadataDataset;
 import io.cdap.cdap.data2.metadata.dataset.SortInfo;
 import io.cdap.cdap.proto.EntityScope;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.metadata.MetadataSearchResponse;
+import io.cdap.cdap.spi.metadata.Cursor;
 import io.cdap.cdap.spi.metadata.Metadata;
 import io.cdap.cdap.spi.metadata.MetadataChange;
 import io.cdap.cdap.spi.metadata.MetadataDirective;
@@ -412,8 +412,10 @@ public class DatasetMetadataStorage extends SearchHelper implements MetadataStor
                                sorting == null ? null : sorting.toString(), actualCursor, query);
       }
     }
-    // adjust the total results by the difference of requested offset and the true offset that we respond back
-    int totalResults = offsetToRespond - cursorOffsetAndLimits.getOffsetToRequest() + response.getTotal();
+    // the default sorting returns the number of all matches, while other sortings only count the matches from the
+    // requested offset, hence adjust those by the difference of requested offset and the true offset we respond back
+    int totalResults = SortInfo.DEFAULT.equals(sortInfo) ? response.getTotal()
+      : offsetToRespond - cursorOffsetAndLimits.getOffsetToRequest() + response.getTotal();
     return new SearchResponse(request, newCursor == null ? null : newCursor.toString(),
                               offsetToRespond, limitToRespond, totalResults, results);
   }
@@ -24,6 +24,7 @@ import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import io.cdap.cdap.api.Transactional;
 import io.cdap.cdap.api.Transactionals;
+import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.data.DatasetInstantiationException;
 import io.cdap.cdap.api.dataset.Dataset;
 import io.cdap.cdap.api.dataset.DatasetAdmin;
@@ -56,15 +57,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import javax.annotation.Nullable;
 
@@ -261,6 +266,10 @@ public class SearchHelper {
   }
 
   private MetadataSearchResponse search(Set<MetadataScope> scopes, SearchRequest request) {
+    if (SortInfo.DEFAULT.equals(request.getSortInfo())) {
+      return searchByScore(scopes, request);
+    }
+
     List<MetadataEntry> results = new LinkedList<>();
     List<String> cursors = new LinkedList<>();
     for (MetadataScope scope : scopes) {
@@ -304,6 +313,125 @@ public class SearchHelper {
       finalResults, cursors, request.shouldShowHidden(), request.getEntityScopes());
   }
 
+  /**
+   * Searches with the default sorting. The score of an entity depends on all of its matching index entries, hence
+   * all the matching index entries are scanned for every page, and the total is the number of all matching entities,
+   * so that it is the same for every page. Only the ranking is bounded: the top ranked entities up to the offset and
+   * limit of the request are kept in a heap, ordered by descending score, then by entity, instead of sorting all the
+   * matches. A cursor encodes the last entity of a page, so that the next page only needs to keep the entities ranked
+   * after it, regardless of how many pages precede it.
+   *
+   * If all the search terms are exact terms, the index entries of the terms and of the scopes are merged in entity
+   * order, so that only the entity being scored is kept in memory besides the heap. Otherwise, the score of every
+   * matching entity is kept in memory.
+   */
+  private MetadataSearchResponse searchByScore(Set<MetadataScope> scopes, SearchRequest request) {
+    ScoredEntity after = request.getCursor() == null || request.getCursor().isEmpty()
+      ? null : ScoredEntity.fromCursor(request.getCursor());
+    int offset = request.getOffset();
+    int limit = request.getLimit();
+    // Account for overflow
+    int fetchSize = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+
+    TopEntities topEntities = execute(context -> rankInEntityOrder(context, scopes, request,
+                                                                   new TopEntities(after, fetchSize)));
+    if (topEntities == null) {
+      Map<MetadataEntity, Integer> scores = new HashMap<>();
+      for (MetadataScope scope : scopes) {
+        Map<MetadataEntity, Integer> scopeScores =
+          execute(context -> context.getDataset(scope).scoreByDefaultIndex(request));
+        scopeScores.forEach((entity, score) -> scores.merge(entity, score, Integer::sum));
+      }
+      TopEntities scoredEntities = new TopEntities(after, fetchSize);
+      scores.forEach(scoredEntities::add);
+      topEntities = scoredEntities;
+    }
+
+    List<ScoredEntity> ranked = topEntities.getRanked();
+    int total = topEntities.total;
+    int remaining = topEntities.remaining;
+    List<ScoredEntity> page = ranked.subList(Math.min(offset, ranked.size()), ranked.size());
+    Set<MetadataEntity> pageEntities = new LinkedHashSet<>(page.size());
+    page.forEach(scored -> pageEntities.add(scored.getEntity()));
+
+    // the cursor is only needed if there are more results after this page
+    List<String> cursors = request.getNumCursors() > 0 && remaining > fetchSize && !page.isEmpty()
+      ? Collections.singletonList(page.get(page.size() - 1).toCursor()) : Collections.emptyList();
+
+    // Fetch metadata for entities in the result list
+    // Note: since the fetch is happening in a different transaction, the metadata for entities may have been
+    // removed. It is okay not to have metadata for some results in case this happens.
+    Set<MetadataSearchResultRecord> finalResults = execute(
+      context -> addMetadataToEntities(pageEntities,
+                                       fetchMetadata(context.getDataset(SYSTEM), pageEntities),
+                                       fetchMetadata(context.getDataset(USER), pageEntities)));
+
+    SortInfo sortInfo = request.getSortInfo();
+    return new MetadataSearchResponse(
+      sortInfo.getSortBy() + " " + sortInfo.getSortOrder(), offset, limit, request.getNumCursors(), total,
+      finalResults, cursors, request.shouldShowHidden(), request.getEntityScopes());
+  }
+
+  /**
+   * Ranks the entities that match the exact search terms of the request, by merging the entities of the scopes in
+   * entity order.
+   *
+   * @return the given top entities, or {@code null} if the query has a prefix term, or if the index entries are not
+   *         in entity order, in which case the scores of the entities must be kept in memory
+   */
+  @Nullable
+  private TopEntities rankInEntityOrder(MetadataDatasetContext context, Set<MetadataScope> scopes,
+                                        SearchRequest request, TopEntities topEntities) {
+    List<MetadataDataset.EntityScoreScanner> scanners = new ArrayList<>();
+    try {
+      for (MetadataScope scope : scopes) {
+        MetadataDataset.EntityScoreScanner scanner = context.getDataset(scope).scanScoresByDefaultIndex(request);
+        if (scanner == null) {
+          return null;
+        }
+        scanners.add(scanner);
+      }
+
+      // the scanners that are positioned at an entity
+      List<MetadataDataset.EntityScoreScanner> current = new ArrayList<>();
+      for (MetadataDataset.EntityScoreScanner scanner : scanners) {
+        if (scanner.next()) {
+          current.add(scanner);
+        } else if (!scanner.isOrdered()) {
+          return null;
+        }
+      }
+      while (!current.isEmpty()) {
+        byte[] entityKey = null;
+        for (MetadataDataset.EntityScoreScanner scanner : current) {
+          if (entityKey == null || Bytes.compareTo(scanner.getEntityKey(), entityKey) < 0) {
+            entityKey = scanner.getEntityKey();
+          }
+        }
+        MetadataEntity entity = null;
+        int score = 0;
+        Iterator<MetadataDataset.EntityScoreScanner> iterator = current.iterator();
+        while (iterator.hasNext()) {
+          MetadataDataset.EntityScoreScanner scanner = iterator.next();
+          if (Bytes.equals(scanner.getEntityKey(), entityKey)) {
+            entity = scanner.getEntity();
+            score += scanner.getScore();
+            if (!scanner.next()) {
+              if (!scanner.isOrdered()) {
+                return null;
+              }
+              iterator.remove();
+            }
+          }
+        }
+        topEntities.add(entity, score);
+      }
+      return topEntities;
+    } finally {
+      scanners.forEach(Closeables::closeQuietly);
+    }
+  }
+
   private Set<MetadataEntity> getSortedEntities(List<MetadataEntry> results, SortInfo sortInfo) {
     // if sort order is not weighted, return entities in the order received.
     // in this case, the backing storage is expected to return results in the expected order.
@@ -366,4 +494,108 @@ public class SearchHelper {
     }
     return result;
   }
+
+  /**
+   * The top ranked entities up to a fetch size, after an optional cursor, with the counts of all the entities.
+   */
+  private static final class TopEntities {
+
+    private final ScoredEntity after;
+    private final int fetchSize;
+    // the top ranked entities with the lowest ranked entity at the head
+    private final PriorityQueue<ScoredEntity> heap = new PriorityQueue<>(Comparator.reverseOrder());
+    // the number of all the entities
+    private int total;
+    // the number of the entities after the cursor
+    private int remaining;
+
+    private TopEntities(@Nullable ScoredEntity after, int fetchSize) {
+      this.after = after;
+      this.fetchSize = fetchSize;
+    }
+
+    void add(MetadataEntity entity, int score) {
+      total++;
+      ScoredEntity scored = new ScoredEntity(entity, score);
+      if (after != null && scored.compareTo(after) <= 0) {
+        return;
+      }
+      remaining++;
+      if (heap.size() < fetchSize) {
+        heap.add(scored);
+      } else if (fetchSize > 0 && scored.compareTo(heap.peek()) < 0) {
+        heap.poll();
+        heap.add(scored);
+      }
+    }
+
+    List<ScoredEntity> getRanked() {
+      List<ScoredEntity> ranked = new ArrayList<>(heap);
+      ranked.sort(Comparator.naturalOrder());
+      return ranked;
+    }
+  }
+
+  /**
+   * A {@link MetadataEntity} with its search score, ordered by descending score, then by the entity.
+   */
+  private static final class ScoredEntity implements Comparable<ScoredEntity> {
+
+    private final MetadataEntity entity;
+    private final int score;
+    private final String key;
+
+    ScoredEntity(MetadataEntity entity, int score) {
+      this(entity, score, toKey(entity));
+    }
+
+    private ScoredEntity(@Nullable MetadataEntity entity, int score, String key) {
+      this.entity = entity;
+      this.score = score;
+      this.key = key;
+    }
+
+    MetadataEntity getEntity() {
+      return entity;
+    }
+
+    /**
+     * Returns the cursor for resuming a search after this entity. The cursor does not contain ':',
+     * so that it can be embedded in a {@link io.cdap.cdap.spi.metadata.Cursor}.
+     */
+    String toCursor() {
+      return score + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates an instance from a cursor returned by {@link #toCursor()}, which can only be used for comparison.
+     */
+    static ScoredEntity fromCursor(String cursor) {
+      int idx = cursor.indexOf('.');
+      try {
+        if (idx > 0) {
+          return new ScoredEntity(null, Integer.parseInt(cursor.substring(0, idx)),
+                                  new String(Base64.getUrlDecoder().decode(cursor.substring(idx + 1)),
+                                             StandardCharsets.UTF_8));
+        }
+      } catch (IllegalArgumentException e) {
+        // fall through to throw an exception with a better message
+      }
+      throw new IllegalArgumentException("Invalid search cursor " + cursor);
+    }
+
+    private static String toKey(MetadataEntity entity) {
+      StringBuilder builder = new StringBuilder();
+      for (MetadataEntity.KeyValue keyValue : entity) {
+        builder.append(keyValue.getKey()).append('\0').append(keyValue.getValue()).append('\0');
+      }
+      return builder.toString();
+    }
+
+    @Override
+    public int compareTo(ScoredEntity other) {
+      int cmp = Integer.compare(other.score, score);
+      return cmp != 0 ? cmp : key.compareTo(other.key);
+    }
+  }
 }
@@ -380,6 +380,7 @@ public final class StoreDefinition {
     public static final StructuredTableId APPLICATION_SPECIFICATIONS = new StructuredTableId("application_specs");
     public static final StructuredTableId WORKFLOW_NODE_STATES = new StructuredTableId("workflow_node_states");
     public static final StructuredTableId RUN_RECORDS = new StructuredTableId("run_records");
+    public static final StructuredTableId RUN_RECORDS_TIME_INDEX = new StructuredTableId("run_records_time_index");
     public static final StructuredTableId WORKFLOWS = new StructuredTableId("workflows");
     public static final StructuredTableId PROGRAM_COUNTS = new StructuredTableId("program_counts");
     // TODO: CDAP-14876 Move this table into it's own store, along with associated methods
@@ -396,6 +397,9 @@ public final class StoreDefinition {
     public static final String NODE_STATE_DATA = "node_state_data";
     public static final String RUN_STATUS = "run_status";
     public static final String RUN_START_TIME = "run_start_time";
+    public static final String RUN_STOP_TIME = "run_stop_time";
+    public static final String RUN_TIME_LEVEL = "run_time_level";
+    public static final String RUN_TIME_BUCKET = "run_time_bucket";
     public static final String RUN_RECORD_DATA = "run_record_data";
     public static final String WORKFLOW_DATA = "workflow_data";
     public static final String COUNT_TYPE = "count_type";
@@ -446,6 +450,24 @@ public final class StoreDefinition {
                          PROGRAM_FIELD, RUN_START_TIME, RUN_FIELD)
         .build();
 
+    public static final StructuredTableSpecification RUN_RECORDS_TIME_INDEX_SPEC =
+      new StructuredTableSpecification.Builder()
+        .withId(RUN_RECORDS_TIME_INDEX)
+        .withFields(Fields.stringType(RUN_STATUS),
+                    Fields.intType(RUN_TIME_LEVEL),
+                    Fields.longType(RUN_TIME_BUCKET),
+                    Fields.stringType(NAMESPACE_FIELD),
+                    Fields.stringType(APPLICATION_FIELD),
+                    Fields.stringType(VERSION_FIELD),
+                    Fields.stringType(PROGRAM_TYPE_FIELD),
+                    Fields.stringType(PROGRAM_FIELD),
+                    Fields.stringType(RUN_FIELD),
+                    Fields.longType(RUN_START_TIME),
+                    Fields.longType(RUN_STOP_TIME))
+        .withPrimaryKeys(RUN_STATUS, RUN_TIME_LEVEL, RUN_TIME_BUCKET, NAMESPACE_FIELD, APPLICATION_FIELD,
+                         VERSION_FIELD, PROGRAM_TYPE_FIELD, PROGRAM_FIELD, RUN_FIELD)
+        .build();
+
     public static final StructuredTableSpecification WORKFLOWS_SPEC =
       new StructuredTableSpecification.Builder()
         .withId(WORKFLOWS)
@@ -494,6 +516,9 @@ public final class StoreDefinition {
       if (overWrite || tableAdmin.getSpecification(RUN_RECORDS) == null) {
         tableAdmin.create(RUN_RECORDS_SPEC);
       }
+      if (overWrite || tableAdmin.getSpecification(RUN_RECORDS_TIME_INDEX) == null) {
+        tableAdmin.create(RUN_RECORDS_TIME_INDEX_SPEC);
+      }
       if (overWrite || tableAdmin.getSpecification(WORKFLOWS) == null) {
         tableAdmin.create(WORKFLOWS_SPEC);
       }
@@ -687,6 +712,7 @@ public final class StoreDefinition {
 
     public static final StructuredTableId DATASET_LINEAGE_TABLE = new StructuredTableId("dataset_lineage");
     public static final StructuredTableId PROGRAM_LINEAGE_TABLE = new StructuredTableId("program_lineage");
+    public static final StructuredTableId LINEAGE_GRAPH_TABLE = new StructuredTableId("lineage_graph");
     public static final String NAMESPACE_FIELD = "namespace";
     public static final String DATASET_FIELD = "dataset";
     public static final String START_TIME_FIELD = "start_time";
@@ -697,6 +723,10 @@ public final class StoreDefinition {
     public static final String RUN_FIELD = "run";
     public static final String ACCESS_TYPE_FIELD = "access_type";
     public static final String ACCESS_TIME_FIELD = "access_time";
+    public static final String NODE_FIELD = "node";
+    public static final String TIME_BUCKET_FIELD = "time_bucket";
+    public static final String NEIGHBOR_FIELD = "neighbor";
+    public static final String ACCESS_COUNT_FIELD = "access_count";
 
     public static final StructuredTableSpecification DATASET_LINEAGE_SPEC = new StructuredTableSpecification.Builder()
       .withId(DATASET_LINEAGE_TABLE)
@@ -731,6 +761,16 @@ public final class StoreDefinition {
                        START_TIME_FIELD, NAMESPACE_FIELD, DATASET_FIELD, RUN_FIELD, ACCESS_TYPE_FIELD)
       .build();
 
+    public static final StructuredTableSpecification LINEAGE_GRAPH_SPEC = new StructuredTableSpecification.Builder()
+      .withId(LINEAGE_GRAPH_TABLE)
+      .withFields(Fields.stringType(NODE_FIELD),
+                  Fields.longType(TIME_BUCKET_FIELD),
+                  Fields.stringType(NEIGHBOR_FIELD),
+                  Fields.longType(ACCESS_COUNT_FIELD),
+                  Fields.longType(ACCESS_TIME_FIELD))
+      .withPrimaryKeys(NODE_FIELD, TIME_BUCKET_FIELD, NEIGHBOR_FIELD)
+      .build();
+
     public static void createTable(StructuredTableAdmin tableAdmin,
                                    boolean overWrite) throws IOException, TableAlreadyExistsException {
       if (overWrite || tableAdmin.getSpecification(DATASET_LINEAGE_TABLE) == null) {
@@ -739,6 +779,9 @@ public final class StoreDefinition {
       if (overWrite || tableAdmin.getSpecification(PROGRAM_LINEAGE_TABLE) == null) {
         tableAdmin.create(PROGRAM_LINEAGE_SPEC);
       }
+      if (overWrite || tableAdmin.getSpecification(LINEAGE_GRAPH_TABLE) == null) {
+        tableAdmin.create(LINEAGE_GRAPH_SPEC);
+      }
     }
   }
 
@@ -960,6 +1003,7 @@ public final class StoreDefinition {
     public static final StructuredTableId OPERATIONS_TABLE = new StructuredTableId("operations_table");
     public static final StructuredTableId DESTINATION_FIELDS_TABLE = new StructuredTableId("destination_fields_table");
     public static final StructuredTableId SUMMARY_FIELDS_TABLE = new StructuredTableId("summary_fields_table");
+    public static final StructuredTableId DAILY_SUMMARY_TABLE = new StructuredTableId("daily_summary_table");
 
     public static final String DIRECTION_FIELD = "direction";
     public static final String ENDPOINT_NAMESPACE_FIELD = "endpoint_namespace";
@@ -970,6 +1014,8 @@ public final class StoreDefinition {
     public static final String OPERATIONS_FIELD = "operations";
     public static final String DESTINATION_DATA_FIELD = "destination_data";
     public static final String ENDPOINT_FIELD = "endpoint_field";
+    public static final String DAY_FIELD = "day";
+    public static final String SUMMARY_DATA_FIELD = "summary_data";
 
     public static final StructuredTableSpecification ENDPOINT_CHECKSUM_SPEC =
       new StructuredTableSpecification.Builder()
@@ -1010,6 +1056,17 @@ public final class StoreDefinition {
         .withPrimaryKeys(CHECKSUM_FIELD, DIRECTION_FIELD, ENDPOINT_NAMESPACE_FIELD, ENDPOINT_NAME_FIELD,
                          ENDPOINT_FIELD)
         .build();
+    public static final StructuredTableSpecification DAILY_SUMMARY_SPEC =
+      new StructuredTableSpecification.Builder()
+        .withId(DAILY_SUMMARY_TABLE)
+        .withFields(Fields.stringType(DIRECTION_FIELD),
+                    Fields.stringType(ENDPOINT_NAMESPACE_FIELD),
+                    Fields.stringType(ENDPOINT_NAME_FIELD),
+                    Fields.longType(DAY_FIELD),
+                    Fields.longType(CHECKSUM_FIELD),
+                    Fields.stringType(SUMMARY_DATA_FIELD))
+        .withPrimaryKeys(DIRECTION_FIELD, ENDPOINT_NAMESPACE_FIELD, ENDPOINT_NAME_FIELD, DAY_FIELD, CHECKSUM_FIELD)
+        .build();
 
     public static void createTables(StructuredTableAdmin tableAdmin,
                                     boolean overWrite) throws IOException, TableAlreadyExistsException {
@@ -1025,6 +1082,9 @@ public final class StoreDefinition {
       if (overWrite || tableAdmin.getSpecification(SUMMARY_FIELDS_TABLE) == null) {
         tableAdmin.create(SUMMARY_FIELDS_SPEC);
       }
+      if (overWrite || tableAdmin.getSpecification(DAILY_SUMMARY_TABLE) == null) {
+        tableAdmin.create(DAILY_SUMMARY_SPEC);
+      }
     }
   }
 
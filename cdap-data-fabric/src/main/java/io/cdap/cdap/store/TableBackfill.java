@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.store;
+
+import io.cdap.cdap.spi.data.StructuredTableContext;
+import io.cdap.cdap.spi.data.table.field.Range;
+import io.cdap.cdap.spi.data.transaction.TransactionRunner;
+import io.cdap.cdap.spi.data.transaction.TransactionRunners;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * Builds the data derived from the rows of a table, such as an index, for the rows that were written before the
+ * derived data was maintained on write. The rows are processed in batches, each one in its own transaction, so that
+ * a large table doesn't time out a single transaction. Once all the rows are processed, the backfill is marked as
+ * completed and is not run again.
+ *
+ * Readers must not rely on the derived data until {@link #isCompleted(StructuredTableContext)} returns {@code true}.
+ */
+public abstract class TableBackfill {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TableBackfill.class);
+
+  private final String name;
+
+  protected TableBackfill(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Returns the name of the backfill, for logging.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns whether the backfill has been completed.
+   */
+  public abstract boolean isCompleted(StructuredTableContext context) throws IOException;
+
+  /**
+   * Marks the backfill as completed.
+   */
+  protected abstract void setCompleted(StructuredTableContext context) throws IOException;
+
+  /**
+   * Processes a batch of rows.
+   *
+   * @param context the context of the transaction of the batch
+   * @param range the range of the rows to process
+   * @param batchSize maximum number of rows to process
+   * @return the range of the remaining rows to process, or {@code null} if all the rows in the given range are
+   *         processed
+   */
+  @Nullable
+  protected abstract Range backfill(StructuredTableContext context, Range range, int batchSize) throws IOException;
+
+  /**
+   * Runs the backfill if it has not been completed.
+   *
+   * @param transactionRunner the runner for the transactions of the batches
+   * @param batchSize maximum number of rows to process in a transaction
+   * @return the number of batches processed
+   */
+  public int run(TransactionRunner transactionRunner, int batchSize) throws IOException {
+    boolean completed = TransactionRunners.run(transactionRunner, context -> {
+      return isCompleted(context);
+    }, IOException.class);
+    if (completed) {
+      return 0;
+    }
+
+    LOG.info("Building {}", name);
+    int batches = 0;
+    Range range = Range.all();
+    while (range != null) {
+      Range currentRange = range;
+      range = TransactionRunners.run(transactionRunner, context -> {
+        return backfill(context, currentRange, batchSize);
+      }, IOException.class);
+      batches++;
+    }
+    TransactionRunners.run(transactionRunner, context -> {
+      setCompleted(context);
+    }, IOException.class);
+    LOG.info("Built {} in {} batches", name, batches);
+    return batches;
+  }
+}
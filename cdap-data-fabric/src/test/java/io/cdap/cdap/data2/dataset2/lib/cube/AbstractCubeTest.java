@@ -556,6 +556,48 @@ public abstract class AbstractCubeTest {
     }
   }
 
+  @Test
+  public void testRangeSumQueryAcrossResolutions() throws Exception {
+    Aggregation agg = new DefaultAggregation(ImmutableList.of("dim1"), ImmutableList.of("dim1"));
+    Cube cube = getCube("testRangeSum", new int[] {1, 60, 3600}, ImmutableMap.of("agg", agg));
+
+    // write one data point per second
+    for (int i = 3500; i <= 7300; i++) {
+      writeInc(cube, "metric1", i, 1, "tag1");
+    }
+
+    // the sum over the range should be the same no matter how the range is split across resolution tables
+    CubeQuery query = new CubeQuery(null, 3530, 7250, 1, 1,
+                                    ImmutableMap.of("metric1", AggregationFunction.SUM),
+                                    ImmutableMap.of("dim1", "tag1"), Collections.emptyList(),
+                                    AggregationOption.SUM, null);
+    List<TimeSeries> result = new ArrayList<>(cube.query(query));
+    Assert.assertEquals(1, result.size());
+    Assert.assertEquals(timeValues(7250, 3721), result.get(0).getTimeValues());
+
+    // range within a single minute is answered from the finest resolution only
+    query = new CubeQuery(null, 3601, 3610, 1, 1,
+                          ImmutableMap.of("metric1", AggregationFunction.SUM),
+                          ImmutableMap.of("dim1", "tag1"), Collections.emptyList(),
+                          AggregationOption.SUM, null);
+    result = new ArrayList<>(cube.query(query));
+    Assert.assertEquals(1, result.size());
+    Assert.assertEquals(timeValues(3610, 10), result.get(0).getTimeValues());
+
+    // the timestamp of the result is the latest data point, even if it falls in a bucket of a coarser table
+    cube = getCube("testRangeSumTimestamp", new int[] {1, 60, 3600}, ImmutableMap.of("agg", agg));
+    for (int i = 3500; i <= 5000; i++) {
+      writeInc(cube, "metric1", i, 1, "tag1");
+    }
+    query = new CubeQuery(null, 3530, 7250, 1, 1,
+                          ImmutableMap.of("metric1", AggregationFunction.SUM),
+                          ImmutableMap.of("dim1", "tag1"), Collections.emptyList(),
+                          AggregationOption.SUM, null);
+    result = new ArrayList<>(cube.query(query));
+    Assert.assertEquals(1, result.size());
+    Assert.assertEquals(timeValues(5000, 1471), result.get(0).getTimeValues());
+  }
+
   private void verifySumAggregation(TimeSeries timeSeries, String metricName, int numPoints, int sum,
                                     int timeInterval, int startIndex, int remainder) {
     List<TimeValue> timeValues = timeSeries.getTimeValues();
@@ -16,13 +16,26 @@
 
 package io.cdap.cdap.data2.dataset2.lib.cube;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationOption;
 import io.cdap.cdap.api.dataset.lib.cube.Cube;
+import io.cdap.cdap.api.dataset.lib.cube.CubeQuery;
+import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
+import io.cdap.cdap.api.dataset.lib.cube.TimeSeries;
 import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
 import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
 import io.cdap.cdap.data2.dataset2.lib.timeseries.EntityTable;
+import io.cdap.cdap.data2.dataset2.lib.timeseries.FactScan;
 import io.cdap.cdap.data2.dataset2.lib.timeseries.FactTable;
+import org.junit.Assert;
+import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -32,17 +45,46 @@ public class DefaultCubeTest extends AbstractCubeTest {
 
   @Override
   protected Cube getCube(final String name, int[] resolutions, Map<String, ? extends Aggregation> aggregations) {
-    FactTableSupplier supplier = (resolution, rollTime) -> {
+    return new DefaultCube(resolutions, createFactTableSupplier(name, new HashMap<>()), aggregations,
+                           ImmutableMap.<String, AggregationAlias>of());
+  }
+
+  @Test
+  public void testRangeSumQueryDataStartTime() throws Exception {
+    Aggregation agg = new DefaultAggregation(ImmutableList.of("dim1"), ImmutableList.of("dim1"));
+    Map<Integer, FactTable> factTables = new HashMap<>();
+    // the hour table only has complete data from 7200
+    DefaultCube cube = new DefaultCube(new int[] {1, 3600}, createFactTableSupplier("testDataStartTime", factTables),
+                                       ImmutableMap.of("agg", agg), ImmutableMap.of(), 1000,
+                                       resolution -> resolution == 3600 ? 7200L : 0L);
+    for (int i = 3500; i <= 11000; i++) {
+      writeInc(cube, "metric1", i, 1, "tag1");
+    }
+
+    // Remove the hour table data before 7200 to simulate the table being created at that time
+    List<DimensionValue> dimensionValues = ImmutableList.of(new DimensionValue("dim1", "tag1"));
+    factTables.get(3600).delete(new FactScan(0, 7199, dimensionValues));
+
+    CubeQuery query = new CubeQuery(null, 3530, 10900, 1, 1,
+                                    ImmutableMap.of("metric1", AggregationFunction.SUM),
+                                    ImmutableMap.of("dim1", "tag1"), Collections.emptyList(),
+                                    AggregationOption.SUM, null);
+    List<TimeSeries> result = new ArrayList<>(cube.query(query));
+    Assert.assertEquals(1, result.size());
+    Assert.assertEquals(timeValues(10900, 7371), result.get(0).getTimeValues());
+  }
+
+  private FactTableSupplier createFactTableSupplier(String name, Map<Integer, FactTable> factTables) {
+    return (resolution, rollTime) -> {
       String entityTableName = "EntityTable-" + name;
       InMemoryTableService.create(entityTableName);
       String dataTableName = "DataTable-" + name + "-" + resolution;
       InMemoryTableService.create(dataTableName);
-      return new FactTable(new InMemoryMetricsTable(dataTableName),
-                           new EntityTable(new InMemoryMetricsTable(entityTableName)),
-                           resolution, rollTime);
-
+      FactTable factTable = new FactTable(new InMemoryMetricsTable(dataTableName),
+                                          new EntityTable(new InMemoryMetricsTable(entityTableName)),
+                                          resolution, rollTime);
+      factTables.put(resolution, factTable);
+      return factTable;
     };
-
-    return new DefaultCube(resolutions, supplier, aggregations, ImmutableMap.<String, AggregationAlias>of());
   }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.cube;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationOption;
+import io.cdap.cdap.api.dataset.lib.cube.CubeQuery;
+import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
+import io.cdap.cdap.api.dataset.lib.cube.Interpolators;
+import io.cdap.cdap.api.dataset.lib.cube.TimeSeries;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.data2.dataset2.lib.timeseries.FactScanResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit test for {@link TimeSeriesAggregator}.
+ */
+public class TimeSeriesAggregatorTest {
+
+  @Test
+  public void testAggregate() {
+    CubeQuery query = createQuery(AggregationFunction.SUM, 1000, AggregationOption.FALSE);
+    TimeSeriesAggregator aggregator = new TimeSeriesAggregator(query);
+
+    // Add data points in reverse time order from two series that are grouped into the same result series,
+    // with enough timestamps to grow the hash table
+    for (int series = 0; series < 2; series++) {
+      List<TimeValue> timeValues = new ArrayList<>();
+      for (int i = 99; i >= 0; i--) {
+        timeValues.add(new TimeValue(i, i));
+      }
+      Assert.assertTrue(aggregator.add(createResult("metric", "value1", "instance" + series, timeValues)));
+    }
+    // Null group by value is skipped
+    Assert.assertFalse(aggregator.add(createResult("metric", null, "instance",
+                                                   ImmutableList.of(new TimeValue(0, 1)))));
+    Assert.assertEquals(1, aggregator.size());
+
+    List<TimeSeries> result = aggregator.getTimeSeries();
+    Assert.assertEquals(1, result.size());
+    Assert.assertEquals("metric", result.get(0).getMeasureName());
+    Assert.assertEquals(ImmutableMap.of("dim1", "value1"), result.get(0).getDimensionValues());
+
+    List<TimeValue> expected = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      expected.add(new TimeValue(i, 2 * i));
+    }
+    Assert.assertEquals(expected, result.get(0).getTimeValues());
+  }
+
+  @Test
+  public void testAggregationFunctions() {
+    List<TimeValue> first = ImmutableList.of(new TimeValue(0, 5), new TimeValue(1, 1));
+    List<TimeValue> second = ImmutableList.of(new TimeValue(0, 3), new TimeValue(1, 7));
+
+    Map<AggregationFunction, List<TimeValue>> expected = ImmutableMap.of(
+      AggregationFunction.SUM, ImmutableList.of(new TimeValue(0, 8), new TimeValue(1, 8)),
+      AggregationFunction.MAX, ImmutableList.of(new TimeValue(0, 5), new TimeValue(1, 7)),
+      AggregationFunction.MIN, ImmutableList.of(new TimeValue(0, 3), new TimeValue(1, 1)),
+      AggregationFunction.LATEST, ImmutableList.of(new TimeValue(0, 3), new TimeValue(1, 7)));
+
+    for (Map.Entry<AggregationFunction, List<TimeValue>> entry : expected.entrySet()) {
+      TimeSeriesAggregator aggregator = new TimeSeriesAggregator(createQuery(entry.getKey(), 10,
+                                                                             AggregationOption.FALSE));
+      aggregator.add(createResult("metric", "value1", "instance0", first));
+      aggregator.add(createResult("metric", "value1", "instance1", second));
+      Assert.assertEquals(entry.getValue(), aggregator.getTimeSeries().get(0).getTimeValues());
+    }
+  }
+
+  @Test
+  public void testPartitionAndLimit() {
+    List<TimeValue> timeValues = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      timeValues.add(new TimeValue(i, i));
+    }
+
+    // 10 data points into 3 partitions, ignoring the first data point
+    TimeSeriesAggregator aggregator = new TimeSeriesAggregator(createQuery(AggregationFunction.SUM, 3,
+                                                                           AggregationOption.SUM));
+    aggregator.add(createResult("metric", "value1", "instance0", timeValues));
+    Assert.assertEquals(ImmutableList.of(new TimeValue(3, 6), new TimeValue(6, 15), new TimeValue(9, 24)),
+                        aggregator.getTimeSeries().get(0).getTimeValues());
+
+    aggregator = new TimeSeriesAggregator(createQuery(AggregationFunction.SUM, 3, AggregationOption.LATEST));
+    aggregator.add(createResult("metric", "value1", "instance0", timeValues));
+    Assert.assertEquals(ImmutableList.of(new TimeValue(3, 3), new TimeValue(6, 6), new TimeValue(9, 9)),
+                        aggregator.getTimeSeries().get(0).getTimeValues());
+
+    // Without partitioning, the first limit number of data points are returned
+    aggregator = new TimeSeriesAggregator(createQuery(AggregationFunction.SUM, 3, AggregationOption.FALSE));
+    aggregator.add(createResult("metric", "value1", "instance0", timeValues));
+    Assert.assertEquals(ImmutableList.of(new TimeValue(0, 0), new TimeValue(1, 1), new TimeValue(2, 2)),
+                        aggregator.getTimeSeries().get(0).getTimeValues());
+  }
+
+  @Test
+  public void testInterpolation() {
+    CubeQuery query = new CubeQuery(null, 0, 100, 1, 100, ImmutableMap.of("metric", AggregationFunction.SUM),
+                                    Collections.emptyMap(), ImmutableList.of("dim1"), AggregationOption.FALSE,
+                                    new Interpolators.Step());
+    TimeSeriesAggregator aggregator = new TimeSeriesAggregator(query);
+    aggregator.add(createResult("metric", "value1", "instance0",
+                                ImmutableList.of(new TimeValue(1, 5), new TimeValue(4, 3))));
+    Assert.assertEquals(ImmutableList.of(new TimeValue(1, 5), new TimeValue(2, 5),
+                                         new TimeValue(3, 5), new TimeValue(4, 3)),
+                        aggregator.getTimeSeries().get(0).getTimeValues());
+  }
+
+  private CubeQuery createQuery(AggregationFunction function, int limit, AggregationOption option) {
+    return new CubeQuery(null, 0, 100, 1, limit, ImmutableMap.of("metric", function),
+                         Collections.emptyMap(), ImmutableList.of("dim1"), option, null);
+  }
+
+  private FactScanResult createResult(String measureName, String dim1, String dim2, List<TimeValue> timeValues) {
+    return new FactScanResult(measureName, ImmutableList.of(new DimensionValue("dim1", dim1),
+                                                            new DimensionValue("dim2", dim2)), timeValues);
+  }
+}
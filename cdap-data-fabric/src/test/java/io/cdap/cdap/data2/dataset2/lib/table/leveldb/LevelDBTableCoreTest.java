@@ -0,0 +1,174 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.table.leveldb;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for concurrent read-modify-write operations of {@link LevelDBTableCore}.
+ */
+public class LevelDBTableCoreTest {
+
+  @ClassRule
+  public static TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private static final byte[] COLUMN = Bytes.toBytes("c");
+  private static final int THREADS = 8;
+  private static final int ROUNDS = 200;
+
+  private static LevelDBTableService service;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, tmpFolder.newFolder().getAbsolutePath());
+    service = new LevelDBTableService();
+    service.setConfiguration(cConf);
+  }
+
+  @AfterClass
+  public static void finish() {
+    service.close();
+  }
+
+  @Test
+  public void testConcurrentIncrement() throws Exception {
+    String tableName = "testConcurrentIncrement";
+    service.ensureTableExists(tableName);
+
+    // Each thread uses its own LevelDBTableCore instance to increment the same set of rows
+    runConcurrently(threadId -> {
+      LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+      for (int i = 0; i < ROUNDS; i++) {
+        core.increment(getRowKey(i % 10), Collections.singletonMap(COLUMN, 1L));
+      }
+    });
+
+    LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals((long) THREADS * ROUNDS / 10,
+                          Bytes.toLong(core.getRow(getRowKey(i), new byte[][] { COLUMN }, null, null, -1, null)
+                                         .get(COLUMN)));
+    }
+  }
+
+  @Test
+  public void testConcurrentBatchIncrement() throws Exception {
+    String tableName = "testConcurrentBatchIncrement";
+    service.ensureTableExists(tableName);
+
+    // Each thread increments overlapping ranges of rows in a batch, which requires locking multiple rows
+    runConcurrently(threadId -> {
+      LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+      for (int i = 0; i < ROUNDS; i++) {
+        NavigableMap<byte[], NavigableMap<byte[], Long>> updates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+        for (int row = threadId; row < threadId + 10; row++) {
+          NavigableMap<byte[], Long> increments = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+          increments.put(COLUMN, 1L);
+          updates.put(getRowKey(row), increments);
+        }
+        core.increment(updates);
+      }
+    });
+
+    LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+    for (int row = 0; row < THREADS + 9; row++) {
+      // Number of threads that have the row in its range
+      long expected = Math.min(row, THREADS - 1) - Math.max(0, row - 9) + 1;
+      Assert.assertEquals(expected * ROUNDS,
+                          Bytes.toLong(core.getRow(getRowKey(row), new byte[][] { COLUMN }, null, null, -1, null)
+                                         .get(COLUMN)));
+    }
+  }
+
+  @Test
+  public void testConcurrentSwap() throws Exception {
+    String tableName = "testConcurrentSwap";
+    service.ensureTableExists(tableName);
+
+    byte[] row = getRowKey(0);
+    new LevelDBTableCore(tableName, service).put(row, COLUMN, Bytes.toBytes(0L), Long.MAX_VALUE);
+
+    // Each thread keeps swapping until it succeeded ROUNDS times
+    runConcurrently(threadId -> {
+      LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+      int succeeded = 0;
+      while (succeeded < ROUNDS) {
+        byte[] value = core.getRow(row, new byte[][] { COLUMN }, null, null, -1, null).get(COLUMN);
+        if (core.swap(row, COLUMN, value, Bytes.toBytes(Bytes.toLong(value) + 1))) {
+          succeeded++;
+        }
+      }
+    });
+
+    LevelDBTableCore core = new LevelDBTableCore(tableName, service);
+    Assert.assertEquals((long) THREADS * ROUNDS,
+                        Bytes.toLong(core.getRow(row, new byte[][] { COLUMN }, null, null, -1, null).get(COLUMN)));
+  }
+
+  private void runConcurrently(ThreadTask task) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      CyclicBarrier barrier = new CyclicBarrier(THREADS);
+      List<Future<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        int threadId = i;
+        futures.add(executor.submit((Callable<Void>) () -> {
+          barrier.await();
+          task.run(threadId);
+          return null;
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get(60, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static byte[] getRowKey(int row) {
+    return Bytes.toBytes(String.format("row%04d", row));
+  }
+
+  /**
+   * A task to run in one of the concurrent threads.
+   */
+  private interface ThreadTask {
+    void run(int threadId) throws Exception;
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.data2.dataset2.lib.timeseries;
+
+import com.google.common.collect.ImmutableList;
+import io.cdap.cdap.api.dataset.lib.cube.DimensionValue;
+import io.cdap.cdap.api.dataset.lib.cube.MeasureType;
+import io.cdap.cdap.api.dataset.lib.cube.Measurement;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryMetricsTable;
+import io.cdap.cdap.data2.dataset2.lib.table.inmemory.InMemoryTableService;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit test for {@link FactTableWriter}.
+ */
+public class FactTableWriterTest {
+
+  private static final int RESOLUTION = 10;
+
+  @Test
+  public void testGroupCommit() throws Exception {
+    FactTable table = createFactTable("testGroupCommit");
+    ManualExecutor executor = new ManualExecutor();
+    FactTableWriter writer = new FactTableWriter(table, executor, 1000);
+
+    long ts = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) / RESOLUTION * RESOLUTION;
+    List<DimensionValue> dims = ImmutableList.of(new DimensionValue("dim1", "value1"));
+
+    // The first add triggers a flush. All adds before the flush runs are aggregated into the same buffer.
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    for (int i = 1; i <= 5; i++) {
+      futures.add(writer.add(ImmutableList.of(
+        new Fact(ts, dims, new Measurement("counter", MeasureType.COUNTER, i)),
+        new Fact(ts + RESOLUTION, dims, new Measurement("counter", MeasureType.COUNTER, 2 * i)),
+        new Fact(ts, dims, new Measurement("gauge", MeasureType.GAUGE, 10 * i)))));
+    }
+    Assert.assertEquals(1, executor.size());
+    Assert.assertFalse(writer.flush().isDone());
+
+    executor.runAll();
+    for (CompletableFuture<Void> future : futures) {
+      Assert.assertTrue(future.isDone());
+      future.get();
+    }
+    Assert.assertTrue(writer.flush().isDone());
+
+    Map<String, List<TimeValue>> result = scan(table, ts, dims);
+    Assert.assertEquals(ImmutableList.of(new TimeValue(ts, 15), new TimeValue(ts + RESOLUTION, 30)),
+                        result.get("counter"));
+    // Gauge keeps the last value
+    Assert.assertEquals(ImmutableList.of(new TimeValue(ts, 50)), result.get("gauge"));
+
+    // Adding after the flush increments on top of the written values
+    CompletableFuture<Void> future = writer.add(ImmutableList.of(
+      new Fact(ts, dims, new Measurement("counter", MeasureType.COUNTER, 5))));
+    executor.runAll();
+    future.get();
+    Assert.assertEquals(ImmutableList.of(new TimeValue(ts, 20), new TimeValue(ts + RESOLUTION, 30)),
+                        scan(table, ts, dims).get("counter"));
+
+    writer.close();
+  }
+
+  @Test
+  public void testBackpressure() throws Exception {
+    FactTable table = createFactTable("testBackpressure");
+    ManualExecutor executor = new ManualExecutor();
+    FactTableWriter writer = new FactTableWriter(table, executor, 1);
+
+    long ts = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) / RESOLUTION * RESOLUTION;
+    List<DimensionValue> dims = ImmutableList.of(new DimensionValue("dim1", "value1"));
+    List<Fact> facts = ImmutableList.of(new Fact(ts, dims, new Measurement("counter", MeasureType.COUNTER, 1)));
+
+    CompletableFuture<Void> firstFuture = writer.add(facts);
+
+    // The buffer is full and the flush is pending, hence the next add should block
+    AtomicReference<CompletableFuture<Void>> secondFuture = new AtomicReference<>();
+    Thread thread = new Thread(() -> {
+      try {
+        secondFuture.set(writer.add(facts));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    thread.start();
+    thread.join(500);
+    Assert.assertTrue(thread.isAlive());
+    Assert.assertNull(secondFuture.get());
+
+    // Running the flush should unblock the add
+    executor.runAll();
+    thread.join();
+    firstFuture.get();
+
+    executor.runAll();
+    secondFuture.get().get();
+    Assert.assertEquals(ImmutableList.of(new TimeValue(ts, 2)), scan(table, ts, dims).get("counter"));
+
+    writer.close();
+  }
+
+  @Test
+  public void testIncrementThenPut() throws Exception {
+    FactTable table = createFactTable("testIncrementThenPut");
+    FactTable directTable = createFactTable("testIncrementThenPutDirect");
+    ManualExecutor executor = new ManualExecutor();
+    FactTableWriter writer = new FactTableWriter(table, executor, 1000);
+
+    long ts = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) / RESOLUTION * RESOLUTION;
+    List<DimensionValue> dims = ImmutableList.of(new DimensionValue("dim1", "value1"));
+
+    // A put buffered after an increment on the same cell shouldn't drop the increment
+    List<Fact> facts = ImmutableList.of(
+      new Fact(ts, dims, new Measurement("metric", MeasureType.COUNTER, 3)),
+      new Fact(ts, dims, new Measurement("metric", MeasureType.GAUGE, 10)));
+    CompletableFuture<Void> future = writer.add(facts);
+    executor.runAll();
+    future.get();
+
+    // The buffered write should give the same result as writing to the table directly
+    directTable.add(facts);
+    Assert.assertEquals(ImmutableList.of(new TimeValue(ts, 13)), scan(directTable, ts, dims).get("metric"));
+    Assert.assertEquals(ImmutableList.of(new TimeValue(ts, 13)), scan(table, ts, dims).get("metric"));
+
+    writer.close();
+  }
+
+  private FactTable createFactTable(String name) {
+    InMemoryTableService.create(name + "Data");
+    InMemoryTableService.create(name + "Entity");
+    return new FactTable(new InMemoryMetricsTable(name + "Data"),
+                         new EntityTable(new InMemoryMetricsTable(name + "Entity")), RESOLUTION, 100);
+  }
+
+  private Map<String, List<TimeValue>> scan(FactTable table, long ts, List<DimensionValue> dims) {
+    Map<String, List<TimeValue>> result = new HashMap<>();
+    FactScanner scanner = table.scan(new FactScan(ts - RESOLUTION, ts + 2 * RESOLUTION, dims));
+    try {
+      while (scanner.hasNext()) {
+        FactScanResult scanResult = scanner.next();
+        List<TimeValue> timeValues = result.computeIfAbsent(scanResult.getMeasureName(), k -> new ArrayList<>());
+        scanResult.iterator().forEachRemaining(timeValues::add);
+      }
+    } finally {
+      scanner.close();
+    }
+    return result;
+  }
+
+  /**
+   * An {@link Executor} that only runs tasks when requested.
+   */
+  private static final class ManualExecutor implements Executor {
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void execute(Runnable command) {
+      tasks.add(command);
+    }
+
+    int size() {
+      return tasks.size();
+    }
+
+    void runAll() {
+      Runnable task = tasks.poll();
+      while (task != null) {
+        task.run();
+        task = tasks.poll();
+      }
+    }
+  }
+}
@@ -1000,6 +1000,50 @@ public class MetadataDatasetTest {
     Assert.assertEquals(expected, new HashSet<>(results.getResults()));
   }
 
+  @Test
+  public void testScanScoresInEntityOrder() throws Exception {
+    NamespaceId ns = new NamespaceId("ns1");
+    MetadataEntity app1 = ns.app("a1").toMetadataEntity();
+    MetadataEntity app2 = ns.app("a2").toMetadataEntity();
+    MetadataEntity dataset1 = ns.dataset("d1").toMetadataEntity();
+    txnl.execute(() -> {
+      dataset.addProperty(app1, "k1", "v1");
+      dataset.addProperty(app1, "k2", "v2");
+      dataset.addTags(app1, Collections.singleton("v1"));
+      dataset.addProperty(app2, "k1", "v2");
+      dataset.addProperty(dataset1, "k1", "v1 v2");
+      dataset.addProperty(dataset1, "k2", "v3");
+    });
+
+    // the scanned scores are the same as the scores of all the matches, and the entities are returned once
+    SearchRequest request = new SearchRequest(ns, "v1 v2", ALL_TYPES, SortInfo.DEFAULT,
+                                              0, 10, 0, null, false, EnumSet.allOf(EntityScope.class));
+    Map<MetadataEntity, Integer> expected = txnl.execute(() -> dataset.scoreByDefaultIndex(request));
+    Assert.assertEquals(ImmutableSet.of(app1, app2, dataset1), expected.keySet());
+    Map<MetadataEntity, Integer> scanned = new HashMap<>();
+    txnl.execute(() -> {
+      try (MetadataDataset.EntityScoreScanner scanner = dataset.scanScoresByDefaultIndex(request)) {
+        Assert.assertNotNull(scanner);
+        while (scanner.next()) {
+          Assert.assertNull(scanned.put(scanner.getEntity(), scanner.getScore()));
+        }
+        Assert.assertTrue(scanner.isOrdered());
+      }
+    });
+    Assert.assertEquals(expected, scanned);
+
+    // prefix terms are not in entity order
+    SearchRequest prefixRequest = new SearchRequest(ns, "v*", ALL_TYPES, SortInfo.DEFAULT,
+                                                    0, 10, 0, null, false, EnumSet.allOf(EntityScope.class));
+    txnl.execute(() -> Assert.assertNull(dataset.scanScoresByDefaultIndex(prefixRequest)));
+
+    txnl.execute(() -> {
+      dataset.removeMetadata(app1);
+      dataset.removeMetadata(app2);
+      dataset.removeMetadata(dataset1);
+    });
+  }
+
   @Test
   public void testCrossNamespaceSearchPagination() throws Exception {
     ApplicationId ns1app1 = new NamespaceId("ns1").app("a1");
@@ -24,6 +24,7 @@ import io.cdap.cdap.proto.id.DatasetId;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.ProgramId;
 import io.cdap.cdap.proto.id.ProgramRunId;
+import io.cdap.cdap.spi.data.table.field.Range;
 import io.cdap.cdap.spi.data.transaction.TransactionRunner;
 import io.cdap.cdap.spi.data.transaction.TransactionRunners;
 import org.apache.twill.api.RunId;
@@ -31,7 +32,10 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tests storage and retrieval of Dataset accesses by Programs in {@link LineageTable}.
@@ -136,6 +140,87 @@ public abstract class LineageTableTest {
     });
   }
 
+  @Test
+  public void testLineageGraph() throws IOException {
+    final long hour = TimeUnit.HOURS.toMillis(1);
+    final RunId runId1 = RunIds.generate(10000);
+    final RunId runId2 = RunIds.generate(3 * hour + 10000);
+
+    final DatasetId datasetInstance1 = NamespaceId.DEFAULT.dataset("dataset1");
+    final DatasetId datasetInstance2 = NamespaceId.DEFAULT.dataset("dataset2");
+
+    final ProgramId program1 = NamespaceId.DEFAULT.app("app1").spark("spark1");
+    final ProgramId program2 = NamespaceId.DEFAULT.app("app2").worker("worker2");
+
+    TransactionRunners.run(transactionRunner, context -> {
+      LineageTable lineageTable = LineageTable.create(context);
+      lineageTable.addAccess(program1.run(runId1.getId()), datasetInstance1, AccessType.READ, 20000);
+      lineageTable.addAccess(program1.run(runId1.getId()), datasetInstance1, AccessType.READ, 30000);
+      lineageTable.addAccess(program2.run(runId2.getId()), datasetInstance1, AccessType.READ, 3 * hour + 20000);
+      lineageTable.addAccess(program2.run(runId2.getId()), datasetInstance2, AccessType.WRITE, 3 * hour + 30000);
+    });
+
+    TransactionRunners.run(transactionRunner, context -> {
+      LineageTable lineageTable = LineageTable.create(context);
+      Assert.assertEquals(ImmutableSet.of(program1, program2),
+                          lineageTable.getAccessingPrograms(datasetInstance1, 0, 4 * hour));
+      Assert.assertEquals(ImmutableSet.of(datasetInstance1, datasetInstance2),
+                          lineageTable.getAccessedDatasets(program2, 0, 4 * hour));
+
+      // Only the runs that started in the time buckets of the period are included
+      Assert.assertEquals(ImmutableSet.of(program1), lineageTable.getAccessingPrograms(datasetInstance1, 0, 100000));
+      Assert.assertEquals(Collections.emptySet(), lineageTable.getAccessedDatasets(program2, 0, 100000));
+      Assert.assertEquals(ImmutableSet.of(program2),
+                          lineageTable.getAccessingPrograms(datasetInstance2, 3 * hour, 4 * hour));
+      Assert.assertFalse(lineageTable.isLineageGraphBuilt());
+    });
+
+    // Build the graph from the accesses one at a time, the edges stay the same
+    Assert.assertEquals(4, LineageTable.LINEAGE_GRAPH_BACKFILL.run(transactionRunner, 1));
+    Assert.assertEquals(0, LineageTable.LINEAGE_GRAPH_BACKFILL.run(transactionRunner, 1));
+
+    TransactionRunners.run(transactionRunner, context -> {
+      LineageTable lineageTable = LineageTable.create(context);
+      Assert.assertTrue(lineageTable.isLineageGraphBuilt());
+      Assert.assertEquals(ImmutableSet.of(program1, program2),
+                          lineageTable.getAccessingPrograms(datasetInstance1, 0, 4 * hour));
+      Assert.assertEquals(ImmutableSet.of(datasetInstance1, datasetInstance2),
+                          lineageTable.getAccessedDatasets(program2, 0, 4 * hour));
+    });
+  }
+
+  @Test
+  public void testLineageGraphAccessCount() throws IOException {
+    final long hour = TimeUnit.HOURS.toMillis(1);
+    final RunId runId1 = RunIds.generate(10000);
+    final RunId runId2 = RunIds.generate(20000);
+
+    final DatasetId datasetInstance = NamespaceId.DEFAULT.dataset("dataset1");
+    final ProgramId program = NamespaceId.DEFAULT.app("app1").spark("spark1");
+
+    TransactionRunners.run(transactionRunner, context -> {
+      LineageTable lineageTable = LineageTable.create(context);
+      lineageTable.addAccess(program.run(runId1.getId()), datasetInstance, AccessType.READ, 30000);
+      lineageTable.addAccess(program.run(runId1.getId()), datasetInstance, AccessType.READ, 40000);
+      lineageTable.addAccess(program.run(runId2.getId()), datasetInstance, AccessType.WRITE, 50000);
+      // repeated accesses of a run are only counted once
+      Assert.assertEquals(2, lineageTable.getGraphAccessCount(datasetInstance, program, 0));
+      Assert.assertEquals(2, lineageTable.getGraphAccessCount(program, datasetInstance, 0));
+      Assert.assertEquals(0, lineageTable.getGraphAccessCount(program, datasetInstance, hour));
+
+      // building the graph again, as after a restart, does not count the accesses again
+      Assert.assertNull(lineageTable.buildLineageGraph(Range.all(), 100));
+      Assert.assertNull(lineageTable.buildLineageGraph(Range.all(), 100));
+      Assert.assertEquals(2, lineageTable.getGraphAccessCount(datasetInstance, program, 0));
+      Assert.assertEquals(2, lineageTable.getGraphAccessCount(program, datasetInstance, 0));
+
+      // the access of a new run is added to the built edges
+      lineageTable.addAccess(program.run(RunIds.generate(30000).getId()), datasetInstance, AccessType.READ, 60000);
+      Assert.assertEquals(3, lineageTable.getGraphAccessCount(datasetInstance, program, 0));
+      Assert.assertEquals(3, lineageTable.getGraphAccessCount(program, datasetInstance, 0));
+    });
+  }
+
   @SafeVarargs
   private static <T> Set<T> toSet(T... elements) {
     return ImmutableSet.copyOf(elements);
@@ -34,12 +34,14 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Test for storage and retrieval of the field lineage operations.
@@ -225,6 +227,73 @@ public abstract class FieldLineageTableTest {
     });
   }
 
+  @Test
+  public void testDailySummaries() throws IOException {
+    long day = TimeUnit.DAYS.toMillis(1);
+    ProgramId program = new ProgramId("default", "app1", ProgramType.WORKFLOW, "workflow1");
+    final ProgramRunId programRun1 = program.run(RunIds.generate(10000).getId());
+    final ProgramRunId programRun2 = program.run(RunIds.generate(day + 10000).getId());
+    final ProgramRunId programRun3 = program.run(RunIds.generate(2 * day + 10000).getId());
+
+    final FieldLineageInfo info1 = new FieldLineageInfo(generateOperations(false));
+    final FieldLineageInfo info2 = new FieldLineageInfo(generateOperations(true));
+
+    TransactionRunners.run(transactionRunner, context -> {
+      FieldLineageTable fieldLineageTable = FieldLineageTable.create(context);
+      fieldLineageTable.addFieldLineageInfo(programRun1, info1);
+      fieldLineageTable.addFieldLineageInfo(programRun2, info2);
+      fieldLineageTable.addFieldLineageInfo(programRun3, info1);
+    });
+
+    EndPoint source = EndPoint.of("ns1", "endpoint1");
+    EndPoint destination = EndPoint.of("myns", "another_file");
+    // Until the daily summaries are built, the lineage of each program run is read
+    TransactionRunners.run(transactionRunner, context -> {
+      FieldLineageTable fieldLineageTable = FieldLineageTable.create(context);
+      Assert.assertFalse(fieldLineageTable.isDailySummaryBuilt());
+      assertSummary(fieldLineageTable, source, 0, Long.MAX_VALUE);
+      assertSummary(fieldLineageTable, destination, 0, Long.MAX_VALUE);
+    });
+
+    // The summaries of the lineage added so far are already written, building them again doesn't change them
+    Assert.assertEquals(2, FieldLineageTable.DAILY_SUMMARY_BACKFILL.run(transactionRunner, 4));
+    Assert.assertEquals(0, FieldLineageTable.DAILY_SUMMARY_BACKFILL.run(transactionRunner, 4));
+
+    TransactionRunners.run(transactionRunner, context -> {
+      FieldLineageTable fieldLineageTable = FieldLineageTable.create(context);
+      Assert.assertTrue(fieldLineageTable.isDailySummaryBuilt());
+      EndPointLineageSummary summary = fieldLineageTable.getSummary(destination, day, 2 * day);
+      Assert.assertEquals(new HashSet<>(Arrays.asList("offset", "name", "file_name")), summary.getFields());
+      // file_name is only written by the second run, which also computes the fields written from offset
+      Assert.assertEquals(new HashSet<>(Arrays.asList(new EndPointField(source, "offset"),
+                                                      new EndPointField(source, "file_name"))),
+                          summary.getIncomingSummary("file_name"));
+      Assert.assertEquals(Collections.emptySet(), fieldLineageTable.getSummary(destination, 0, 10000).getFields());
+
+      // Ranges within a day, with partial days at either end and spanning all days should all be the same as
+      // reading the lineage of each program run
+      long[][] ranges = {{0, 10001}, {10000, 3 * day}, {0, day + 10001}, {day + 10001, 3 * day}, {0, Long.MAX_VALUE}};
+      for (long[] range : ranges) {
+        assertSummary(fieldLineageTable, source, range[0], range[1]);
+        assertSummary(fieldLineageTable, destination, range[0], range[1]);
+      }
+    });
+  }
+
+  private void assertSummary(FieldLineageTable fieldLineageTable, EndPoint endPoint,
+                             long start, long end) throws IOException {
+    EndPointLineageSummary summary = fieldLineageTable.getSummary(endPoint, start, end);
+    Set<String> fields = fieldLineageTable.getFields(endPoint, start, end);
+    Assert.assertEquals(fields, summary.getFields());
+    for (String field : fields) {
+      EndPointField endPointField = new EndPointField(endPoint, field);
+      Assert.assertEquals(fieldLineageTable.getIncomingSummary(endPointField, start, end),
+                          summary.getIncomingSummary(field));
+      Assert.assertEquals(fieldLineageTable.getOutgoingSummary(endPointField, start, end),
+                          summary.getOutgoingSummary(field));
+    }
+  }
+
   private List<Operation> generateOperations(boolean addAditionalField) {
     // read: file -> (offset, body)
     // parse: (body) -> (first_name, last_name)
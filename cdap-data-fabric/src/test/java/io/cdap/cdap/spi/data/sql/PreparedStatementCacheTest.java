@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.spi.data.sql;
+
+import com.opentable.db.postgres.embedded.EmbeddedPostgres;
+import org.apache.commons.dbcp2.DataSourceConnectionFactory;
+import org.apache.commons.dbcp2.PoolableConnection;
+import org.apache.commons.dbcp2.PoolableConnectionFactory;
+import org.apache.commons.dbcp2.PoolingDataSource;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Unit test for {@link PreparedStatementCache}.
+ */
+public class PreparedStatementCacheTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static EmbeddedPostgres pg;
+
+  @BeforeClass
+  public static void beforeClass() throws Exception {
+    pg = PostgresInstantiator.createAndStart(TEMP_FOLDER.newFolder());
+  }
+
+  @AfterClass
+  public static void afterClass() throws IOException {
+    if (pg != null) {
+      pg.close();
+    }
+  }
+
+  @Test
+  public void testReuse() throws Exception {
+    try (Connection connection = pg.getPostgresDatabase().getConnection()) {
+      PreparedStatementCache cache = new PreparedStatementCache(connection, 2);
+
+      PreparedStatement statement;
+      try (PreparedStatementCache.CachedStatement cached = cache.prepare("SELECT ?")) {
+        statement = cached.getStatement();
+        statement.setInt(1, 1);
+        statement.executeQuery().close();
+      }
+
+      // Same query should reuse the released statement
+      try (PreparedStatementCache.CachedStatement cached = cache.prepare("SELECT ?")) {
+        Assert.assertSame(statement, cached.getStatement());
+
+        // The statement is in use, hence the same query should get a different statement
+        try (PreparedStatementCache.CachedStatement nested = cache.prepare("SELECT ?")) {
+          Assert.assertNotSame(statement, nested.getStatement());
+        }
+      }
+      Assert.assertEquals(1, cache.getHits());
+      Assert.assertEquals(2, cache.getMisses());
+
+      // Least recently used statements are closed when the cache is full
+      PreparedStatement evicted;
+      try (PreparedStatementCache.CachedStatement cached = cache.prepare("SELECT 1")) {
+        evicted = cached.getStatement();
+      }
+      cache.prepare("SELECT 2").close();
+      cache.prepare("SELECT 3").close();
+      Assert.assertTrue(evicted.isClosed());
+
+      PreparedStatement cachedStatement;
+      try (PreparedStatementCache.CachedStatement cached = cache.prepare("SELECT 3")) {
+        cachedStatement = cached.getStatement();
+      }
+      Assert.assertEquals(2, cache.getHits());
+
+      // Closing the cache closes the cached statements
+      cache.close();
+      Assert.assertTrue(cachedStatement.isClosed());
+    }
+  }
+
+  @Test
+  public void testStatementPoolExhausted() throws Exception {
+    PoolableConnectionFactory connectionFactory =
+      new PoolableConnectionFactory(new DataSourceConnectionFactory(pg.getPostgresDatabase()), null);
+    connectionFactory.setPoolStatements(true);
+    connectionFactory.setMaxOpenPreparedStatements(2);
+    try (GenericObjectPool<PoolableConnection> pool = new GenericObjectPool<>(connectionFactory)) {
+      connectionFactory.setPool(pool);
+      try (Connection connection = new PoolingDataSource<>(pool).getConnection()) {
+        PreparedStatementCache cache = new PreparedStatementCache(connection, 4);
+        cache.prepare("SELECT 1").close();
+        cache.prepare("SELECT 2").close();
+
+        // The cached statements take up the statement pool, hence they are closed to prepare a new one
+        try (PreparedStatementCache.CachedStatement cached = cache.prepare("SELECT 3")) {
+          cached.getStatement().executeQuery().close();
+
+          // Statements that are in use are not closed, hence the pool can still be exhausted
+          try (PreparedStatementCache.CachedStatement nested = cache.prepare("SELECT 4")) {
+            try {
+              cache.prepare("SELECT 5");
+              Assert.fail("Expected failure when all the pooled statements are in use");
+            } catch (SQLException e) {
+              // expected
+            }
+          }
+        }
+        Assert.assertEquals(5, cache.getMisses());
+        cache.close();
+      }
+    }
+  }
+}
@@ -31,7 +31,6 @@ import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.common.guice.ConfigModule;
 import io.cdap.cdap.common.guice.LocalLocationModule;
 import io.cdap.cdap.common.guice.NamespaceAdminTestModule;
-import io.cdap.cdap.common.metadata.Cursor;
 import io.cdap.cdap.common.metrics.NoOpMetricsCollectionService;
 import io.cdap.cdap.common.utils.ImmutablePair;
 import io.cdap.cdap.data.runtime.StorageModule;
@@ -41,6 +40,7 @@ import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.security.auth.context.AuthenticationContextModules;
 import io.cdap.cdap.security.authorization.AuthorizationEnforcementModule;
 import io.cdap.cdap.security.authorization.AuthorizationTestModule;
+import io.cdap.cdap.spi.metadata.Cursor;
 import io.cdap.cdap.spi.metadata.Metadata;
 import io.cdap.cdap.spi.metadata.MetadataMutation.Drop;
 import io.cdap.cdap.spi.metadata.MetadataMutation.Remove;
@@ -60,6 +60,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Iterator;
@@ -240,6 +241,43 @@ public class DatasetMetadataStorageTest extends MetadataStorageTest {
               MutationOptions.DEFAULT);
   }
 
+  @Test
+  public void testDefaultSortCursor() throws IOException {
+    MetadataStorage mds = getMetadataStorage();
+
+    NamespaceId nsId = new NamespaceId("ns1");
+    List<MetadataEntity> entities = ImmutableList.of(
+      nsId.app("a1").toMetadataEntity(), nsId.app("a2").toMetadataEntity(), nsId.app("a3").toMetadataEntity(),
+      nsId.app("a4").toMetadataEntity(), nsId.app("a5").toMetadataEntity());
+    // give the entities different scores for the query "v1 v2"
+    mds.batch(ImmutableList.of(new Update(entities.get(0), new Metadata(USER, tags("v1", "v2"))),
+                               new Update(entities.get(1), new Metadata(USER, tags("v1"))),
+                               new Update(entities.get(2), new Metadata(USER, tags("v1", "v2"))),
+                               new Update(entities.get(3), new Metadata(USER, tags("v2"))),
+                               new Update(entities.get(4), new Metadata(USER, tags("v1")))),
+              MutationOptions.DEFAULT);
+
+    // page through the results with cursors, which must return each entity once, the best scores first
+    List<MetadataEntity> found = new ArrayList<>();
+    SearchResponse response = mds.search(SearchRequest.of("v1 v2").addNamespace(nsId.getNamespace())
+                                           .setLimit(2).setCursorRequested(true).build());
+    while (true) {
+      // the total is the same for every page
+      Assert.assertEquals(5, response.getTotalResults());
+      response.getResults().forEach(record -> found.add(record.getEntity()));
+      if (response.getCursor() == null) {
+        break;
+      }
+      response = mds.search(SearchRequest.of("v1 v2").setCursor(response.getCursor()).setCursorRequested(true).build());
+    }
+    Assert.assertEquals(5, found.size());
+    Assert.assertEquals(ImmutableSet.copyOf(entities), ImmutableSet.copyOf(found));
+    Assert.assertEquals(ImmutableSet.of(entities.get(0), entities.get(2)), ImmutableSet.copyOf(found.subList(0, 2)));
+
+    // clean up
+    mds.batch(entities.stream().map(Drop::new).collect(Collectors.toList()), MutationOptions.DEFAULT);
+  }
+
   @Test
   public void testNsScopes() {
     // no namespace
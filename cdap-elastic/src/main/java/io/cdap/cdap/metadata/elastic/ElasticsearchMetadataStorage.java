@@ -18,10 +18,7 @@ package io.cdap.cdap.metadata.elastic;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
-import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import com.google.common.io.Closeables;
 import com.google.common.io.Resources;
 import com.google.gson.Gson;
@@ -31,7 +28,6 @@ import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.metadata.MetadataEntity;
 import io.cdap.cdap.api.metadata.MetadataScope;
 import io.cdap.cdap.common.conf.CConfiguration;
-import io.cdap.cdap.common.metadata.Cursor;
 import io.cdap.cdap.common.metadata.MetadataConflictException;
 import io.cdap.cdap.common.metadata.MetadataUtil;
 import io.cdap.cdap.common.service.Retries;
@@ -39,20 +35,18 @@ import io.cdap.cdap.common.service.RetryStrategies;
 import io.cdap.cdap.common.service.RetryStrategy;
 import io.cdap.cdap.common.utils.Checksums;
 import io.cdap.cdap.common.utils.ProjectInfo;
+import io.cdap.cdap.spi.metadata.Cursor;
 import io.cdap.cdap.spi.metadata.Metadata;
 import io.cdap.cdap.spi.metadata.MetadataChange;
 import io.cdap.cdap.spi.metadata.MetadataConstants;
-import io.cdap.cdap.spi.metadata.MetadataDirective;
-import io.cdap.cdap.spi.metadata.MetadataKind;
 import io.cdap.cdap.spi.metadata.MetadataMutation;
 import io.cdap.cdap.spi.metadata.MetadataRecord;
 import io.cdap.cdap.spi.metadata.MetadataStorage;
+import io.cdap.cdap.spi.metadata.MetadataStorageHelper;
 import io.cdap.cdap.spi.metadata.MutationOptions;
 import io.cdap.cdap.spi.metadata.Read;
 import io.cdap.cdap.spi.metadata.ScopedName;
-import io.cdap.cdap.spi.metadata.ScopedNameOfKind;
 import io.cdap.cdap.spi.metadata.SearchRequest;
-import io.cdap.cdap.spi.metadata.Sorting;
 import org.apache.http.HttpHost;
 import org.apache.lucene.search.join.ScoreMode;
 import org.elasticsearch.ElasticsearchStatusException;
@@ -114,9 +108,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import javax.annotation.Nullable;
 
 /**
@@ -140,13 +132,8 @@ public class ElasticsearchMetadataStorage implements MetadataStorage {
   private static final Gson GSON = new GsonBuilder()
     .registerTypeAdapter(ScopedName.class, new ScopedNameTypeAdapter()).create();
 
-  @VisibleForTesting
-  static final boolean KEEP = true;
-  @VisibleForTesting
-  static final boolean DISCARD = false;
-
-  // used to tokenize the query string, same as the MetadataDataset
-  private static final Pattern SPACE_SEPARATOR_PATTERN = Pattern.compile("\\s+");
+  private static final boolean KEEP = true;
+  private static final boolean DISCARD = false;
 
   // Various fields in a metadata document (indexed in elasticsearch). Beware that these directly
   // correspond to field name in the index settings (index.mapping.json). Any change here must be
@@ -447,7 +434,7 @@ public class ElasticsearchMetadataStorage implements MetadataStorage {
     throws IOException {
     MultiGetRequest multiGet = new MultiGetRequest();
     for (Map.Entry<MetadataEntity, MetadataMutation> entry : mutations.entrySet()) {
-      multiGet.add(indexName, DOC_TYPE, toDocumentId(entry.getKey()));
+      multiGet.add(indexName, DOC_TYPE, MetadataUtil.toDocumentId(entry.getKey()));
     }
     RestHighLevelClient client = getClient();
     MultiGetResponse multiGetResponse = client.mget(multiGet, RequestOptions.DEFAULT);
@@ -476,7 +463,8 @@ public class ElasticsearchMetadataStorage implements MetadataStorage {
   @Override
   public Metadata read(Read read) throws IOException {
     Metadata metadata = readFromIndex(read.getEntity()).getMetadata();
-    return filterMetadata(metadata, KEEP, read.getKinds(), read.getScopes(), read.getSelection());
+    return MetadataStorageHelper.filterMetadata(metadata, KEEP, read.getKinds(), read.getScopes(),
+                                                read.getSelection());
   }
 
   @Override
@@ -529,55 +517,7 @@ public class ElasticsearchMetadataStorage implements MetadataStorage {
     if (!before.existing()) {
       return update(create.getEntity(), before, create.getMetadata());
     }
-    Metadata meta = create.getMetadata();
-    Map<ScopedNameOfKind, MetadataDirective> directives = create.getDirectives();
-    // determine the scopes that this mutation applies to (scopes that do not occur in the metadata are no changed)
-    Set<MetadataScope> scopes = Stream.concat(meta.getTags().stream(), meta.getProperties().keySet().stream())
-      .map(ScopedName::getScope).collect(Collectors.toSet());
-    // compute what previously existing tags and properties have to be preserved (all others are replaced)
-    Set<ScopedName> existingTagsToKeep = new HashSet<>();
-    Map<ScopedName, String> existingPropertiesToKeep = new HashMap<>();
-    // all tags and properties that are in a scope not affected by this mutation
-    Sets.difference(MetadataScope.ALL, scopes).forEach(
-      scope -> {
-        before.getMetadata().getTags().stream()
-          .filter(tag -> tag.getScope().equals(scope))
-          .forEach(existingTagsToKeep::add);
-        before.getMetadata().getProperties().entrySet().stream()
-          .filter(entry -> entry.getKey().getScope().equals(scope))
-          .forEach(entry -> existingPropertiesToKeep.put(entry.getKey(), entry.getValue()));
-      });
-    // tags and properties in affected scopes that must be kept or preserved
-    directives.entrySet().stream()
-      .filter(entry -> scopes.contains(entry.getKey().getScope()))
-      .forEach(entry -> {
-        ScopedNameOfKind key = entry.getKey();
-        if (key.getKind() == MetadataKind.TAG
-          && (entry.getValue() == MetadataDirective.PRESERVE || entry.getValue() == MetadataDirective.KEEP)) {
-          ScopedName tag = new ScopedName(key.getScope(), key.getName());
-          if (!meta.getTags().contains(tag) && before.getMetadata().getTags().contains(tag)) {
-            existingTagsToKeep.add(tag);
-          }
-        } else if (key.getKind() == MetadataKind.PROPERTY) {
-          ScopedName property = new ScopedName(key.getScope(), key.getName());
-          String existingValue = before.getMetadata().getProperties().get(property);
-          String newValue = meta.getProperties().get(property);
-          if (existingValue != null
-            && (entry.getValue() == MetadataDirective.PRESERVE && !existingValue.equals(newValue)
-            || entry.getValue() == MetadataDirective.KEEP && newValue == null)) {
-            existingPropertiesToKeep.put(property, existingValue);
-          }
-        }
-      });
-    // compute the new tags and properties
-    Set<ScopedName> newTags =
-      existingTagsToKeep.isEmpty() ? meta.getTags() : Sets.union(meta.getTags(), existingTagsToKeep);
-    Map<ScopedName, String> newProperties = meta.getProperties();
-    if (!existingPropertiesToKeep.isEmpty()) {
-      newProperties = new HashMap<>(newProperties);
-      newProperties.putAll(existingPropertiesToKeep);
-    }
-    Metadata after = new Metadata(newTags, newProperties);
+    Metadata after = MetadataStorageHelper.create(before.getMetadata(), create);
     return new RequestAndChange(writeToIndex(create.getEntity(), before.getVersion(), after),
                                 new MetadataChange(create.getEntity(), before.getMetadata(), after));
   }
@@ -606,11 +546,7 @@ public class ElasticsearchMetadataStorage implements MetadataStorage {
   private RequestAndChange update(MetadataEntity entity,
                                   VersionedMetadata before,
                                   Metadata updates) {
-    Set<ScopedName> tags = new HashSet<>(before.getMetadata().getTags());
-    tags.addAll(updates.getTags());
-    Map<ScopedName, String> properties = new HashMap<>(before.getMetadata().getProperties());
-    properties.putAll(updates.getProperties());
-    Metadata after = new Metadata(tags, properties);
+    Metadata after = MetadataStorageHelper.update(before.getMetadata(), updates);
     return new RequestAndChange(writeToIndex(entity, before.getVersion(), after),
                                 new MetadataChange(entity, before.getMetadata(), after));
   }
@@ -628,8 +564,8 @@ public class ElasticsearchMetadataStorage implements MetadataStorage {
    * @return an ElasticSearch request to be executed, and the change caused by the mutation
    */
   private RequestAndChange remove(VersionedMetadata before, MetadataMutation.Remove remove) {
-    Metadata after = filterMetadata(before.getMetadata(), DISCARD,
-                                    remove.getKinds(), remove.getScopes(), remove.getRemovals());
+    Metadata after = MetadataStorageHelper.filterMetadata(before.getMetadata(), DISCARD,
+                                                          remove.getKinds(), remove.getScopes(), remove.getRemovals());
     return new RequestAndChange(writeToIndex(remove.getEntity(), before.getVersion(), after),
                                 new MetadataChange(remove.getEntity(), before.getMetadata(), after));
   }
@@ -640,7 +576,7 @@ public class ElasticsearchMetadataStorage implements MetadataStorage {
    * @return existing metadata along with its version in the index, or an empty metadata with null version.
    */
   private VersionedMetadata readFromIndex(MetadataEntity entity) throws IOException {
-    String id = toDocumentId(entity);
+    String id = MetadataUtil.toDocumentId(entity);
     RestHighLevelClient client = getClient();
     try {
       GetRequest getRequest = new GetRequest(indexName).type(DOC_TYPE).id(id);
@@ -664,7 +600,7 @@ public class ElasticsearchMetadataStorage implements MetadataStorage {
     LOG.trace("Indexing document: {}", doc);
     IndexRequest request = new IndexRequest(indexName)
       .type(DOC_TYPE)
-      .id(toDocumentId(entity))
+      .id(MetadataUtil.toDocumentId(entity))
       .source(GSON.toJson(doc), XContentType.JSON);
     if (expectVersion == null) {
       request.opType("create");
@@ -679,7 +615,7 @@ public class ElasticsearchMetadataStorage implements MetadataStorage {
    * The request must be executed by the caller.
    */
   private DeleteRequest deleteFromIndex(MetadataEntity entity, Long existingVersion) {
-    String id = toDocumentId(entity);
+    String id = MetadataUtil.toDocumentId(entity);
     LOG.trace("Deleting document with id: {}", id);
     DeleteRequest deleteRequest = new DeleteRequest(indexName).type(DOC_TYPE).id(id);
     if (existingVersion != null) {
@@ -750,7 +686,7 @@ public class ElasticsearchMetadataStorage implements MetadataStorage {
       for (BulkItemResponse itemResponse : response) {
         MetadataEntity entityId;
         try {
-          entityId = toMetadataEntity(itemResponse.getId());
+          entityId = MetadataUtil.toMetadataEntity(itemResponse.getId());
         } catch (Exception e) {
           LOG.warn("Cannot parse entity id from document id {} in bulk response", itemResponse.getId());
           continue;
@@ -791,11 +727,16 @@ public class ElasticsearchMetadataStorage implements MetadataStorage {
 
   /**
    * Sets the refresh policy for a write request.
-   * If {@link MutationOptions#isAsynchronous()} is true, write requests will return
-   * immediately after the request is acknowledged; otherwise,
+   * If {@link MutationOptions#isRefresh()} is false, write requests do not refresh the index, and
+   * become visible at the next periodic refresh. Otherwise, if {@link MutationOptions#isAsynchronous()} is true,
+   * write requests will return immediately after the request is acknowledged; otherwise,
    * they will only return after they are confirmed to be applied to the index.
    */
   private void setRefreshPolicy(WriteRequest<?> request, MutationOptions options) {
+    if (!options.isRefresh()) {
+      request.setRefreshPolicy(WriteRequest.RefreshPolicy.NONE);
+      return;
+    }
     request.setRefreshPolicy(
       options.isAsynchronous() ? WriteRequest.RefreshPolicy.IMMEDIATE : WriteRequest.RefreshPolicy.WAIT_UNTIL);
   }
@@ -824,11 +765,11 @@ public class ElasticsearchMetadataStorage implements MetadataStorage {
       searchResponse = client.scroll(scrollRequest, RequestOptions.DEFAULT);
     } catch (ElasticsearchStatusException e) {
       // scroll invalid or timed out
-      return doSearch(createRequestFromCursor(request, cursor));
+      return doSearch(MetadataStorageHelper.createRequestFromCursor(request, cursor));
     }
     if (searchResponse.isTimedOut()) {
       // scroll had expired, we have to search again
-      return doSearch(createRequestFromCursor(request, cursor));
+      return doSearch(MetadataStorageHelper.createRequestFromCursor(request, cursor));
     }
     return createSearchResponse(request, searchResponse, computeCursor(searchResponse, cursor),
                                 cursor.getOffset(), cursor.getLimit());
@@ -842,25 +783,6 @@ public class ElasticsearchMetadataStorage implements MetadataStorage {
                                                         (int) hits.getTotalHits(), results);
   }
 
-  private static SearchRequest createRequestFromCursor(SearchRequest request, Cursor cursor) {
-    SearchRequest.Builder builder = SearchRequest.of(cursor.getQuery())
-      .setOffset(cursor.getOffset())
-      .setLimit(cursor.getLimit())
-      .setShowHidden(cursor.isShowHidden())
-      .setScope(cursor.getScope())
-      .setCursorRequested(request.isCursorRequested());
-    if (cursor.getSorting() != null) {
-      builder.setSorting(Sorting.of(cursor.getSorting()));
-    }
-    if (cursor.getNamespaces() != null) {
-      cursor.getNamespaces().forEach(builder::addNamespace);
-    }
-    if (cursor.getTypes() != null) {
-      cursor.getTypes().forEach(builder::addType);
-    }
-    return builder.build();
-  }
-
   /**
    * Perform a search that does continue a previous search using a cursor.
    *
@@ -1040,10 +962,8 @@ public class ElasticsearchMetadataStorage implements MetadataStorage {
     String textField = request.getScope() == null ? TEXT_FIELD : request.getScope().name().toLowerCase();
 
     // split the query into its terms and iterate over all terms
-    Iterable<String> terms = Splitter.on(SPACE_SEPARATOR_PATTERN)
-      .omitEmptyStrings().trimResults().split(request.getQuery());
     List<QueryBuilder> termQueries = new ArrayList<>();
-    for (String term : terms) {
+    for (MetadataStorageHelper.QueryTerm term : MetadataStorageHelper.parseQuery(request.getQuery())) {
       termQueries.add(createTermQuery(term, textField, request));
     }
     if (termQueries.isEmpty()) {
@@ -1063,32 +983,26 @@ public class ElasticsearchMetadataStorage implements MetadataStorage {
    * @param term the term as it appears in the query, possibly with a field qualifier
    * @param textField the default text field to search if the term does not have a field
    */
-  private QueryBuilder createTermQuery(String term, String textField, SearchRequest request) {
-    // determine if the term has a field qualifier
-    String field = null;
-    term = term.trim().toLowerCase();
+  private QueryBuilder createTermQuery(MetadataStorageHelper.QueryTerm term, String textField,
+                                       SearchRequest request) {
     // Create a term query on the term as is. This would include a field: prefix if the term hs one.
     // This is important for the case of schema search: If the schema contains a field f of type t,
     // then we index "f:t" in the plain text as well as in the "schema" property. If the query is
     // just "f:t", we must search the plain text field for that.
-    QueryBuilder plainQuery = createTermQuery(textField, term);
-    if (term.contains(MetadataConstants.KEYVALUE_SEPARATOR)) {
-      // split the search term in two parts on first occurrence of KEYVALUE_SEPARATOR and trim the key and value
-      String[] split = term.split(MetadataConstants.KEYVALUE_SEPARATOR, 2);
-      field = split[0].trim();
-      term = split[1].trim();
-    }
+    QueryBuilder plainQuery = createTermQuery(textField, term.getTerm());
+    String field = term.getField();
     if (field == null) {
       return plainQuery;
     }
+    String value = term.getValue();
     if (MetadataConstants.TTL_KEY.equals(field)
       && (request.getScope() == null || MetadataScope.SYSTEM == request.getScope())) {
       try {
         // since TTL is indexed as a long, Elasticsearch can handle any numeric value.
         // But it would fail on "*" or "?". Hence only create a term query for TTL if
         // we can parse this as a double (that covers pretty much all numeric formats)
-        Double.parseDouble(term);
-        return QueryBuilders.termQuery(field, term);
+        Double.parseDouble(value);
+        return QueryBuilders.termQuery(field, value);
       } catch (NumberFormatException e) {
         // ignore - the follow-on code will create a regular term query for this
       }
@@ -1098,7 +1012,7 @@ public class ElasticsearchMetadataStorage implements MetadataStorage {
     if (request.getScope() != null) {
       boolQuery.must(new TermQueryBuilder(NESTED_SCOPE_FIELD, request.getScope().name()).boost(0.0F));
     }
-    boolQuery.must(createTermQuery(NESTED_VALUE_FIELD, term));
+    boolQuery.must(createTermQuery(NESTED_VALUE_FIELD, value));
     QueryBuilder propertyQuery = QueryBuilders.nestedQuery(PROPS_FIELD, boolQuery, ScoreMode.Max);
 
     // match either a plain term of the form "f:t" or the word "t" in property "f"
@@ -1123,79 +1037,11 @@ public class ElasticsearchMetadataStorage implements MetadataStorage {
   private static List<MetadataRecord> fromHits(SearchHits hits) {
     return Arrays.stream(hits.getHits())
       .map((SearchHit hit) -> new MetadataRecord(
-        toMetadataEntity(hit.getId()),
+        MetadataUtil.toMetadataEntity(hit.getId()),
         GSON.fromJson(hit.getSourceAsString(), MetadataDocument.class).getMetadata()))
       .collect(Collectors.toList());
   }
 
-  /**
-   * Filter the metadata based on the given scopes, kinds, and selection.
-   * Based on the value of {@param keep}, this can be used to keep or to
-   * discard the matching tags and properties.
-   *
-   * @param keep if true, only matching metadata elements are kept; otherwise only non-matching elements are kept.
-   */
-  @VisibleForTesting
-  @SuppressWarnings("ConstantConditions")
-  static Metadata filterMetadata(Metadata metadata, boolean keep, Set<MetadataKind> kinds,
-                                 Set<MetadataScope> scopes, Set<ScopedNameOfKind> selection) {
-    if (selection != null) {
-      return new Metadata(
-        Sets.filter(metadata.getTags(), tag ->
-          keep == selection.contains(new ScopedNameOfKind(MetadataKind.TAG, tag.getScope(), tag.getName()))),
-        Maps.filterKeys(metadata.getProperties(), key ->
-          keep == selection.contains(new ScopedNameOfKind(MetadataKind.PROPERTY, key.getScope(), key.getName())))
-      );
-    }
-    return new Metadata(
-      Sets.filter(metadata.getTags(), tag ->
-        keep == (kinds.contains(MetadataKind.TAG) && scopes.contains(tag.getScope()))),
-      Maps.filterKeys(metadata.getProperties(), key ->
-        keep == (kinds.contains(MetadataKind.PROPERTY) && scopes.contains(key.getScope()))));
-  }
-
-  /**
-   * Translate a metadata entity into a documemt id in the index.
-   */
-  private static String toDocumentId(MetadataEntity entity) {
-    StringBuilder builder = new StringBuilder(entity.getType());
-    char sep = ':';
-    for (MetadataEntity.KeyValue kv : entity) {
-      // TODO (CDAP-13597): Handle versioning of metadata entities in a better way
-      // if it is a versioned entity then ignore the version
-      if (MetadataUtil.isVersionedEntityType(entity.getType()) &&
-        MetadataEntity.VERSION.equalsIgnoreCase(kv.getKey())) {
-        continue;
-      }
-      builder.append(sep).append(kv.getKey()).append('=').append(kv.getValue());
-      sep = ',';
-    }
-    return builder.toString();
-  }
-
-  /**
-   * Translate a document id in the index into a metadata entity.
-   */
-  private static MetadataEntity toMetadataEntity(String documentId) {
-    int index = documentId.indexOf(':');
-    if (index < 0) {
-      throw new IllegalArgumentException("Document Id must be of the form 'type:k=v,...' but is " + documentId);
-    }
-    String type = documentId.substring(0, index);
-    MetadataEntity.Builder builder = MetadataEntity.builder();
-    for (String part : documentId.substring(index + 1).split(",")) {
-      String[] parts = part.split("=", 2);
-      if (parts[0].equals(type)) {
-        builder.appendAsType(parts[0], parts[1]);
-      } else {
-        builder.append(parts[0], parts[1]);
-      }
-    }
-    // TODO (CDAP-13597): Handle versioning of metadata entities in a better way
-    // if it is a versioned entity then add the default version
-    return MetadataUtil.addVersionIfNeeded(builder.build());
-  }
-
   private static boolean isFailure(DocWriteResponse response) {
     int httpStatus = response.status().getStatus();
     return httpStatus != 200 && httpStatus != 201;
@@ -16,13 +16,11 @@
 
 package io.cdap.cdap.metadata.elastic;
 
-import com.google.common.annotations.VisibleForTesting;
-import io.cdap.cdap.api.data.schema.Schema;
-import io.cdap.cdap.api.data.schema.SchemaWalker;
 import io.cdap.cdap.api.metadata.MetadataEntity;
 import io.cdap.cdap.api.metadata.MetadataScope;
 import io.cdap.cdap.spi.metadata.Metadata;
 import io.cdap.cdap.spi.metadata.MetadataConstants;
+import io.cdap.cdap.spi.metadata.MetadataStorageHelper;
 import io.cdap.cdap.spi.metadata.ScopedName;
 import org.elasticsearch.common.Strings;
 import org.slf4j.Logger;
@@ -225,7 +223,7 @@ public class MetadataDocument {
       String name = key.getName().toLowerCase();
       value = value.toLowerCase();
       if (SCHEMA_KEY.equals(key)) {
-        value = parseSchema(entity, value);
+        value = MetadataStorageHelper.parseSchema(entity, value);
       }
       MetadataScope scope = key.getScope();
       append(scope, value);
@@ -235,25 +233,6 @@ public class MetadataDocument {
       checkForBuiltInLong(TTL_KEY, key, value).ifPresent(x -> ttl = x);
     }
 
-    @VisibleForTesting
-    static String parseSchema(MetadataEntity entity, String schemaStr) {
-      try {
-        Schema schema = Schema.parseJson(schemaStr);
-        StringBuilder builder = new StringBuilder();
-        SchemaWalker.walk(schema, (field, subSchema) -> {
-          if (field != null) {
-            String type = (subSchema.isNullable() ? subSchema.getNonNullable() : subSchema).getType().toString();
-            builder.append(field).append(' ')
-              .append(field).append(MetadataConstants.KEYVALUE_SEPARATOR).append(type).append(' ');
-          }
-        });
-        return builder.toString();
-      } catch (Exception e) {
-        LOG.warn("Unable to parse schema '{}' for entity {}. Indexing as plain text.", schemaStr, entity);
-        return schemaStr;
-      }
-    }
-
     Optional<Long> checkForBuiltInLong(ScopedName builtIn, ScopedName key, String value) {
       if (key.equals(builtIn)) {
         try {
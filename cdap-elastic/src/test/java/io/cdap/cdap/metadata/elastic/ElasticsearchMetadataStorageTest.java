@@ -17,22 +17,18 @@
 package io.cdap.cdap.metadata.elastic;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.io.Closeables;
 import io.cdap.cdap.api.metadata.MetadataEntity;
 import io.cdap.cdap.api.metadata.MetadataScope;
 import io.cdap.cdap.common.conf.CConfiguration;
-import io.cdap.cdap.common.metadata.Cursor;
+import io.cdap.cdap.spi.metadata.Cursor;
 import io.cdap.cdap.spi.metadata.Metadata;
-import io.cdap.cdap.spi.metadata.MetadataKind;
 import io.cdap.cdap.spi.metadata.MetadataMutation.Drop;
 import io.cdap.cdap.spi.metadata.MetadataMutation.Update;
 import io.cdap.cdap.spi.metadata.MetadataRecord;
 import io.cdap.cdap.spi.metadata.MetadataStorage;
 import io.cdap.cdap.spi.metadata.MetadataStorageTest;
 import io.cdap.cdap.spi.metadata.MutationOptions;
-import io.cdap.cdap.spi.metadata.ScopedName;
-import io.cdap.cdap.spi.metadata.ScopedNameOfKind;
 import io.cdap.cdap.spi.metadata.SearchRequest;
 import io.cdap.cdap.spi.metadata.SearchResponse;
 import org.junit.AfterClass;
@@ -43,7 +39,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
@@ -90,226 +85,6 @@ public class ElasticsearchMetadataStorageTest extends MetadataStorageTest {
     }
   }
 
-  @Test
-  public void testFiltering() {
-    ScopedName sys = new ScopedName(MetadataScope.SYSTEM, "s");
-    ScopedName user = new ScopedName(MetadataScope.USER, "u");
-    String sval = "S";
-    String uval = "U";
-    Metadata before = new Metadata(tags(sys, user), props(sys, sval, user, uval));
-
-    // test selection to remove
-    Assert.assertEquals(new Metadata(tags(sys), props(user, uval)),
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.DISCARD,
-                          MetadataKind.NONE,
-                          MetadataScope.NONE,
-                          ImmutableSet.of(new ScopedNameOfKind(MetadataKind.TAG, user),
-                                          new ScopedNameOfKind(MetadataKind.PROPERTY, sys))));
-
-    // test selection is not affected by scopes or kinds
-    Assert.assertEquals(new Metadata(tags(sys), props(user, uval)),
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.DISCARD,
-                          MetadataKind.ALL,
-                          MetadataScope.ALL,
-                          ImmutableSet.of(new ScopedNameOfKind(MetadataKind.TAG, user),
-                                          new ScopedNameOfKind(MetadataKind.PROPERTY, sys))));
-
-    // test selection to keep
-    Assert.assertEquals(new Metadata(tags(user), props(sys, sval)),
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.KEEP,
-                          MetadataKind.NONE,
-                          MetadataScope.NONE,
-                          ImmutableSet.of(new ScopedNameOfKind(MetadataKind.TAG, user),
-                                          new ScopedNameOfKind(MetadataKind.PROPERTY, sys))));
-
-    // test selection is not affected by scopes or kinds
-    Assert.assertEquals(new Metadata(tags(user), props(sys, sval)),
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.KEEP,
-                          MetadataKind.ALL,
-                          MetadataScope.ALL,
-                          ImmutableSet.of(new ScopedNameOfKind(MetadataKind.TAG, user),
-                                          new ScopedNameOfKind(MetadataKind.PROPERTY, sys))));
-
-    // test removing nothing
-    Assert.assertEquals(before,
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.DISCARD,
-                          MetadataKind.NONE,
-                          MetadataScope.NONE,
-                          null));
-    Assert.assertEquals(before,
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.DISCARD,
-                          MetadataKind.NONE,
-                          MetadataScope.ALL,
-                          null));
-    Assert.assertEquals(before,
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.DISCARD,
-                          MetadataKind.ALL,
-                          MetadataScope.NONE,
-                          null));
-
-    // test keeping all
-    Assert.assertEquals(before,
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.KEEP,
-                          MetadataKind.ALL,
-                          MetadataScope.ALL,
-                          null));
-
-    // test removing all
-    Assert.assertEquals(Metadata.EMPTY,
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.DISCARD,
-                          MetadataKind.ALL,
-                          MetadataScope.ALL,
-                          null));
-
-    // test keeping nothing
-    Assert.assertEquals(Metadata.EMPTY,
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.KEEP,
-                          MetadataKind.NONE,
-                          MetadataScope.NONE,
-                          null));
-    // test keeping nothing
-    Assert.assertEquals(Metadata.EMPTY,
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.KEEP,
-                          MetadataKind.ALL,
-                          MetadataScope.NONE,
-                          null));
-    // test keeping nothing
-    Assert.assertEquals(Metadata.EMPTY,
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.KEEP,
-                          MetadataKind.NONE,
-                          MetadataScope.ALL,
-                          null));
-
-    // test removing all SYSTEM
-    Assert.assertEquals(new Metadata(tags(user), props(user, uval)),
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.DISCARD,
-                          MetadataKind.ALL,
-                          Collections.singleton(MetadataScope.SYSTEM),
-                          null));
-    // test removing all USER
-    Assert.assertEquals(new Metadata(tags(sys), props(sys, sval)),
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.DISCARD,
-                          MetadataKind.ALL,
-                          Collections.singleton(MetadataScope.USER),
-                          null));
-    // test keeping all SYSTEM
-    Assert.assertEquals(new Metadata(tags(sys), props(sys, sval)),
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.KEEP,
-                          MetadataKind.ALL,
-                          Collections.singleton(MetadataScope.SYSTEM),
-                          null));
-    // test keeping all USER
-    Assert.assertEquals(new Metadata(tags(user), props(user, uval)),
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.KEEP,
-                          MetadataKind.ALL,
-                          Collections.singleton(MetadataScope.USER),
-                          null));
-
-    // test removing all tags
-    Assert.assertEquals(new Metadata(tags(), props(sys, sval, user, uval)),
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.DISCARD,
-                          Collections.singleton(MetadataKind.TAG),
-                          MetadataScope.ALL,
-                          null));
-
-    // test removing all properties
-    Assert.assertEquals(new Metadata(tags(sys, user), props()),
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.DISCARD,
-                          Collections.singleton(MetadataKind.PROPERTY),
-                          MetadataScope.ALL,
-                          null));
-
-    // test keeping all tags
-    Assert.assertEquals(new Metadata(tags(sys, user), props()),
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.KEEP,
-                          Collections.singleton(MetadataKind.TAG),
-                          MetadataScope.ALL,
-                          null));
-
-    // test keeping all properties
-    Assert.assertEquals(new Metadata(tags(), props(sys, sval, user, uval)),
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.KEEP,
-                          Collections.singleton(MetadataKind.PROPERTY),
-                          MetadataScope.ALL,
-                          null));
-
-    // test removing all tags in SYSTEM scope
-    Assert.assertEquals(new Metadata(tags(user), props(sys, sval, user, uval)),
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.DISCARD,
-                          Collections.singleton(MetadataKind.TAG),
-                          Collections.singleton(MetadataScope.SYSTEM),
-                          null));
-
-    // test removing all properties in USER scope
-    Assert.assertEquals(new Metadata(tags(sys, user), props(sys, sval)),
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.DISCARD,
-                          Collections.singleton(MetadataKind.PROPERTY),
-                          Collections.singleton(MetadataScope.USER),
-                          null));
-
-    // test keeping all tags in SYSTEM scope
-    Assert.assertEquals(new Metadata(tags(sys), props()),
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.KEEP,
-                          Collections.singleton(MetadataKind.TAG),
-                          Collections.singleton(MetadataScope.SYSTEM),
-                          null));
-
-    // test keeping all properties in USER scope
-    Assert.assertEquals(new Metadata(tags(), props(user, uval)),
-                        ElasticsearchMetadataStorage.filterMetadata(
-                          before,
-                          ElasticsearchMetadataStorage.KEEP,
-                          Collections.singleton(MetadataKind.PROPERTY),
-                          Collections.singleton(MetadataScope.USER),
-                          null));
-  }
-
   @Override
   protected List<String> getAdditionalTTLQueries() {
     return ImmutableList.of("ttl:0003600", "TtL:03600", "TtL:03600.00");
@@ -51,6 +51,7 @@ import io.cdap.cdap.data2.metadata.writer.MetadataServiceClient;
 import io.cdap.cdap.data2.metadata.writer.NoOpMetadataServiceClient;
 import io.cdap.cdap.explore.guice.ExploreClientModule;
 import io.cdap.cdap.internal.app.store.DefaultStore;
+import io.cdap.cdap.logging.filter.RegexExpression;
 import io.cdap.cdap.logging.gateway.handlers.FormattedTextLogEvent;
 import io.cdap.cdap.logging.gateway.handlers.LocalProgramRunRecordFetcher;
 import io.cdap.cdap.logging.gateway.handlers.LogData;
@@ -445,6 +446,106 @@ public class LogHttpHandlerTest {
   }
 
 
+  @Test
+  public void testSearch() throws Exception {
+    String appId = "testApp1";
+    String entityType = "workers";
+    String entityId = "testWorker1";
+    String namespace = MockLogReader.TEST_NAMESPACE;
+    long startTime = MockLogReader.getMockTimeSecs(20);
+    long stopTime = MockLogReader.getMockTimeSecs(35);
+
+    for (String format : FORMATS) {
+      // Terms are matched case insensitively against whole tokens of the message
+      String searchUrl = String.format("apps/%s/%s/%s/logs/search?start=%s&stop=%s&format=%s&q=%s",
+                                       appId, entityType, entityId, startTime, stopTime, format, "IMG%2025");
+      HttpResponse response = doGet(getVersionedAPIPath(searchUrl, namespace));
+      verifyLogs(response, entityId, format, 1, true, true, 1, 25, ImmutableList.of());
+
+      // The regex "-2[0-4]$" matches the events 20 to 24
+      searchUrl = String.format("apps/%s/%s/%s/logs/search?start=%s&stop=%s&format=%s&regex=%s",
+                                appId, entityType, entityId, startTime, stopTime, format, "-2%5B0-4%5D%24");
+      response = doGet(getVersionedAPIPath(searchUrl, namespace));
+      verifyLogs(response, entityId, format, 1, true, true, 5, 20, ImmutableList.of());
+
+      // Terms, regex, filter and max are all applied
+      searchUrl = String.format("apps/%s/%s/%s/logs/search?start=%s&stop=%s&format=%s&q=img&regex=%s"
+                                  + "&filter=loglevel=ERROR&max=2",
+                                appId, entityType, entityId, startTime, stopTime, format, "-2%5B0-4%5D%24");
+      response = doGet(getVersionedAPIPath(searchUrl, namespace));
+      verifyLogs(response, entityId, format, 2, true, true, 2, 20, ImmutableList.of());
+
+      // A term that is not a whole token doesn't match
+      searchUrl = String.format("apps/%s/%s/%s/logs/search?start=%s&stop=%s&format=%s&q=testWorker",
+                                appId, entityType, entityId, startTime, stopTime, format);
+      response = doGet(getVersionedAPIPath(searchUrl, namespace));
+      verifyLogs(response, entityId, format, 1, true, true, 0, 0, ImmutableList.of());
+    }
+
+    verifySearchBadRequest(String.format("apps/%s/%s/%s/logs/search", appId, entityType, entityId), namespace);
+  }
+
+  @Test
+  public void testRunIdSearch() throws Exception {
+    String appId = "testApp1";
+    String entityType = "workers";
+    String entityId = "testWorker1";
+    String namespace = MockLogReader.TEST_NAMESPACE;
+    ProgramId programId =
+      new NamespaceId(namespace).app(appId).program(ProgramType.valueOfCategoryName(entityType), entityId);
+    RunRecord runRecord = mockLogReader.getRunRecord(programId);
+    long startTime = MockLogReader.getMockTimeSecs(0);
+    long stopTime = MockLogReader.getMockTimeSecs(100);
+
+    for (String format : FORMATS) {
+      // Only the 20 events of the run, 20, 22, ..., 58, are searched
+      String searchUrl = String.format("apps/%s/%s/%s/runs/%s/logs/search?start=%s&stop=%s&format=%s&q=img",
+                                       appId, entityType, entityId, runRecord.getPid(), startTime, stopTime, format);
+      HttpResponse response = doGet(getVersionedAPIPath(searchUrl, namespace));
+      verifyLogs(response, entityId, format, 2, true, true, 20, 20, ImmutableList.of());
+
+      // The regex "-3[0-9]$" matches the events 30 to 38 of the run
+      searchUrl = String.format("apps/%s/%s/%s/runs/%s/logs/search?start=%s&stop=%s&format=%s&regex=%s",
+                                appId, entityType, entityId, runRecord.getPid(), startTime, stopTime, format,
+                                "-3%5B0-9%5D%24");
+      response = doGet(getVersionedAPIPath(searchUrl, namespace));
+      verifyLogs(response, entityId, format, 2, true, true, 5, 30, ImmutableList.of());
+
+      // The event 21 is not part of the run
+      searchUrl = String.format("apps/%s/%s/%s/runs/%s/logs/search?start=%s&stop=%s&format=%s&q=21",
+                                appId, entityType, entityId, runRecord.getPid(), startTime, stopTime, format);
+      response = doGet(getVersionedAPIPath(searchUrl, namespace));
+      verifyLogs(response, entityId, format, 2, true, true, 0, 0, ImmutableList.of());
+    }
+
+    verifySearchBadRequest(String.format("apps/%s/%s/%s/runs/%s/logs/search",
+                                         appId, entityType, entityId, runRecord.getPid()), namespace);
+
+    String searchUrl = String.format("apps/%s/%s/%s/runs/%s/logs/search?q=img",
+                                     appId, entityType, entityId, RunIds.generate().getId());
+    HttpResponse response = doGet(getVersionedAPIPath(searchUrl, namespace));
+    Assert.assertEquals(HttpURLConnection.HTTP_NOT_FOUND, response.getResponseCode());
+  }
+
+  private void verifySearchBadRequest(String searchPath, String namespace) throws IOException {
+    // Neither terms nor regex
+    HttpResponse response = doGet(getVersionedAPIPath(searchPath, namespace));
+    Assert.assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.getResponseCode());
+
+    // Invalid max
+    response = doGet(getVersionedAPIPath(searchPath + "?q=img&max=0", namespace));
+    Assert.assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.getResponseCode());
+
+    // Invalid regex
+    response = doGet(getVersionedAPIPath(searchPath + "?regex=%28img", namespace));
+    Assert.assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.getResponseCode());
+
+    // Regex that is too long
+    String regex = Strings.repeat("a", RegexExpression.MAX_REGEX_LENGTH + 1);
+    response = doGet(getVersionedAPIPath(searchPath + "?regex=" + regex, namespace));
+    Assert.assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.getResponseCode());
+  }
+
   private List<LogLine> getLogs(String namespaceId, String appId, String programType, String programName, String runId,
                                 String endPoint) throws IOException {
     return getLogs(namespaceId, appId, programType, programName, runId, endPoint, HttpURLConnection.HTTP_OK);
@@ -0,0 +1,33 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metadata.lucene;
+
+/**
+ * Configuration constants for the Lucene metadata storage provider.
+ */
+public final class Config {
+  private Config() { }
+
+  static final String CONF_LUCENE_INDEX_DIR = "metadata.lucene.index.dir";
+  static final String CONF_LUCENE_RAM_BUFFER_SIZE_MB = "metadata.lucene.ram.buffer.size.mb";
+  static final String CONF_LUCENE_MAX_MERGED_SEGMENT_MB = "metadata.lucene.max.merged.segment.mb";
+
+  // relative to the local data directory, if the index directory is not configured
+  static final String DEFAULT_INDEX_DIR_NAME = "metadata.index";
+  static final double DEFAULT_RAM_BUFFER_SIZE_MB = 16.0;
+  static final double DEFAULT_MAX_MERGED_SEGMENT_MB = 1024.0;
+}
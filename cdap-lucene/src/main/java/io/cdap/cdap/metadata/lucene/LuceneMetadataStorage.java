@@ -0,0 +1,584 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metadata.lucene;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Inject;
+import io.cdap.cdap.api.metadata.MetadataScope;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.metadata.MetadataUtil;
+import io.cdap.cdap.spi.metadata.Cursor;
+import io.cdap.cdap.spi.metadata.Metadata;
+import io.cdap.cdap.spi.metadata.MetadataChange;
+import io.cdap.cdap.spi.metadata.MetadataConstants;
+import io.cdap.cdap.spi.metadata.MetadataMutation;
+import io.cdap.cdap.spi.metadata.MetadataRecord;
+import io.cdap.cdap.spi.metadata.MetadataStorage;
+import io.cdap.cdap.spi.metadata.MetadataStorageHelper;
+import io.cdap.cdap.spi.metadata.MutationOptions;
+import io.cdap.cdap.spi.metadata.Read;
+import io.cdap.cdap.spi.metadata.SearchRequest;
+import io.cdap.cdap.spi.metadata.SearchResponse;
+import io.cdap.cdap.spi.metadata.Sorting;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.QueryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * A metadata storage provider that maintains an inverted index in a local directory, using Lucene.
+ * This supports the same search semantics as the Elasticsearch provider, for deployments that do not
+ * have an Elasticsearch cluster: Lucene provides the term dictionary, the postings with skip lists and
+ * the merging of index segments in the background.
+ *
+ * All mutations are applied by a single writer and committed before they return, such that the metadata
+ * survives a restart. Searches use a near-real-time view of the index, which is refreshed after every
+ * mutation, or batch of mutations.
+ *
+ * The index is a directory on the local file system that is locked by the process that opens it. Therefore
+ * this storage can only be used in a single process, that is, in CDAP standalone.
+ */
+public class LuceneMetadataStorage implements MetadataStorage {
+
+  private static final Logger LOG = LoggerFactory.getLogger(LuceneMetadataStorage.class);
+
+  private static final boolean KEEP = true;
+  private static final boolean DISCARD = false;
+
+  // these are the only fields that are supported for sorting
+  private static final Map<String, String> SORT_KEY_MAP = ImmutableMap.of(
+    "entity-name", MetadataDocument.NAME_FIELD,
+    "creation-time", MetadataDocument.CREATED_FIELD
+  );
+  private static final String SUPPORTED_SORT_KEYS = String.join(", ", SORT_KEY_MAP.keySet());
+
+  // the document id is the last sort field for every search, so that the order of results is total
+  private static final SortField ID_SORT_FIELD = new SortField(MetadataDocument.ID_FIELD, SortField.Type.STRING);
+
+  // separates the sort values of the last result in a cursor. The encoded values never contain this character.
+  private static final char CURSOR_VALUE_SEPARATOR = '.';
+
+  private final Path indexDir;
+  private final double ramBufferSizeMB;
+  private final double maxMergedSegmentMB;
+  private final Analyzer analyzer = new MetadataDocument.TextAnalyzer();
+  private final QueryBuilder queryBuilder = new QueryBuilder(analyzer);
+
+  private Directory directory;
+  private IndexWriter writer;
+  private volatile SearcherManager searcherManager;
+
+  @Inject
+  public LuceneMetadataStorage(CConfiguration cConf) {
+    String indexDir = cConf.get(Config.CONF_LUCENE_INDEX_DIR);
+    this.indexDir = indexDir != null
+      ? Paths.get(indexDir)
+      : Paths.get(cConf.get(Constants.CFG_LOCAL_DATA_DIR), Config.DEFAULT_INDEX_DIR_NAME);
+    this.ramBufferSizeMB = cConf.getDouble(Config.CONF_LUCENE_RAM_BUFFER_SIZE_MB,
+                                           Config.DEFAULT_RAM_BUFFER_SIZE_MB);
+    this.maxMergedSegmentMB = cConf.getDouble(Config.CONF_LUCENE_MAX_MERGED_SEGMENT_MB,
+                                              Config.DEFAULT_MAX_MERGED_SEGMENT_MB);
+  }
+
+  @Override
+  public synchronized void close() {
+    SearcherManager manager = searcherManager;
+    searcherManager = null;
+    IOUtils.closeWhileHandlingException(manager, writer, directory);
+    writer = null;
+    directory = null;
+  }
+
+  @Override
+  public void createIndex() throws IOException {
+    getSearcherManager();
+  }
+
+  @Override
+  public synchronized void dropIndex() throws IOException {
+    SearcherManager manager = getSearcherManager();
+    writer.deleteAll();
+    writer.commit();
+    manager.maybeRefreshBlocking();
+  }
+
+  @Override
+  public MetadataChange apply(MetadataMutation mutation, MutationOptions options) throws IOException {
+    return batch(Collections.singletonList(mutation), options).get(0);
+  }
+
+  @Override
+  public synchronized List<MetadataChange> batch(List<? extends MetadataMutation> mutations,
+                                                 MutationOptions options) throws IOException {
+    if (mutations.isEmpty()) {
+      return Collections.emptyList();
+    }
+    SearcherManager manager = getSearcherManager();
+    // make sure that the searcher reflects all previous mutations, to read the current metadata
+    manager.maybeRefreshBlocking();
+
+    // metadata after the mutations so far, for the entities mutated by this batch, or null if dropped
+    Map<String, Metadata> mutated = new HashMap<>();
+    List<MetadataChange> changes = new ArrayList<>(mutations.size());
+    IndexSearcher searcher = manager.acquire();
+    try {
+      for (MetadataMutation mutation : mutations) {
+        String id = MetadataUtil.toDocumentId(mutation.getEntity());
+        Metadata before = mutated.containsKey(id) ? mutated.get(id) : readFromIndex(searcher, id);
+        MetadataChange change = applyMutation(before, mutation);
+        mutated.put(id, mutation.getType() == MetadataMutation.Type.DROP ? null : change.getAfter());
+        changes.add(change);
+      }
+    } finally {
+      manager.release(searcher);
+    }
+
+    // only write the final state of each entity, and commit all of them at once
+    for (MetadataChange change : changes) {
+      String id = MetadataUtil.toDocumentId(change.getEntity());
+      if (!mutated.containsKey(id)) {
+        continue;
+      }
+      Metadata after = mutated.remove(id);
+      Term idTerm = new Term(MetadataDocument.ID_FIELD, id);
+      if (after == null) {
+        writer.deleteDocuments(idTerm);
+      } else {
+        writer.updateDocument(idTerm, MetadataDocument.of(change.getEntity(), after));
+      }
+    }
+    writer.commit();
+    if (options.isAsynchronous()) {
+      manager.maybeRefresh();
+    } else {
+      manager.maybeRefreshBlocking();
+    }
+    return changes;
+  }
+
+  @Override
+  public Metadata read(Read read) throws IOException {
+    SearcherManager manager = getSearcherManager();
+    IndexSearcher searcher = manager.acquire();
+    Metadata metadata;
+    try {
+      metadata = readFromIndex(searcher, MetadataUtil.toDocumentId(read.getEntity()));
+    } finally {
+      manager.release(searcher);
+    }
+    return MetadataStorageHelper.filterMetadata(metadata == null ? Metadata.EMPTY : metadata, KEEP,
+                                                read.getKinds(), read.getScopes(), read.getSelection());
+  }
+
+  @Override
+  public SearchResponse search(SearchRequest request) throws IOException {
+    SearchRequest actualRequest = request;
+    Object[] afterValues = null;
+    if (request.getCursor() != null && !request.getCursor().isEmpty()) {
+      Cursor cursor = Cursor.fromString(request.getCursor());
+      actualRequest = MetadataStorageHelper.createRequestFromCursor(request, cursor);
+      afterValues = decodeCursor(cursor.getActualCursor());
+    }
+    int offset = actualRequest.getOffset();
+    int limit = actualRequest.getLimit();
+    Query query = createQuery(actualRequest);
+    Sort sort = createSort(actualRequest.getSorting());
+
+    SearcherManager manager = getSearcherManager();
+    IndexSearcher searcher = manager.acquire();
+    try {
+      // the number of hits to collect must be positive, and need not exceed the number of documents
+      int maxDoc = Math.max(1, searcher.getIndexReader().maxDoc());
+      TopDocs topDocs;
+      ScoreDoc[] hits;
+      if (afterValues != null) {
+        // the document id is a sort field, hence only the last result has the same sort values. Lucene compares
+        // doc ids to break ties, and the last doc id of the reader ensures that the search resumes strictly after
+        // the last result. Any larger doc id would be rejected by searchAfter.
+        FieldDoc after = new FieldDoc(maxDoc - 1, Float.NaN, afterValues);
+        topDocs = searcher.searchAfter(after, query, Math.max(1, Math.min(limit, maxDoc)), sort, false, false);
+        hits = limit > 0 ? topDocs.scoreDocs : new ScoreDoc[0];
+      } else {
+        topDocs = searcher.search(query, (int) Math.min((long) offset + Math.max(1, limit), maxDoc),
+                                  sort, false, false);
+        hits = offset >= topDocs.scoreDocs.length
+          ? new ScoreDoc[0]
+          : Arrays.copyOfRange(topDocs.scoreDocs, offset, (int) Math.min(topDocs.scoreDocs.length,
+                                                                         (long) offset + limit));
+      }
+      List<MetadataRecord> results = new ArrayList<>(hits.length);
+      for (ScoreDoc hit : hits) {
+        Document document = searcher.doc(hit.doc);
+        results.add(new MetadataRecord(MetadataDocument.getEntity(document), MetadataDocument.getMetadata(document)));
+      }
+      int totalHits = (int) topDocs.totalHits;
+      return new SearchResponse(request, computeCursor(actualRequest, hits, totalHits), offset, limit,
+                                totalHits, results);
+    } finally {
+      manager.release(searcher);
+    }
+  }
+
+  /**
+   * Returns the searcher manager for the index, opening the index if it is not open yet.
+   * This creates the index directory if it does not exist.
+   */
+  private SearcherManager getSearcherManager() throws IOException {
+    SearcherManager manager = searcherManager;
+    if (manager != null) {
+      return manager;
+    }
+    synchronized (this) {
+      if (searcherManager != null) {
+        return searcherManager;
+      }
+      LOG.info("Opening metadata index in {}", indexDir);
+      TieredMergePolicy mergePolicy = new TieredMergePolicy();
+      mergePolicy.setMaxMergedSegmentMB(maxMergedSegmentMB);
+      IndexWriterConfig config = new IndexWriterConfig(analyzer)
+        .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND)
+        .setRAMBufferSizeMB(ramBufferSizeMB)
+        .setMergePolicy(mergePolicy);
+      Directory directory = FSDirectory.open(indexDir);
+      try {
+        writer = new IndexWriter(directory, config);
+        searcherManager = new SearcherManager(writer, null);
+      } catch (IOException e) {
+        IOUtils.closeWhileHandlingException(writer, directory);
+        writer = null;
+        throw e;
+      }
+      this.directory = directory;
+      return searcherManager;
+    }
+  }
+
+  /**
+   * Reads the existing metadata for an entity from the index.
+   *
+   * @return the existing metadata, or null if the entity is not in the index
+   */
+  @Nullable
+  private static Metadata readFromIndex(IndexSearcher searcher, String id) throws IOException {
+    TopDocs topDocs = searcher.search(new TermQuery(new Term(MetadataDocument.ID_FIELD, id)), 1);
+    if (topDocs.scoreDocs.length == 0) {
+      return null;
+    }
+    return MetadataDocument.getMetadata(searcher.doc(topDocs.scoreDocs[0].doc));
+  }
+
+  /**
+   * Computes the change caused by a mutation.
+   *
+   * @param before the metadata for the mutation's entity before the change, or null if it is not in the index
+   * @param mutation the mutation to apply
+   */
+  private static MetadataChange applyMutation(@Nullable Metadata before, MetadataMutation mutation) {
+    LOG.trace("Applying mutation {} to entity {} with metadata {}", mutation, mutation.getEntity(), before);
+    Metadata existing = before == null ? Metadata.EMPTY : before;
+    Metadata after;
+    switch (mutation.getType()) {
+      case CREATE:
+        // if the entity did not exist before, none of the directives apply and this is equivalent to update()
+        after = before == null
+          ? MetadataStorageHelper.update(existing, ((MetadataMutation.Create) mutation).getMetadata())
+          : MetadataStorageHelper.create(existing, (MetadataMutation.Create) mutation);
+        break;
+      case DROP:
+        after = Metadata.EMPTY;
+        break;
+      case UPDATE:
+        after = MetadataStorageHelper.update(existing, ((MetadataMutation.Update) mutation).getUpdates());
+        break;
+      case REMOVE:
+        MetadataMutation.Remove remove = (MetadataMutation.Remove) mutation;
+        // even if all tags and properties are removed, the entity remains searchable by its type and name
+        after = MetadataStorageHelper.filterMetadata(existing, DISCARD, remove.getKinds(), remove.getScopes(),
+                                                     remove.getRemovals());
+        break;
+      default:
+        throw new IllegalStateException(
+          String.format("Unknown mutation type '%s' for %s", mutation.getType(), mutation));
+    }
+    return new MetadataChange(mutation.getEntity(), existing, after);
+  }
+
+  /**
+   * Generates the cursor to return as part of a search response. Returns null if no cursor was requested,
+   * or if there are no more results. Otherwise returns a cursor that represents the sort values of the last
+   * result, such that a subsequent search can resume after that result without collecting the previous ones.
+   */
+  @Nullable
+  private static String computeCursor(SearchRequest request, ScoreDoc[] hits, int totalHits) {
+    if (!request.isCursorRequested() || hits.length == 0) {
+      return null;
+    }
+    int newOffset = request.getOffset() + hits.length;
+    if (newOffset >= totalHits) {
+      return null;
+    }
+    return new Cursor(newOffset, request.getLimit(), request.isShowHidden(), request.getScope(),
+                      request.getNamespaces(), request.getTypes(),
+                      request.getSorting() == null ? null : request.getSorting().toString(),
+                      encodeCursor((FieldDoc) hits[hits.length - 1]), request.getQuery()).toString();
+  }
+
+  /**
+   * Encodes the sort values of a search result. Each value is prefixed with a character that indicates
+   * its type, and none of them contains the ':' used by {@link Cursor} or the {@link #CURSOR_VALUE_SEPARATOR}.
+   */
+  private static String encodeCursor(FieldDoc last) {
+    StringBuilder builder = new StringBuilder();
+    for (Object value : last.fields) {
+      if (builder.length() > 0) {
+        builder.append(CURSOR_VALUE_SEPARATOR);
+      }
+      if (value instanceof Float) {
+        builder.append('f').append(Float.floatToIntBits((Float) value));
+      } else if (value instanceof Long) {
+        builder.append('l').append(value);
+      } else if (value instanceof BytesRef) {
+        BytesRef bytes = (BytesRef) value;
+        builder.append('b').append(Base64.getUrlEncoder().withoutPadding().encodeToString(
+          Arrays.copyOfRange(bytes.bytes, bytes.offset, bytes.offset + bytes.length)));
+      } else {
+        throw new IllegalStateException("Unexpected sort value " + value + " of type " + value.getClass());
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Decodes the sort values encoded by {@link #encodeCursor(FieldDoc)}.
+   *
+   * @return the sort values of the search result to search after, or null if the cursor cannot be decoded,
+   *         in which case the search starts at the cursor's offset
+   */
+  @Nullable
+  private static Object[] decodeCursor(String actualCursor) {
+    List<Object> values = new ArrayList<>();
+    try {
+      for (String part : Splitter.on(CURSOR_VALUE_SEPARATOR).split(actualCursor)) {
+        String value = part.substring(1);
+        switch (part.charAt(0)) {
+          case 'f':
+            values.add(Float.intBitsToFloat(Integer.parseInt(value)));
+            break;
+          case 'l':
+            values.add(Long.parseLong(value));
+            break;
+          case 'b':
+            values.add(new BytesRef(Base64.getUrlDecoder().decode(value)));
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown type of sort value " + part);
+        }
+      }
+    } catch (RuntimeException e) {
+      LOG.debug("Unable to decode cursor '{}'. Searching from the cursor's offset instead.", actualCursor, e);
+      return null;
+    }
+    return values.toArray();
+  }
+
+  private static Sort createSort(@Nullable Sorting sorting) {
+    if (sorting == null) {
+      return new Sort(SortField.FIELD_SCORE, ID_SORT_FIELD);
+    }
+    String field = mapSortKey(sorting.getKey().toLowerCase());
+    boolean reverse = sorting.getOrder() == Sorting.Order.DESC;
+    SortField sortField;
+    if (MetadataDocument.CREATED_FIELD.equals(field)) {
+      sortField = new SortField(field, SortField.Type.LONG, reverse);
+      // same as in Elasticsearch, entities without creation time come last in either order
+      sortField.setMissingValue(reverse ? Long.MIN_VALUE : Long.MAX_VALUE);
+    } else {
+      sortField = new SortField(field, SortField.Type.STRING, reverse);
+    }
+    return new Sort(sortField, ID_SORT_FIELD);
+  }
+
+  private static String mapSortKey(String key) {
+    String newKey = SORT_KEY_MAP.get(key);
+    if (newKey != null) {
+      return newKey;
+    }
+    throw new IllegalArgumentException(String.format(
+      "Field '%s' cannot be used as a sort key. Only the following are supported: %s.",
+      key, SUPPORTED_SORT_KEYS));
+  }
+
+  /**
+   * Creates a Lucene query from a search request. In essence, this returns
+   *
+   * <pre>
+   *   (field1:term1 OR ... OR props:name:term ...)
+   * [ AND (namespace:ns1 OR ... OR namespace:nsK) ]
+   * [ AND (type:type1 OR ... OR type:typeM) ]
+   * [ AND hidden:false ]
+   * </pre>
+   *
+   * The field for each field:term is as selected by the request's scope (user, system, or text).
+   * The property subqueries expect the term to occur in the field of the property with the name
+   * field, and optionally the scope of the search request. The conditions do not contribute to the scoring.
+   *
+   * See {@link MetadataDocument} for details about the indexed fields.
+   */
+  private Query createQuery(SearchRequest request) {
+    BooleanQuery.Builder builder = new BooleanQuery.Builder();
+    builder.add(createMainQuery(request), BooleanClause.Occur.MUST);
+    // if the request asks only for a subset of entity types, add a boolean clause for that
+    if (request.getTypes() != null && !request.getTypes().isEmpty()) {
+      builder.add(createCondition(MetadataDocument.TYPE_FIELD, request.getTypes()), BooleanClause.Occur.FILTER);
+    }
+    if (request.getNamespaces() != null) {
+      builder.add(createCondition(MetadataDocument.NAMESPACE_FIELD, request.getNamespaces()),
+                  BooleanClause.Occur.FILTER);
+    }
+    if (!request.isShowHidden()) {
+      builder.add(new TermQuery(new Term(MetadataDocument.HIDDEN_FIELD, Boolean.FALSE.toString())),
+                  BooleanClause.Occur.FILTER);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Creates a query that requires at least one of the given values in a field.
+   */
+  private static Query createCondition(String field, Collection<String> values) {
+    BooleanQuery.Builder builder = new BooleanQuery.Builder().setMinimumNumberShouldMatch(1);
+    values.forEach(value -> builder.add(new TermQuery(new Term(field, value.toLowerCase())),
+                                        BooleanClause.Occur.SHOULD));
+    return builder.build();
+  }
+
+  /**
+   * Creates the (sub-)query for Lucene from the terms in the query string.
+   */
+  private Query createMainQuery(SearchRequest request) {
+    if (request.getQuery().equals("*")) {
+      return new MatchAllDocsQuery();
+    }
+    // the indexed document contains three text fields: one for each scope and for all scopes combined.
+    // all terms must occur in the text field as selected by the scope in the search request.
+    String textField = MetadataDocument.getTextField(request.getScope());
+
+    // split the query into its terms and iterate over all terms
+    List<Query> termQueries = new ArrayList<>();
+    for (MetadataStorageHelper.QueryTerm term : MetadataStorageHelper.parseQuery(request.getQuery())) {
+      termQueries.add(createTermQuery(term, textField, request));
+    }
+    if (termQueries.isEmpty()) {
+      return new MatchAllDocsQuery();
+    }
+    if (termQueries.size() == 1) {
+      return termQueries.get(0);
+    }
+    BooleanQuery.Builder builder = new BooleanQuery.Builder().setMinimumNumberShouldMatch(1);
+    termQueries.forEach(query -> builder.add(query, BooleanClause.Occur.SHOULD));
+    return builder.build();
+  }
+
+  /**
+   * Create a sub-query for a single term in the query string.
+   *
+   * @param term the term as it appears in the query, possibly with a field qualifier
+   * @param textField the default text field to search if the term does not have a field
+   */
+  private Query createTermQuery(MetadataStorageHelper.QueryTerm term, String textField, SearchRequest request) {
+    // Create a term query on the term as is. This would include a field: prefix if the term has one.
+    // This is important for the case of schema search: If the schema contains a field f of type t,
+    // then we index "f:t" in the plain text as well as in the "schema" property. If the query is
+    // just "f:t", we must search the plain text field for that.
+    Query plainQuery = createTermQuery(textField, term.getTerm());
+    String field = term.getField();
+    if (field == null) {
+      return plainQuery;
+    }
+    if (MetadataConstants.TTL_KEY.equals(field)
+      && (request.getScope() == null || MetadataScope.SYSTEM == request.getScope())) {
+      try {
+        return LongPoint.newExactQuery(MetadataDocument.TTL_FIELD, Long.parseLong(term.getValue()));
+      } catch (NumberFormatException e) {
+        // ignore - the follow-on code will create a regular term query for this
+      }
+    }
+    Query propertyQuery = createTermQuery(MetadataDocument.getPropertyField(request.getScope(), field),
+                                          term.getValue());
+
+    // match either a plain term of the form "f:t" or the word "t" in property "f"
+    return new BooleanQuery.Builder()
+      .add(plainQuery, BooleanClause.Occur.SHOULD)
+      .add(propertyQuery, BooleanClause.Occur.SHOULD)
+      .setMinimumNumberShouldMatch(1)
+      .build();
+  }
+
+  /**
+   * Create a query for a single term in a given field.
+   *
+   * @return a wildcard query is the term contains * or ?, or a query for all words of the term otherwise
+   */
+  private Query createTermQuery(String field, String term) {
+    if (term.contains("*") || term.contains("?")) {
+      return new WildcardQuery(new Term(field, term));
+    }
+    // the term should not get split in to multiple words, but in case it does, let's require all words
+    Query query = queryBuilder.createBooleanQuery(field, term, BooleanClause.Occur.MUST);
+    return query == null ? new MatchNoDocsQuery() : query;
+  }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metadata.lucene;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.cdap.cdap.api.metadata.MetadataEntity;
+import io.cdap.cdap.api.metadata.MetadataScope;
+import io.cdap.cdap.common.metadata.MetadataUtil;
+import io.cdap.cdap.spi.metadata.Metadata;
+import io.cdap.cdap.spi.metadata.MetadataCodec;
+import io.cdap.cdap.spi.metadata.MetadataConstants;
+import io.cdap.cdap.spi.metadata.MetadataStorageHelper;
+import io.cdap.cdap.spi.metadata.ScopedName;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.pattern.PatternTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * Translates the metadata of an entity into the document that is indexed in Lucene, and back.
+ *
+ * The document is structured in the same way as the one indexed by the Elasticsearch metadata storage,
+ * so that the same queries have the same results: the entity's metadata is stored as a whole, and the
+ * tags and properties are indexed as plain text of each scope and as one text field per property.
+ */
+final class MetadataDocument {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MetadataDocument.class);
+
+  private static final Gson GSON = new GsonBuilder()
+    .registerTypeAdapter(Metadata.class, new MetadataCodec()).create();
+
+  // this reflects the tokenization performed by MetadataDataset
+  private static final Pattern TEXT_SEPARATOR_PATTERN = Pattern.compile("[-_,;.\\s]+");
+
+  private static final ScopedName SCHEMA_KEY = new ScopedName(MetadataScope.SYSTEM, MetadataConstants.SCHEMA_KEY);
+  private static final ScopedName TTL_KEY = new ScopedName(MetadataScope.SYSTEM, MetadataConstants.TTL_KEY);
+  private static final ScopedName CREATION_TIME_KEY = new ScopedName(MetadataScope.SYSTEM,
+                                                                     MetadataConstants.CREATION_TIME_KEY);
+
+  // Various fields in a metadata document
+  static final String ID_FIELD = "id"; // contains the document id, also used to break ties when sorting
+  static final String CREATED_FIELD = "created"; // contains the creation time
+  static final String HIDDEN_FIELD = "hidden"; // whether the entity name starts with _
+  static final String METADATA_FIELD = "metadata"; // contains the metadata as JSON, stored only
+  static final String NAME_FIELD = "name"; // contains the entity name
+  static final String NAMESPACE_FIELD = "namespace"; // contains the namespace of the entity
+  static final String TEXT_FIELD = "text"; // contains all plain text
+  static final String TTL_FIELD = "ttl"; // contains the TTL
+  static final String TYPE_FIELD = "type"; // contains the type of the entity
+  // the plain text of each scope is in a field named after the scope, see getTextField()
+  // every property is in a field named after the property, see getPropertyField()
+  private static final String PROPERTY_FIELD_PREFIX = "props";
+
+  private MetadataDocument() { }
+
+  /**
+   * Returns the field that contains the plain text of a scope, or of all scopes if the scope is null.
+   */
+  static String getTextField(@Nullable MetadataScope scope) {
+    return scope == null ? TEXT_FIELD : scope.name().toLowerCase();
+  }
+
+  /**
+   * Returns the field that contains the value of a property in a scope, or in any scope if the scope is null.
+   */
+  static String getPropertyField(@Nullable MetadataScope scope, String name) {
+    return scope == null
+      ? PROPERTY_FIELD_PREFIX + MetadataConstants.KEYVALUE_SEPARATOR + name
+      : PROPERTY_FIELD_PREFIX + '.' + scope.name().toLowerCase() + MetadataConstants.KEYVALUE_SEPARATOR + name;
+  }
+
+  /**
+   * Creates the document to index for an entity and its metadata.
+   */
+  static Document of(MetadataEntity entity, Metadata metadata) {
+    return new Builder(entity).addMetadata(metadata).build();
+  }
+
+  /**
+   * Returns the metadata stored in a document.
+   */
+  static Metadata getMetadata(Document document) {
+    return GSON.fromJson(document.get(METADATA_FIELD), Metadata.class);
+  }
+
+  /**
+   * Returns the entity of a document.
+   */
+  static MetadataEntity getEntity(Document document) {
+    return MetadataUtil.toMetadataEntity(document.get(ID_FIELD));
+  }
+
+  /**
+   * The analyzer for all text fields: splits the text into words and lower-cases them.
+   */
+  static final class TextAnalyzer extends Analyzer {
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+      Tokenizer tokenizer = new PatternTokenizer(TEXT_SEPARATOR_PATTERN, -1);
+      return new TokenStreamComponents(tokenizer, new LowerCaseFilter(tokenizer));
+    }
+  }
+
+  /**
+   * A builder for the document of an entity.
+   */
+  private static final class Builder {
+
+    private final MetadataEntity entity;
+    private final Document document = new Document();
+    private final String type;
+    private final String name;
+    private final List<String> userTags = new ArrayList<>();
+    private final List<String> systemTags = new ArrayList<>();
+    private final List<String> userPropertyNames = new ArrayList<>();
+    private final List<String> systemPropertyNames = new ArrayList<>();
+    private final StringBuilder userText = new StringBuilder();
+    private final StringBuilder systemText = new StringBuilder();
+
+    private Builder(MetadataEntity entity) {
+      this.entity = entity;
+      this.type = entity.getType().toLowerCase();
+      //noinspection ConstantConditions
+      this.name = entity.getValue(entity.getType()).toLowerCase();
+
+      String id = MetadataUtil.toDocumentId(entity);
+      document.add(new StringField(ID_FIELD, id, Field.Store.YES));
+      document.add(new SortedDocValuesField(ID_FIELD, new BytesRef(id)));
+      if (entity.containsKey(MetadataEntity.NAMESPACE)) {
+        //noinspection ConstantConditions
+        document.add(new StringField(NAMESPACE_FIELD, entity.getValue(MetadataEntity.NAMESPACE).toLowerCase(),
+                                     Field.Store.NO));
+      }
+      document.add(new StringField(TYPE_FIELD, type, Field.Store.NO));
+      document.add(new SortedDocValuesField(NAME_FIELD, new BytesRef(name)));
+      document.add(new StringField(HIDDEN_FIELD, Boolean.toString(name.startsWith("_")), Field.Store.NO));
+      append(MetadataScope.SYSTEM, type);
+      append(MetadataScope.SYSTEM, name);
+      addProperty(new ScopedName(MetadataScope.SYSTEM, type), name);
+    }
+
+    private void append(MetadataScope scope, String text) {
+      (MetadataScope.USER == scope ? userText : systemText).append(' ').append(text);
+    }
+
+    private void addTag(ScopedName tag) {
+      String name = tag.getName().toLowerCase();
+      append(tag.getScope(), name);
+      (MetadataScope.USER == tag.getScope() ? userTags : systemTags).add(name);
+    }
+
+    private void addProperty(ScopedName key, String value) {
+      String name = key.getName().toLowerCase();
+      value = value.toLowerCase();
+      if (SCHEMA_KEY.equals(key)) {
+        value = MetadataStorageHelper.parseSchema(entity, value);
+      }
+      MetadataScope scope = key.getScope();
+      append(scope, value);
+      addPropertyField(scope, name, value);
+      (MetadataScope.USER == scope ? userPropertyNames : systemPropertyNames).add(name);
+      if (CREATION_TIME_KEY.equals(key)) {
+        Long created = parseBuiltInLong(CREATION_TIME_KEY, value);
+        if (created != null) {
+          document.add(new NumericDocValuesField(CREATED_FIELD, created));
+        }
+      } else if (TTL_KEY.equals(key)) {
+        Long ttl = parseBuiltInLong(TTL_KEY, value);
+        if (ttl != null) {
+          document.add(new LongPoint(TTL_FIELD, ttl));
+        }
+      }
+    }
+
+    private void addPropertyField(MetadataScope scope, String name, String value) {
+      document.add(new TextField(getPropertyField(null, name), value, Field.Store.NO));
+      document.add(new TextField(getPropertyField(scope, name), value, Field.Store.NO));
+    }
+
+    @Nullable
+    private Long parseBuiltInLong(ScopedName builtIn, String value) {
+      try {
+        return Long.parseLong(value);
+      } catch (NumberFormatException e) {
+        LOG.warn("Unable to parse property {} as long. Skipping indexing of {} for entity {}.",
+                 builtIn, builtIn.getName(), entity, e);
+        return null;
+      }
+    }
+
+    private Builder addMetadata(Metadata metadata) {
+      document.add(new StoredField(METADATA_FIELD, GSON.toJson(metadata, Metadata.class)));
+      metadata.getTags().forEach(this::addTag);
+      metadata.getProperties().forEach(this::addProperty);
+      return this;
+    }
+
+    private Document build() {
+      addPropertyField(MetadataScope.USER, MetadataConstants.TAGS_KEY, String.join(" ", userTags));
+      addPropertyField(MetadataScope.SYSTEM, MetadataConstants.TAGS_KEY, String.join(" ", systemTags));
+      addPropertyField(MetadataScope.USER, MetadataConstants.PROPERTIES_KEY, String.join(" ", userPropertyNames));
+      addPropertyField(MetadataScope.SYSTEM, MetadataConstants.PROPERTIES_KEY, String.join(" ", systemPropertyNames));
+      String user = userText.toString();
+      String system = systemText.toString();
+      document.add(new TextField(getTextField(MetadataScope.USER), user, Field.Store.NO));
+      document.add(new TextField(getTextField(MetadataScope.SYSTEM), system, Field.Store.NO));
+      document.add(new TextField(TEXT_FIELD, user, Field.Store.NO));
+      document.add(new TextField(TEXT_FIELD, system, Field.Store.NO));
+      return document;
+    }
+  }
+}
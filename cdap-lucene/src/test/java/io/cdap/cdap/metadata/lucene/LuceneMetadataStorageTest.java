@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metadata.lucene;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Closeables;
+import io.cdap.cdap.api.metadata.MetadataEntity;
+import io.cdap.cdap.api.metadata.MetadataScope;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.spi.metadata.Cursor;
+import io.cdap.cdap.spi.metadata.Metadata;
+import io.cdap.cdap.spi.metadata.MetadataMutation.Drop;
+import io.cdap.cdap.spi.metadata.MetadataMutation.Update;
+import io.cdap.cdap.spi.metadata.MetadataRecord;
+import io.cdap.cdap.spi.metadata.MetadataStorage;
+import io.cdap.cdap.spi.metadata.MetadataStorageTest;
+import io.cdap.cdap.spi.metadata.MutationOptions;
+import io.cdap.cdap.spi.metadata.Read;
+import io.cdap.cdap.spi.metadata.SearchRequest;
+import io.cdap.cdap.spi.metadata.SearchResponse;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Collections;
+
+public class LuceneMetadataStorageTest extends MetadataStorageTest {
+
+  @ClassRule
+  public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
+
+  private static CConfiguration cConf;
+  private static LuceneMetadataStorage luceneStore;
+
+  @Override
+  protected MetadataStorage getMetadataStorage() {
+    return luceneStore;
+  }
+
+  @BeforeClass
+  public static void createIndex() throws IOException {
+    cConf = CConfiguration.create();
+    cConf.set(Config.CONF_LUCENE_INDEX_DIR, TEMP_FOLDER.newFolder().getAbsolutePath());
+    luceneStore = new LuceneMetadataStorage(cConf);
+    luceneStore.createIndex();
+  }
+
+  @AfterClass
+  public static void dropIndex() throws IOException {
+    if (luceneStore != null) {
+      try {
+        luceneStore.dropIndex();
+      } finally {
+        Closeables.closeQuietly(luceneStore);
+      }
+    }
+  }
+
+  @Test
+  public void testMetadataSurvivesReopen() throws IOException {
+    MetadataEntity entity = MetadataEntity.ofDataset("ns", "persisted");
+    Metadata metadata = new Metadata(MetadataScope.USER, ImmutableSet.of("durable"), ImmutableMap.of("k", "v"));
+    MetadataRecord record = new MetadataRecord(entity, metadata);
+    luceneStore.apply(new Update(entity, metadata), MutationOptions.DEFAULT);
+
+    // mutations are committed when they return, hence a new instance on the same directory finds the metadata
+    try (LuceneMetadataStorage reopened = new LuceneMetadataStorage(cConf)) {
+      luceneStore.close();
+      Assert.assertEquals(metadata, reopened.read(new Read(entity)));
+      SearchResponse response = reopened.search(SearchRequest.of("durable").build());
+      Assert.assertEquals(Collections.singletonList(record), response.getResults());
+      reopened.apply(new Drop(entity), MutationOptions.DEFAULT);
+    }
+    Assert.assertEquals(Metadata.EMPTY, luceneStore.read(new Read(entity)));
+  }
+
+  @Override
+  protected void validateCursor(String cursor, int expectedOffset, int expectedPageSize) {
+    Cursor c = Cursor.fromString(cursor);
+    Assert.assertEquals(expectedOffset, c.getOffset());
+    Assert.assertEquals(expectedPageSize, c.getLimit());
+  }
+}
@@ -14,12 +14,14 @@
  * the License.
  */
 
-package io.cdap.cdap.common.metadata;
+package io.cdap.cdap.spi.metadata;
 
-import com.google.common.base.Joiner;
-import com.google.common.collect.ImmutableSet;
+import io.cdap.cdap.api.annotation.Beta;
 import io.cdap.cdap.api.metadata.MetadataScope;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Objects;
 import java.util.Set;
 import javax.annotation.Nullable;
@@ -28,6 +30,7 @@ import javax.annotation.Nullable;
  * A cursor represents the continuation of an existing search query. It therefore encapsulates
  * all the search options, such as offset and limit, sorting, namespaces, etc.
  */
+@Beta
 public class Cursor {
   private final int offset;
   private final int limit;
@@ -138,8 +141,8 @@ public class Cursor {
     return String.format("%s:%s:%s:%s:%s:%s:%s:%s:%s",
                          offset, limit, showHidden,
                          scope == null ? "" : scope.name(),
-                         namespaces == null ? "" : Joiner.on(",").join(namespaces),
-                         types == null ? "" : Joiner.on(",").join(types),
+                         namespaces == null ? "" : String.join(",", namespaces),
+                         types == null ? "" : String.join(",", types),
                          sorting == null ? "" : sorting,
                          actualCursor,
                          query);
@@ -154,12 +157,16 @@ public class Cursor {
     int limit = Integer.parseInt(parts[1]);
     boolean showHidden = Boolean.parseBoolean(parts[2]);
     MetadataScope scope = parts[3].isEmpty() ? null : MetadataScope.valueOf(parts[3]);
-    Set<String> namespaces = parts[4].isEmpty() ? null : ImmutableSet.copyOf(parts[4].split(","));
-    Set<String> types = parts[5].isEmpty() ? null : ImmutableSet.copyOf(parts[5].split(","));
+    Set<String> namespaces = parts[4].isEmpty() ? null : toSet(parts[4].split(","));
+    Set<String> types = parts[5].isEmpty() ? null : toSet(parts[5].split(","));
     String sorting = parts[6].isEmpty() ? null : parts[6];
     String actual = parts[7];
     String query = parts[8];
 
     return new Cursor(offset, limit, showHidden, scope, namespaces, types, sorting, actual, query);
   }
+
+  private static Set<String> toSet(String[] values) {
+    return Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(values)));
+  }
 }
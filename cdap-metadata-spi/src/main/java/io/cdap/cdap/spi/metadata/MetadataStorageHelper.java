@@ -0,0 +1,263 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.spi.metadata;
+
+import io.cdap.cdap.api.annotation.Beta;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.data.schema.SchemaWalker;
+import io.cdap.cdap.api.metadata.MetadataEntity;
+import io.cdap.cdap.api.metadata.MetadataScope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+/**
+ * Helpers for implementations of the {@link MetadataStorage} that index the metadata of each entity as one document,
+ * such that they apply mutations and interpret search requests in the same way.
+ */
+@Beta
+public final class MetadataStorageHelper {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MetadataStorageHelper.class);
+
+  // used to tokenize the query string, same as the MetadataDataset
+  private static final Pattern SPACE_SEPARATOR_PATTERN = Pattern.compile("\\s+");
+
+  private MetadataStorageHelper() { }
+
+  /**
+   * Computes the metadata after an entity creation or update of an existing entity.
+   * See {@link MetadataMutation.Create} for detailed semantics. If the entity did not exist before,
+   * none of the directives apply and {@link #update(Metadata, Metadata)} should be used instead.
+   *
+   * @param before the metadata of the existing entity
+   * @param create the mutation to apply
+   */
+  public static Metadata create(Metadata before, MetadataMutation.Create create) {
+    Metadata meta = create.getMetadata();
+    Map<ScopedNameOfKind, MetadataDirective> directives = create.getDirectives();
+    // determine the scopes that this mutation applies to (scopes that do not occur in the metadata are no changed)
+    Set<MetadataScope> scopes = Stream.concat(meta.getTags().stream(), meta.getProperties().keySet().stream())
+      .map(ScopedName::getScope).collect(Collectors.toSet());
+    // compute what previously existing tags and properties have to be preserved (all others are replaced)
+    Set<ScopedName> existingTagsToKeep = new HashSet<>();
+    Map<ScopedName, String> existingPropertiesToKeep = new HashMap<>();
+    // all tags and properties that are in a scope not affected by this mutation
+    before.getTags().stream()
+      .filter(tag -> !scopes.contains(tag.getScope()))
+      .forEach(existingTagsToKeep::add);
+    before.getProperties().entrySet().stream()
+      .filter(entry -> !scopes.contains(entry.getKey().getScope()))
+      .forEach(entry -> existingPropertiesToKeep.put(entry.getKey(), entry.getValue()));
+    // tags and properties in affected scopes that must be kept or preserved
+    directives.entrySet().stream()
+      .filter(entry -> scopes.contains(entry.getKey().getScope()))
+      .forEach(entry -> {
+        ScopedNameOfKind key = entry.getKey();
+        if (key.getKind() == MetadataKind.TAG
+          && (entry.getValue() == MetadataDirective.PRESERVE || entry.getValue() == MetadataDirective.KEEP)) {
+          ScopedName tag = new ScopedName(key.getScope(), key.getName());
+          if (!meta.getTags().contains(tag) && before.getTags().contains(tag)) {
+            existingTagsToKeep.add(tag);
+          }
+        } else if (key.getKind() == MetadataKind.PROPERTY) {
+          ScopedName property = new ScopedName(key.getScope(), key.getName());
+          String existingValue = before.getProperties().get(property);
+          String newValue = meta.getProperties().get(property);
+          if (existingValue != null
+            && (entry.getValue() == MetadataDirective.PRESERVE && !existingValue.equals(newValue)
+            || entry.getValue() == MetadataDirective.KEEP && newValue == null)) {
+            existingPropertiesToKeep.put(property, existingValue);
+          }
+        }
+      });
+    // compute the new tags and properties
+    Set<ScopedName> newTags = meta.getTags();
+    if (!existingTagsToKeep.isEmpty()) {
+      newTags = new HashSet<>(newTags);
+      newTags.addAll(existingTagsToKeep);
+    }
+    Map<ScopedName, String> newProperties = meta.getProperties();
+    if (!existingPropertiesToKeep.isEmpty()) {
+      newProperties = new HashMap<>(newProperties);
+      newProperties.putAll(existingPropertiesToKeep);
+    }
+    return new Metadata(newTags, newProperties);
+  }
+
+  /**
+   * Computes the metadata after adding or updating tags and properties.
+   */
+  public static Metadata update(Metadata before, Metadata updates) {
+    Set<ScopedName> tags = new HashSet<>(before.getTags());
+    tags.addAll(updates.getTags());
+    Map<ScopedName, String> properties = new HashMap<>(before.getProperties());
+    properties.putAll(updates.getProperties());
+    return new Metadata(tags, properties);
+  }
+
+  /**
+   * Filter the metadata based on the given scopes, kinds, and selection.
+   * Based on the value of {@code keep}, this can be used to keep or to
+   * discard the matching tags and properties.
+   *
+   * @param keep if true, only matching metadata elements are kept; otherwise only non-matching elements are kept.
+   */
+  public static Metadata filterMetadata(Metadata metadata, boolean keep, Set<MetadataKind> kinds,
+                                        Set<MetadataScope> scopes, @Nullable Set<ScopedNameOfKind> selection) {
+    if (selection != null) {
+      return new Metadata(
+        metadata.getTags().stream()
+          .filter(tag ->
+            keep == selection.contains(new ScopedNameOfKind(MetadataKind.TAG, tag.getScope(), tag.getName())))
+          .collect(Collectors.toSet()),
+        metadata.getProperties().entrySet().stream()
+          .filter(entry -> keep == selection.contains(
+            new ScopedNameOfKind(MetadataKind.PROPERTY, entry.getKey().getScope(), entry.getKey().getName())))
+          .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+    }
+    return new Metadata(
+      metadata.getTags().stream()
+        .filter(tag -> keep == (kinds.contains(MetadataKind.TAG) && scopes.contains(tag.getScope())))
+        .collect(Collectors.toSet()),
+      metadata.getProperties().entrySet().stream()
+        .filter(entry ->
+          keep == (kinds.contains(MetadataKind.PROPERTY) && scopes.contains(entry.getKey().getScope())))
+        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+  }
+
+  /**
+   * Creates the search request that a cursor continues.
+   *
+   * @param request the request that contains the cursor
+   * @param cursor the parsed cursor of the request
+   */
+  public static SearchRequest createRequestFromCursor(SearchRequest request, Cursor cursor) {
+    SearchRequest.Builder builder = SearchRequest.of(cursor.getQuery())
+      .setOffset(cursor.getOffset())
+      .setLimit(cursor.getLimit())
+      .setShowHidden(cursor.isShowHidden())
+      .setScope(cursor.getScope())
+      .setCursorRequested(request.isCursorRequested());
+    if (cursor.getSorting() != null) {
+      builder.setSorting(Sorting.of(cursor.getSorting()));
+    }
+    if (cursor.getNamespaces() != null) {
+      cursor.getNamespaces().forEach(builder::addNamespace);
+    }
+    if (cursor.getTypes() != null) {
+      cursor.getTypes().forEach(builder::addType);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Splits a search query into its terms. The query "*" is not split, and should be handled as a match-all
+   * query before calling this.
+   *
+   * @return the terms of the query, which is empty if the query only has whitespace
+   */
+  public static List<QueryTerm> parseQuery(String query) {
+    List<QueryTerm> terms = new ArrayList<>();
+    for (String term : SPACE_SEPARATOR_PATTERN.split(query.trim())) {
+      if (!term.isEmpty()) {
+        terms.add(new QueryTerm(term.toLowerCase()));
+      }
+    }
+    return terms;
+  }
+
+  /**
+   * Translates a schema into the text to index: the name of each field, and the name and type of each field
+   * separated by {@link MetadataConstants#KEYVALUE_SEPARATOR}. If the schema cannot be parsed, it is indexed
+   * as plain text.
+   */
+  public static String parseSchema(MetadataEntity entity, String schemaStr) {
+    try {
+      Schema schema = Schema.parseJson(schemaStr);
+      StringBuilder builder = new StringBuilder();
+      SchemaWalker.walk(schema, (field, subSchema) -> {
+        if (field != null) {
+          String type = (subSchema.isNullable() ? subSchema.getNonNullable() : subSchema).getType().toString();
+          builder.append(field).append(' ')
+            .append(field).append(MetadataConstants.KEYVALUE_SEPARATOR).append(type).append(' ');
+        }
+      });
+      return builder.toString();
+    } catch (Exception e) {
+      LOG.warn("Unable to parse schema '{}' for entity {}. Indexing as plain text.", schemaStr, entity);
+      return schemaStr;
+    }
+  }
+
+  /**
+   * A term of a search query, possibly with a field qualifier of the form field:value.
+   */
+  public static final class QueryTerm {
+
+    private final String term;
+    private final String field;
+    private final String value;
+
+    private QueryTerm(String term) {
+      this.term = term;
+      if (term.contains(MetadataConstants.KEYVALUE_SEPARATOR)) {
+        // split the search term in two parts on first occurrence of KEYVALUE_SEPARATOR and trim the key and value
+        String[] split = term.split(MetadataConstants.KEYVALUE_SEPARATOR, 2);
+        this.field = split[0].trim();
+        this.value = split[1].trim();
+      } else {
+        this.field = null;
+        this.value = term;
+      }
+    }
+
+    /**
+     * Returns the lower-cased term as it appears in the query, including the field qualifier if it has one.
+     * The term as is should be matched against the plain text, because it may be of the form field:type, which
+     * is indexed as plain text for the fields of a schema.
+     */
+    public String getTerm() {
+      return term;
+    }
+
+    /**
+     * Returns the field qualifier of the term, or null if it does not have one.
+     */
+    @Nullable
+    public String getField() {
+      return field;
+    }
+
+    /**
+     * Returns the value to match in the field, or the term if it does not have a field qualifier.
+     */
+    public String getValue() {
+      return value;
+    }
+  }
+}
@@ -25,20 +25,31 @@ import io.cdap.cdap.api.annotation.Beta;
 public class MutationOptions {
 
   private final boolean asynchronous;
+  private final boolean refresh;
 
   /**
    * Create a mutation options object.
    *
    * @param asynchronous whether metadata mutation call should be asynchronous (non-blocking) or not.
+   * @param refresh whether the mutation should make the storage refresh its search view.
    */
-  private MutationOptions(boolean asynchronous) {
+  private MutationOptions(boolean asynchronous, boolean refresh) {
     this.asynchronous = asynchronous;
+    this.refresh = refresh;
   }
 
   public boolean isAsynchronous() {
     return asynchronous;
   }
 
+  /**
+   * Whether the mutation should make the storage refresh its search view. If false, the mutation becomes
+   * visible to searches when the storage refreshes on its own, which is cheaper for frequent batch writes.
+   */
+  public boolean isRefresh() {
+    return refresh;
+  }
+
   public static Builder builder() {
     return new Builder();
   }
@@ -49,6 +60,7 @@ public class MutationOptions {
   public static class Builder {
 
     private boolean asynchronous;
+    private boolean refresh = true;
 
     private Builder() {}
 
@@ -60,8 +72,17 @@ public class MutationOptions {
       return this;
     }
 
+    /**
+     * Allows setting refresh field for MutationOptions; if not called, defaults to true (i.e. refresh after the
+     * mutation)
+     */
+    public Builder setRefresh(boolean refresh) {
+      this.refresh = refresh;
+      return this;
+    }
+
     public MutationOptions build() {
-      return new MutationOptions(asynchronous);
+      return new MutationOptions(asynchronous, refresh);
     }
   }
 
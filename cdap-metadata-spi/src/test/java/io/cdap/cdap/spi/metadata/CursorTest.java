@@ -14,7 +14,7 @@
  * the License.
  */
 
-package io.cdap.cdap.common.metadata;
+package io.cdap.cdap.spi.metadata;
 
 import com.google.common.collect.ImmutableSet;
 import org.junit.Assert;
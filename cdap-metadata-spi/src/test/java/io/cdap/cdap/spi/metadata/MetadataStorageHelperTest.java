@@ -0,0 +1,318 @@
+/*
+ * Copyright © 2019 Cask Data, Inc.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.spi.metadata;
+
+import com.google.common.collect.ImmutableSet;
+import io.cdap.cdap.api.data.schema.Schema;
+import io.cdap.cdap.api.metadata.MetadataEntity;
+import io.cdap.cdap.api.metadata.MetadataScope;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static io.cdap.cdap.spi.metadata.MetadataStorageTest.props;
+import static io.cdap.cdap.spi.metadata.MetadataStorageTest.tags;
+
+/**
+ * Tests for {@link MetadataStorageHelper}.
+ */
+public class MetadataStorageHelperTest {
+
+  private static final boolean KEEP = true;
+  private static final boolean DISCARD = false;
+
+  @Test
+  public void testSchema() {
+    Schema bytesArraySchema = Schema.arrayOf(Schema.of(Schema.Type.BYTES));
+    Schema stringArraySchema = Schema.arrayOf(Schema.of(Schema.Type.STRING));
+    Schema booleanBytesMapSchema = Schema.mapOf(Schema.of(Schema.Type.BOOLEAN), Schema.of(Schema.Type.BYTES));
+    Schema nestedMapSchema = Schema.mapOf(bytesArraySchema, booleanBytesMapSchema);
+    Schema record22Schema = Schema.recordOf("record22", Schema.Field.of("a", nestedMapSchema));
+    Schema record22ArraySchema = Schema.arrayOf(record22Schema);
+    Schema bytesDoubleMapSchema = Schema.mapOf(Schema.of(Schema.Type.BYTES), Schema.of(Schema.Type.DOUBLE));
+    Schema record21Schema = Schema.recordOf("record21",
+                                            Schema.Field.of("x", Schema.of(Schema.Type.STRING)),
+                                            Schema.Field.of("y", stringArraySchema),
+                                            Schema.Field.of("z", bytesDoubleMapSchema));
+    Schema record21to22MapSchema = Schema.mapOf(record21Schema, record22ArraySchema);
+    Schema nullableIntSchema = Schema.nullableOf(Schema.of(Schema.Type.INT));
+    Schema tripeUnionSchema = Schema.unionOf(Schema.of(Schema.Type.INT), Schema.of(Schema.Type.LONG),
+                                             Schema.of(Schema.Type.NULL));
+    Schema complexSchema = Schema.recordOf("record1",
+                                           Schema.Field.of("map1", record21to22MapSchema),
+                                           Schema.Field.of("i", nullableIntSchema),
+                                           Schema.Field.of("j", tripeUnionSchema));
+    Schema anotherComplexSchema = Schema.arrayOf(Schema.of(Schema.Type.STRING));
+    Schema superComplexSchema = Schema.unionOf(complexSchema, anotherComplexSchema, Schema.of(Schema.Type.NULL));
+
+    String[] results = MetadataStorageHelper.parseSchema(MetadataEntity.ofDataset("ds"),
+                                                            superComplexSchema.toString()).split(" ");
+    String[] expected = {
+      "record1", "record1:RECORD",
+      "map1", "map1:MAP",
+      "record21", "record21:RECORD",
+      "x", "x:STRING",
+      "y", "y:ARRAY",
+      "z", "z:MAP",
+      "record22", "record22:RECORD",
+      "a", "a:MAP",
+      "i", "i:INT",
+      "j", "j:UNION",
+    };
+    Assert.assertArrayEquals(expected, results);
+  }
+
+  @Test
+  public void testInvalidSchema() {
+    Schema schema = Schema.recordOf("mystruct",
+                                    Schema.Field.of("x", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("y", Schema.of(Schema.Type.INT)),
+                                    Schema.Field.of("z", Schema.of(Schema.Type.DOUBLE)));
+    String schemaString = schema.toString();
+    MetadataEntity entity = MetadataEntity.ofDataset("ds");
+    String[] results = MetadataStorageHelper.parseSchema(entity, schemaString).split(" ");
+    String[] expected = {"mystruct", "mystruct:RECORD", "x", "x:STRING", "y", "y:INT", "z", "z:DOUBLE"};
+    Assert.assertArrayEquals(expected, results);
+
+    String schemaWithInvalidTypes = schemaString.replace("string", "nosuchtype");
+    Assert.assertEquals(schemaWithInvalidTypes, MetadataStorageHelper.parseSchema(entity, schemaWithInvalidTypes));
+
+    String truncatedSchema = schemaString.substring(10, schemaString.length() - 10);
+    Assert.assertEquals(truncatedSchema, MetadataStorageHelper.parseSchema(entity, truncatedSchema));
+  }
+
+  @Test
+  public void testFiltering() {
+    ScopedName sys = new ScopedName(MetadataScope.SYSTEM, "s");
+    ScopedName user = new ScopedName(MetadataScope.USER, "u");
+    String sval = "S";
+    String uval = "U";
+    Metadata before = new Metadata(tags(sys, user), props(sys, sval, user, uval));
+
+    // test selection to remove
+    Assert.assertEquals(new Metadata(tags(sys), props(user, uval)),
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          DISCARD,
+                          MetadataKind.NONE,
+                          MetadataScope.NONE,
+                          ImmutableSet.of(new ScopedNameOfKind(MetadataKind.TAG, user),
+                                          new ScopedNameOfKind(MetadataKind.PROPERTY, sys))));
+
+    // test selection is not affected by scopes or kinds
+    Assert.assertEquals(new Metadata(tags(sys), props(user, uval)),
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          DISCARD,
+                          MetadataKind.ALL,
+                          MetadataScope.ALL,
+                          ImmutableSet.of(new ScopedNameOfKind(MetadataKind.TAG, user),
+                                          new ScopedNameOfKind(MetadataKind.PROPERTY, sys))));
+
+    // test selection to keep
+    Assert.assertEquals(new Metadata(tags(user), props(sys, sval)),
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          KEEP,
+                          MetadataKind.NONE,
+                          MetadataScope.NONE,
+                          ImmutableSet.of(new ScopedNameOfKind(MetadataKind.TAG, user),
+                                          new ScopedNameOfKind(MetadataKind.PROPERTY, sys))));
+
+    // test selection is not affected by scopes or kinds
+    Assert.assertEquals(new Metadata(tags(user), props(sys, sval)),
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          KEEP,
+                          MetadataKind.ALL,
+                          MetadataScope.ALL,
+                          ImmutableSet.of(new ScopedNameOfKind(MetadataKind.TAG, user),
+                                          new ScopedNameOfKind(MetadataKind.PROPERTY, sys))));
+
+    // test removing nothing
+    Assert.assertEquals(before,
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          DISCARD,
+                          MetadataKind.NONE,
+                          MetadataScope.NONE,
+                          null));
+    Assert.assertEquals(before,
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          DISCARD,
+                          MetadataKind.NONE,
+                          MetadataScope.ALL,
+                          null));
+    Assert.assertEquals(before,
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          DISCARD,
+                          MetadataKind.ALL,
+                          MetadataScope.NONE,
+                          null));
+
+    // test keeping all
+    Assert.assertEquals(before,
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          KEEP,
+                          MetadataKind.ALL,
+                          MetadataScope.ALL,
+                          null));
+
+    // test removing all
+    Assert.assertEquals(Metadata.EMPTY,
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          DISCARD,
+                          MetadataKind.ALL,
+                          MetadataScope.ALL,
+                          null));
+
+    // test keeping nothing
+    Assert.assertEquals(Metadata.EMPTY,
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          KEEP,
+                          MetadataKind.NONE,
+                          MetadataScope.NONE,
+                          null));
+    // test keeping nothing
+    Assert.assertEquals(Metadata.EMPTY,
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          KEEP,
+                          MetadataKind.ALL,
+                          MetadataScope.NONE,
+                          null));
+    // test keeping nothing
+    Assert.assertEquals(Metadata.EMPTY,
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          KEEP,
+                          MetadataKind.NONE,
+                          MetadataScope.ALL,
+                          null));
+
+    // test removing all SYSTEM
+    Assert.assertEquals(new Metadata(tags(user), props(user, uval)),
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          DISCARD,
+                          MetadataKind.ALL,
+                          Collections.singleton(MetadataScope.SYSTEM),
+                          null));
+    // test removing all USER
+    Assert.assertEquals(new Metadata(tags(sys), props(sys, sval)),
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          DISCARD,
+                          MetadataKind.ALL,
+                          Collections.singleton(MetadataScope.USER),
+                          null));
+    // test keeping all SYSTEM
+    Assert.assertEquals(new Metadata(tags(sys), props(sys, sval)),
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          KEEP,
+                          MetadataKind.ALL,
+                          Collections.singleton(MetadataScope.SYSTEM),
+                          null));
+    // test keeping all USER
+    Assert.assertEquals(new Metadata(tags(user), props(user, uval)),
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          KEEP,
+                          MetadataKind.ALL,
+                          Collections.singleton(MetadataScope.USER),
+                          null));
+
+    // test removing all tags
+    Assert.assertEquals(new Metadata(tags(), props(sys, sval, user, uval)),
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          DISCARD,
+                          Collections.singleton(MetadataKind.TAG),
+                          MetadataScope.ALL,
+                          null));
+
+    // test removing all properties
+    Assert.assertEquals(new Metadata(tags(sys, user), props()),
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          DISCARD,
+                          Collections.singleton(MetadataKind.PROPERTY),
+                          MetadataScope.ALL,
+                          null));
+
+    // test keeping all tags
+    Assert.assertEquals(new Metadata(tags(sys, user), props()),
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          KEEP,
+                          Collections.singleton(MetadataKind.TAG),
+                          MetadataScope.ALL,
+                          null));
+
+    // test keeping all properties
+    Assert.assertEquals(new Metadata(tags(), props(sys, sval, user, uval)),
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          KEEP,
+                          Collections.singleton(MetadataKind.PROPERTY),
+                          MetadataScope.ALL,
+                          null));
+
+    // test removing all tags in SYSTEM scope
+    Assert.assertEquals(new Metadata(tags(user), props(sys, sval, user, uval)),
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          DISCARD,
+                          Collections.singleton(MetadataKind.TAG),
+                          Collections.singleton(MetadataScope.SYSTEM),
+                          null));
+
+    // test removing all properties in USER scope
+    Assert.assertEquals(new Metadata(tags(sys, user), props(sys, sval)),
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          DISCARD,
+                          Collections.singleton(MetadataKind.PROPERTY),
+                          Collections.singleton(MetadataScope.USER),
+                          null));
+
+    // test keeping all tags in SYSTEM scope
+    Assert.assertEquals(new Metadata(tags(sys), props()),
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          KEEP,
+                          Collections.singleton(MetadataKind.TAG),
+                          Collections.singleton(MetadataScope.SYSTEM),
+                          null));
+
+    // test keeping all properties in USER scope
+    Assert.assertEquals(new Metadata(tags(), props(user, uval)),
+                        MetadataStorageHelper.filterMetadata(
+                          before,
+                          KEEP,
+                          Collections.singleton(MetadataKind.PROPERTY),
+                          Collections.singleton(MetadataScope.USER),
+                          null));
+  }
+}
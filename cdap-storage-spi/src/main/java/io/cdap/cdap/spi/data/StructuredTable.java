@@ -48,6 +48,22 @@ public interface StructuredTable extends Closeable {
    */
   void upsert(Collection<Field<?>> fields) throws InvalidFieldException, IOException;
 
+  /**
+   * Insert or replace multiple rows to the table. The default implementation is to call
+   * {@link #upsert(Collection)} one by one. Implementations of this interface can provide an optimized version.
+   *
+   * @param multiFields a collection of fields of each row to write
+   * @throws InvalidFieldException if any of the fields are not part of the table schema, or the types of the value
+   *                               do not match
+   * @throws IOException if there is an error writing to the table
+   */
+  default void multiUpsert(Collection<? extends Collection<Field<?>>> multiFields)
+    throws InvalidFieldException, IOException {
+    for (Collection<Field<?>> fields : multiFields) {
+      upsert(fields);
+    }
+  }
+
   /**
    * Read a single row with all the columns from the table.
    *
@@ -173,6 +189,22 @@ public interface StructuredTable extends Closeable {
    */
   void delete(Collection<Field<?>> keys) throws InvalidFieldException, IOException;
 
+  /**
+   * Delete multiple rows from the table. The default implementation is to call {@link #delete(Collection)} one by
+   * one. Implementations of this interface can provide an optimized version.
+   *
+   * @param multiKeys a collection of primary keys of the rows to delete
+   * @throws InvalidFieldException if any of the keys are not part of the table schema, or the types of the value
+   *                               do not match
+   * @throws IOException if there is an error deleting from the table
+   */
+  default void multiDelete(Collection<? extends Collection<Field<?>>> multiKeys)
+    throws InvalidFieldException, IOException {
+    for (Collection<Field<?>> keys : multiKeys) {
+      delete(keys);
+    }
+  }
+
   /**
    * Delete a range of rows from the table.
    *
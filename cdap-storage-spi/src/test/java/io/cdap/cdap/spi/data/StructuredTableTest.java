@@ -173,6 +173,53 @@ public abstract class StructuredTableTest {
     Assert.assertEquals(new HashSet<>(keys), result);
   }
 
+  @Test
+  public void testMultiUpsertDelete() throws Exception {
+    int max = 10;
+
+    // Write all rows in one call, including a row written twice where the later one wins,
+    // and a row with a different set of columns
+    List<Collection<Field<?>>> expected = new ArrayList<>();
+    List<Collection<Field<?>>> rows = new ArrayList<>();
+    for (int i = 0; i < max; i++) {
+      List<Field<?>> fields = Arrays.asList(Fields.intField(KEY, i),
+                                            Fields.longField(KEY2, (long) i),
+                                            Fields.stringField(STRING_COL, VAL + i),
+                                            Fields.doubleField(DOUBLE_COL, (double) i),
+                                            Fields.floatField(FLOAT_COL, (float) i),
+                                            Fields.bytesField(BYTES_COL, Bytes.toBytes("bytes-" + i)));
+      expected.add(fields);
+      rows.add(i == 3 ? Arrays.asList(Fields.intField(KEY, i), Fields.longField(KEY2, (long) i),
+                                      Fields.stringField(STRING_COL, "old")) : fields);
+    }
+    rows.add(expected.get(3));
+    getTransactionRunner().run(context -> context.getTable(SIMPLE_TABLE).multiUpsert(rows));
+    Assert.assertEquals(expected, readSimpleStructuredRows(max));
+
+    // Delete the even rows in one call
+    List<Collection<Field<?>>> keys = new ArrayList<>();
+    for (int i = 0; i < max; i += 2) {
+      keys.add(Arrays.asList(Fields.intField(KEY, i), Fields.longField(KEY2, (long) i)));
+    }
+    getTransactionRunner().run(context -> context.getTable(SIMPLE_TABLE).multiDelete(keys));
+    List<Collection<Field<?>>> remaining = new ArrayList<>();
+    for (int i = 1; i < max; i += 2) {
+      remaining.add(expected.get(i));
+    }
+    Assert.assertEquals(remaining, readSimpleStructuredRows(max));
+
+    // Rows with missing primary keys are rejected
+    getTransactionRunner().run(context -> {
+      StructuredTable table = context.getTable(SIMPLE_TABLE);
+      try {
+        table.multiUpsert(Collections.singletonList(Collections.singletonList(Fields.intField(KEY, 100))));
+        Assert.fail("Expected InvalidFieldException since the primary keys are missing");
+      } catch (InvalidFieldException e) {
+        // Expected
+      }
+    });
+  }
+
   @Test
   public void testSimpleScan() throws Exception {
     int max = 100;
@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.cdap.cdap.messaging;
+
+import io.cdap.cdap.messaging.data.RawMessage;
+import io.cdap.cdap.messaging.data.TopicRawMessage;
+import io.cdap.cdap.proto.id.TopicId;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Helper class for the length-prefixed frame encoding of fetch responses. It is an alternative to the
+ * {@link Schemas.V1.ConsumeResponse} avro encoding that allows the server to write message payloads to the response
+ * as they are, without avro encoding them.
+ *
+ * Each message is encoded as a frame of
+ *
+ * <pre>
+ * [id length (int32)][id bytes][payload length (int32)][payload bytes]
+ * </pre>
+ *
+ * The response ends at the end of the stream. A client requests the frame encoding by setting the {@code Accept}
+ * header to {@link #CONTENT_TYPE}. Servers that don't support it always respond with the avro encoding, which can be
+ * distinguished by the response {@code Content-Type}.
+ *
+ * Responses of multi-topic fetch always use the {@link #TOPIC_CONTENT_TYPE} encoding, in which each frame is
+ * prefixed with the index of the topic in the request that the message belongs to:
+ *
+ * <pre>
+ * [topic index (int32)][id length (int32)][id bytes][payload length (int32)][payload bytes]
+ * </pre>
+ */
+public final class MessageFrames {
+
+  public static final String CONTENT_TYPE = "application/x-tms-frames";
+  public static final String TOPIC_CONTENT_TYPE = "application/x-tms-topic-frames";
+
+  /**
+   * Reads a {@link RawMessage} frame from the given {@link DataInput}.
+   *
+   * @return the decoded {@link RawMessage} or {@code null} if reached the end of the input
+   * @throws IOException if failed to read from the input or the input ended in the middle of a frame
+   */
+  @Nullable
+  public static RawMessage read(DataInput input) throws IOException {
+    int idLength;
+    try {
+      idLength = input.readInt();
+    } catch (EOFException e) {
+      // No more frame
+      return null;
+    }
+    byte[] id = new byte[idLength];
+    input.readFully(id);
+    byte[] payload = new byte[input.readInt()];
+    input.readFully(payload);
+    return new RawMessage(id, payload);
+  }
+
+  /**
+   * Reads a {@link TopicRawMessage} frame in the {@link #TOPIC_CONTENT_TYPE} encoding from the given
+   * {@link DataInput}.
+   *
+   * @param input the {@link DataInput} to read from
+   * @param topics the list of topics in the same order as in the request
+   * @return the decoded {@link TopicRawMessage} or {@code null} if reached the end of the input
+   * @throws IOException if failed to read from the input or the input ended in the middle of a frame
+   */
+  @Nullable
+  public static TopicRawMessage read(DataInput input, List<TopicId> topics) throws IOException {
+    int index;
+    try {
+      index = input.readInt();
+    } catch (EOFException e) {
+      // No more frame
+      return null;
+    }
+    if (index < 0 || index >= topics.size()) {
+      throw new IOException("Invalid topic index " + index + " in frame. Number of topics is " + topics.size());
+    }
+    RawMessage message = read(input);
+    if (message == null) {
+      throw new EOFException("Missing message after topic index " + index);
+    }
+    return new TopicRawMessage(topics.get(index), message.getId(), message.getPayload());
+  }
+
+  private MessageFrames() {
+    // protect the constructor
+  }
+}
@@ -16,14 +16,21 @@
 
 package io.cdap.cdap.messaging;
 
+import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.messaging.TopicAlreadyExistsException;
 import io.cdap.cdap.api.messaging.TopicNotFoundException;
 import io.cdap.cdap.common.ServiceUnavailableException;
+import io.cdap.cdap.messaging.data.RawMessage;
+import io.cdap.cdap.messaging.data.TopicRawMessage;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import javax.annotation.Nullable;
 
 /**
@@ -95,6 +102,51 @@ public interface MessagingService {
    */
   MessageFetcher prepareFetch(TopicId topicId) throws TopicNotFoundException, IOException;
 
+  /**
+   * Fetches messages from multiple topics in one call. Messages from the same topic are returned in publish order,
+   * while messages from different topics can be interleaved. By default it fetches from each topic in turn through
+   * {@link #prepareFetch(TopicId)}. Implementations that can fetch from multiple topics more efficiently, for example
+   * with a single remote call, should override this method.
+   *
+   * @param requests a list of {@link TopicFetchRequest}, each specifying the topic, the starting message
+   *                 and the limit for fetching from that topic
+   * @return a {@link CloseableIterator} of {@link TopicRawMessage}
+   * @throws TopicNotFoundException if any of the topics doesn't exist
+   * @throws IOException if failed to fetch messages
+   * @throws ServiceUnavailableException if the messaging service is not available
+   */
+  default CloseableIterator<TopicRawMessage> fetch(List<TopicFetchRequest> requests)
+    throws TopicNotFoundException, IOException {
+    // Prepare all fetchers first so that missing topics are reported before any message is fetched
+    List<Callable<CloseableIterator<TopicRawMessage>>> fetches = new ArrayList<>(requests.size());
+    for (TopicFetchRequest request : requests) {
+      TopicId topicId = request.getTopicId();
+      MessageFetcher fetcher = prepareFetch(topicId).setLimit(request.getLimit());
+      if (request.getStartAfter() != null) {
+        fetcher.setStartMessage(request.getStartAfter(), false);
+      }
+      fetches.add(() -> {
+        CloseableIterator<RawMessage> iterator = fetcher.fetch();
+        return new AbstractCloseableIterator<TopicRawMessage>() {
+          @Override
+          protected TopicRawMessage computeNext() {
+            if (!iterator.hasNext()) {
+              return endOfData();
+            }
+            RawMessage message = iterator.next();
+            return new TopicRawMessage(topicId, message.getId(), message.getPayload());
+          }
+
+          @Override
+          public void close() {
+            iterator.close();
+          }
+        };
+      });
+    }
+    return MessagingServiceUtils.concat(fetches);
+  }
+
   /**
    * Publishes a list of messages to the messaging system.
    *
@@ -108,6 +160,41 @@ public interface MessagingService {
   @Nullable
   RollbackDetail publish(StoreRequest request) throws TopicNotFoundException, IOException;
 
+  /**
+   * Publishes a list of messages to the messaging system asynchronously. By default it calls
+   * {@link #publish(StoreRequest)} in the calling thread. Implementations that are capable of
+   * completing the publish without blocking the caller should override this method.
+   *
+   * @param request the {@link StoreRequest} containing messages to be published
+   * @return a {@link CompletableFuture} that will be completed when the messages are published. If the store request
+   *         is transactional, the future result is a {@link RollbackDetail} containing information for rollback;
+   *         otherwise the future result is {@code null}. On failure, the future will be completed exceptionally
+   *         with the same exception as thrown by {@link #publish(StoreRequest)}.
+   */
+  default CompletableFuture<RollbackDetail> publishAsync(StoreRequest request) {
+    CompletableFuture<RollbackDetail> future = new CompletableFuture<>();
+    try {
+      future.complete(publish(request));
+    } catch (Exception e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * Returns a {@link CompletableFuture} that will be completed when new messages are published to the given topic
+   * after this method is called. It is for waiting on new messages without polling repeatedly. Callers that are
+   * no longer waiting should cancel the returned future. By default it returns a completed future, meaning the
+   * implementation doesn't support publish notification and the caller should just fetch again.
+   *
+   * @param topicId the topic to wait for new messages
+   * @return a {@link CompletableFuture} that will be completed when new messages are published
+   * @throws ServiceUnavailableException if the messaging service is not available
+   */
+  default CompletableFuture<Void> awaitPublish(TopicId topicId) {
+    return CompletableFuture.completedFuture(null);
+  }
+
   /**
    * Stores a list of messages to the messaging system. It is for long / distributed transactional publishing use case.
    *
@@ -16,6 +16,9 @@
 
 package io.cdap.cdap.messaging;
 
+import com.google.common.base.Throwables;
+import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.proto.id.NamespaceId;
@@ -25,9 +28,11 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
  * A util class for TMS.
@@ -105,6 +110,45 @@ public final class MessagingServiceUtils {
     return Collections.unmodifiableSet(systemTopics);
   }
 
+  /**
+   * Returns a {@link CloseableIterator} that iterates through the {@link CloseableIterator}s returned by the given
+   * list of {@link Callable}s one after another. Each iterator is only opened when the previous one is exhausted,
+   * and is closed right after it is exhausted, so that at most one of them is opened at any time.
+   */
+  public static <T> CloseableIterator<T> concat(List<? extends Callable<? extends CloseableIterator<T>>> iterators) {
+    Iterator<? extends Callable<? extends CloseableIterator<T>>> callables = iterators.iterator();
+    return new AbstractCloseableIterator<T>() {
+
+      private CloseableIterator<T> current;
+
+      @Override
+      protected T computeNext() {
+        while (current == null || !current.hasNext()) {
+          if (current != null) {
+            current.close();
+            current = null;
+          }
+          if (!callables.hasNext()) {
+            return endOfData();
+          }
+          try {
+            current = callables.next().call();
+          } catch (Exception e) {
+            throw Throwables.propagate(e);
+          }
+        }
+        return current.next();
+      }
+
+      @Override
+      public void close() {
+        if (current != null) {
+          current.close();
+          current = null;
+        }
+      }
+    };
+  }
 
   private MessagingServiceUtils() {
     // no-op
@@ -0,0 +1,165 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Compression codecs for message payloads stored in the messaging tables. The codec is a property of a topic
+ * and applies to every payload stored under the same topic generation. Payloads are compressed with the block API
+ * of each codec, which keeps no state between calls, hence the codecs are shared by all threads. Only pure Java
+ * codecs are used, so that compressed topics can be read on every platform.
+ *
+ * Each payload is compressed on its own, since the messaging tables store and fetch messages individually. Small
+ * payloads gain little from it, hence payloads smaller than {@link #MIN_COMPRESS_SIZE} bytes, as well as payloads
+ * that don't get smaller, are stored uncompressed behind a one byte header.
+ */
+public enum PayloadCompression {
+
+  /**
+   * Payloads are stored as is.
+   */
+  NONE {
+    @Override
+    byte[] doCompress(byte[] payload) {
+      return payload;
+    }
+
+    @Override
+    byte[] doDecompress(byte[] payload) {
+      return payload;
+    }
+  },
+
+  /**
+   * Payloads are stored with a one byte header. The header is followed by the payload as is, or by the payload
+   * length as a big endian int32 and the LZ4 block of the payload.
+   */
+  LZ4 {
+    @Override
+    byte[] doCompress(byte[] payload) {
+      if (payload.length < MIN_COMPRESS_SIZE) {
+        return store(payload);
+      }
+      LZ4Compressor compressor = LZ4_FACTORY.fastCompressor();
+      int headerSize = 1 + Integer.BYTES;
+      byte[] compressed = new byte[headerSize + compressor.maxCompressedLength(payload.length)];
+      ByteBuffer.wrap(compressed).put(HEADER_COMPRESSED).putInt(payload.length);
+      int length = compressor.compress(payload, 0, payload.length, compressed, headerSize,
+                                       compressed.length - headerSize);
+      if (headerSize + length > payload.length) {
+        return store(payload);
+      }
+      return Arrays.copyOf(compressed, headerSize + length);
+    }
+
+    @Override
+    byte[] doDecompress(byte[] payload) throws IOException {
+      if (payload[0] == HEADER_STORED) {
+        return Arrays.copyOfRange(payload, 1, payload.length);
+      }
+      if (payload[0] != HEADER_COMPRESSED) {
+        throw new IOException("Invalid LZ4 payload header " + payload[0]);
+      }
+      int length = ByteBuffer.wrap(payload, 1, payload.length - 1).getInt();
+      if (length < 0) {
+        throw new IOException("Invalid LZ4 payload length " + length);
+      }
+      byte[] decompressed = new byte[length];
+      LZ4FastDecompressor decompressor = LZ4_FACTORY.fastDecompressor();
+      decompressor.decompress(payload, 1 + Integer.BYTES, decompressed, 0, length);
+      return decompressed;
+    }
+  };
+
+  /**
+   * Payloads smaller than this number of bytes are not compressed.
+   */
+  public static final int MIN_COMPRESS_SIZE = 128;
+
+  private static final byte HEADER_STORED = 0;
+  private static final byte HEADER_COMPRESSED = 1;
+
+  // The pure Java instance doesn't depend on a native library being available for the platform
+  private static final LZ4Factory LZ4_FACTORY = LZ4Factory.fastestJavaInstance();
+
+  /**
+   * Returns the {@link PayloadCompression} of the given name, case insensitively.
+   *
+   * @throws IllegalArgumentException if there is no compression of the given name
+   */
+  public static PayloadCompression fromName(String name) {
+    try {
+      return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unsupported payload compression '" + name + "'", e);
+    }
+  }
+
+  /**
+   * Compresses the given payload.
+   */
+  public byte[] compress(byte[] payload) throws IOException {
+    // Empty payload is stored as is, which is never ambiguous since compressing non-empty payload is never empty
+    if (payload.length == 0) {
+      return payload;
+    }
+    return doCompress(payload);
+  }
+
+  /**
+   * Decompresses the given payload that was compressed with the {@link #compress(byte[])} method.
+   */
+  public byte[] decompress(byte[] payload) throws IOException {
+    if (payload.length == 0) {
+      return payload;
+    }
+    try {
+      return doDecompress(payload);
+    } catch (RuntimeException e) {
+      // The block decompressors fail with runtime exceptions on malformed input
+      throw new IOException("Failed to decompress payload with " + this, e);
+    }
+  }
+
+  /**
+   * Compresses the given non-empty payload.
+   */
+  abstract byte[] doCompress(byte[] payload) throws IOException;
+
+  /**
+   * Decompresses the given non-empty payload.
+   */
+  abstract byte[] doDecompress(byte[] payload) throws IOException;
+
+  /**
+   * Returns the given payload behind the header of an uncompressed payload.
+   */
+  private static byte[] store(byte[] payload) {
+    byte[] stored = new byte[1 + payload.length];
+    stored[0] = HEADER_STORED;
+    System.arraycopy(payload, 0, stored, 1, payload.length);
+    return stored;
+  }
+}
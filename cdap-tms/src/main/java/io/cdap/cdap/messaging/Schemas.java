@@ -64,6 +64,13 @@ public final class Schemas {
     public static final class ConsumeResponse {
       public static final Schema SCHEMA = loadSchema(ConsumeResponse.class);
     }
+
+    /**
+     * Contains schema for consume request from multiple topics.
+     */
+    public static final class MultiConsumeRequest {
+      public static final Schema SCHEMA = loadSchema(MultiConsumeRequest.class);
+    }
   }
 
   private Schemas() {
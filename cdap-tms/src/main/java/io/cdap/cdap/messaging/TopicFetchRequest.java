@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging;
+
+import io.cdap.cdap.proto.id.TopicId;
+
+import javax.annotation.Nullable;
+
+/**
+ * Represents fetching from one topic as part of a multi-topic fetch through the
+ * {@link MessagingService#fetch(java.util.List)} method.
+ */
+public final class TopicFetchRequest {
+
+  private final TopicId topicId;
+  private final byte[] startAfter;
+  private final int limit;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param topicId the topic to fetch from
+   * @param startAfter the message id to fetch after (exclusive) or {@code null} to fetch from the first available
+   *                   message
+   * @param limit maximum number of messages to fetch from the topic
+   */
+  public TopicFetchRequest(TopicId topicId, @Nullable byte[] startAfter, int limit) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("Invalid message fetching limit. Limit must be > 0");
+    }
+    this.topicId = topicId;
+    this.startAfter = startAfter;
+    this.limit = limit;
+  }
+
+  public TopicId getTopicId() {
+    return topicId;
+  }
+
+  @Nullable
+  public byte[] getStartAfter() {
+    return startAfter;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+}
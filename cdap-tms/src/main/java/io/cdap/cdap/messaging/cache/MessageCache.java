@@ -65,18 +65,21 @@ import javax.annotation.Nullable;
  */
 public class MessageCache<T> {
 
-  private static final String METRICS_WEIGHT = "cache.weight";
-  private static final String METRICS_ENTRIES_ADDED = "cache.entries.added";
-  private static final String METRICS_ENTRIES_REMOVED = "cache.entries.removed";
-  private static final String METRICS_ADD_REQUESTS = "cache.add.requests";
-  private static final String METRICS_ADD_REDUCE_WEIGHT = "cache.add.reduce.weight";
-  private static final String METRICS_SCAN_REQUESTS = "cache.scan.requests";
-  private static final String METRICS_SCAN_REDUCE_WEIGHT = "cache.scan.reduce.weight";
+  private static final String DEFAULT_METRICS_PREFIX = "cache";
 
   private final NavigableSet<CacheEntry<T>> cache;
   private final Comparator<T> comparator;
   private final AtomicReference<Limits> limits;
   private final MetricsContext metricsContext;
+  private final String metricsWeight;
+  private final String metricsEntriesAdded;
+  private final String metricsEntriesRemoved;
+  private final String metricsAddRequests;
+  private final String metricsAddReduceWeight;
+  private final String metricsScanRequests;
+  private final String metricsScanHits;
+  private final String metricsScanMisses;
+  private final String metricsScanReduceWeight;
   private final AtomicLong currentWeight;
   private final AtomicBoolean needReduceWeight;
   private final AtomicBoolean adding;
@@ -92,10 +95,34 @@ public class MessageCache<T> {
    * @param metricsContext a {@link MetricsContext} for emitting metrics about this cache.
    */
   public MessageCache(Comparator<T> comparator, Weigher<T> weigher, Limits limits, MetricsContext metricsContext) {
+    this(comparator, weigher, limits, metricsContext, DEFAULT_METRICS_PREFIX);
+  }
+
+  /**
+   * Creates a new instance of the cache.
+   *
+   * @param comparator a {@link Comparator} for ordering cache entries
+   * @param weigher a {@link Weigher} for computing the weight of each cache entry
+   * @param limits the limits for maintaining cache weight; see class description for more detail
+   * @param metricsContext a {@link MetricsContext} for emitting metrics about this cache.
+   * @param metricsPrefix prefix of the metrics names emitted by this cache, for distinguishing between
+   *                      different caches that share the same {@link MetricsContext} tags
+   */
+  public MessageCache(Comparator<T> comparator, Weigher<T> weigher, Limits limits,
+                      MetricsContext metricsContext, String metricsPrefix) {
     this.cache = new ConcurrentSkipListSet<>(new CacheEntryComparator<>(comparator));
     this.comparator = comparator;
     this.limits = new AtomicReference<>(limits);
     this.metricsContext = metricsContext;
+    this.metricsWeight = metricsPrefix + ".weight";
+    this.metricsEntriesAdded = metricsPrefix + ".entries.added";
+    this.metricsEntriesRemoved = metricsPrefix + ".entries.removed";
+    this.metricsAddRequests = metricsPrefix + ".add.requests";
+    this.metricsAddReduceWeight = metricsPrefix + ".add.reduce.weight";
+    this.metricsScanRequests = metricsPrefix + ".scan.requests";
+    this.metricsScanHits = metricsPrefix + ".scan.hits";
+    this.metricsScanMisses = metricsPrefix + ".scan.misses";
+    this.metricsScanReduceWeight = metricsPrefix + ".scan.reduce.weight";
     this.currentWeight = new AtomicLong();
     this.needReduceWeight = new AtomicBoolean();
     this.adding = new AtomicBoolean();
@@ -137,7 +164,7 @@ public class MessageCache<T> {
         newWeight = currentWeight.addAndGet(cacheEntry.getWeight());
         if (newWeight > limits.get().getHardLimit()) {
           reduceWeight();
-          metricsContext.increment(METRICS_ADD_REDUCE_WEIGHT, 1L);
+          metricsContext.increment(metricsAddReduceWeight, 1L);
           newWeight = currentWeight.get();
         }
 
@@ -165,13 +192,13 @@ public class MessageCache<T> {
         largestCacheEntry = cacheEntry;
       }
 
-      metricsContext.increment(METRICS_ADD_REQUESTS, 1L);
-      metricsContext.increment(METRICS_ENTRIES_ADDED, entriesAdded);
-      metricsContext.gauge(METRICS_WEIGHT, newWeight);
+      metricsContext.increment(metricsAddRequests, 1L);
+      metricsContext.increment(metricsEntriesAdded, entriesAdded);
+      metricsContext.gauge(metricsWeight, newWeight);
 
       if (newWeight > limits.get().getHardLimit()) {
         reduceWeight();
-        metricsContext.increment(METRICS_ADD_REDUCE_WEIGHT, 1L);
+        metricsContext.increment(metricsAddReduceWeight, 1L);
       } else if (newWeight > limits.get().getReduceTrigger()) {
         needReduceWeight.compareAndSet(false, true);
       }
@@ -215,7 +242,10 @@ public class MessageCache<T> {
       cacheLock.readLock().unlock();
     }
 
-    metricsContext.increment(METRICS_SCAN_REQUESTS, 1L);
+    metricsContext.increment(metricsScanRequests, 1L);
+    // It is a hit if the cache contains all entries starting from the start entry
+    boolean hit = firstInCache != null && comparator.compare(firstInCache, startEntry) <= 0;
+    metricsContext.increment(hit ? metricsScanHits : metricsScanMisses, 1L);
 
     return new AbstractScanner<T>(entries.iterator(), firstInCache) {
       @Override
@@ -224,7 +254,7 @@ public class MessageCache<T> {
         // one winner to proceed with the reduce weight call.
         if (needReduceWeight.compareAndSet(true, false)) {
           reduceWeight();
-          metricsContext.increment(METRICS_SCAN_REDUCE_WEIGHT, 1L);
+          metricsContext.increment(metricsScanReduceWeight, 1L);
         }
       }
     };
@@ -339,7 +369,7 @@ public class MessageCache<T> {
     } finally {
       cacheLock.writeLock().unlock();
     }
-    metricsContext.increment(METRICS_ENTRIES_REMOVED, entriesRemoved);
+    metricsContext.increment(metricsEntriesRemoved, entriesRemoved);
   }
 
   /**
@@ -35,12 +35,16 @@ import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.http.DefaultHttpRequestConfig;
 import io.cdap.cdap.common.internal.remote.RemoteClient;
 import io.cdap.cdap.messaging.MessageFetcher;
+import io.cdap.cdap.messaging.MessageFrames;
 import io.cdap.cdap.messaging.MessagingService;
+import io.cdap.cdap.messaging.MessagingServiceUtils;
 import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.Schemas;
 import io.cdap.cdap.messaging.StoreRequest;
+import io.cdap.cdap.messaging.TopicFetchRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
 import io.cdap.cdap.messaging.data.RawMessage;
+import io.cdap.cdap.messaging.data.TopicRawMessage;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
 import io.cdap.common.http.HttpMethod;
@@ -60,8 +64,12 @@ import org.apache.avro.io.Encoder;
 import org.apache.avro.io.EncoderFactory;
 import org.apache.tephra.TransactionCodec;
 import org.apache.twill.discovery.DiscoveryServiceClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
@@ -71,8 +79,11 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -86,20 +97,33 @@ import javax.annotation.Nullable;
  */
 public final class ClientMessagingService implements MessagingService {
 
+  private static final Logger LOG = LoggerFactory.getLogger(ClientMessagingService.class);
   private static final HttpRequestConfig HTTP_REQUEST_CONFIG = new DefaultHttpRequestConfig(false);
   private static final TransactionCodec TRANSACTION_CODEC = new TransactionCodec();
   private static final Gson GSON = new Gson();
+  private static final int FRAME_BUFFER_SIZE = 64 * 1024;
   // These types for only for Gson to use, hence using the gson TypeToken instead of guava one
   private static final Type TOPIC_PROPERTY_TYPE = new TypeToken<Map<String, String>>() { }.getType();
   private static final Type TOPIC_LIST_TYPE = new TypeToken<List<String>>() { }.getType();
+  private static final long MULTI_TOPIC_FETCH_PROBE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(5);
 
   private final RemoteClient remoteClient;
+  private final long multiTopicFetchProbeIntervalMs;
+  // The time before which the multi-topic fetch endpoint is not tried. It is set when the server is found
+  // to not support the endpoint, so that the endpoint is tried again after the server is upgraded.
+  private volatile long multiTopicFetchProbeTime;
 
   @VisibleForTesting
   @Inject
   public ClientMessagingService(DiscoveryServiceClient discoveryServiceClient) {
+    this(discoveryServiceClient, MULTI_TOPIC_FETCH_PROBE_INTERVAL_MS);
+  }
+
+  @VisibleForTesting
+  public ClientMessagingService(DiscoveryServiceClient discoveryServiceClient, long multiTopicFetchProbeIntervalMs) {
     this.remoteClient = new RemoteClient(discoveryServiceClient, Constants.Service.MESSAGING_SERVICE,
                                          HTTP_REQUEST_CONFIG, "/v1/namespaces/");
+    this.multiTopicFetchProbeIntervalMs = multiTopicFetchProbeIntervalMs;
   }
 
   @Override
@@ -177,6 +201,31 @@ public final class ClientMessagingService implements MessagingService {
     return new ClientMessageFetcher(topicId);
   }
 
+  @Override
+  public CloseableIterator<TopicRawMessage> fetch(List<TopicFetchRequest> requests)
+    throws TopicNotFoundException, IOException {
+    if (System.currentTimeMillis() < multiTopicFetchProbeTime) {
+      return MessagingService.super.fetch(requests);
+    }
+
+    // The multi-topic fetch endpoint is per namespace, hence group the requests by namespace
+    Map<NamespaceId, List<TopicFetchRequest>> namespaceRequests = new LinkedHashMap<>();
+    for (TopicFetchRequest request : requests) {
+      TopicId topicId = request.getTopicId();
+      namespaceRequests.computeIfAbsent(new NamespaceId(topicId.getNamespace()), k -> new ArrayList<>()).add(request);
+    }
+
+    if (namespaceRequests.size() == 1) {
+      Map.Entry<NamespaceId, List<TopicFetchRequest>> entry = namespaceRequests.entrySet().iterator().next();
+      return fetch(entry.getKey(), entry.getValue());
+    }
+    List<Callable<CloseableIterator<TopicRawMessage>>> fetches = new ArrayList<>();
+    for (Map.Entry<NamespaceId, List<TopicFetchRequest>> entry : namespaceRequests.entrySet()) {
+      fetches.add(() -> fetch(entry.getKey(), entry.getValue()));
+    }
+    return MessagingServiceUtils.concat(fetches);
+  }
+
   @Nullable
   @Override
   public RollbackDetail publish(StoreRequest request) throws TopicNotFoundException, IOException {
@@ -258,6 +307,87 @@ public final class ClientMessagingService implements MessagingService {
     return response;
   }
 
+  /**
+   * Fetches messages from multiple topics in the same namespace with a single call.
+   */
+  private CloseableIterator<TopicRawMessage> fetch(NamespaceId namespaceId,
+                                                   List<TopicFetchRequest> requests)
+    throws TopicNotFoundException, IOException {
+    Schema requestSchema = Schemas.V1.MultiConsumeRequest.SCHEMA;
+    GenericData.Array<GenericRecord> records = new GenericData.Array<>(requests.size(), requestSchema);
+    List<TopicId> topics = new ArrayList<>(requests.size());
+    for (TopicFetchRequest request : requests) {
+      GenericRecord record = new GenericData.Record(requestSchema.getElementType());
+      record.put("topic", request.getTopicId().getTopic());
+      if (request.getStartAfter() != null) {
+        record.put("startAfter", ByteBuffer.wrap(request.getStartAfter()));
+      }
+      record.put("limit", request.getLimit());
+      records.add(record);
+      topics.add(request.getTopicId());
+    }
+
+    HttpURLConnection urlConn = remoteClient.openConnection(HttpMethod.POST, namespaceId.getNamespace() + "/poll");
+    urlConn.setRequestProperty(HttpHeaders.CONTENT_TYPE, "avro/binary");
+
+    // Send the request
+    Encoder encoder = EncoderFactory.get().directBinaryEncoder(urlConn.getOutputStream(), null);
+    DatumWriter<GenericData.Array<GenericRecord>> datumWriter = new GenericDatumWriter<>(requestSchema);
+    datumWriter.write(records, encoder);
+
+    int responseCode = urlConn.getResponseCode();
+    if (responseCode == HttpURLConnection.HTTP_NOT_FOUND) {
+      urlConn.disconnect();
+      // The response doesn't tell which topic is missing, hence look it up. This is rare so the cost is fine.
+      for (TopicId topicId : topics) {
+        getTopic(topicId);
+      }
+      // All the topics exist, hence the server doesn't have the multi-topic fetch endpoint.
+      // Fetch from each topic with the per-topic endpoint instead, until it is time to try the endpoint again.
+      LOG.info("Messaging service does not support multi-topic fetch. Fetching from each topic separately for {} ms.",
+               multiTopicFetchProbeIntervalMs);
+      multiTopicFetchProbeTime = System.currentTimeMillis() + multiTopicFetchProbeIntervalMs;
+      return MessagingService.super.fetch(requests);
+    }
+    handleError(responseCode, () -> readErrorResponse(urlConn), "Failed to fetch messages from topics " + topics);
+    verifyContentType(urlConn.getHeaderFields(), MessageFrames.TOPIC_CONTENT_TYPE);
+
+    InputStream inputStream = urlConn.getInputStream();
+    DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream, FRAME_BUFFER_SIZE));
+    return new AbstractCloseableIterator<TopicRawMessage>() {
+      @Override
+      protected TopicRawMessage computeNext() {
+        try {
+          TopicRawMessage message = MessageFrames.read(input, topics);
+          return message == null ? endOfData() : message;
+        } catch (IOException e) {
+          throw Throwables.propagate(e);
+        }
+      }
+
+      @Override
+      public void close() {
+        Closeables.closeQuietly(inputStream);
+        urlConn.disconnect();
+      }
+    };
+  }
+
+  /**
+   * Reads the error response body from the given {@link HttpURLConnection} and disconnects it.
+   */
+  private String readErrorResponse(HttpURLConnection urlConn) {
+    try (InputStream errorStream = urlConn.getErrorStream()) {
+      return errorStream == null
+        ? ""
+        : urlConn.getResponseMessage() + new String(ByteStreams.toByteArray(errorStream), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      return "";
+    } finally {
+      urlConn.disconnect();
+    }
+  }
+
   /**
    * Creates the URL path for making HTTP requests for the given topic.
    */
@@ -331,19 +461,25 @@ public final class ClientMessagingService implements MessagingService {
   }
 
   /**
-   * Verifies the content-type in the header matches with the required type.
+   * Returns the content-type in the header or {@code null} if there is no content-type.
    */
-  private void verifyContentType(Map<String, ? extends Collection<String>> headers, String requiredContentType) {
+  @Nullable
+  private String getContentType(Map<String, ? extends Collection<String>> headers) {
     // Netty 4.1 has all headers set with lower case name
     // However, the cdap-http library doesn't handle it well, hence we iterate all headers instead of lookup in here
-    boolean passed = false;
     for (Map.Entry<String, ? extends Collection<String>> entry : headers.entrySet()) {
       if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(entry.getKey())) {
-        passed = requiredContentType.equalsIgnoreCase(Iterables.getFirst(entry.getValue(), null));
-        break;
+        return Iterables.getFirst(entry.getValue(), null);
       }
     }
-    if (!passed) {
+    return null;
+  }
+
+  /**
+   * Verifies the content-type in the header matches with the required type.
+   */
+  private void verifyContentType(Map<String, ? extends Collection<String>> headers, String requiredContentType) {
+    if (!requiredContentType.equalsIgnoreCase(getContentType(headers))) {
       throw new IllegalArgumentException("Only " + requiredContentType + " content type is support.");
     }
   }
@@ -397,8 +533,15 @@ public final class ClientMessagingService implements MessagingService {
 
       // The cask common http library doesn't support read streaming, and we don't want to buffer all messages
       // in memory, hence we use the HttpURLConnection directly instead.
-      HttpURLConnection urlConn = remoteClient.openConnection(HttpMethod.POST, createTopicPath(topicId) + "/poll");
+      // The timeout is passed as query parameter, which is ignored by servers that don't support long polling
+      String path = createTopicPath(topicId) + "/poll";
+      if (getPollTimeoutMillis() > 0) {
+        path += "?timeout=" + getPollTimeoutMillis();
+      }
+      HttpURLConnection urlConn = remoteClient.openConnection(HttpMethod.POST, path);
       urlConn.setRequestProperty(HttpHeaders.CONTENT_TYPE, "avro/binary");
+      // Ask for the frame encoding. Servers that don't support it will respond with avro.
+      urlConn.setRequestProperty(HttpHeaders.ACCEPT, MessageFrames.CONTENT_TYPE);
 
       // Send the request
       Encoder encoder = EncoderFactory.get().directBinaryEncoder(urlConn.getOutputStream(), null);
@@ -410,19 +553,12 @@ public final class ClientMessagingService implements MessagingService {
         throw new TopicNotFoundException(topicId.getNamespace(), topicId.getTopic());
       }
 
-      handleError(responseCode, () -> {
-        // If there is any error, read the response body from the error stream
-        try (InputStream errorStream = urlConn.getErrorStream()) {
-          return errorStream == null
-            ? ""
-            : urlConn.getResponseMessage() + new String(ByteStreams.toByteArray(errorStream),
-                                                        StandardCharsets.UTF_8);
-        } catch (IOException e) {
-          return "";
-        } finally {
-          urlConn.disconnect();
-        }
-      }, "Failed to update topic " + topicId);
+      // If there is any error, read the response body from the error stream
+      handleError(responseCode, () -> readErrorResponse(urlConn), "Failed to update topic " + topicId);
+      String contentType = getContentType(urlConn.getHeaderFields());
+      if (MessageFrames.CONTENT_TYPE.equalsIgnoreCase(contentType)) {
+        return decodeFrames(urlConn);
+      }
       verifyContentType(urlConn.getHeaderFields(), "avro/binary");
 
       // Decode the avro array manually instead of using DatumReader in order to support streaming decode.
@@ -469,5 +605,30 @@ public final class ClientMessagingService implements MessagingService {
         }
       };
     }
+
+    /**
+     * Decodes a response body with the {@link MessageFrames} encoding.
+     */
+    private CloseableIterator<RawMessage> decodeFrames(HttpURLConnection urlConn) throws IOException {
+      InputStream inputStream = urlConn.getInputStream();
+      DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream, FRAME_BUFFER_SIZE));
+      return new AbstractCloseableIterator<RawMessage>() {
+        @Override
+        protected RawMessage computeNext() {
+          try {
+            RawMessage message = MessageFrames.read(input);
+            return message == null ? endOfData() : message;
+          } catch (IOException e) {
+            throw Throwables.propagate(e);
+          }
+        }
+
+        @Override
+        public void close() {
+          Closeables.closeQuietly(inputStream);
+          urlConn.disconnect();
+        }
+      };
+    }
   }
 }
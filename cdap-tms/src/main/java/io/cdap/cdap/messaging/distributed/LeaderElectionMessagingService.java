@@ -34,6 +34,7 @@ import io.cdap.cdap.messaging.service.CoreMessagingService;
 import io.cdap.cdap.messaging.store.ForwardingTableFactory;
 import io.cdap.cdap.messaging.store.TableFactory;
 import io.cdap.cdap.messaging.store.cache.MessageTableCacheProvider;
+import io.cdap.cdap.messaging.store.cache.PayloadTableCacheProvider;
 import io.cdap.cdap.messaging.store.hbase.HBaseTableFactory;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
@@ -46,6 +47,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -63,6 +65,7 @@ public class LeaderElectionMessagingService extends AbstractIdleService implemen
   private final Injector injector;
   private final CConfiguration cConf;
   private final MessageTableCacheProvider cacheProvider;
+  private final PayloadTableCacheProvider payloadCacheProvider;
   private final ZKClient zkClient;
   private final AtomicMarkableReference<DelegateService> delegate;
   private boolean tableUpgraded;
@@ -71,10 +74,12 @@ public class LeaderElectionMessagingService extends AbstractIdleService implemen
 
   @Inject
   LeaderElectionMessagingService(Injector injector, CConfiguration cConf,
-                                 MessageTableCacheProvider cacheProvider, ZKClient zkClient) {
+                                 MessageTableCacheProvider cacheProvider,
+                                 PayloadTableCacheProvider payloadCacheProvider, ZKClient zkClient) {
     this.injector = injector;
     this.cConf = cConf;
     this.cacheProvider = cacheProvider;
+    this.payloadCacheProvider = payloadCacheProvider;
     this.zkClient = zkClient;
     this.delegate = new AtomicMarkableReference<>(null, false);
   }
@@ -165,6 +170,16 @@ public class LeaderElectionMessagingService extends AbstractIdleService implemen
     return getMessagingService().publish(request);
   }
 
+  @Override
+  public CompletableFuture<RollbackDetail> publishAsync(StoreRequest request) {
+    return getMessagingService().publishAsync(request);
+  }
+
+  @Override
+  public CompletableFuture<Void> awaitPublish(TopicId topicId) {
+    return getMessagingService().awaitPublish(topicId);
+  }
+
   @Override
   public void storePayload(StoreRequest request) throws TopicNotFoundException, IOException {
     getMessagingService().storePayload(request);
@@ -276,8 +291,9 @@ public class LeaderElectionMessagingService extends AbstractIdleService implemen
         httpService.stopAndWait();
         messagingService.stopAndWait();
       } finally {
-        // Clear the table cache on shutting down.
+        // Clear the table caches on shutting down.
         cacheProvider.clear();
+        payloadCacheProvider.clear();
       }
     }
 
@@ -43,9 +43,12 @@ import io.cdap.cdap.messaging.store.MessageTable;
 import io.cdap.cdap.messaging.store.TableFactory;
 import io.cdap.cdap.messaging.store.cache.CachingTableFactory;
 import io.cdap.cdap.messaging.store.cache.DefaultMessageTableCacheProvider;
+import io.cdap.cdap.messaging.store.cache.DefaultPayloadTableCacheProvider;
 import io.cdap.cdap.messaging.store.cache.MessageTableCacheProvider;
+import io.cdap.cdap.messaging.store.cache.PayloadTableCacheProvider;
 import io.cdap.cdap.messaging.store.hbase.HBaseTableFactory;
 import io.cdap.cdap.messaging.store.leveldb.LevelDBTableFactory;
+import io.cdap.cdap.messaging.store.segment.SegmentTableFactory;
 import io.cdap.cdap.proto.id.TopicId;
 import io.cdap.http.HttpHandler;
 
@@ -76,8 +79,9 @@ public class MessagingServerRuntimeModule extends RuntimeModule {
           .annotatedWith(Names.named(CachingTableFactory.DELEGATE_TABLE_FACTORY))
           .to(HBaseTableFactory.class);
 
-        // The cache must be in singleton scope
+        // The caches must be in singleton scope
         bind(MessageTableCacheProvider.class).to(DefaultMessageTableCacheProvider.class).in(Scopes.SINGLETON);
+        bind(PayloadTableCacheProvider.class).to(DefaultPayloadTableCacheProvider.class).in(Scopes.SINGLETON);
         bind(TableFactory.class).to(CachingTableFactory.class);
 
         // Bind http handlers
@@ -121,7 +125,7 @@ public class MessagingServerRuntimeModule extends RuntimeModule {
         }
       });
 
-      bind(TableFactory.class).to(LevelDBTableFactory.class).in(Scopes.SINGLETON);
+      bind(TableFactory.class).toProvider(LocalTableFactoryProvider.class).in(Scopes.SINGLETON);
       bind(MessagingService.class).to(CoreMessagingService.class).in(Scopes.SINGLETON);
       expose(MessagingService.class);
 
@@ -138,6 +142,35 @@ public class MessagingServerRuntimeModule extends RuntimeModule {
     }
   }
 
+  /**
+   * A guice provider for the {@link TableFactory} used in local mode, based on the configured storage implementation.
+   */
+  private static final class LocalTableFactoryProvider implements Provider<TableFactory> {
+
+    private final CConfiguration cConf;
+
+    @Inject
+    LocalTableFactoryProvider(CConfiguration cConf) {
+      this.cConf = cConf;
+    }
+
+    @Override
+    public TableFactory get() {
+      String storage = cConf.get(Constants.MessagingSystem.LOCAL_STORAGE_IMPLEMENTATION,
+                                 Constants.MessagingSystem.LOCAL_STORAGE_LEVELDB);
+      if (Constants.MessagingSystem.LOCAL_STORAGE_SEGMENT.equalsIgnoreCase(storage)) {
+        return new SegmentTableFactory(cConf);
+      }
+      if (Constants.MessagingSystem.LOCAL_STORAGE_LEVELDB.equalsIgnoreCase(storage)) {
+        return new LevelDBTableFactory(cConf);
+      }
+      throw new IllegalArgumentException(String.format("Unsupported messaging storage implementation '%s'. "
+                                                         + "Must be either '%s' or '%s'.", storage,
+                                                       Constants.MessagingSystem.LOCAL_STORAGE_LEVELDB,
+                                                       Constants.MessagingSystem.LOCAL_STORAGE_SEGMENT));
+    }
+  }
+
   /**
    * A guice provider for {@link HBaseTableUtil}. We don't use {@link HBaseTableUtilFactory} as a provider
    * directly because the {@code @Inject} constructor of {@link HBaseTableUtilFactory} requires a
@@ -22,27 +22,34 @@ import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.api.messaging.TopicNotFoundException;
 import io.cdap.cdap.common.BadRequestException;
+import io.cdap.cdap.common.HttpExceptionHandler;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.io.ByteBuffers;
 import io.cdap.cdap.common.logging.LogSamplers;
 import io.cdap.cdap.common.logging.Loggers;
 import io.cdap.cdap.messaging.MessageFetcher;
+import io.cdap.cdap.messaging.MessageFrames;
 import io.cdap.cdap.messaging.MessagingService;
 import io.cdap.cdap.messaging.Schemas;
+import io.cdap.cdap.messaging.TopicFetchRequest;
 import io.cdap.cdap.messaging.data.RawMessage;
+import io.cdap.cdap.messaging.data.TopicRawMessage;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
 import io.cdap.http.AbstractHttpHandler;
 import io.cdap.http.BodyProducer;
+import io.cdap.http.HandlerContext;
 import io.cdap.http.HttpResponder;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
@@ -55,6 +62,7 @@ import org.apache.avro.io.DecoderFactory;
 import org.apache.avro.io.Encoder;
 import org.apache.avro.io.EncoderFactory;
 import org.apache.tephra.TransactionCodec;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,42 +71,76 @@ import java.net.SocketException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 
 /**
  * A netty http handler for handling message fetching REST API for the messaging system.
  */
-@Path("/v1/namespaces/{namespace}/topics/{topic}")
+@Path("/v1/namespaces/{namespace}")
 public final class FetchHandler extends AbstractHttpHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(FetchHandler.class);
   // Log at most once per minute.
   private static final Logger SAMPLING_LOG = Loggers.sampling(LOG, LogSamplers.limitRate(60000));
   private static final TransactionCodec TRANSACTION_CODEC = new TransactionCodec();
+  private static final HttpExceptionHandler EXCEPTION_HANDLER = new MessagingHttpExceptionHandler();
   private static final Set<String> KNOWN_IO_EXCEPTION_MESSAGES = ImmutableSet.of(
     "Connection reset by peer",
     "Broken pipe"
   );
 
   private final MessagingService messagingService;
+  private final long maxPollTimeoutMillis;
+  private final int pollThreads;
   private int messageChunkSize;
+  private ScheduledExecutorService pollExecutor;
 
   @Inject
   FetchHandler(CConfiguration cConf, MessagingService messagingService) {
     this.messagingService = messagingService;
     this.messageChunkSize = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE);
+    this.maxPollTimeoutMillis = cConf.getLong(Constants.MessagingSystem.HTTP_SERVER_POLL_MAX_TIMEOUT_MS);
+    this.pollThreads = Math.max(1, cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_WORKER_THREADS));
+  }
+
+  @Override
+  public void init(HandlerContext context) {
+    super.init(context);
+    // Threads are only used for timing out and re-fetching for poll requests that are waiting for new messages
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+      pollThreads, Threads.createDaemonThreadFactory("messaging-poll-%d"));
+    executor.setKeepAliveTime(60, TimeUnit.SECONDS);
+    executor.allowCoreThreadTimeOut(true);
+    executor.setRemoveOnCancelPolicy(true);
+    pollExecutor = executor;
+  }
+
+  @Override
+  public void destroy(HandlerContext context) {
+    super.destroy(context);
+    pollExecutor.shutdownNow();
   }
 
   @POST
-  @Path("poll")
+  @Path("topics/{topic}/poll")
   public void poll(FullHttpRequest request, HttpResponder responder,
                    @PathParam("namespace") String namespace,
-                   @PathParam("topic") String topic) throws Exception {
+                   @PathParam("topic") String topic,
+                   @QueryParam("timeout") @DefaultValue("0") long timeoutMillis) throws Exception {
 
     TopicId topicId = new NamespaceId(namespace).topic(topic);
 
@@ -110,12 +152,100 @@ public final class FetchHandler extends AbstractHttpHandler {
     // Decode the poll request
     Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ByteBufInputStream(request.content()), null);
     DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.ConsumeRequest.SCHEMA);
+    GenericRecord fetchRequest = datumReader.read(null, decoder);
+
+    long timeout = Math.min(timeoutMillis, maxPollTimeoutMillis);
+    if (timeout <= 0) {
+      sendMessages(request, responder, fetchMessages(fetchRequest, topicId));
+      return;
+    }
+
+    // Register for the publish notification before fetching, so that a publish happening right after the fetch
+    // won't be missed
+    CompletableFuture<Void> published = messagingService.awaitPublish(topicId);
+    CloseableIterator<RawMessage> iterator;
+    try {
+      iterator = fetchMessages(fetchRequest, topicId);
+    } catch (Throwable t) {
+      published.cancel(false);
+      throw t;
+    }
+    if (iterator.hasNext()) {
+      published.cancel(false);
+      sendMessages(request, responder, iterator);
+      return;
+    }
+    iterator.close();
+
+    // Nothing to fetch yet. Wait for new messages or the timeout, whichever comes first, and then fetch again.
+    // The wait is asynchronous so that no handler thread is held while waiting.
+    ScheduledFuture<?> timeoutFuture = pollExecutor.schedule(() -> published.complete(null),
+                                                             timeout, TimeUnit.MILLISECONDS);
+    published.whenCompleteAsync((result, failure) -> {
+      timeoutFuture.cancel(false);
+      try {
+        sendMessages(request, responder, fetchMessages(fetchRequest, topicId));
+      } catch (Throwable t) {
+        EXCEPTION_HANDLER.handle(t, request, responder);
+      }
+    }, pollExecutor);
+  }
+
+  @POST
+  @Path("poll")
+  public void pollTopics(FullHttpRequest request, HttpResponder responder,
+                         @PathParam("namespace") String namespace) throws Exception {
+    NamespaceId namespaceId = new NamespaceId(namespace);
+
+    // Currently only support avro
+    if (!"avro/binary".equals(request.headers().get(HttpHeaderNames.CONTENT_TYPE))) {
+      throw new BadRequestException("Only avro/binary content type is supported.");
+    }
+
+    // Decode the poll request, which is an array of per topic requests
+    Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ByteBufInputStream(request.content()), null);
+    DatumReader<GenericData.Array<GenericRecord>> datumReader =
+      new GenericDatumReader<>(Schemas.V1.MultiConsumeRequest.SCHEMA);
+
+    // Each message in the response is tagged with the index of its topic in the request
+    Map<TopicId, Integer> topicIndices = new HashMap<>();
+    List<TopicFetchRequest> fetchRequests = new ArrayList<>();
+    for (GenericRecord record : datumReader.read(null, decoder)) {
+      TopicId topicId = namespaceId.topic(record.get("topic").toString());
+      if (topicIndices.putIfAbsent(topicId, fetchRequests.size()) != null) {
+        throw new BadRequestException("Topic " + topicId + " appears more than once in the request.");
+      }
+      ByteBuffer startAfter = (ByteBuffer) record.get("startAfter");
+      fetchRequests.add(new TopicFetchRequest(topicId, startAfter == null ? null : Bytes.toBytes(startAfter),
+                                              (Integer) record.get("limit")));
+    }
 
-    // Fetch the messages
-    CloseableIterator<RawMessage> iterator = fetchMessages(datumReader.read(null, decoder), topicId);
+    CloseableIterator<TopicRawMessage> iterator = messagingService.fetch(fetchRequests);
     try {
-      responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
-                            new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
+      responder.sendContent(HttpResponseStatus.OK,
+                            new FramedMessagesBodyProducer(iterator, messageChunkSize, topicIndices),
+                            new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE,
+                                                         MessageFrames.TOPIC_CONTENT_TYPE));
+    } catch (Throwable t) {
+      iterator.close();
+      throw t;
+    }
+  }
+
+  /**
+   * Sends back the messages from the given {@link CloseableIterator}. The iterator will be closed when the sending
+   * is completed or failed.
+   */
+  private void sendMessages(HttpRequest request, HttpResponder responder, CloseableIterator<RawMessage> iterator) {
+    try {
+      // Use the frame encoding if the client accepts it, otherwise use avro encoding for compatibility
+      if (MessageFrames.CONTENT_TYPE.equals(request.headers().get(HttpHeaderNames.ACCEPT))) {
+        responder.sendContent(HttpResponseStatus.OK, new FramedMessagesBodyProducer(iterator, messageChunkSize),
+                              new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, MessageFrames.CONTENT_TYPE));
+      } else {
+        responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
+                              new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
+      }
     } catch (Throwable t) {
       iterator.close();
       throw t;
@@ -156,14 +286,97 @@ public final class FetchHandler extends AbstractHttpHandler {
     return fetcher.fetch();
   }
 
+  /**
+   * Base {@link BodyProducer} for sending back messages from a {@link CloseableIterator}.
+   */
+  private abstract static class AbstractMessagesBodyProducer extends BodyProducer {
+
+    protected final CloseableIterator<? extends RawMessage> iterator;
+
+    AbstractMessagesBodyProducer(CloseableIterator<? extends RawMessage> iterator) {
+      this.iterator = iterator;
+    }
+
+    @Override
+    public void finished() throws Exception {
+      iterator.close();
+    }
+
+    @Override
+    public void handleError(@Nullable Throwable cause) {
+      iterator.close();
+      // Since response header is already sent, there is nothing we can send back to client. Simply log the failure
+      if (cause instanceof SocketException
+        || cause instanceof ClosedChannelException
+        || (cause instanceof IOException && KNOWN_IO_EXCEPTION_MESSAGES.contains(cause.getMessage()))) {
+        // This can easily caused by client close connection prematurely. Don't want to flood the log.
+        LOG.trace("Connection closed by client prematurely while sending messages back to client", cause);
+      } else {
+        // Use sampling logger to log to avoid flooding the log if there is any systematic failure
+        SAMPLING_LOG.warn("Exception raised when sending messages back to client", cause);
+        // Also log a trace to provide a way to see every error if needed
+        LOG.trace("Exception raised when sending messages back to client", cause);
+      }
+    }
+  }
+
+  /**
+   * A {@link BodyProducer} to encode and send back messages with the {@link MessageFrames} encoding.
+   * Each chunk is a pooled direct buffer that contains whole frames.
+   * If topic indices are provided, frames are encoded with the {@link MessageFrames#TOPIC_CONTENT_TYPE} encoding,
+   * which requires the iterator to provide {@link TopicRawMessage}.
+   */
+  private static final class FramedMessagesBodyProducer extends AbstractMessagesBodyProducer {
+
+    private final int messageChunkSize;
+    private final Map<TopicId, Integer> topicIndices;
+
+    FramedMessagesBodyProducer(CloseableIterator<RawMessage> iterator, int messageChunkSize) {
+      this(iterator, messageChunkSize, null);
+    }
+
+    FramedMessagesBodyProducer(CloseableIterator<? extends RawMessage> iterator, int messageChunkSize,
+                               @Nullable Map<TopicId, Integer> topicIndices) {
+      super(iterator);
+      this.messageChunkSize = messageChunkSize;
+      this.topicIndices = topicIndices;
+    }
+
+    @Override
+    public ByteBuf nextChunk() {
+      if (!iterator.hasNext()) {
+        return Unpooled.EMPTY_BUFFER;
+      }
+
+      // Headers and payloads are written to a single pooled direct buffer, such that each payload is copied once,
+      // and Netty doesn't copy the chunk again when writing it to the channel.
+      ByteBuf chunk = PooledByteBufAllocator.DEFAULT.directBuffer(messageChunkSize);
+      try {
+        while (iterator.hasNext() && chunk.readableBytes() < messageChunkSize) {
+          RawMessage message = iterator.next();
+          byte[] id = message.getId();
+          byte[] payload = message.getPayload();
+
+          if (topicIndices != null) {
+            chunk.writeInt(topicIndices.get(((TopicRawMessage) message).getTopicId()));
+          }
+          chunk.writeInt(id.length).writeBytes(id).writeInt(payload.length).writeBytes(payload);
+        }
+        return chunk;
+      } catch (Throwable t) {
+        chunk.release();
+        throw t;
+      }
+    }
+  }
+
   /**
    * A {@link BodyProducer} to encode and send back messages.
    * Instead of using GenericDatumWriter, we perform the array encoding manually so that we don't have to buffer
    * all messages in memory before sending out.
    */
-  private static class MessagesBodyProducer extends BodyProducer {
+  private static class MessagesBodyProducer extends AbstractMessagesBodyProducer {
 
-    private final CloseableIterator<RawMessage> iterator;
     private final List<RawMessage> messages;
     private final int messageChunkSize;
     private final ByteBuf chunk;
@@ -174,7 +387,7 @@ public final class FetchHandler extends AbstractHttpHandler {
     private boolean arrayEnded;
 
     MessagesBodyProducer(CloseableIterator<RawMessage> iterator, int messageChunkSize) {
-      this.iterator = iterator;
+      super(iterator);
       this.messages = new ArrayList<>();
       this.messageChunkSize = messageChunkSize;
       this.chunk = Unpooled.buffer(messageChunkSize);
@@ -243,25 +456,8 @@ public final class FetchHandler extends AbstractHttpHandler {
 
     @Override
     public void finished() throws Exception {
-      iterator.close();
+      super.finished();
       chunk.release();
     }
-
-    @Override
-    public void handleError(@Nullable Throwable cause) {
-      iterator.close();
-      // Since response header is already sent, there is nothing we can send back to client. Simply log the failure
-      if (cause instanceof SocketException
-        || cause instanceof ClosedChannelException
-        || (cause instanceof IOException && KNOWN_IO_EXCEPTION_MESSAGES.contains(cause.getMessage()))) {
-        // This can easily caused by client close connection prematurely. Don't want to flood the log.
-        LOG.trace("Connection closed by client prematurely while sending messages back to client", cause);
-      } else {
-        // Use sampling logger to log to avoid flooding the log if there is any systematic failure
-        SAMPLING_LOG.warn("Exception raised when sending messages back to client", cause);
-        // Also log a trace to provide a way to see every error if needed
-        LOG.trace("Exception raised when sending messages back to client", cause);
-      }
-    }
   }
 }
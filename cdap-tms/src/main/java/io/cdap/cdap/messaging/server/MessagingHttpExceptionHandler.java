@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.server;
+
+import com.google.common.base.Objects;
+import io.cdap.cdap.common.HttpExceptionHandler;
+import io.cdap.cdap.security.spi.authentication.SecurityRequestContext;
+import io.cdap.http.HttpResponder;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link HttpExceptionHandler} of the {@link MessagingHttpService}. Handlers that respond asynchronously use it
+ * to respond to failures in the same way.
+ */
+final class MessagingHttpExceptionHandler extends HttpExceptionHandler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MessagingHttpExceptionHandler.class);
+
+  @Override
+  public void handle(Throwable t, HttpRequest request, HttpResponder responder) {
+    // TODO: CDAP-7688. Override the handling to return 400 on IllegalArgumentException
+    if (t instanceof IllegalArgumentException) {
+      logWithTrace(request, t);
+      responder.sendString(HttpResponseStatus.BAD_REQUEST, t.getMessage());
+    } else {
+      super.handle(t, request, responder);
+    }
+  }
+
+  private void logWithTrace(HttpRequest request, Throwable t) {
+    LOG.trace("Error in handling request={} {} for user={}:", request.method().name(), request.uri(),
+              Objects.firstNonNull(SecurityRequestContext.getUserId(), "<null>"), t);
+  }
+}
@@ -16,12 +16,10 @@
 
 package io.cdap.cdap.messaging.server;
 
-import com.google.common.base.Objects;
 import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import io.cdap.cdap.api.metrics.MetricsCollectionService;
-import io.cdap.cdap.common.HttpExceptionHandler;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.conf.SConfiguration;
@@ -30,12 +28,8 @@ import io.cdap.cdap.common.discovery.URIScheme;
 import io.cdap.cdap.common.http.CommonNettyHttpServiceBuilder;
 import io.cdap.cdap.common.metrics.MetricsReporterHook;
 import io.cdap.cdap.common.security.HttpsEnabler;
-import io.cdap.cdap.security.spi.authentication.SecurityRequestContext;
 import io.cdap.http.HttpHandler;
-import io.cdap.http.HttpResponder;
 import io.cdap.http.NettyHttpService;
-import io.netty.handler.codec.http.HttpRequest;
-import io.netty.handler.codec.http.HttpResponseStatus;
 import org.apache.twill.common.Cancellable;
 import org.apache.twill.discovery.DiscoveryService;
 import org.slf4j.Logger;
@@ -69,23 +63,7 @@ public class MessagingHttpService extends AbstractIdleService {
       .setWorkerThreadPoolSize(cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_WORKER_THREADS))
       .setExecThreadPoolSize(cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_EXECUTOR_THREADS))
       .setHttpChunkLimit(cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_MAX_REQUEST_SIZE_MB) * 1024 * 1024)
-      .setExceptionHandler(new HttpExceptionHandler() {
-        @Override
-        public void handle(Throwable t, HttpRequest request, HttpResponder responder) {
-          // TODO: CDAP-7688. Override the handling to return 400 on IllegalArgumentException
-          if (t instanceof IllegalArgumentException) {
-            logWithTrace(request, t);
-            responder.sendString(HttpResponseStatus.BAD_REQUEST, t.getMessage());
-          } else {
-            super.handle(t, request, responder);
-          }
-        }
-
-        private void logWithTrace(HttpRequest request, Throwable t) {
-          LOG.trace("Error in handling request={} {} for user={}:", request.method().name(), request.uri(),
-                    Objects.firstNonNull(SecurityRequestContext.getUserId(), "<null>"), t);
-        }
-      })
+      .setExceptionHandler(new MessagingHttpExceptionHandler())
       .setHttpHandlers(handlers);
 
     if (cConf.getBoolean(Constants.Security.SSL.INTERNAL_ENABLED)) {
@@ -18,6 +18,9 @@ package io.cdap.cdap.messaging.server;
 
 import com.google.inject.Inject;
 import io.cdap.cdap.common.BadRequestException;
+import io.cdap.cdap.common.HttpExceptionHandler;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.io.ByteBuffers;
 import io.cdap.cdap.messaging.MessagingService;
 import io.cdap.cdap.messaging.RollbackDetail;
@@ -26,6 +29,7 @@ import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
 import io.cdap.http.AbstractHttpHandler;
+import io.cdap.http.HandlerContext;
 import io.cdap.http.HttpResponder;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
@@ -47,11 +51,17 @@ import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
 import org.apache.avro.io.Encoder;
 import org.apache.avro.io.EncoderFactory;
+import org.apache.twill.common.Threads;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
@@ -62,11 +72,33 @@ import javax.ws.rs.PathParam;
 @Path("/v1/namespaces/{namespace}/topics/{topic}")
 public final class StoreHandler extends AbstractHttpHandler {
 
+  private static final HttpExceptionHandler EXCEPTION_HANDLER = new MessagingHttpExceptionHandler();
+
   private final MessagingService messagingService;
+  private final int responseThreads;
+  private ExecutorService responseExecutor;
 
   @Inject
-  StoreHandler(MessagingService messagingService) {
+  StoreHandler(CConfiguration cConf, MessagingService messagingService) {
     this.messagingService = messagingService;
+    this.responseThreads = Math.max(1, cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_WORKER_THREADS));
+  }
+
+  @Override
+  public void init(HandlerContext context) {
+    super.init(context);
+    // Threads are only used for responding to asynchronous publish, so that the writer thread only writes
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+      responseThreads, responseThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+      Threads.createDaemonThreadFactory("messaging-publish-response-%d"));
+    executor.allowCoreThreadTimeOut(true);
+    responseExecutor = executor;
+  }
+
+  @Override
+  public void destroy(HandlerContext context) {
+    super.destroy(context);
+    responseExecutor.shutdown();
   }
 
   @POST
@@ -84,16 +116,28 @@ public final class StoreHandler extends AbstractHttpHandler {
                                       + topicId);
     }
 
-    // Publish the message and response with the rollback information
-    RollbackDetail rollbackInfo = messagingService.publish(storeRequest);
-    if (rollbackInfo == null) {
-      // Non-tx publish doesn't have rollback info.
-      responder.sendStatus(HttpResponseStatus.OK);
-      return;
-    }
-    ByteBuf response = encodeRollbackDetail(rollbackInfo);
-    responder.sendContent(HttpResponseStatus.OK, response,
-                          new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
+    // Publish the message and response with the rollback information asynchronously,
+    // so that no handler thread is held while waiting for the write to complete.
+    // The response is sent from the response executor instead of the writer thread that completes the publish.
+    messagingService.publishAsync(storeRequest).whenCompleteAsync((rollbackInfo, failure) -> {
+      if (failure != null) {
+        EXCEPTION_HANDLER.handle(failure instanceof CompletionException ? failure.getCause() : failure,
+                                 request, responder);
+        return;
+      }
+      if (rollbackInfo == null) {
+        // Non-tx publish doesn't have rollback info.
+        responder.sendStatus(HttpResponseStatus.OK);
+        return;
+      }
+      try {
+        ByteBuf response = encodeRollbackDetail(rollbackInfo);
+        responder.sendContent(HttpResponseStatus.OK, response,
+                              new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
+      } catch (Exception e) {
+        EXCEPTION_HANDLER.handle(e, request, responder);
+      }
+    }, responseExecutor);
   }
 
   @POST
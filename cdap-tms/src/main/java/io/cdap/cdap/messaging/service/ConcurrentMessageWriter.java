@@ -18,6 +18,7 @@ package io.cdap.cdap.messaging.service;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.cdap.api.metrics.MetricsCollector;
 import io.cdap.cdap.api.metrics.NoopMetricsContext;
 import io.cdap.cdap.messaging.RollbackDetail;
@@ -30,7 +31,11 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
@@ -38,8 +43,9 @@ import javax.annotation.concurrent.ThreadSafe;
 /**
  * Class to support writing to message/payload tables with high concurrency.
  *
- * It uses a non-blocking algorithm to batch writes from concurrent threads. The algorithm is the same as
- * the one used in ConcurrentStreamWriter.
+ * It uses a non-blocking algorithm to batch writes from concurrent threads. Callers never write to the
+ * underlying table themselves. Instead, a single writer loop performs group commit on behalf of all callers and
+ * completes the {@link CompletableFuture} returned by {@link #persistAsync(StoreRequest, TopicMetadata)}.
  *
  * The algorithm is like this:
  *
@@ -48,22 +54,30 @@ import javax.annotation.concurrent.ThreadSafe;
  * <pre>
  * 1. Constructs a PendingStoreRequest locally and enqueue it to a ConcurrentLinkedQueue.
  * 2. Use CAS to set an AtomicBoolean flag to true.
- * 3. If successfully set the flag to true, this thread becomes the writer and proceed to run step 4-7.
- * 4. Provides an Iterator of PendingStoreRequest, which consumes from the ConcurrentLinkedQueue mentioned in step 1.
- * 5. The message table store method will consume the Iterator until it is empty
- * 6. Set the state of each PendingStoreRequest that are written to COMPLETED (succeed/failure).
- * 7. Set the AtomicBoolean flag back to false.
- * 8. If the PendingStoreRequest enqueued by this thread is NOT COMPLETED, go back to step 2.
+ * 3. If successfully set the flag to true, submits the writer loop to the executor. The calling thread returns
+ *    the future of the PendingStoreRequest without waiting.
  * </pre>
  *
- * The spin lock between step 2 to step 8 is necessary as it guarantees events enqueued by all threads would eventually
- * get written and flushed.
+ * The writer loop performs the following:
+ *
+ * <pre>
+ * 1. Drains all PendingStoreRequest currently in the ConcurrentLinkedQueue and writes them as one batch.
+ * 2. Completes the future of each PendingStoreRequest that are written (succeed/failure) and notifies the
+ *    commit listener if the write succeeded.
+ * 3. Repeats step 1-2 until the queue is empty.
+ * 4. Set the AtomicBoolean flag back to false.
+ * 5. If the queue is not empty and it can set the flag to true again, go back to step 1.
+ * </pre>
+ *
+ * Step 5 is necessary as it guarantees events enqueued by all threads would eventually get written and flushed,
+ * without any thread spinning on the flag.
  */
 @ThreadSafe
 final class ConcurrentMessageWriter implements Closeable {
 
   private final StoreRequestWriter<?> messagesWriter;
   private final MetricsCollector metricsCollector;
+  private final Executor writerExecutor;
   private final PendingStoreQueue pendingStoreQueue;
   private final AtomicBoolean writerFlag;
   private final AtomicBoolean closed;
@@ -77,22 +91,49 @@ final class ConcurrentMessageWriter implements Closeable {
   }
 
   /**
-   * Constructor.
+   * Constructor that runs the writer loop on the thread that successfully acquires the writer flag.
    *
    * @param messagesWriter the {@link StoreRequestWriter} for persisting {@link StoreRequest}.
    * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
    */
   ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector) {
+    this(messagesWriter, metricsCollector, Runnable::run);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param messagesWriter the {@link StoreRequestWriter} for persisting {@link StoreRequest}.
+   * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
+   * @param writerExecutor the {@link Executor} for running the writer loop
+   */
+  ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector,
+                          Executor writerExecutor) {
+    this(messagesWriter, metricsCollector, writerExecutor, () -> { });
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param messagesWriter the {@link StoreRequestWriter} for persisting {@link StoreRequest}.
+   * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
+   * @param writerExecutor the {@link Executor} for running the writer loop
+   * @param commitListener a {@link Runnable} to be called from the writer loop after each batch of requests
+   *                       is successfully persisted
+   */
+  ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector,
+                          Executor writerExecutor, Runnable commitListener) {
     this.messagesWriter = messagesWriter;
     this.metricsCollector = metricsCollector;
-    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector);
+    this.writerExecutor = writerExecutor;
+    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector, commitListener);
     this.writerFlag = new AtomicBoolean();
     this.closed = new AtomicBoolean();
   }
 
   /**
    * Persists the given {@link StoreRequest} to the {@link StoreRequestWriter} in this class. This method
-   * is safe to be called concurrently from multiple threads.
+   * is safe to be called concurrently from multiple threads. It blocks until the request is persisted.
    *
    * @param storeRequest contains information about payload to be store
    * @param metadata {@link TopicMetadata} for the topic in the {@link StoreRequest}
@@ -102,8 +143,30 @@ final class ConcurrentMessageWriter implements Closeable {
    */
   @Nullable
   RollbackDetail persist(StoreRequest storeRequest, TopicMetadata metadata) throws IOException {
+    try {
+      return Uninterruptibles.getUninterruptibly(persistAsync(storeRequest, metadata));
+    } catch (ExecutionException e) {
+      Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+      throw new IOException("Unable to write message to " + storeRequest.getTopicId(), e.getCause());
+    }
+  }
+
+  /**
+   * Persists the given {@link StoreRequest} to the {@link StoreRequestWriter} in this class asynchronously. This
+   * method is safe to be called concurrently from multiple threads and it doesn't block on the write.
+   *
+   * @param storeRequest contains information about payload to be store
+   * @param metadata {@link TopicMetadata} for the topic in the {@link StoreRequest}
+   * @return a {@link CompletableFuture} that will be completed when the request is persisted. If the store request
+   *         is transactional, the future carries a {@link RollbackDetail} containing information for rollback;
+   *         otherwise the future result is {@code null}. If failed to persist, the future will be completed
+   *         exceptionally with an {@link IOException}.
+   */
+  CompletableFuture<RollbackDetail> persistAsync(StoreRequest storeRequest, TopicMetadata metadata) {
     if (closed.get()) {
-      throw new IOException("Message writer is already closed");
+      CompletableFuture<RollbackDetail> future = new CompletableFuture<>();
+      future.completeExceptionally(new IOException("Message writer is already closed"));
+      return future;
     }
 
     PendingStoreRequest pendingStoreRequest = new PendingStoreRequest(storeRequest, metadata);
@@ -111,44 +174,35 @@ final class ConcurrentMessageWriter implements Closeable {
 
     metricsCollector.increment("persist.requested", 1L);
 
-    while (!pendingStoreRequest.isCompleted()) {
-      if (!tryWrite()) {
-        Thread.yield();
-      }
-    }
-
-    if (pendingStoreRequest.isSuccess()) {
-      metricsCollector.increment("persist.success", 1L);
-      if (!pendingStoreRequest.isTransactional()) {
-        return null;
+    if (writerFlag.compareAndSet(false, true)) {
+      try {
+        writerExecutor.execute(this::writeLoop);
+      } catch (RejectedExecutionException e) {
+        pendingStoreQueue.failAll(new IOException("Message writer is not accepting write", e));
+        writerFlag.set(false);
       }
-      return new SimpleRollbackDetail(pendingStoreRequest.getTransactionWritePointer(),
-                                      pendingStoreRequest.getStartTimestamp(), pendingStoreRequest.getStartSequenceId(),
-                                      pendingStoreRequest.getEndTimestamp(), pendingStoreRequest.getEndSequenceId());
-    } else {
-      metricsCollector.increment("persist.failure", 1L);
-      Throwables.propagateIfInstanceOf(pendingStoreRequest.getFailureCause(), IOException.class);
-      throw new IOException("Unable to write message to " + storeRequest.getTopicId(),
-                            pendingStoreRequest.getFailureCause());
     }
+    return pendingStoreRequest.getCompletion();
   }
 
   /**
-   * Tries to acquire the writer flag and persist the pending requests.
-   *
-   * @return {@code true} if acquired the writer flag and called {@link PendingStoreQueue#persist(StoreRequestWriter)};
-   *         otherwise {@code false} will be returned.
+   * Persists all pending requests in the queue. This method must be called while holding the writer flag and
+   * it will release the flag before returning.
    */
-  private boolean tryWrite() {
-    if (!writerFlag.compareAndSet(false, true)) {
-      return false;
-    }
-    try {
-      pendingStoreQueue.persist(messagesWriter);
-    } finally {
-      writerFlag.set(false);
-    }
-    return true;
+  private void writeLoop() {
+    do {
+      try {
+        // Keep group committing until the queue is drained
+        boolean persisted = true;
+        while (persisted) {
+          persisted = pendingStoreQueue.persist(messagesWriter);
+        }
+      } finally {
+        writerFlag.set(false);
+      }
+      // A request can get enqueued after the last drain but before the writer flag is released, in which case
+      // the enqueuing thread would have failed to acquire the flag. Hence need to check again.
+    } while (!pendingStoreQueue.isEmpty() && writerFlag.compareAndSet(false, true));
   }
 
   @Override
@@ -159,25 +213,28 @@ final class ConcurrentMessageWriter implements Closeable {
     // Flush everything in the queue.
     // When this thread can grab the writer flag, all pending write requests must be completed since the closed
     // flag was already set to false.
-    while (!tryWrite()) {
+    while (!writerFlag.compareAndSet(false, true)) {
       Thread.yield();
     }
+    writeLoop();
     messagesWriter.close();
   }
 
   /**
    * A resettable {@link Iterator} to provide {@link StoreRequest} to {@link StoreRequestWriter}.
-   * Except the {@link #enqueue(PendingStoreRequest)} method, all methods on this class can only be
-   * called while holding the writer flag.
+   * Except the {@link #enqueue(PendingStoreRequest)} and {@link #isEmpty()} methods, all methods on this class
+   * can only be called while holding the writer flag.
    */
   private static final class PendingStoreQueue {
 
     private final MetricsCollector metricsCollector;
+    private final Runnable commitListener;
     private final Queue<PendingStoreRequest> writeQueue;
     private final List<PendingStoreRequest> inflightRequests;
 
-    private PendingStoreQueue(MetricsCollector metricsCollector) {
+    private PendingStoreQueue(MetricsCollector metricsCollector, Runnable commitListener) {
       this.metricsCollector = metricsCollector;
+      this.commitListener = commitListener;
       this.writeQueue = new ConcurrentLinkedQueue<>();
       this.inflightRequests = new ArrayList<>(100);
     }
@@ -189,21 +246,24 @@ final class ConcurrentMessageWriter implements Closeable {
       writeQueue.add(storeRequest);
     }
 
+    /**
+     * Returns {@code true} if there is no {@link PendingStoreRequest} in the concurrent queue.
+     */
+    boolean isEmpty() {
+      return writeQueue.isEmpty();
+    }
+
     /**
      * Persists all {@link PendingStoreRequest} currently in the queue with the given writer.
+     *
+     * @return {@code true} if there were requests being persisted, {@code false} if the queue was empty
      */
-    void persist(StoreRequestWriter<?> writer) {
+    boolean persist(StoreRequestWriter<?> writer) {
       // Capture all current events.
       // The reason for capturing instead of using a live iterator is to avoid the possible case of infinite write
       // time. E.g. while generating the entry to write to the storage table, a new store request get enqueued.
-      // The number of requests in the queue is bounded by the number of threads that call this method.
-      // Since this method is expected to be called (indirectly) from a http handler thread, that is bounded by
-      // the thread pool size used by the http service.
-      inflightRequests.clear();
-      PendingStoreRequest request = writeQueue.poll();
-      while (request != null) {
-        inflightRequests.add(request);
-        request = writeQueue.poll();
+      if (!drain()) {
+        return false;
       }
 
       metricsCollector.gauge("persist.queue.size", inflightRequests.size());
@@ -213,18 +273,72 @@ final class ConcurrentMessageWriter implements Closeable {
         completeAll(null);
       } catch (Throwable t) {
         completeAll(t);
+        return true;
+      }
+      commitListener.run();
+      return true;
+    }
+
+    /**
+     * Fails all {@link PendingStoreRequest} currently in the queue with the given failure.
+     */
+    void failAll(Throwable failureCause) {
+      if (drain()) {
+        completeAll(failureCause);
       }
     }
 
     /**
-     * Marks all inflight requests as collected through the {@link Iterator#next()} method as completed.
+     * Moves all requests in the concurrent queue to the inflight list.
+     *
+     * @return {@code true} if there is at least one inflight request
+     */
+    private boolean drain() {
+      inflightRequests.clear();
+      PendingStoreRequest request = writeQueue.poll();
+      while (request != null) {
+        inflightRequests.add(request);
+        request = writeQueue.poll();
+      }
+      return !inflightRequests.isEmpty();
+    }
+
+    /**
+     * Marks all inflight requests as collected through the {@link Iterator#next()} method as completed and
+     * completes the future of those requests.
      * This method must be called while holding the writer flag.
      */
     void completeAll(@Nullable Throwable failureCause) {
       Iterator<PendingStoreRequest> iterator = inflightRequests.iterator();
       while (iterator.hasNext()) {
-        iterator.next().completed(failureCause);
+        PendingStoreRequest request = iterator.next();
         iterator.remove();
+        request.completed(failureCause);
+        complete(request);
+      }
+    }
+
+    /**
+     * Completes the future of the given completed {@link PendingStoreRequest}.
+     */
+    private void complete(PendingStoreRequest request) {
+      if (request.isSuccess()) {
+        metricsCollector.increment("persist.success", 1L);
+        if (!request.isTransactional()) {
+          request.getCompletion().complete(null);
+          return;
+        }
+        request.getCompletion().complete(new SimpleRollbackDetail(request.getTransactionWritePointer(),
+                                                                  request.getStartTimestamp(),
+                                                                  request.getStartSequenceId(),
+                                                                  request.getEndTimestamp(),
+                                                                  request.getEndSequenceId()));
+      } else {
+        metricsCollector.increment("persist.failure", 1L);
+        Throwable cause = request.getFailureCause();
+        request.getCompletion().completeExceptionally(
+          cause instanceof IOException ? cause : new IOException("Unable to write message to "
+                                                                   + request.getTopicId(), cause));
       }
     }
   }
@@ -19,6 +19,7 @@ package io.cdap.cdap.messaging.service;
 import com.google.common.base.Throwables;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.messaging.MessageFetcher;
+import io.cdap.cdap.messaging.PayloadCompression;
 import io.cdap.cdap.messaging.TopicMetadata;
 import io.cdap.cdap.messaging.data.MessageId;
 import io.cdap.cdap.messaging.data.RawMessage;
@@ -30,7 +31,11 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import javax.annotation.Nullable;
 
 /**
@@ -44,17 +49,64 @@ final class CoreMessageFetcher extends MessageFetcher {
   private final TopicMetadata topicMetadata;
   private final TableProvider<MessageTable> messageTableProvider;
   private final TableProvider<PayloadTable> payloadTableProvider;
+  private final Supplier<CompletableFuture<Void>> publishWaiter;
+  private final PayloadCompression compression;
 
   CoreMessageFetcher(TopicMetadata topicMetadata,
                      TableProvider<MessageTable> messageTableProvider,
-                     TableProvider<PayloadTable> payloadTableProvider) {
+                     TableProvider<PayloadTable> payloadTableProvider,
+                     Supplier<CompletableFuture<Void>> publishWaiter) {
     this.topicMetadata = topicMetadata;
     this.messageTableProvider = messageTableProvider;
     this.payloadTableProvider = payloadTableProvider;
+    this.publishWaiter = publishWaiter;
+    this.compression = topicMetadata.getCompression();
   }
 
   @Override
   public CloseableIterator<RawMessage> fetch() throws IOException {
+    long pollTimeoutMillis = getPollTimeoutMillis();
+    if (pollTimeoutMillis <= 0) {
+      return fetchMessages();
+    }
+
+    // Register for the publish notification before fetching, so that no publish in between can be missed.
+    CompletableFuture<Void> published = publishWaiter.get();
+    try {
+      CloseableIterator<RawMessage> iterator = fetchMessages();
+      try {
+        if (iterator.hasNext()) {
+          return iterator;
+        }
+      } catch (Throwable t) {
+        closeQuietly(iterator);
+        throw t;
+      }
+      iterator.close();
+
+      try {
+        published.get(pollTimeoutMillis, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        // No new message was published before the timeout. Just fetch again to make sure nothing was missed.
+        LOG.trace("No new message published to topic {} in {} ms", topicMetadata.getTopicId(), pollTimeoutMillis);
+      } catch (InterruptedException e) {
+        // Preserve the interrupt flag and fetch again without waiting
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        // This shouldn't happen since the future is never completed exceptionally
+        LOG.debug("Exception raised when waiting for new message published to topic {}",
+                  topicMetadata.getTopicId(), e);
+      }
+      return fetchMessages();
+    } finally {
+      published.cancel(false);
+    }
+  }
+
+  /**
+   * Fetches messages from the tables without waiting.
+   */
+  private CloseableIterator<RawMessage> fetchMessages() throws IOException {
     MessageTable messageTable = messageTableProvider.get();
     try {
       return new MessageCloseableIterator(messageTable);
@@ -103,6 +155,18 @@ final class CoreMessageFetcher extends MessageFetcher {
     return rawId;
   }
 
+  /**
+   * Decompresses the given payload with the compression of the topic.
+   */
+  private byte[] decompress(byte[] payload) {
+    try {
+      return compression.decompress(payload);
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to decompress message payload of topic " + topicMetadata.getTopicId()
+                                   + " with compression " + compression, e);
+    }
+  }
+
   /**
    * Calls the {@link AutoCloseable#close()} on the given {@link AutoCloseable} without throwing exception.
    * If there is exception raised, it will be logged but never thrown out.
@@ -180,7 +244,8 @@ final class CoreMessageFetcher extends MessageFetcher {
         if (payloadIterator != null && payloadIterator.hasNext()) {
           PayloadTable.Entry payloadEntry = payloadIterator.next();
           // messageEntry is guaranteed to be non-null if payloadIterator is non-null
-          nextMessage = new RawMessage(createMessageId(messageEntry, payloadEntry), payloadEntry.getPayload());
+          nextMessage = new RawMessage(createMessageId(messageEntry, payloadEntry),
+                                       decompress(payloadEntry.getPayload()));
           break;
         }
 
@@ -211,7 +276,7 @@ final class CoreMessageFetcher extends MessageFetcher {
             }
           } else {
             // Otherwise, the message entry is the next message
-            nextMessage = new RawMessage(createMessageId(messageEntry, null), messageEntry.getPayload());
+            nextMessage = new RawMessage(createMessageId(messageEntry, null), decompress(messageEntry.getPayload()));
           }
         } else {
           // If there is no more message from the message iterator as well, then no more message to fetch
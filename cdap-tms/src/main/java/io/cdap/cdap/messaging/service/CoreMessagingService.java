@@ -27,6 +27,7 @@ import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Closeables;
 import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.inject.Inject;
 import io.cdap.cdap.api.messaging.TopicAlreadyExistsException;
 import io.cdap.cdap.api.messaging.TopicNotFoundException;
@@ -39,6 +40,7 @@ import io.cdap.cdap.messaging.MessageFetcher;
 import io.cdap.cdap.messaging.MessagingService;
 import io.cdap.cdap.messaging.MessagingServiceUtils;
 import io.cdap.cdap.messaging.MessagingUtils;
+import io.cdap.cdap.messaging.PayloadCompression;
 import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
@@ -59,10 +61,13 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -86,6 +91,8 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   private final TimeProvider timeProvider;
   private final MetricsCollectionService metricsCollectionService;
   private final long txMaxLifeTimeInMillis;
+  private final ExecutorService writerExecutor;
+  private final PublishNotifier publishNotifier;
 
   @Inject
   protected CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
@@ -99,6 +106,8 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     this.cConf = cConf;
     this.tableFactory = tableFactory;
     this.topicCache = createTopicCache();
+    this.writerExecutor = Executors.newCachedThreadPool(Threads.createDaemonThreadFactory("messaging-writer-%d"));
+    this.publishNotifier = new PublishNotifier();
     this.messageTableWriterCache = createTableWriterCache(true, cConf);
     this.payloadTableWriterCache = createTableWriterCache(false, cConf);
     this.timeProvider = timeProvider;
@@ -131,6 +140,19 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     try (MetadataTable metadataTable = createMetadataTable()) {
       Map<String, String> properties = createDefaultProperties();
       properties.putAll(topicMetadata.getProperties());
+
+      // The compression cannot be changed since existing payloads of the topic were stored with it
+      TopicMetadata currentMetadata = metadataTable.getMetadata(topicMetadata.getTopicId());
+      String compression = topicMetadata.getProperties().get(TopicMetadata.COMPRESSION_KEY);
+      if (compression != null && PayloadCompression.fromName(compression) != currentMetadata.getCompression()) {
+        throw new IllegalArgumentException("The compression property cannot be changed for topic "
+                                             + topicMetadata.getTopicId());
+      }
+      properties.remove(TopicMetadata.COMPRESSION_KEY);
+      compression = currentMetadata.getProperties().get(TopicMetadata.COMPRESSION_KEY);
+      if (compression != null) {
+        properties.put(TopicMetadata.COMPRESSION_KEY, compression);
+      }
       metadataTable.updateTopic(new TopicMetadata(topicMetadata.getTopicId(), properties, true));
       topicCache.invalidate(topicMetadata.getTopicId());
     }
@@ -143,6 +165,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
       topicCache.invalidate(topicId);
       messageTableWriterCache.invalidate(topicId);
       payloadTableWriterCache.invalidate(topicId);
+      publishNotifier.remove(topicId);
     }
   }
 
@@ -169,23 +192,42 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     final TopicMetadata metadata = getTopic(topicId);
     return new CoreMessageFetcher(metadata,
                                   () -> createMessageTable(metadata),
-                                  () -> createPayloadTable(metadata));
+                                  () -> createPayloadTable(metadata),
+                                  () -> publishNotifier.await(topicId));
   }
 
   @Nullable
   @Override
   public RollbackDetail publish(StoreRequest request) throws TopicNotFoundException, IOException {
+    try {
+      return Uninterruptibles.getUninterruptibly(publishAsync(request));
+    } catch (ExecutionException e) {
+      Throwable cause = Objects.firstNonNull(e.getCause(), e);
+      Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
+      throw Throwables.propagate(cause);
+    }
+  }
+
+  @Override
+  public CompletableFuture<RollbackDetail> publishAsync(StoreRequest request) {
+    CompletableFuture<RollbackDetail> future = new CompletableFuture<>();
     try {
       TopicMetadata metadata = topicCache.get(request.getTopicId());
       if (request.isTransactional()) {
         ensureValidTxLifetime(request.getTransactionWritePointer());
       }
-      return messageTableWriterCache.get(request.getTopicId()).persist(request, metadata);
+      return messageTableWriterCache.get(request.getTopicId()).persistAsync(request, metadata);
     } catch (ExecutionException e) {
-      Throwable cause = Objects.firstNonNull(e.getCause(), e);
-      Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
-      throw Throwables.propagate(e);
+      future.completeExceptionally(Objects.firstNonNull(e.getCause(), e));
+    } catch (Exception e) {
+      future.completeExceptionally(e);
     }
+    return future;
+  }
+
+  @Override
+  public CompletableFuture<Void> awaitPublish(TopicId topicId) {
+    return publishNotifier.await(topicId);
   }
 
   @Override
@@ -252,6 +294,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   protected void shutDown() throws Exception {
     messageTableWriterCache.invalidateAll();
     payloadTableWriterCache.invalidateAll();
+    writerExecutor.shutdown();
     Closeables.closeQuietly(tableFactory);
     LOG.info("Core Messaging Service stopped");
   }
@@ -366,7 +409,9 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
             Constants.Metrics.Tag.TABLE, messageTable ? "message" : "payload"
           ));
 
-          return new ConcurrentMessageWriter(messagesWriter, metricsContext);
+          // Only messages written to the message table are visible to consumers
+          Runnable commitListener = messageTable ? () -> publishNotifier.notifyPublished(topicId) : () -> { };
+          return new ConcurrentMessageWriter(messagesWriter, metricsContext, writerExecutor, commitListener);
         }
       });
   }
@@ -394,6 +439,8 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
 
     // Default properties
     properties.put(TopicMetadata.TTL_KEY, cConf.get(Constants.MessagingSystem.TOPIC_DEFAULT_TTL_SECONDS));
+    properties.put(TopicMetadata.COMPRESSION_KEY, cConf.get(Constants.MessagingSystem.TOPIC_DEFAULT_COMPRESSION,
+                                                            PayloadCompression.NONE.name().toLowerCase(Locale.ROOT)));
     properties.put(TopicMetadata.GENERATION_KEY, MessagingUtils.Constants.DEFAULT_GENERATION);
     return properties;
   }
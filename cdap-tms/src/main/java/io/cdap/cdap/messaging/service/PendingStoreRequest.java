@@ -16,10 +16,12 @@
 
 package io.cdap.cdap.messaging.service;
 
+import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
 
 import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
 import javax.annotation.Nullable;
 
 /**
@@ -29,6 +31,7 @@ final class PendingStoreRequest extends StoreRequest {
 
   private final StoreRequest originalRequest;
   private final TopicMetadata metadata;
+  private final CompletableFuture<RollbackDetail> completion;
 
   private boolean completed;
   private long startTimestamp;
@@ -42,12 +45,21 @@ final class PendingStoreRequest extends StoreRequest {
           originalRequest.getTransactionWritePointer());
     this.originalRequest = originalRequest;
     this.metadata = topicMetadata;
+    this.completion = new CompletableFuture<>();
   }
 
   TopicMetadata getTopicMetadata() {
     return metadata;
   }
 
+  /**
+   * Returns a {@link CompletableFuture} that will be completed when this request has been persisted.
+   * The future result is the {@link RollbackDetail} for transactional request, or {@code null} otherwise.
+   */
+  CompletableFuture<RollbackDetail> getCompletion() {
+    return completion;
+  }
+
   boolean isCompleted() {
     return completed;
   }
@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.service;
+
+import io.cdap.cdap.proto.id.TopicId;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps track of callers that are waiting for new messages to be published to topics and notifies them
+ * when messages are committed to the message table.
+ */
+final class PublishNotifier {
+
+  private final ConcurrentMap<TopicId, Set<CompletableFuture<Void>>> waiters = new ConcurrentHashMap<>();
+
+  /**
+   * Returns a {@link CompletableFuture} that will be completed when there are new messages committed for the
+   * given topic after this method returns. The caller should cancel the future if it is no longer waiting, so that
+   * the future can be released.
+   */
+  CompletableFuture<Void> await(TopicId topicId) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    Set<CompletableFuture<Void>> topicWaiters = waiters.computeIfAbsent(topicId, k -> ConcurrentHashMap.newKeySet());
+    topicWaiters.add(future);
+    // Remove the future when it is completed in any way, including cancellation
+    future.whenComplete((result, failure) -> topicWaiters.remove(future));
+    return future;
+  }
+
+  /**
+   * Notifies all callers waiting on the given topic that new messages were committed.
+   */
+  void notifyPublished(TopicId topicId) {
+    Set<CompletableFuture<Void>> topicWaiters = waiters.get(topicId);
+    if (topicWaiters == null) {
+      return;
+    }
+    for (CompletableFuture<Void> future : topicWaiters) {
+      future.complete(null);
+    }
+  }
+
+  /**
+   * Removes the given topic and completes all callers waiting on it.
+   */
+  void remove(TopicId topicId) {
+    Set<CompletableFuture<Void>> topicWaiters = waiters.remove(topicId);
+    if (topicWaiters == null) {
+      return;
+    }
+    for (CompletableFuture<Void> future : topicWaiters) {
+      future.complete(null);
+    }
+  }
+}
@@ -17,9 +17,11 @@
 package io.cdap.cdap.messaging.service;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.cdap.common.utils.TimeProvider;
+import io.cdap.cdap.messaging.PayloadCompression;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
 
@@ -151,6 +153,7 @@ abstract class StoreRequestWriter<T> implements Closeable {
 
     private final boolean generateNullPayloadEntry;
     private PendingStoreRequest storeRequest;
+    private PayloadCompression compression;
     private Iterator<byte[]> payloadIterator;
     private boolean computedFirst;
     private T nextEntry;
@@ -172,7 +175,7 @@ abstract class StoreRequestWriter<T> implements Closeable {
       // If the request has next payload
       // or if the iterator is empty but we wanted to generate an entry with null payload
       if (payloadIterator.hasNext() || (generateNullPayloadEntry && !computedFirst)) {
-        byte[] payload = payloadIterator.hasNext() ? payloadIterator.next() : null;
+        byte[] payload = payloadIterator.hasNext() ? compress(payloadIterator.next()) : null;
         nextEntry = getEntry(storeRequest.getTopicMetadata(), storeRequest.isTransactional(),
                              storeRequest.getTransactionWritePointer(), writeTimestamp, (short) seqId, payload);
       }
@@ -199,8 +202,20 @@ abstract class StoreRequestWriter<T> implements Closeable {
       throw new UnsupportedOperationException("Delete not supported");
     }
 
+    /**
+     * Compresses the given payload with the compression of the topic.
+     */
+    private byte[] compress(byte[] payload) {
+      try {
+        return compression.compress(payload);
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
+      }
+    }
+
     private PayloadTransformIterator reset(PendingStoreRequest storeRequest) {
       this.storeRequest = storeRequest;
+      this.compression = storeRequest.getTopicMetadata().getCompression();
       this.storeRequest.setStartTimestamp(writeTimestamp);
       this.storeRequest.setStartSequenceId(seqId);
       this.payloadIterator = storeRequest.iterator();
@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.cache;
+
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.messaging.MessagingServiceUtils;
+import io.cdap.cdap.messaging.cache.MessageCache;
+import io.cdap.cdap.proto.id.TopicId;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Base class for providing per topic {@link MessageCache} for the system topics. The total cache size is
+ * evenly distributed among all system topics.
+ *
+ * @param <T> type of entry stored in the cache
+ */
+abstract class AbstractTopicCacheProvider<T> {
+
+  private final CConfiguration cConf;
+  private final MetricsCollectionService metricsCollectionService;
+  private final String cacheSizeKey;
+  private Map<TopicId, MessageCache<T>> topicMessageCaches;
+  private volatile boolean initialized;
+
+  /**
+   * Constructor.
+   *
+   * @param cConf the CDAP configuration
+   * @param metricsCollectionService the {@link MetricsCollectionService} for emitting cache metrics
+   * @param cacheSizeKey the configuration key for the total cache size in megabytes
+   */
+  AbstractTopicCacheProvider(CConfiguration cConf, MetricsCollectionService metricsCollectionService,
+                             String cacheSizeKey) {
+    // Due to circular dependency (see CoreMessagingService), we can't use the MetricsCollectionService in the
+    // constructor, hence delay the cache initialization to later time.
+    this.cConf = cConf;
+    this.metricsCollectionService = metricsCollectionService;
+    this.cacheSizeKey = cacheSizeKey;
+  }
+
+  /**
+   * Creates a new {@link MessageCache}.
+   *
+   * @param limits the {@link MessageCache.Limits} for the cache
+   * @param metricsContext the {@link MetricsContext} for the cache to emit metrics
+   * @return a new {@link MessageCache}
+   */
+  protected abstract MessageCache<T> createCache(MessageCache.Limits limits, MetricsContext metricsContext);
+
+  /**
+   * Returns the {@link MessageCache} for the given topic.
+   *
+   * @param topicId the topic id
+   * @return a {@link MessageCache} or {@code null} if caching is not enabled for the given topic.
+   */
+  @Nullable
+  protected final MessageCache<T> getCache(TopicId topicId) {
+    if (!initialized) {
+      synchronized (this) {
+        if (!initialized) {
+          Map<TopicId, MessageCache<T>> caches = new HashMap<>();
+
+          long cacheSize = cConf.getInt(cacheSizeKey) * 1024 * 1024;
+          Set<TopicId> systemTopics = MessagingServiceUtils.getSystemTopics(cConf, true);
+          if (cacheSize > 0 && !systemTopics.isEmpty()) {
+            // Just evenly distributed the cache among all system topics.
+            // More sophisticated logic can be employed at runtime to monitor the metrics from MessageCache
+            // for each topic and adjust the soft/hard limit accordingly to maximize efficiency in
+            // memory usage and performance
+            long hardLimit = cacheSize / systemTopics.size();
+            if (hardLimit > 0) {
+              // Have reduce trigger as 70% of the hard limit and min retain as 50% of the hard limit
+              // In future, it can be adjusted dynamically based on metrics
+              MessageCache.Limits limits = new MessageCache.Limits(hardLimit / 2, hardLimit * 7 / 10, hardLimit);
+              for (TopicId topic : systemTopics) {
+                caches.put(topic, createCache(limits, createMetricsContext(topic)));
+              }
+            }
+          }
+
+          topicMessageCaches = caches;
+          initialized = true;
+        }
+      }
+    }
+
+    return topicMessageCaches.get(topicId);
+  }
+
+  /**
+   * Resets all {@link MessageCache} created by this cache provider.
+   */
+  public void clear() {
+    Collection<MessageCache<T>> caches;
+
+    synchronized (this) {
+      initialized = false;
+      caches = topicMessageCaches == null ? null : topicMessageCaches.values();
+      topicMessageCaches = null;
+    }
+
+    if (caches != null) {
+      for (MessageCache<T> cache : caches) {
+        cache.clear();
+      }
+    }
+  }
+
+  /**
+   * Creates a {@link MetricsContext} for {@link MessageCache} to use for the given topic.
+   */
+  private MetricsContext createMetricsContext(TopicId topicId) {
+    return metricsCollectionService.getContext(ImmutableMap.of(
+      Constants.Metrics.Tag.COMPONENT, Constants.Service.MESSAGING_SERVICE,
+      Constants.Metrics.Tag.INSTANCE_ID, cConf.get(Constants.MessagingSystem.CONTAINER_INSTANCE_ID, "0"),
+      Constants.Metrics.Tag.NAMESPACE, topicId.getNamespace(),
+      Constants.Metrics.Tag.TOPIC, topicId.getTopic()
+    ));
+  }
+}
@@ -20,7 +20,6 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.Multimap;
-import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.utils.TimeProvider;
@@ -53,20 +52,33 @@ final class CachingMessageTable implements MessageTable {
   private final long gracePeriod;
   private final MessageTable messageTable;
   private final MessageTableCacheProvider cacheProvider;
+  private final PayloadTableCacheProvider payloadCacheProvider;
   private final TimeProvider timeProvider;
 
   CachingMessageTable(CConfiguration cConf, MessageTable messageTable, MessageTableCacheProvider cacheProvider) {
-    this(cConf, messageTable, cacheProvider, TimeProvider.SYSTEM_TIME);
+    this(cConf, messageTable, cacheProvider, null, TimeProvider.SYSTEM_TIME);
+  }
+
+  CachingMessageTable(CConfiguration cConf, MessageTable messageTable, MessageTableCacheProvider cacheProvider,
+                      @Nullable PayloadTableCacheProvider payloadCacheProvider) {
+    this(cConf, messageTable, cacheProvider, payloadCacheProvider, TimeProvider.SYSTEM_TIME);
   }
 
   @VisibleForTesting
   CachingMessageTable(CConfiguration cConf, MessageTable messageTable,
                       MessageTableCacheProvider cacheProvider, TimeProvider timeProvider) {
+    this(cConf, messageTable, cacheProvider, null, timeProvider);
+  }
+
+  private CachingMessageTable(CConfiguration cConf, MessageTable messageTable,
+                              MessageTableCacheProvider cacheProvider,
+                              @Nullable PayloadTableCacheProvider payloadCacheProvider, TimeProvider timeProvider) {
     // Half the tx pruning grace period to be the grace period for scanning the message cache.
     // This is to make sure we won't scan for cached entries that might be pruned.
     this.gracePeriod = cConf.getLong(PRUNE_GRACE_PERIOD) / 2;
     this.messageTable = messageTable;
     this.cacheProvider = cacheProvider;
+    this.payloadCacheProvider = payloadCacheProvider;
     this.timeProvider = timeProvider;
   }
 
@@ -93,7 +105,7 @@ final class CachingMessageTable implements MessageTable {
 
     // Otherwise scan the table and return a combine result.
     CloseableIterator<Entry> tableIterator = messageTable.fetch(metadata, startTime, limit, transaction);
-    return new CombineMessageEntryIterator(tableIterator, scanner, messageCache.getComparator(), limit);
+    return new CombineEntryIterator<>(tableIterator, scanner, messageCache.getComparator(), limit);
   }
 
   @Override
@@ -122,7 +134,7 @@ final class CachingMessageTable implements MessageTable {
 
     // Otherwise scan the table and return a combine result.
     CloseableIterator<Entry> tableIterator = messageTable.fetch(metadata, messageId, inclusive, limit, transaction);
-    return new CombineMessageEntryIterator(tableIterator, scanner, messageCache.getComparator(), limit);
+    return new CombineEntryIterator<>(tableIterator, scanner, messageCache.getComparator(), limit);
   }
 
   @Override
@@ -167,6 +179,11 @@ final class CachingMessageTable implements MessageTable {
       });
     }
 
+    // Payloads stored by the transaction are no longer visible after rollback
+    if (payloadCacheProvider != null) {
+      CachingPayloadTable.rollback(payloadCacheProvider, metadata, rollbackDetail.getTransactionWritePointer());
+    }
+
     // Rollback from the table
     messageTable.rollback(metadata, rollbackDetail);
   }
@@ -233,69 +250,6 @@ final class CachingMessageTable implements MessageTable {
     };
   }
 
-  /**
-   * A {@link CloseableIterator} of {@link Entry} by combine entries scanned from {@link MessageTable}
-   * and from {@link MessageCache}.
-   */
-  private static final class CombineMessageEntryIterator extends AbstractCloseableIterator<Entry> {
-
-    private final CloseableIterator<Entry> tableIterator;
-    private final MessageCache.Scanner<Entry> scanner;
-    private final Comparator<Entry> comparator;
-    private boolean iterateCache;
-    private Entry firstCachedEntry;
-    private int count;
-
-    private CombineMessageEntryIterator(CloseableIterator<Entry> tableIterator,
-                                        MessageCache.Scanner<Entry> scanner,
-                                        Comparator<Entry> comparator,
-                                        int limit) {
-      this.tableIterator = tableIterator;
-      this.scanner = scanner;
-      this.comparator = comparator;
-      this.firstCachedEntry = scanner.hasNext() ? scanner.next() : null;
-      this.count = limit;
-    }
-
-
-    @Override
-    protected Entry computeNext() {
-      if (count <= 0) {
-        return endOfData();
-      }
-      count--;
-
-      if (iterateCache) {
-        return scanner.hasNext() ? scanner.next() : endOfData();
-      }
-
-      // If the table iterator is exhausted, doesn't matter what's in the cache, as the table is the source of truth
-      if (!tableIterator.hasNext()) {
-        return endOfData();
-      }
-
-      // If the table iterator return the same entry as the first one in the cache,
-      // switch to scan from the cache onward.
-      Entry entry = tableIterator.next();
-      if (firstCachedEntry != null && comparator.compare(entry, firstCachedEntry) == 0) {
-        entry = firstCachedEntry;
-        firstCachedEntry = null;
-        iterateCache = true;
-      }
-
-      return entry;
-    }
-
-    @Override
-    public void close() {
-      try {
-        tableIterator.close();
-      } finally {
-        scanner.close();
-      }
-    }
-  }
-
   /**
    * An {@link Iterator} of {@link Entry} that memorize the entries that have been iterated on.
    */
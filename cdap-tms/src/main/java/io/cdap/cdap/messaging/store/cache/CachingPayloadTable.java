@@ -0,0 +1,277 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.LinkedListMultimap;
+import com.google.common.collect.Multimap;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.messaging.TopicMetadata;
+import io.cdap.cdap.messaging.cache.MessageCache;
+import io.cdap.cdap.messaging.data.MessageId;
+import io.cdap.cdap.messaging.store.MessageFilter;
+import io.cdap.cdap.messaging.store.PayloadTable;
+import io.cdap.cdap.proto.id.TopicId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link PayloadTable} that uses {@link MessageCache} for caching recently stored payloads, so that
+ * consumers tailing transactional topics can be served from memory.
+ */
+final class CachingPayloadTable implements PayloadTable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CachingPayloadTable.class);
+
+  private final PayloadTable payloadTable;
+  private final PayloadTableCacheProvider cacheProvider;
+
+  CachingPayloadTable(PayloadTable payloadTable, PayloadTableCacheProvider cacheProvider) {
+    this.payloadTable = payloadTable;
+    this.cacheProvider = cacheProvider;
+  }
+
+  @Override
+  public CloseableIterator<Entry> fetch(TopicMetadata metadata, long transactionWritePointer, MessageId messageId,
+                                        boolean inclusive, int limit) throws IOException {
+    MessageCache<Entry> payloadCache = cacheProvider.getPayloadCache(metadata.getTopicId());
+    if (payloadCache == null) {
+      // If no caching for the given topic, just return result from table directly
+      return payloadTable.fetch(metadata, transactionWritePointer, messageId, inclusive, limit);
+    }
+
+    // First scan from cache, starting from the given message id
+    Entry lookupEntry = new CachePayloadTableEntry(metadata, transactionWritePointer,
+                                                   messageId.getPayloadWriteTimestamp(),
+                                                   messageId.getPayloadSequenceId());
+    MessageCache.Scanner<Entry> scanner = payloadCache.scan(lookupEntry, inclusive, limit,
+                                                            createFilter(metadata, transactionWritePointer));
+
+    // No need to scan the table if the cache has everything needed
+    Entry firstInCache = scanner.getFirstInCache();
+    if (firstInCache != null && payloadCache.getComparator().compare(firstInCache, lookupEntry) <= 0) {
+      return scanner;
+    }
+
+    // Otherwise scan the table and return a combine result.
+    CloseableIterator<Entry> tableIterator = payloadTable.fetch(metadata, transactionWritePointer,
+                                                                messageId, inclusive, limit);
+    return new CombineEntryIterator<>(tableIterator, scanner, payloadCache.getComparator(), limit);
+  }
+
+  @Override
+  public void store(Iterator<? extends Entry> entries) throws IOException {
+    // Write it to the payload table first
+    CopyingIterator iterator = new CopyingIterator(entries);
+    payloadTable.store(iterator);
+
+    Multimap<TopicId, Entry> topicEntries = iterator.getEntries();
+    for (Map.Entry<TopicId, Collection<Entry>> entry : topicEntries.asMap().entrySet()) {
+      MessageCache<Entry> payloadCache = cacheProvider.getPayloadCache(entry.getKey());
+      // Write it to the cache if it is enabled for the topic
+      if (payloadCache != null) {
+        try {
+          payloadCache.addAll(entry.getValue().iterator());
+        } catch (IllegalArgumentException e) {
+          // This can only happen if the payloads were not stored in increasing order, which shouldn't happen.
+          // The cache is already cleared by the MessageCache, and the table is the source of truth,
+          // hence just log and proceed.
+          LOG.warn("Failed to add payloads of topic {} to cache", entry.getKey(), e);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    payloadTable.close();
+  }
+
+  /**
+   * Marks all cached payloads stored by the given transaction as rollback, so that they won't be returned
+   * by any subsequent fetch.
+   *
+   * @param cacheProvider the {@link PayloadTableCacheProvider} for getting the payload cache
+   * @param metadata the topic metadata
+   * @param transactionWritePointer the write pointer of the transaction being rolled back
+   */
+  static void rollback(PayloadTableCacheProvider cacheProvider, TopicMetadata metadata, long transactionWritePointer) {
+    MessageCache<Entry> payloadCache = cacheProvider.getPayloadCache(metadata.getTopicId());
+    if (payloadCache == null) {
+      return;
+    }
+
+    // Payloads of a transaction are not contiguous in the cache, hence need to go through all entries of the
+    // topic generation. Rollback should be rare, hence this is acceptable.
+    Entry startEntry = new CachePayloadTableEntry(metadata, transactionWritePointer, 0L, (short) 0);
+    Entry endEntry = new CachePayloadTableEntry(metadata, transactionWritePointer, Long.MAX_VALUE, (short) 0xFFFF);
+    payloadCache.updateEntries(startEntry, endEntry, new MessageCache.EntryUpdater<Entry>() {
+      @Override
+      public void updateEntry(Entry entry) {
+        if (!(entry instanceof CachePayloadTableEntry)) {
+          // This shouldn't happen
+          throw new IllegalStateException("Entries in MessageCache must be of type "
+                                            + CachePayloadTableEntry.class.getName()
+                                            + ", but got type " + entry.getClass().getName() + " instead.");
+        }
+        if (entry.getTransactionWritePointer() == transactionWritePointer) {
+          ((CachePayloadTableEntry) entry).rollback();
+        }
+      }
+    });
+  }
+
+  /**
+   * Creates a {@link MessageFilter} for scanning entries of the given transaction from the {@link MessageCache}.
+   */
+  private MessageFilter<Entry> createFilter(TopicMetadata metadata, long transactionWritePointer) {
+    int generation = metadata.getGeneration();
+    return new MessageFilter<Entry>() {
+      @Override
+      public Result apply(@Nullable Entry entry) {
+        // Entries from other transactions are interleaved in the cache, hence skip instead of hold.
+        if (entry == null || generation != entry.getGeneration()
+          || transactionWritePointer != entry.getTransactionWritePointer()) {
+          return Result.SKIP;
+        }
+        if (entry instanceof CachePayloadTableEntry && ((CachePayloadTableEntry) entry).isRollback()) {
+          return Result.SKIP;
+        }
+        return Result.ACCEPT;
+      }
+    };
+  }
+
+  /**
+   * An {@link Iterator} of {@link Entry} that memorize the entries that have been iterated on.
+   */
+  private static final class CopyingIterator extends AbstractIterator<Entry> {
+
+    private final Iterator<? extends Entry> iterator;
+    private final Multimap<TopicId, Entry> entries;
+
+    private CopyingIterator(Iterator<? extends Entry> iterator) {
+      this.iterator = iterator;
+      this.entries = LinkedListMultimap.create();
+    }
+
+    @Override
+    protected Entry computeNext() {
+      if (!iterator.hasNext()) {
+        return endOfData();
+      }
+      Entry entry = iterator.next();
+      entries.put(entry.getTopicId(), new CachePayloadTableEntry(entry));
+
+      return entry;
+    }
+
+    Multimap<TopicId, Entry> getEntries() {
+      return entries;
+    }
+  }
+
+  /**
+   * A {@link Entry} implementation used for entries in {@link MessageCache}, which allows
+   * marking the entry as rollback.
+   */
+  @VisibleForTesting
+  static final class CachePayloadTableEntry implements Entry {
+
+    private final TopicId topicId;
+    private final int generation;
+    private final long transactionWritePointer;
+    private final long payloadWriteTimestamp;
+    private final short payloadSequenceId;
+    private final byte[] payload;
+    private boolean rollback;
+
+    /**
+     * Creates an instance for lookup purpose only.
+     */
+    CachePayloadTableEntry(TopicMetadata metadata, long transactionWritePointer,
+                           long payloadWriteTimestamp, short payloadSequenceId) {
+      this.topicId = metadata.getTopicId();
+      this.generation = metadata.getGeneration();
+      this.transactionWritePointer = transactionWritePointer;
+      this.payloadWriteTimestamp = payloadWriteTimestamp;
+      this.payloadSequenceId = payloadSequenceId;
+      this.payload = null;
+    }
+
+    /**
+     * Creates a copy of the given {@link Entry}.
+     */
+    CachePayloadTableEntry(Entry other) {
+      this.topicId = other.getTopicId();
+      this.generation = other.getGeneration();
+      this.transactionWritePointer = other.getTransactionWritePointer();
+      this.payloadWriteTimestamp = other.getPayloadWriteTimestamp();
+      this.payloadSequenceId = other.getPayloadSequenceId();
+      this.payload = other.getPayload();
+    }
+
+    void rollback() {
+      rollback = true;
+    }
+
+    boolean isRollback() {
+      return rollback;
+    }
+
+    @Override
+    public TopicId getTopicId() {
+      return topicId;
+    }
+
+    @Override
+    public int getGeneration() {
+      return generation;
+    }
+
+    @Override
+    public byte[] getPayload() {
+      if (payload == null) {
+        // Lookup entry doesn't have payload
+        throw new UnsupportedOperationException();
+      }
+      return payload;
+    }
+
+    @Override
+    public long getTransactionWritePointer() {
+      return transactionWritePointer;
+    }
+
+    @Override
+    public long getPayloadWriteTimestamp() {
+      return payloadWriteTimestamp;
+    }
+
+    @Override
+    public short getPayloadSequenceId() {
+      return payloadSequenceId;
+    }
+  }
+}
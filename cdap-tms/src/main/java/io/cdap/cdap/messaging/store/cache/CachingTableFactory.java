@@ -29,7 +29,7 @@ import io.cdap.cdap.messaging.store.TableFactory;
 import java.io.IOException;
 
 /**
- * A {@link TableFactory} with optional caching for {@link MessageTable} that it creates.
+ * A {@link TableFactory} with optional caching for {@link MessageTable} and {@link PayloadTable} that it creates.
  */
 public class CachingTableFactory extends ForwardingTableFactory {
 
@@ -38,14 +38,17 @@ public class CachingTableFactory extends ForwardingTableFactory {
   private final CConfiguration cConf;
   private final TableFactory delegateTableFactory;
   private final MessageTableCacheProvider cacheProvider;
+  private final PayloadTableCacheProvider payloadCacheProvider;
 
   @Inject
   CachingTableFactory(CConfiguration cConf,
                       @Named(DELEGATE_TABLE_FACTORY) TableFactory delegateTableFactory,
-                      MessageTableCacheProvider cacheProvider) {
+                      MessageTableCacheProvider cacheProvider,
+                      PayloadTableCacheProvider payloadCacheProvider) {
     this.cConf = cConf;
     this.delegateTableFactory = delegateTableFactory;
     this.cacheProvider = cacheProvider;
+    this.payloadCacheProvider = payloadCacheProvider;
   }
 
   @Override
@@ -61,11 +64,12 @@ public class CachingTableFactory extends ForwardingTableFactory {
   @Override
   public MessageTable createMessageTable(TopicMetadata topicMetadata) throws IOException {
     MessageTable messageTable = delegateTableFactory.createMessageTable(topicMetadata);
-    return new CachingMessageTable(cConf, messageTable, cacheProvider);
+    return new CachingMessageTable(cConf, messageTable, cacheProvider, payloadCacheProvider);
   }
 
   @Override
   public PayloadTable createPayloadTable(TopicMetadata topicMetadata) throws IOException {
-    return delegateTableFactory.createPayloadTable(topicMetadata);
+    PayloadTable payloadTable = delegateTableFactory.createPayloadTable(topicMetadata);
+    return new CachingPayloadTable(payloadTable, payloadCacheProvider);
   }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.cache;
+
+import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.messaging.cache.MessageCache;
+
+import java.util.Comparator;
+
+/**
+ * A {@link CloseableIterator} that combines entries scanned from a table and from a {@link MessageCache}.
+ * Entries are read from the table until it reaches the first entry in the cache scanner, after which entries
+ * are read from the cache.
+ *
+ * @param <T> type of entry
+ */
+final class CombineEntryIterator<T> extends AbstractCloseableIterator<T> {
+
+  private final CloseableIterator<T> tableIterator;
+  private final MessageCache.Scanner<T> scanner;
+  private final Comparator<T> comparator;
+  private boolean iterateCache;
+  private T firstCachedEntry;
+  private int count;
+
+  CombineEntryIterator(CloseableIterator<T> tableIterator, MessageCache.Scanner<T> scanner,
+                       Comparator<T> comparator, int limit) {
+    this.tableIterator = tableIterator;
+    this.scanner = scanner;
+    this.comparator = comparator;
+    this.firstCachedEntry = scanner.hasNext() ? scanner.next() : null;
+    this.count = limit;
+  }
+
+  @Override
+  protected T computeNext() {
+    if (count <= 0) {
+      return endOfData();
+    }
+    count--;
+
+    if (iterateCache) {
+      return scanner.hasNext() ? scanner.next() : endOfData();
+    }
+
+    // If the table iterator is exhausted, doesn't matter what's in the cache, as the table is the source of truth
+    if (!tableIterator.hasNext()) {
+      return endOfData();
+    }
+
+    // If the table iterator return the same entry as the first one in the cache,
+    // switch to scan from the cache onward.
+    T entry = tableIterator.next();
+    if (firstCachedEntry != null && comparator.compare(entry, firstCachedEntry) == 0) {
+      entry = firstCachedEntry;
+      firstCachedEntry = null;
+      iterateCache = true;
+    }
+
+    return entry;
+  }
+
+  @Override
+  public void close() {
+    try {
+      tableIterator.close();
+    } finally {
+      scanner.close();
+    }
+  }
+}
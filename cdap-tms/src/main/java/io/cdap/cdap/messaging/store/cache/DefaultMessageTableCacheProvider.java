@@ -16,108 +16,41 @@
 
 package io.cdap.cdap.messaging.store.cache;
 
-import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.api.metrics.MetricsContext;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
-import io.cdap.cdap.messaging.MessagingServiceUtils;
 import io.cdap.cdap.messaging.cache.MessageCache;
 import io.cdap.cdap.messaging.store.MessageTable;
 import io.cdap.cdap.proto.id.TopicId;
 
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
 import javax.annotation.Nullable;
 
 /**
  * The default implementation of {@link MessageTableCacheProvider}.
  */
-public class DefaultMessageTableCacheProvider implements MessageTableCacheProvider {
+public class DefaultMessageTableCacheProvider extends AbstractTopicCacheProvider<MessageTable.Entry>
+  implements MessageTableCacheProvider {
 
-  private final CConfiguration cConf;
-  private final MetricsCollectionService metricsCollectionService;
-  private Map<TopicId, MessageCache<MessageTable.Entry>> topicMessageCaches;
-  private volatile boolean initialized;
+  private final MessageTableEntryComparator comparator;
+  private final MessageTableEntryWeigher weigher;
 
   @Inject
   DefaultMessageTableCacheProvider(CConfiguration cConf, MetricsCollectionService metricsCollectionService) {
-    // Due to circular dependency (see CoreMessagingService), we can't use the MetricsCollectionService in the
-    // constructor, hence delay the cache initialization to later time.
-    this.cConf = cConf;
-    this.metricsCollectionService = metricsCollectionService;
+    super(cConf, metricsCollectionService, Constants.MessagingSystem.CACHE_SIZE_MB);
+    this.comparator = new MessageTableEntryComparator();
+    this.weigher = new MessageTableEntryWeigher();
   }
 
-
   @Nullable
   @Override
   public MessageCache<MessageTable.Entry> getMessageCache(TopicId topicId) {
-    if (!initialized) {
-      synchronized (this) {
-        if (!initialized) {
-          Map<TopicId, MessageCache<MessageTable.Entry>> caches = new HashMap<>();
-
-          long cacheSize = cConf.getInt(Constants.MessagingSystem.CACHE_SIZE_MB) * 1024 * 1024;
-          Set<TopicId> systemTopics = MessagingServiceUtils.getSystemTopics(cConf, true);
-          if (cacheSize > 0 && !systemTopics.isEmpty()) {
-            MessageTableEntryWeigher weigher = new MessageTableEntryWeigher();
-            MessageTableEntryComparator comparator = new MessageTableEntryComparator();
-
-            // Just evenly distributed the cache among all system topics.
-            // More sophisticated logic can be employed at runtime to monitor the metrics from MessageCache
-            // for each topic and adjust the soft/hard limit accordingly to maximize efficiency in
-            // memory usage and performance
-            long hardLimit = cacheSize / systemTopics.size();
-            if (hardLimit > 0) {
-              // Have reduce trigger as 70% of the hard limit and min retain as 50% of the hard limit
-              // In future, it can be adjusted dynamically based on metrics
-              MessageCache.Limits limits = new MessageCache.Limits(hardLimit / 2, hardLimit * 7 / 10, hardLimit);
-              for (TopicId topic : systemTopics) {
-                caches.put(topic, new MessageCache<>(comparator, weigher, limits,
-                                                     createMetricsContext(cConf, topic, metricsCollectionService)));
-              }
-            }
-          }
-
-          topicMessageCaches = caches;
-          initialized = true;
-        }
-      }
-    }
-
-    return topicMessageCaches.get(topicId);
+    return getCache(topicId);
   }
 
   @Override
-  public void clear() {
-    Collection<MessageCache<MessageTable.Entry>> caches;
-
-    synchronized (this) {
-      initialized = false;
-      caches = topicMessageCaches == null ? null : topicMessageCaches.values();
-      topicMessageCaches = null;
-    }
-
-    if (caches != null) {
-      for (MessageCache<MessageTable.Entry> cache : caches) {
-        cache.clear();
-      }
-    }
-  }
-
-  /**
-   * Creates a {@link MetricsContext} for {@link MessageCache} to use for the given topic.
-   */
-  private MetricsContext createMetricsContext(CConfiguration cConf, TopicId topicId,
-                                              MetricsCollectionService metricsCollectionService) {
-    return metricsCollectionService.getContext(ImmutableMap.of(
-      Constants.Metrics.Tag.COMPONENT, Constants.Service.MESSAGING_SERVICE,
-      Constants.Metrics.Tag.INSTANCE_ID, cConf.get(Constants.MessagingSystem.CONTAINER_INSTANCE_ID, "0"),
-      Constants.Metrics.Tag.NAMESPACE, topicId.getNamespace(),
-      Constants.Metrics.Tag.TOPIC, topicId.getTopic()
-    ));
+  protected MessageCache<MessageTable.Entry> createCache(MessageCache.Limits limits, MetricsContext metricsContext) {
+    return new MessageCache<>(comparator, weigher, limits, metricsContext);
   }
 }
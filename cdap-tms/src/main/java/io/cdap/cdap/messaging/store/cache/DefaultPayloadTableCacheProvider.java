@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.cache;
+
+import com.google.inject.Inject;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.messaging.cache.MessageCache;
+import io.cdap.cdap.messaging.store.PayloadTable;
+import io.cdap.cdap.proto.id.TopicId;
+
+import javax.annotation.Nullable;
+
+/**
+ * The default implementation of {@link PayloadTableCacheProvider}.
+ */
+public class DefaultPayloadTableCacheProvider extends AbstractTopicCacheProvider<PayloadTable.Entry>
+  implements PayloadTableCacheProvider {
+
+  // Prefix the metrics names to distinguish from the message table cache metrics of the same topic
+  private static final String METRICS_PREFIX = "payload.cache";
+
+  private final PayloadTableEntryComparator comparator;
+  private final PayloadTableEntryWeigher weigher;
+
+  @Inject
+  DefaultPayloadTableCacheProvider(CConfiguration cConf, MetricsCollectionService metricsCollectionService) {
+    super(cConf, metricsCollectionService, Constants.MessagingSystem.PAYLOAD_CACHE_SIZE_MB);
+    this.comparator = new PayloadTableEntryComparator();
+    this.weigher = new PayloadTableEntryWeigher();
+  }
+
+  @Nullable
+  @Override
+  public MessageCache<PayloadTable.Entry> getPayloadCache(TopicId topicId) {
+    return getCache(topicId);
+  }
+
+  @Override
+  protected MessageCache<PayloadTable.Entry> createCache(MessageCache.Limits limits, MetricsContext metricsContext) {
+    return new MessageCache<>(comparator, weigher, limits, metricsContext, METRICS_PREFIX);
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.cache;
+
+import io.cdap.cdap.messaging.store.PayloadTable;
+
+import java.util.Comparator;
+
+/**
+ * A {@link Comparator} for {@link PayloadTable.Entry} to order entries in the payload cache.
+ *
+ * Unlike the row key in the payload table, entries are ordered by the generation, write timestamp and sequence id,
+ * without the transaction write pointer. This gives the same ordering as the table for entries under the same
+ * transaction, while keeping entries in the same order as they were written, which is required by the
+ * {@link io.cdap.cdap.messaging.cache.MessageCache}.
+ */
+final class PayloadTableEntryComparator implements Comparator<PayloadTable.Entry> {
+
+  @Override
+  public int compare(PayloadTable.Entry entry1, PayloadTable.Entry entry2) {
+    int cmp = Integer.compare(entry1.getGeneration(), entry2.getGeneration());
+    if (cmp != 0) {
+      return cmp;
+    }
+    cmp = Long.compare(entry1.getPayloadWriteTimestamp(), entry2.getPayloadWriteTimestamp());
+    if (cmp != 0) {
+      return cmp;
+    }
+    return Integer.compare(entry1.getPayloadSequenceId() & 0xFFFF, entry2.getPayloadSequenceId() & 0xFFFF);
+  }
+}
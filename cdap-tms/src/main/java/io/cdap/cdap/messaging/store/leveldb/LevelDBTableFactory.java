@@ -191,23 +191,19 @@ public final class LevelDBTableFactory implements TableFactory {
           // the same process next iteration and not lose track of generations that need to be deleted.
           Deque<File> filesToDelete = new LinkedList<>();
           for (int olderGeneration = cleanOlderThan - 1; olderGeneration > 0; olderGeneration--) {
-            // Message table
-            File dataDBPath = getDataDBPath(messageTableName, metadata.getTopicId(), olderGeneration);
-            if (!dataDBPath.exists()) {
+            // The message table may not exist if it is provided by a different TableFactory
+            File messageDBPath = getDataDBPath(messageTableName, metadata.getTopicId(), olderGeneration);
+            File payloadDBPath = getDataDBPath(payloadTableName, metadata.getTopicId(), olderGeneration);
+            if (!messageDBPath.exists() && !payloadDBPath.exists()) {
               break;
             }
-            // We can safely remove and close the levelDB as no one should be accessing them anymore
-            Closeables.closeQuietly(levelDBs.remove(dataDBPath));
-            filesToDelete.add(dataDBPath);
-
-            // Payload table
-            dataDBPath = getDataDBPath(payloadTableName, metadata.getTopicId(), olderGeneration);
-            if (!dataDBPath.exists()) {
-              break;
+            for (File dataDBPath : new File[] { messageDBPath, payloadDBPath }) {
+              if (dataDBPath.exists()) {
+                // We can safely remove and close the levelDB as no one should be accessing them anymore
+                Closeables.closeQuietly(levelDBs.remove(dataDBPath));
+                filesToDelete.add(dataDBPath);
+              }
             }
-            // We can safely remove and close the levelDB as no one should be accessing them anymore
-            Closeables.closeQuietly(levelDBs.remove(dataDBPath));
-            filesToDelete.add(dataDBPath);
           }
 
           Iterator<File> descendingIterator = filesToDelete.descendingIterator();
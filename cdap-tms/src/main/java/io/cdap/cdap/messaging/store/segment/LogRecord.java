@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.segment;
+
+import javax.annotation.Nullable;
+
+/**
+ * A mutable record that is appended to or read from a {@link SegmentLog}. Instances are reused across records
+ * to avoid object creation, hence callers should not hold on to it after moving to the next record.
+ */
+final class LogRecord {
+
+  private long key;
+  private byte[] txPtr;
+  private byte[] payload;
+
+  LogRecord set(long key, @Nullable byte[] txPtr, @Nullable byte[] payload) {
+    this.key = key;
+    this.txPtr = txPtr;
+    this.payload = payload;
+    return this;
+  }
+
+  /**
+   * Returns the key of the record. Keys in a {@link SegmentLog} are strictly increasing.
+   */
+  long getKey() {
+    return key;
+  }
+
+  /**
+   * Returns the transaction write pointer in 8 bytes or {@code null} if the record is non-transactional.
+   */
+  @Nullable
+  byte[] getTxPtr() {
+    return txPtr;
+  }
+
+  /**
+   * Returns the payload or {@code null} if the record only contains a reference to the payload table.
+   */
+  @Nullable
+  byte[] getPayload() {
+    return payload;
+  }
+}
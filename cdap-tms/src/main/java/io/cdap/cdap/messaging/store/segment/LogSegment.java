@@ -0,0 +1,438 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.segment;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.Closeables;
+import io.cdap.cdap.api.common.Bytes;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+
+/**
+ * A memory-mapped, append-only segment file of a {@link SegmentLog}. Records are stored in increasing key order,
+ * with a sparse in-memory index from key to file offset that is rebuilt by scanning the file when it is opened.
+ *
+ * Each record has the following layout:
+ *
+ * <pre>
+ *   int    length    - number of bytes after the checksum. It is written last, hence zero marks the end of data
+ *   int    checksum  - CRC32 of the key, the type and the payload
+ *   long   key       - the record key
+ *   byte   type      - one of the {@link EncodeType}
+ *   long   txPtr     - only present for TRANSACTIONAL and PAYLOAD_REFERENCE types
+ *   byte[] payload   - only present for NON_TRANSACTIONAL and TRANSACTIONAL types
+ * </pre>
+ *
+ * The transaction write pointer is excluded from the checksum so that rollback can update it in place.
+ *
+ * Writes are performed by a single writer, which is guarded by the {@link SegmentLog}, in batches. The length of
+ * the first record of a batch is only written on {@link #commit()}, so that a partially written batch is never
+ * visible to readers, nor recovered after a crash. Readers can access the segment concurrently and only see
+ * records up to the committed {@link #getSize() size}.
+ */
+final class LogSegment implements Closeable {
+
+  static final int HEADER_SIZE = Bytes.SIZEOF_INT * 2;
+
+  private static final int MIN_LENGTH = Bytes.SIZEOF_LONG + 1;
+
+  /**
+   * Types of record.
+   */
+  private enum EncodeType {
+    NON_TRANSACTIONAL(0),
+    TRANSACTIONAL(1),
+    PAYLOAD_REFERENCE(2);
+
+    private final byte type;
+
+    EncodeType(int type) {
+      this.type = (byte) type;
+    }
+
+    byte getType() {
+      return type;
+    }
+  }
+
+  private final File file;
+  private final long id;
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private final int indexInterval;
+  private final ConcurrentNavigableMap<Long, Integer> index;
+
+  // Buffer and checksum only used by the writer and the recovery
+  private final ByteBuffer writeBuffer;
+  private final CRC32 crc;
+
+  private volatile int size;
+  private volatile long firstKey;
+  private volatile long lastKey;
+
+  private int writePosition;
+  private int pendingLength;
+  private long pendingLastKey;
+  private int lastIndexedOffset;
+  private boolean sealed;
+
+  /**
+   * Returns the number of bytes needed to store a record with the given transaction write pointer and payload.
+   */
+  static int getRecordSize(@Nullable byte[] txPtr, @Nullable byte[] payload) {
+    return HEADER_SIZE + MIN_LENGTH + (txPtr == null ? 0 : Bytes.SIZEOF_LONG) + (payload == null ? 0 : payload.length);
+  }
+
+  /**
+   * Opens a segment file, creating it with the given capacity if it doesn't exist.
+   *
+   * @param file the segment file
+   * @param id the id of the segment
+   * @param capacity the maximum number of bytes of a new segment
+   * @param indexInterval minimum number of bytes between two entries in the sparse index
+   * @throws IOException if failed to open or map the file
+   */
+  LogSegment(File file, long id, int capacity, int indexInterval) throws IOException {
+    this.file = file;
+    this.id = id;
+    this.indexInterval = indexInterval;
+    this.index = new ConcurrentSkipListMap<>();
+    this.crc = new CRC32();
+
+    this.channel = new RandomAccessFile(file, "rw").getChannel();
+    try {
+      long fileSize = channel.size();
+      Preconditions.checkState(fileSize <= Integer.MAX_VALUE, "Segment file %s is too large", file);
+      // Existing file keeps its size, which can be smaller than the capacity if it was sealed
+      this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize > 0 ? fileSize : capacity);
+    } catch (IOException | RuntimeException e) {
+      Closeables.closeQuietly(channel);
+      throw new IOException("Failed to open segment file " + file, e);
+    }
+    this.writeBuffer = buffer.duplicate();
+    this.firstKey = Long.MIN_VALUE;
+    this.lastKey = Long.MIN_VALUE;
+    this.lastIndexedOffset = -indexInterval;
+
+    // Recover the committed records
+    int end = 0;
+    long key = Long.MIN_VALUE;
+    while (end + HEADER_SIZE + MIN_LENGTH <= buffer.capacity()) {
+      int length = buffer.getInt(end);
+      if (length < MIN_LENGTH || length > buffer.capacity() - end - HEADER_SIZE) {
+        break;
+      }
+      long recordKey = buffer.getLong(end + HEADER_SIZE);
+      if (recordKey <= key || computeChecksum(end, length) != buffer.getInt(end + Bytes.SIZEOF_INT)) {
+        break;
+      }
+      key = recordKey;
+      end += HEADER_SIZE + length;
+    }
+    updateIndex(0, end);
+    this.lastKey = key;
+    this.size = end;
+    this.writePosition = end;
+  }
+
+  /**
+   * Returns the id of this segment.
+   */
+  long getId() {
+    return id;
+  }
+
+  /**
+   * Returns the file of this segment.
+   */
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the number of bytes of committed records.
+   */
+  int getSize() {
+    return size;
+  }
+
+  /**
+   * Returns the key of the first committed record or {@link Long#MIN_VALUE} if the segment is empty.
+   */
+  long getFirstKey() {
+    return firstKey;
+  }
+
+  /**
+   * Returns the key of the last committed record or {@link Long#MIN_VALUE} if the segment is empty.
+   */
+  long getLastKey() {
+    return lastKey;
+  }
+
+  /**
+   * Returns {@code true} if a record of the given size can be appended to this segment.
+   */
+  boolean hasRoom(int recordSize) {
+    return !sealed && writePosition + recordSize <= buffer.capacity();
+  }
+
+  /**
+   * Appends a record to the current batch. The caller must make sure the record fits in this segment and
+   * has a larger key than the previous one.
+   */
+  void append(LogRecord record) {
+    byte[] txPtr = record.getTxPtr();
+    byte[] payload = record.getPayload();
+
+    int offset = writePosition;
+    int position = offset + HEADER_SIZE;
+    buffer.putLong(position, record.getKey());
+    position += Bytes.SIZEOF_LONG;
+
+    EncodeType type = txPtr == null
+      ? EncodeType.NON_TRANSACTIONAL
+      : payload == null ? EncodeType.PAYLOAD_REFERENCE : EncodeType.TRANSACTIONAL;
+    buffer.put(position++, type.getType());
+
+    if (txPtr != null) {
+      buffer.putLong(position, Bytes.toLong(txPtr));
+      position += Bytes.SIZEOF_LONG;
+    }
+    if (payload != null) {
+      writeBuffer.clear();
+      writeBuffer.position(position);
+      writeBuffer.put(payload);
+      position += payload.length;
+    }
+
+    int length = position - offset - HEADER_SIZE;
+    buffer.putInt(offset + Bytes.SIZEOF_INT, computeChecksum(offset, length));
+
+    // The length of the first record of the batch is written on commit.
+    if (offset == size) {
+      pendingLength = length;
+    } else {
+      buffer.putInt(offset, length);
+    }
+    pendingLastKey = record.getKey();
+    writePosition = position;
+  }
+
+  /**
+   * Commits the current batch, making the appended records visible to readers.
+   */
+  void commit() {
+    int start = size;
+    if (writePosition == start) {
+      return;
+    }
+    buffer.putInt(start, pendingLength);
+    updateIndex(start, writePosition);
+    lastKey = pendingLastKey;
+    size = writePosition;
+  }
+
+  /**
+   * Discards all records appended in the current batch.
+   */
+  void abort() {
+    for (int i = size; i < writePosition; i++) {
+      buffer.put(i, (byte) 0);
+    }
+    writePosition = size;
+  }
+
+  /**
+   * Forces committed records to be written to the storage device.
+   */
+  void flush() {
+    buffer.force();
+  }
+
+  /**
+   * Seals this segment such that no more record can be appended. The file is truncated to the committed size.
+   */
+  void seal() throws IOException {
+    abort();
+    sealed = true;
+    channel.truncate(size);
+  }
+
+  /**
+   * Updates the transaction write pointer of all transactional records in the given key range.
+   *
+   * @param startKey the start key, inclusive
+   * @param stopKey the stop key, exclusive
+   * @param txPtr the new transaction write pointer
+   */
+  void updateTxPtr(long startKey, long stopKey, long txPtr) {
+    int end = size;
+    int offset = seek(startKey);
+    while (offset < end) {
+      long key = buffer.getLong(offset + HEADER_SIZE);
+      if (key >= stopKey) {
+        break;
+      }
+      int typeOffset = offset + HEADER_SIZE + Bytes.SIZEOF_LONG;
+      if (key >= startKey && buffer.get(typeOffset) != EncodeType.NON_TRANSACTIONAL.getType()) {
+        buffer.putLong(typeOffset + 1, txPtr);
+      }
+      offset += HEADER_SIZE + buffer.getInt(offset);
+    }
+  }
+
+  /**
+   * Returns the offset to start scanning from for records with keys that are greater than or equal to the given key.
+   */
+  int seek(long key) {
+    Map.Entry<Long, Integer> entry = index.floorEntry(key);
+    return entry == null ? 0 : entry.getValue();
+  }
+
+  /**
+   * Creates a new reader for reading records of this segment, starting from the given offset up to the
+   * currently committed size.
+   */
+  Reader createReader(int offset) {
+    return new Reader(buffer.duplicate(), offset, size);
+  }
+
+  @Override
+  public void close() throws IOException {
+    // There is no way to unmap the buffer explicitly. It will be unmapped when it is garbage collected, which
+    // allows concurrent readers to finish reading even if the segment is closed or deleted.
+    channel.close();
+  }
+
+  @Override
+  public String toString() {
+    return "LogSegment{file=" + file + ", size=" + size + ", firstKey=" + firstKey + ", lastKey=" + lastKey + '}';
+  }
+
+  /**
+   * Adds sparse index entries for the records in the given range.
+   */
+  private void updateIndex(int start, int end) {
+    int offset = start;
+    while (offset < end) {
+      if (offset - lastIndexedOffset >= indexInterval) {
+        index.put(buffer.getLong(offset + HEADER_SIZE), offset);
+        lastIndexedOffset = offset;
+      }
+      if (offset == 0) {
+        firstKey = buffer.getLong(offset + HEADER_SIZE);
+      }
+      offset += HEADER_SIZE + buffer.getInt(offset);
+    }
+  }
+
+  /**
+   * Computes the checksum of the record at the given offset, excluding the transaction write pointer.
+   */
+  private int computeChecksum(int offset, int length) {
+    int start = offset + HEADER_SIZE;
+    int end = start + length;
+    int typeOffset = start + Bytes.SIZEOF_LONG;
+
+    crc.reset();
+    writeBuffer.clear();
+    writeBuffer.position(start).limit(typeOffset + 1);
+    crc.update(writeBuffer);
+
+    int payloadOffset = typeOffset + 1;
+    if (buffer.get(typeOffset) != EncodeType.NON_TRANSACTIONAL.getType()) {
+      payloadOffset += Bytes.SIZEOF_LONG;
+    }
+    if (payloadOffset < end) {
+      writeBuffer.limit(end).position(payloadOffset);
+      crc.update(writeBuffer);
+    }
+    return (int) crc.getValue();
+  }
+
+  /**
+   * A reader for reading records sequentially from a segment.
+   */
+  static final class Reader {
+
+    private final ByteBuffer buffer;
+    private final int end;
+    private final LogRecord record;
+    private int offset;
+
+    private Reader(ByteBuffer buffer, int offset, int end) {
+      this.buffer = buffer;
+      this.offset = offset;
+      this.end = end;
+      this.record = new LogRecord();
+    }
+
+    /**
+     * Returns the key of the next record or {@link Long#MAX_VALUE} if there is no more record.
+     */
+    long peekKey() {
+      return offset < end ? buffer.getLong(offset + HEADER_SIZE) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Skips the next record.
+     */
+    void skip() {
+      offset += HEADER_SIZE + buffer.getInt(offset);
+    }
+
+    /**
+     * Reads the next record. The returned {@link LogRecord} is reused on each call.
+     */
+    LogRecord read() {
+      int length = buffer.getInt(offset);
+      int end = offset + HEADER_SIZE + length;
+      int position = offset + HEADER_SIZE;
+      long key = buffer.getLong(position);
+      position += Bytes.SIZEOF_LONG;
+      byte type = buffer.get(position++);
+
+      byte[] txPtr = null;
+      if (type != EncodeType.NON_TRANSACTIONAL.getType()) {
+        txPtr = new byte[Bytes.SIZEOF_LONG];
+        buffer.position(position);
+        buffer.get(txPtr);
+        position += Bytes.SIZEOF_LONG;
+      }
+      byte[] payload = null;
+      if (type != EncodeType.PAYLOAD_REFERENCE.getType()) {
+        payload = new byte[end - position];
+        buffer.position(position);
+        buffer.get(payload);
+      }
+      offset = end;
+      return record.set(key, txPtr, payload);
+    }
+  }
+}
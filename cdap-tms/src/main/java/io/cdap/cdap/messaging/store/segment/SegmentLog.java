@@ -0,0 +1,330 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.segment;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closeables;
+import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.common.utils.DirUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An append-only log that stores records in increasing key order in a list of {@link LogSegment}s inside a
+ * directory. Appends and updates are serialized, while reads are lock free and only see committed records.
+ */
+final class SegmentLog implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SegmentLog.class);
+  private static final String SEGMENT_FILE_SUFFIX = ".seg";
+
+  private final File dir;
+  private final int segmentSize;
+  private final int indexInterval;
+
+  // Immutable list of segments ordered by segment id. It is replaced when segments are added or removed.
+  private volatile List<LogSegment> segments;
+  private long nextSegmentId;
+  private long lastKey;
+
+  /**
+   * Opens the log in the given directory, creating the directory if it doesn't exist.
+   *
+   * @param dir the directory for the segment files
+   * @param segmentSize the maximum size in bytes of each segment
+   * @param indexInterval minimum number of bytes between two entries in the sparse index of a segment
+   * @throws IOException if failed to open the log
+   */
+  SegmentLog(File dir, int segmentSize, int indexInterval) throws IOException {
+    if (!DirUtils.mkdirs(dir)) {
+      throw new IOException("Failed to create directory " + dir);
+    }
+    this.dir = dir;
+    this.segmentSize = segmentSize;
+    this.indexInterval = indexInterval;
+
+    List<File> files = new ArrayList<>(DirUtils.listFiles(dir, (d, name) -> name.endsWith(SEGMENT_FILE_SUFFIX)));
+    files.sort((f1, f2) -> Long.compare(getSegmentId(f1), getSegmentId(f2)));
+
+    List<LogSegment> segments = new ArrayList<>();
+    long lastKey = Long.MIN_VALUE;
+    try {
+      for (File file : files) {
+        LogSegment segment = new LogSegment(file, getSegmentId(file), segmentSize, indexInterval);
+        // Remove empty segment that was left behind, so that keys are always increasing across segments
+        if (!segments.isEmpty() && segments.get(segments.size() - 1).getSize() == 0) {
+          deleteSegment(segments.remove(segments.size() - 1));
+        }
+        segments.add(segment);
+        lastKey = Math.max(lastKey, segment.getLastKey());
+      }
+    } catch (IOException e) {
+      segments.forEach(Closeables::closeQuietly);
+      throw e;
+    }
+    this.segments = ImmutableList.copyOf(segments);
+    this.nextSegmentId = segments.isEmpty() ? 0L : segments.get(segments.size() - 1).getId() + 1;
+    this.lastKey = lastKey;
+  }
+
+  /**
+   * Appends records to the log. The records are committed together and become visible to readers after all of
+   * them are written. If any of the records fails to be written, none of them are committed.
+   *
+   * @param records the records to append, which must have keys larger than all existing records
+   * @throws IOException if failed to append to the log
+   */
+  synchronized void append(Iterator<LogRecord> records) throws IOException {
+    // The segments written by this batch in key order. Segments created by this batch are only added to the log
+    // after all the records are written, so that a failed batch doesn't leave any segment behind.
+    List<LogSegment> batchSegments = new ArrayList<>();
+    LogSegment segment = null;
+    long previousKey = lastKey;
+    try {
+      while (records.hasNext()) {
+        LogRecord record = records.next();
+        if (record.getKey() <= previousKey) {
+          throw new IOException(String.format("Key %d is not larger than the last key %d in %s",
+                                              record.getKey(), previousKey, dir));
+        }
+        int recordSize = LogSegment.getRecordSize(record.getTxPtr(), record.getPayload());
+        if (segment == null || !segment.hasRoom(recordSize)) {
+          segment = segment == null ? getWritableSegment(recordSize) : createSegment(recordSize);
+          batchSegments.add(segment);
+        }
+        segment.append(record);
+        previousKey = record.getKey();
+      }
+    } catch (IOException | RuntimeException e) {
+      for (LogSegment batchSegment : batchSegments) {
+        batchSegment.abort();
+        if (!segments.contains(batchSegment)) {
+          try {
+            deleteSegment(batchSegment);
+          } catch (IOException ex) {
+            e.addSuppressed(ex);
+          }
+        }
+      }
+      throw e;
+    }
+    commit(batchSegments);
+  }
+
+  /**
+   * Updates the transaction write pointer of all transactional records in the given key range.
+   *
+   * @param startKey the start key, inclusive
+   * @param stopKey the stop key, exclusive
+   * @param txPtr the new transaction write pointer
+   */
+  synchronized void updateTxPtr(long startKey, long stopKey, long txPtr) {
+    for (LogSegment segment : segments) {
+      if (segment.getSize() > 0 && segment.getLastKey() >= startKey && segment.getFirstKey() < stopKey) {
+        segment.updateTxPtr(startKey, stopKey, txPtr);
+        segment.flush();
+      }
+    }
+  }
+
+  /**
+   * Deletes all segments that only contain records with keys smaller than the given key.
+   *
+   * @param key the key to delete segments before
+   * @return the number of segments deleted
+   * @throws IOException if failed to delete a segment file
+   */
+  synchronized int deleteBefore(long key) throws IOException {
+    List<LogSegment> segments = this.segments;
+    int count = 0;
+    for (LogSegment segment : segments) {
+      // Empty segment is only deleted if it is not the last one
+      if (segment.getLastKey() >= key || (segment.getSize() == 0 && count == segments.size() - 1)) {
+        break;
+      }
+      count++;
+    }
+    if (count == 0) {
+      return 0;
+    }
+
+    this.segments = ImmutableList.copyOf(segments.subList(count, segments.size()));
+    for (LogSegment segment : segments.subList(0, count)) {
+      deleteSegment(segment);
+    }
+    return count;
+  }
+
+  /**
+   * Scans the log for records in the given key range.
+   *
+   * @param startKey the start key, inclusive
+   * @param stopKey the stop key, exclusive
+   * @return a {@link CloseableIterator} of {@link LogRecord}, which the same instance is reused for each record
+   */
+  CloseableIterator<LogRecord> scan(long startKey, long stopKey) {
+    List<LogSegment> segments = this.segments;
+
+    // Binary search for the first segment that may contain the start key
+    int low = 0;
+    int high = segments.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (segments.get(mid).getLastKey() < startKey) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    Iterator<LogSegment> segmentIterator = segments.subList(low, segments.size()).iterator();
+
+    return new AbstractCloseableIterator<LogRecord>() {
+
+      private LogSegment.Reader reader;
+
+      @Override
+      protected LogRecord computeNext() {
+        while (true) {
+          long key = reader == null ? Long.MAX_VALUE : reader.peekKey();
+          if (key == Long.MAX_VALUE) {
+            if (!segmentIterator.hasNext()) {
+              return endOfData();
+            }
+            LogSegment segment = segmentIterator.next();
+            reader = segment.createReader(segment.seek(startKey));
+            continue;
+          }
+          if (key >= stopKey) {
+            return endOfData();
+          }
+          if (key < startKey) {
+            reader.skip();
+            continue;
+          }
+          return reader.read();
+        }
+      }
+
+      @Override
+      public void close() {
+        endOfData();
+      }
+    };
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    segments.forEach(Closeables::closeQuietly);
+  }
+
+  @Override
+  public String toString() {
+    return "SegmentLog{dir=" + dir + ", segments=" + segments.size() + '}';
+  }
+
+  /**
+   * Commits the current batch of the given segments in key order and flushes them to the storage device. The new
+   * segments are then added to the log, and all but the last segment are sealed since they are full.
+   */
+  private void commit(List<LogSegment> batchSegments) {
+    if (batchSegments.isEmpty()) {
+      return;
+    }
+    List<LogSegment> segments = this.segments;
+    ImmutableList.Builder<LogSegment> builder = ImmutableList.<LogSegment>builder().addAll(segments);
+    boolean added = false;
+    for (LogSegment segment : batchSegments) {
+      segment.commit();
+      segment.flush();
+      if (!segments.contains(segment)) {
+        builder.add(segment);
+        added = true;
+      }
+    }
+    if (added) {
+      this.segments = builder.build();
+    }
+    lastKey = batchSegments.get(batchSegments.size() - 1).getLastKey();
+
+    for (LogSegment segment : batchSegments.subList(0, batchSegments.size() - 1)) {
+      try {
+        segment.seal();
+      } catch (IOException e) {
+        // The records are committed already. The segment is still sealed in memory, only the file is not truncated.
+        LOG.warn("Failed to truncate segment {}", segment, e);
+      }
+    }
+  }
+
+  /**
+   * Returns the {@link LogSegment} for appending the first record of a batch of the given size. A new segment will
+   * be created if the last segment doesn't have enough room.
+   */
+  private LogSegment getWritableSegment(int recordSize) throws IOException {
+    List<LogSegment> segments = this.segments;
+    LogSegment last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+    if (last != null && last.hasRoom(recordSize)) {
+      return last;
+    }
+    if (last != null) {
+      if (last.getSize() == 0) {
+        // Remove the empty segment, so that keys are always increasing across segments
+        this.segments = ImmutableList.copyOf(segments.subList(0, segments.size() - 1));
+        deleteSegment(last);
+      } else {
+        last.seal();
+      }
+    }
+    return createSegment(recordSize);
+  }
+
+  /**
+   * Creates a new {@link LogSegment} that has room for a record of the given size. The segment is not added to the
+   * log until it is committed.
+   */
+  private LogSegment createSegment(int recordSize) throws IOException {
+    long id = nextSegmentId++;
+    File file = new File(dir, String.format("%020d%s", id, SEGMENT_FILE_SUFFIX));
+    LogSegment segment = new LogSegment(file, id, Math.max(segmentSize, recordSize), indexInterval);
+    LOG.trace("Created segment {}", segment);
+    return segment;
+  }
+
+  /**
+   * Closes the given segment and deletes the segment file.
+   */
+  private void deleteSegment(LogSegment segment) throws IOException {
+    LOG.debug("Deleting segment {}", segment);
+    segment.close();
+    if (!segment.getFile().delete() && segment.getFile().exists()) {
+      throw new IOException("Failed to delete segment file " + segment.getFile());
+    }
+  }
+
+  private static long getSegmentId(File file) {
+    String name = file.getName();
+    return Long.parseLong(name.substring(0, name.length() - SEGMENT_FILE_SUFFIX.length()));
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.segment;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.messaging.MessagingUtils;
+import io.cdap.cdap.messaging.TopicMetadata;
+import io.cdap.cdap.messaging.store.AbstractMessageTable;
+import io.cdap.cdap.messaging.store.MessageTable;
+import io.cdap.cdap.messaging.store.RawMessageTableEntry;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * A {@link MessageTable} that stores messages of a topic in a {@link SegmentLog}. Only the publish timestamp and
+ * the sequence id of the row key are stored in the log, encoded as a single long key.
+ */
+final class SegmentMessageTable extends AbstractMessageTable {
+
+  private final SegmentLog log;
+  private final byte[] keyPrefix;
+
+  SegmentMessageTable(SegmentLog log, TopicMetadata topicMetadata) {
+    this.log = log;
+    this.keyPrefix = MessagingUtils.toDataKeyPrefix(topicMetadata.getTopicId(), topicMetadata.getGeneration());
+  }
+
+  @Override
+  protected void persist(Iterator<RawMessageTableEntry> entries) throws IOException {
+    LogRecord record = new LogRecord();
+    log.append(new AbstractIterator<LogRecord>() {
+      @Override
+      protected LogRecord computeNext() {
+        if (!entries.hasNext()) {
+          return endOfData();
+        }
+        RawMessageTableEntry entry = entries.next();
+        byte[] rowKey = entry.getKey();
+        Preconditions.checkArgument(Bytes.startsWith(rowKey, keyPrefix) &&
+                                      rowKey.length == keyPrefix.length + Bytes.SIZEOF_LONG + Bytes.SIZEOF_SHORT,
+                                    "Row key does not belong to the table topic");
+        // For non-tx message, payload cannot be null
+        Preconditions.checkArgument(entry.getTxPtr() != null || entry.getPayload() != null,
+                                    "Payload cannot be null for non-transactional message");
+        return record.set(toLogKey(rowKey), entry.getTxPtr(), entry.getPayload());
+      }
+    });
+  }
+
+  @Override
+  protected void rollback(byte[] startKey, byte[] stopKey, byte[] txWritePointer) {
+    log.updateTxPtr(toLogKey(startKey), toLogKey(stopKey), Bytes.toLong(txWritePointer));
+  }
+
+  @Override
+  protected CloseableIterator<RawMessageTableEntry> read(byte[] startRow, byte[] stopRow) {
+    CloseableIterator<LogRecord> iterator = log.scan(toLogKey(startRow), toLogKey(stopRow));
+    RawMessageTableEntry tableEntry = new RawMessageTableEntry();
+    return new AbstractCloseableIterator<RawMessageTableEntry>() {
+      private boolean closed = false;
+
+      @Override
+      protected RawMessageTableEntry computeNext() {
+        if (closed || (!iterator.hasNext())) {
+          return endOfData();
+        }
+        LogRecord record = iterator.next();
+        return tableEntry.set(toRowKey(record.getKey()), record.getTxPtr(), record.getPayload());
+      }
+
+      @Override
+      public void close() {
+        try {
+          iterator.close();
+        } finally {
+          endOfData();
+          closed = true;
+        }
+      }
+    };
+  }
+
+  @Override
+  public void close() {
+    // This method has to be an no-op since the log is shared by all tables of the same topic
+  }
+
+  /**
+   * Converts a row key to the log key. A row key that sorts before or after all rows of the topic is
+   * converted to {@link Long#MIN_VALUE} or {@link Long#MAX_VALUE} respectively. The publish timestamp and sequence id
+   * of a partial row key, such as the one created by {@link Bytes#stopKeyForPrefix(byte[])}, are padded with zeros.
+   */
+  private long toLogKey(byte[] rowKey) {
+    int cmp = Bytes.compareTo(rowKey, 0, Math.min(rowKey.length, keyPrefix.length), keyPrefix, 0, keyPrefix.length);
+    if (cmp < 0) {
+      return Long.MIN_VALUE;
+    }
+    if (cmp > 0) {
+      return Long.MAX_VALUE;
+    }
+    byte[] suffix = new byte[Bytes.SIZEOF_LONG + Bytes.SIZEOF_SHORT];
+    Bytes.putBytes(suffix, 0, rowKey, keyPrefix.length, Math.min(rowKey.length - keyPrefix.length, suffix.length));
+    return toLogKey(Bytes.toLong(suffix, 0), Bytes.toShort(suffix, Bytes.SIZEOF_LONG));
+  }
+
+  /**
+   * Converts a log key back to the row key.
+   */
+  private byte[] toRowKey(long key) {
+    byte[] rowKey = new byte[keyPrefix.length + Bytes.SIZEOF_LONG + Bytes.SIZEOF_SHORT];
+    Bytes.putBytes(rowKey, 0, keyPrefix, 0, keyPrefix.length);
+    Bytes.putLong(rowKey, keyPrefix.length, key >>> 16);
+    Bytes.putShort(rowKey, keyPrefix.length + Bytes.SIZEOF_LONG, (short) key);
+    return rowKey;
+  }
+
+  /**
+   * Encodes the publish timestamp and the unsigned sequence id into a single long, which preserves the row key
+   * ordering for timestamps smaller than 2^47 milliseconds.
+   */
+  static long toLogKey(long publishTimestamp, short sequenceId) {
+    return (publishTimestamp << 16) | (sequenceId & 0xFFFF);
+  }
+}
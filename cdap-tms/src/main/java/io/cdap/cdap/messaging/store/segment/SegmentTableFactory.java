@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.segment;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.io.Closeables;
+import com.google.inject.Inject;
+import io.cdap.cdap.api.messaging.TopicNotFoundException;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.utils.DirUtils;
+import io.cdap.cdap.messaging.TopicMetadata;
+import io.cdap.cdap.messaging.store.MessageTable;
+import io.cdap.cdap.messaging.store.MetadataTable;
+import io.cdap.cdap.messaging.store.PayloadTable;
+import io.cdap.cdap.messaging.store.TableFactory;
+import io.cdap.cdap.messaging.store.leveldb.LevelDBTableFactory;
+import io.cdap.cdap.proto.id.TopicId;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link TableFactory} that stores messages of each topic generation in a {@link SegmentLog}, which is a list of
+ * memory-mapped, append-only segment files. Fetching is a sequential read of the mapped files and TTL cleanup
+ * deletes whole segments instead of individual messages. The metadata and payload tables are provided by the
+ * {@link LevelDBTableFactory}.
+ */
+public final class SegmentTableFactory implements TableFactory {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SegmentTableFactory.class);
+
+  private final File baseDir;
+  private final String messageTableName;
+  private final int segmentSize;
+  private final int indexInterval;
+  private final LevelDBTableFactory levelDBTableFactory;
+  private final ConcurrentMap<File, SegmentLog> logs;
+  private final ScheduledExecutorService executor;
+
+  private volatile MetadataTable metadataTable;
+
+  @VisibleForTesting
+  @Inject
+  public SegmentTableFactory(CConfiguration cConf) {
+    long segmentSize = cConf.getLong(Constants.MessagingSystem.LOCAL_SEGMENT_SIZE_MB) * 1024 * 1024;
+    Preconditions.checkArgument(segmentSize > 0 && segmentSize <= Integer.MAX_VALUE,
+                                "Segment size must be between 1 and 2047 MB, but got %s MB",
+                                cConf.get(Constants.MessagingSystem.LOCAL_SEGMENT_SIZE_MB));
+    int indexInterval = cConf.getInt(Constants.MessagingSystem.LOCAL_SEGMENT_INDEX_INTERVAL_BYTES);
+    Preconditions.checkArgument(indexInterval > 0, "Segment index interval must be positive, but got %s",
+                                indexInterval);
+
+    this.baseDir = new File(cConf.get(Constants.MessagingSystem.LOCAL_DATA_DIR));
+    this.messageTableName = cConf.get(Constants.MessagingSystem.MESSAGE_TABLE_NAME);
+    this.segmentSize = (int) segmentSize;
+    this.indexInterval = indexInterval;
+    this.levelDBTableFactory = new LevelDBTableFactory(cConf);
+    this.logs = new ConcurrentHashMap<>();
+    this.executor = Executors.newSingleThreadScheduledExecutor(
+      Threads.createDaemonThreadFactory("segment-tms-data-cleanup"));
+    executor.scheduleAtFixedRate(new DataCleanup(), 0L,
+                                 Long.parseLong(cConf.get(Constants.MessagingSystem.LOCAL_DATA_CLEANUP_FREQUENCY)),
+                                 TimeUnit.SECONDS);
+  }
+
+  @Override
+  public MetadataTable createMetadataTable() throws IOException {
+    MetadataTable metadataTable = levelDBTableFactory.createMetadataTable();
+    this.metadataTable = metadataTable;
+    return metadataTable;
+  }
+
+  @Override
+  public MessageTable createMessageTable(TopicMetadata topicMetadata) throws IOException {
+    return new SegmentMessageTable(getLog(topicMetadata.getTopicId(), topicMetadata.getGeneration()), topicMetadata);
+  }
+
+  @Override
+  public PayloadTable createPayloadTable(TopicMetadata topicMetadata) throws IOException {
+    return levelDBTableFactory.createPayloadTable(topicMetadata);
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    metadataTable = null;
+    levelDBTableFactory.close();
+    Collection<SegmentLog> logs = this.logs.values();
+    logs.forEach(Closeables::closeQuietly);
+    logs.clear();
+  }
+
+  /**
+   * Returns the {@link SegmentLog} for the given topic generation.
+   */
+  private SegmentLog getLog(TopicId topicId, int generation) throws IOException {
+    File logDir = getLogDir(topicId, generation);
+
+    SegmentLog log = logs.get(logDir);
+    if (log != null) {
+      return log;
+    }
+
+    synchronized (this) {
+      // Check again to make sure no new instance was being created while this thread is acquiring the lock
+      log = logs.get(logDir);
+      if (log != null) {
+        return log;
+      }
+      log = new SegmentLog(logDir, segmentSize, indexInterval);
+      logs.put(logDir, log);
+    }
+
+    LOG.debug("Messaging segment log created at {}", logDir);
+    return log;
+  }
+
+  /**
+   * Returns the directory for the log of the given topic generation. It has a different name than the
+   * LevelDB table directory to avoid mixing up the files when switching between the two implementations.
+   */
+  private File getLogDir(TopicId topicId, int generation) {
+    String fileName = String.format("%s.%s.%s.%d.segments",
+                                    topicId.getNamespace(), messageTableName, topicId.getTopic(), generation);
+    return new File(baseDir, fileName);
+  }
+
+  private class DataCleanup implements Runnable {
+
+    @Override
+    public void run() {
+      MetadataTable metadataTable = SegmentTableFactory.this.metadataTable;
+      if (metadataTable == null) {
+        return;
+      }
+
+      long now = System.currentTimeMillis();
+      try {
+        for (TopicId topicId : metadataTable.listTopics()) {
+          TopicMetadata metadata;
+          try {
+            metadata = metadataTable.getMetadata(topicId);
+          } catch (TopicNotFoundException e) {
+            // Topic deleted after listing. Its data will be removed when the topic is recreated.
+            continue;
+          }
+          int currGeneration = metadata.getGeneration();
+
+          // We can safely remove all generations that are less than `cleanOlderThan`.
+          int cleanOlderThan = currGeneration < 0 ? currGeneration * -1 + 1 : currGeneration;
+          // Find the generations older than `cleanOlderThan`, that have data on disk, and remove them in reverse order.
+          // We do it in reverse order, so that in case there is a failure in deleting one of them, we can repeat
+          // the same process next iteration and not lose track of generations that need to be deleted.
+          Deque<File> dirsToDelete = new LinkedList<>();
+          for (int olderGeneration = cleanOlderThan - 1; olderGeneration > 0; olderGeneration--) {
+            File logDir = getLogDir(topicId, olderGeneration);
+            if (!logDir.exists()) {
+              break;
+            }
+            // We can safely remove and close the log as no one should be accessing it anymore
+            Closeables.closeQuietly(logs.remove(logDir));
+            dirsToDelete.add(logDir);
+          }
+
+          Iterator<File> descendingIterator = dirsToDelete.descendingIterator();
+          while (descendingIterator.hasNext()) {
+            File logDir = descendingIterator.next();
+            LOG.info("Deleting directory: {}", logDir);
+            DirUtils.deleteDirectoryContents(logDir);
+          }
+
+          // Delete segments that have all messages exceeded the TTL in the current generation
+          SegmentLog log = logs.get(getLogDir(topicId, currGeneration));
+          if (log != null && currGeneration > 0) {
+            long expireTime = now - TimeUnit.SECONDS.toMillis(metadata.getTTL());
+            int deleted = log.deleteBefore(SegmentMessageTable.toLogKey(expireTime, (short) 0));
+            if (deleted > 0) {
+              LOG.debug("Deleted {} expired segments from {}", deleted, log);
+            }
+          }
+        }
+      } catch (IOException ex) {
+        LOG.debug("Unable to perform data cleanup in TMS segment logs", ex);
+      }
+    }
+  }
+}
@@ -39,6 +39,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.xml.ws.handler.MessageContext;
 
@@ -75,6 +76,13 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
     return topicId;
   }
 
+  /**
+   * Returns the {@link MetricsContext} for emitting metrics about the message consumption.
+   */
+  protected final MetricsContext getMetricsContext() {
+    return metricsContext;
+  }
+
   /**
    * Returns the {@link MessageContext} that this service used for interacting with TMS.
    */
@@ -150,14 +158,16 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
   }
 
   /**
-   * Fetching messages from TMS.
+   * Fetching messages from TMS. If there is no new message, the fetch waits on the server side for up to the
+   * empty fetch delay for new messages to be published, instead of returning immediately.
    */
   protected List<Message> fetchMessages(@Nullable String messageId) throws TopicNotFoundException, IOException {
     List<Message> messages = new ArrayList<>();
     LOG.trace("Fetching from topic '{}' with messageId '{}'", topicId, messageId);
     MessageFetcher messageFetcher = getMessagingContext().getMessageFetcher();
     try (CloseableIterator<Message> iterator = messageFetcher.fetch(getTopicId().getNamespace(),
-                                                                    getTopicId().getTopic(), fetchSize, messageId)) {
+                                                                    getTopicId().getTopic(), fetchSize, messageId,
+                                                                    emptyFetchDelayMillis, TimeUnit.MILLISECONDS)) {
       while (iterator.hasNext() && state() == State.RUNNING) {
         messages.add(iterator.next());
       }
@@ -214,7 +224,7 @@ public abstract class AbstractMessagingPollingService<T> extends AbstractRetryab
    * @param messageId the message id to decode
    * @return the publish time or {@code 0} if the message id is {@code null}.
    */
-  private long getMessagePublishTime(String messageId) {
+  protected final long getMessagePublishTime(String messageId) {
     return new MessageId(Bytes.fromHexString(messageId)).getPublishTimestamp();
   }
 
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging;
+
+import io.cdap.cdap.api.common.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests for {@link PayloadCompression}.
+ */
+public class PayloadCompressionTest {
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    Random random = new Random();
+    byte[] randomPayload = new byte[1024];
+    random.nextBytes(randomPayload);
+
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      builder.append("namespace=system,component=metrics.processor,metric=system.process.events.processed,");
+    }
+    byte[] repetitivePayload = Bytes.toBytes(builder.toString());
+
+    for (PayloadCompression compression : PayloadCompression.values()) {
+      for (byte[] payload : new byte[][] { new byte[0], Bytes.toBytes("m"), randomPayload, repetitivePayload }) {
+        byte[] compressed = compression.compress(payload);
+        Assert.assertArrayEquals(compression.toString(), payload, compression.decompress(compressed));
+      }
+      if (compression != PayloadCompression.NONE) {
+        Assert.assertTrue(compression.compress(repetitivePayload).length < repetitivePayload.length / 10);
+        // Payloads that are small or don't compress are stored with a one byte header
+        byte[] smallPayload = Arrays.copyOf(repetitivePayload, PayloadCompression.MIN_COMPRESS_SIZE - 1);
+        Assert.assertEquals(smallPayload.length + 1, compression.compress(smallPayload).length);
+        Assert.assertEquals(randomPayload.length + 1, compression.compress(randomPayload).length);
+      }
+    }
+  }
+
+  @Test
+  public void testMalformedPayload() {
+    for (byte[] payload : new byte[][] { { 1, 2 }, { 1, -1, -1, -1, -1, 1 }, { -1, -1, -1, -1, 1 } }) {
+      try {
+        PayloadCompression.LZ4.decompress(payload);
+        Assert.fail("Expected IOException for " + Arrays.toString(payload));
+      } catch (IOException e) {
+        // Expected
+      }
+    }
+  }
+
+  @Test
+  public void testFromName() {
+    Assert.assertEquals(PayloadCompression.LZ4, PayloadCompression.fromName("lz4"));
+    Assert.assertEquals(PayloadCompression.LZ4, PayloadCompression.fromName(" Lz4 "));
+    Assert.assertEquals(PayloadCompression.NONE, PayloadCompression.fromName("NONE"));
+    try {
+      PayloadCompression.fromName("snappy");
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+  }
+}
@@ -45,7 +45,9 @@ import io.cdap.cdap.messaging.guice.MessagingServerRuntimeModule;
 import io.cdap.cdap.messaging.store.TableFactory;
 import io.cdap.cdap.messaging.store.cache.CachingTableFactory;
 import io.cdap.cdap.messaging.store.cache.DefaultMessageTableCacheProvider;
+import io.cdap.cdap.messaging.store.cache.DefaultPayloadTableCacheProvider;
 import io.cdap.cdap.messaging.store.cache.MessageTableCacheProvider;
+import io.cdap.cdap.messaging.store.cache.PayloadTableCacheProvider;
 import io.cdap.cdap.messaging.store.leveldb.LevelDBTableFactory;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
@@ -264,8 +266,9 @@ public class LeaderElectionMessagingServiceTest {
             .annotatedWith(Names.named(CachingTableFactory.DELEGATE_TABLE_FACTORY))
             .toInstance(levelDBTableFactory);
 
-          // The cache must be in singleton scope
+          // The caches must be in singleton scope
           bind(MessageTableCacheProvider.class).to(DefaultMessageTableCacheProvider.class).in(Scopes.SINGLETON);
+          bind(PayloadTableCacheProvider.class).to(DefaultPayloadTableCacheProvider.class).in(Scopes.SINGLETON);
           bind(TableFactory.class).to(CachingTableFactory.class);
 
           // Bind http handlers
@@ -16,8 +16,11 @@
 
 package io.cdap.cdap.messaging.server;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
+import com.google.common.net.HttpHeaders;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
@@ -28,23 +31,46 @@ import io.cdap.cdap.api.messaging.TopicNotFoundException;
 import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
+import io.cdap.cdap.common.discovery.URIScheme;
 import io.cdap.cdap.common.guice.ConfigModule;
 import io.cdap.cdap.common.guice.InMemoryDiscoveryModule;
+import io.cdap.cdap.common.http.DefaultHttpRequestConfig;
+import io.cdap.cdap.common.internal.remote.RemoteClient;
 import io.cdap.cdap.common.metrics.NoOpMetricsCollectionService;
+import io.cdap.cdap.messaging.MessageFrames;
 import io.cdap.cdap.messaging.MessagingService;
+import io.cdap.cdap.messaging.PayloadCompression;
 import io.cdap.cdap.messaging.RollbackDetail;
+import io.cdap.cdap.messaging.Schemas;
 import io.cdap.cdap.messaging.StoreRequest;
+import io.cdap.cdap.messaging.TopicFetchRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
 import io.cdap.cdap.messaging.client.ClientMessagingService;
 import io.cdap.cdap.messaging.client.StoreRequestBuilder;
 import io.cdap.cdap.messaging.data.MessageId;
 import io.cdap.cdap.messaging.data.RawMessage;
+import io.cdap.cdap.messaging.data.TopicRawMessage;
 import io.cdap.cdap.messaging.guice.MessagingServerRuntimeModule;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
+import io.cdap.common.http.HttpMethod;
+import io.cdap.common.http.HttpRequest;
+import io.cdap.common.http.HttpResponse;
+import io.cdap.http.AbstractHttpHandler;
+import io.cdap.http.HttpResponder;
+import io.cdap.http.NettyHttpService;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.EncoderFactory;
 import org.apache.tephra.Transaction;
 import org.apache.tephra.TxConstants;
 import org.apache.twill.discovery.DiscoveryServiceClient;
+import org.apache.twill.discovery.InMemoryDiscoveryService;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -52,14 +78,32 @@ import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.net.HttpURLConnection;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
 
 /**
  * Tests for {@link MessagingHttpService}.
@@ -72,6 +116,7 @@ public class MessagingHttpServiceTest {
   private static CConfiguration cConf;
   private static MessagingHttpService httpService;
   private static MessagingService client;
+  private static RemoteClient remoteClient;
 
   @BeforeClass
   public static void init() throws IOException {
@@ -98,6 +143,9 @@ public class MessagingHttpServiceTest {
     httpService.startAndWait();
 
     client = new ClientMessagingService(injector.getInstance(DiscoveryServiceClient.class));
+    remoteClient = new RemoteClient(injector.getInstance(DiscoveryServiceClient.class),
+                                    Constants.Service.MESSAGING_SERVICE, new DefaultHttpRequestConfig(false),
+                                    "/v1/namespaces/");
   }
 
   @AfterClass
@@ -254,6 +302,221 @@ public class MessagingHttpServiceTest {
     }
   }
 
+  @Test
+  public void testLongPoll() throws Exception {
+    TopicId topicId = new NamespaceId("ns1").topic("testLongPoll");
+    client.createTopic(new TopicMetadata(topicId));
+    try {
+      // Poll without message should return empty after the timeout
+      Stopwatch stopwatch = new Stopwatch().start();
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+        .setPollTimeout(200, TimeUnit.MILLISECONDS).fetch()) {
+        Assert.assertFalse(iterator.hasNext());
+      }
+      Assert.assertTrue(stopwatch.elapsedTime(TimeUnit.MILLISECONDS) >= 200);
+
+      // Poll should return as soon as a message is published
+      CountDownLatch pollStarted = new CountDownLatch(1);
+      Thread publisher = new Thread(() -> {
+        try {
+          pollStarted.await();
+          TimeUnit.MILLISECONDS.sleep(200);
+          client.publish(StoreRequestBuilder.of(topicId).addPayload("m0").build());
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      });
+      publisher.start();
+
+      stopwatch.reset().start();
+      pollStarted.countDown();
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+        .setPollTimeout(20, TimeUnit.SECONDS).fetch()) {
+        Assert.assertTrue(iterator.hasNext());
+        Assert.assertEquals("m0", Bytes.toString(iterator.next().getPayload()));
+        Assert.assertFalse(iterator.hasNext());
+      }
+      Assert.assertTrue(stopwatch.elapsedTime(TimeUnit.SECONDS) < 20);
+      publisher.join();
+
+      // Poll should return immediately if there are messages available
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+        .setPollTimeout(20, TimeUnit.SECONDS).fetch()) {
+        Assert.assertEquals("m0", Bytes.toString(iterator.next().getPayload()));
+      }
+    } finally {
+      client.deleteTopic(topicId);
+    }
+  }
+
+  @Test
+  public void testMultiTopicFetch() throws Exception {
+    NamespaceId nsId = new NamespaceId("ns1");
+    List<TopicId> topics = IntStream.range(0, 3).mapToObj(i -> nsId.topic("testMultiTopicFetch" + i))
+      .collect(Collectors.toList());
+    TopicId otherTopic = NamespaceId.SYSTEM.topic("testMultiTopicFetch");
+    for (TopicId topicId : Iterables.concat(topics, Collections.singleton(otherTopic))) {
+      client.createTopic(new TopicMetadata(topicId));
+    }
+
+    try {
+      // Publish 5 messages to each topic
+      for (TopicId topicId : Iterables.concat(topics, Collections.singleton(otherTopic))) {
+        StoreRequestBuilder builder = StoreRequestBuilder.of(topicId);
+        for (int i = 0; i < 5; i++) {
+          builder.addPayload(topicId.getTopic() + i);
+        }
+        client.publish(builder.build());
+      }
+
+      // Fetch from all topics, with different limits and start positions
+      byte[] secondMessageId;
+      try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topics.get(1)).setLimit(2).fetch()) {
+        secondMessageId = Iterators.getLast(iterator).getId();
+      }
+      List<TopicFetchRequest> requests = Arrays.asList(new TopicFetchRequest(topics.get(0), null, 3),
+                                                       new TopicFetchRequest(topics.get(1), secondMessageId, 10),
+                                                       new TopicFetchRequest(topics.get(2), null, 10),
+                                                       new TopicFetchRequest(otherTopic, null, 1));
+      Map<TopicId, List<String>> messages = new HashMap<>();
+      try (CloseableIterator<TopicRawMessage> iterator = client.fetch(requests)) {
+        while (iterator.hasNext()) {
+          TopicRawMessage message = iterator.next();
+          messages.computeIfAbsent(message.getTopicId(), k -> new ArrayList<>())
+            .add(Bytes.toString(message.getPayload()));
+        }
+      }
+
+      Assert.assertEquals(4, messages.size());
+      Assert.assertEquals(Arrays.asList("testMultiTopicFetch00", "testMultiTopicFetch01", "testMultiTopicFetch02"),
+                          messages.get(topics.get(0)));
+      Assert.assertEquals(Arrays.asList("testMultiTopicFetch12", "testMultiTopicFetch13", "testMultiTopicFetch14"),
+                          messages.get(topics.get(1)));
+      Assert.assertEquals(IntStream.range(0, 5).mapToObj(i -> "testMultiTopicFetch2" + i).collect(Collectors.toList()),
+                          messages.get(topics.get(2)));
+      Assert.assertEquals(Collections.singletonList("testMultiTopicFetch0"), messages.get(otherTopic));
+
+      // Fetch with a missing topic should fail
+      try {
+        client.fetch(Arrays.asList(new TopicFetchRequest(topics.get(0), null, 3),
+                                   new TopicFetchRequest(nsId.topic("missing"), null, 3)));
+        Assert.fail("Expected TopicNotFoundException");
+      } catch (TopicNotFoundException e) {
+        Assert.assertEquals("missing", e.getTopic());
+      }
+    } finally {
+      for (TopicId topicId : Iterables.concat(topics, Collections.singleton(otherTopic))) {
+        client.deleteTopic(topicId);
+      }
+    }
+  }
+
+  @Test
+  public void testMultiTopicFetchFallback() throws Exception {
+    // Serve the client through a handler that only has the per-topic endpoints, like an older messaging service
+    LegacyFetchHandler legacyHandler = new LegacyFetchHandler();
+    NettyHttpService legacyService = NettyHttpService.builder("legacy-messaging")
+      .setHttpHandlers(legacyHandler)
+      .build();
+    legacyService.start();
+    InMemoryDiscoveryService discoveryService = new InMemoryDiscoveryService();
+    discoveryService.register(URIScheme.createDiscoverable(Constants.Service.MESSAGING_SERVICE, legacyService));
+
+    NamespaceId nsId = new NamespaceId("ns1");
+    List<TopicId> topics = IntStream.range(0, 2).mapToObj(i -> nsId.topic("testMultiTopicFetchFallback" + i))
+      .collect(Collectors.toList());
+    for (TopicId topicId : topics) {
+      client.createTopic(new TopicMetadata(topicId));
+      client.publish(StoreRequestBuilder.of(topicId).addPayload(topicId.getTopic() + "0")
+                       .addPayload(topicId.getTopic() + "1").build());
+    }
+
+    try {
+      List<TopicFetchRequest> requests = topics.stream()
+        .map(topicId -> new TopicFetchRequest(topicId, null, 10))
+        .collect(Collectors.toList());
+      List<String> expected = topics.stream()
+        .flatMap(topicId -> Stream.of(topicId.getTopic() + "0", topicId.getTopic() + "1"))
+        .collect(Collectors.toList());
+
+      // After the first fetch finds the multi-topic endpoint missing, it shouldn't be tried again within the interval
+      MessagingService legacyClient = new ClientMessagingService(discoveryService, TimeUnit.HOURS.toMillis(1));
+      for (int i = 0; i < 2; i++) {
+        Assert.assertEquals(expected, fetchPayloads(legacyClient, requests));
+      }
+      // The topics are looked up once, when the endpoint is found missing
+      Assert.assertEquals(topics.size(), legacyHandler.getTopicLookups());
+
+      // With no interval, the multi-topic endpoint is tried again on every fetch
+      legacyClient = new ClientMessagingService(discoveryService, 0L);
+      for (int i = 0; i < 2; i++) {
+        Assert.assertEquals(expected, fetchPayloads(legacyClient, requests));
+      }
+      Assert.assertEquals(topics.size() * 3, legacyHandler.getTopicLookups());
+
+      // A missing topic should still fail
+      try {
+        legacyClient.fetch(Collections.singletonList(new TopicFetchRequest(nsId.topic("missing"), null, 3)));
+        Assert.fail("Expected TopicNotFoundException");
+      } catch (TopicNotFoundException e) {
+        Assert.assertEquals("missing", e.getTopic());
+      }
+    } finally {
+      for (TopicId topicId : topics) {
+        client.deleteTopic(topicId);
+      }
+      legacyService.stop();
+    }
+  }
+
+  @Test
+  public void testCompressedTopic() throws Exception {
+    for (PayloadCompression compression : PayloadCompression.values()) {
+      TopicId topicId = new NamespaceId("ns1").topic("testCompressedTopic" + compression);
+      client.createTopic(new TopicMetadata(topicId, TopicMetadata.COMPRESSION_KEY,
+                                           compression.name().toLowerCase(Locale.ROOT)));
+      try {
+        Assert.assertEquals(compression, client.getTopic(topicId).getCompression());
+
+        // Publish non-transactional and transactional messages, as well as storing to the payload table
+        String largePayload = Strings.repeat("payload", 1000);
+        client.publish(StoreRequestBuilder.of(topicId).addPayload("m0").addPayload(largePayload).build());
+        client.publish(StoreRequestBuilder.of(topicId).addPayload("m2").setTransaction(1L).build());
+        client.storePayload(StoreRequestBuilder.of(topicId).addPayload("m3").setTransaction(2L).build());
+        client.publish(StoreRequestBuilder.of(topicId).setTransaction(2L).build());
+
+        List<String> payloads = new ArrayList<>();
+        try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId).fetch()) {
+          iterator.forEachRemaining(message -> payloads.add(Bytes.toString(message.getPayload())));
+        }
+        Assert.assertEquals(Arrays.asList("m0", largePayload, "m2", "m3"), payloads);
+
+        // Updating the topic should keep the compression, while changing it is not allowed
+        client.updateTopic(new TopicMetadata(topicId, TopicMetadata.TTL_KEY, "100"));
+        Assert.assertEquals(compression, client.getTopic(topicId).getCompression());
+        PayloadCompression otherCompression = compression == PayloadCompression.NONE
+          ? PayloadCompression.LZ4 : PayloadCompression.NONE;
+        try {
+          client.updateTopic(new TopicMetadata(topicId, TopicMetadata.COMPRESSION_KEY, otherCompression));
+          Assert.fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+          // Expected
+        }
+      } finally {
+        client.deleteTopic(topicId);
+      }
+    }
+
+    // Creating topic with invalid compression should fail
+    try {
+      client.createTopic(new TopicMetadata(new NamespaceId("ns1").topic("testCompressedTopic"),
+                                           TopicMetadata.COMPRESSION_KEY, "invalid"));
+      Assert.fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // Expected
+    }
+  }
+
   @Test
   public void testBasicPubSub() throws Exception {
     TopicId topicId = new NamespaceId("ns1").topic("testBasicPubSub");
@@ -442,6 +705,55 @@ public class MessagingHttpServiceTest {
     client.deleteTopic(topicId);
   }
 
+  @Test
+  public void testConsumeEncoding() throws Exception {
+    // This test is to verify the poll endpoint responds with frame encoding only if the client accepts it
+    TopicId topicId = new NamespaceId("ns1").topic("testConsumeEncoding");
+
+    client.createTopic(new TopicMetadata(topicId));
+    for (int i = 0; i < 10; i++) {
+      client.publish(StoreRequestBuilder.of(topicId).addPayload("Message " + i).build());
+    }
+
+    // Encode a poll request that fetches from the beginning
+    GenericRecord pollRequest = new GenericData.Record(Schemas.V1.ConsumeRequest.SCHEMA);
+    pollRequest.put("inclusive", true);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    new GenericDatumWriter<GenericRecord>(Schemas.V1.ConsumeRequest.SCHEMA)
+      .write(pollRequest, EncoderFactory.get().directBinaryEncoder(os, null));
+    String path = topicId.getNamespace() + "/topics/" + topicId.getTopic() + "/poll";
+
+    // Without the Accept header, the response should be in avro
+    HttpResponse response = remoteClient.execute(
+      remoteClient.requestBuilder(HttpMethod.POST, path)
+        .addHeader(HttpHeaders.CONTENT_TYPE, "avro/binary")
+        .withBody(ByteBuffer.wrap(os.toByteArray()))
+        .build());
+    Assert.assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+    Assert.assertEquals("avro/binary", getContentType(response));
+
+    // With the Accept header, the response should be in frames
+    response = remoteClient.execute(
+      remoteClient.requestBuilder(HttpMethod.POST, path)
+        .addHeader(HttpHeaders.CONTENT_TYPE, "avro/binary")
+        .addHeader(HttpHeaders.ACCEPT, MessageFrames.CONTENT_TYPE)
+        .withBody(ByteBuffer.wrap(os.toByteArray()))
+        .build());
+    Assert.assertEquals(HttpURLConnection.HTTP_OK, response.getResponseCode());
+    Assert.assertEquals(MessageFrames.CONTENT_TYPE, getContentType(response));
+
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(response.getResponseBody()));
+    List<String> payloads = new ArrayList<>();
+    RawMessage message = MessageFrames.read(input);
+    while (message != null) {
+      payloads.add(Bytes.toString(message.getPayload()));
+      message = MessageFrames.read(input);
+    }
+    Assert.assertEquals(IntStream.range(0, 10).mapToObj(i -> "Message " + i).collect(Collectors.toList()), payloads);
+
+    client.deleteTopic(topicId);
+  }
+
   @Test
   public void testPayloadTable() throws Exception {
     // This test is to verify storing transaction messages to the payload table
@@ -596,4 +908,75 @@ public class MessagingHttpServiceTest {
                           .map(RawMessage::getPayload)
                           .map(Bytes::toString).collect(Collectors.toList()));
   }
+
+  private static List<String> fetchPayloads(MessagingService messagingService,
+                                            List<TopicFetchRequest> requests) throws Exception {
+    List<String> payloads = new ArrayList<>();
+    try (CloseableIterator<TopicRawMessage> iterator = messagingService.fetch(requests)) {
+      iterator.forEachRemaining(message -> payloads.add(Bytes.toString(message.getPayload())));
+    }
+    return payloads;
+  }
+
+  @Nullable
+  private static String getContentType(HttpResponse response) {
+    // Header names are in lower case from the server, hence do a case insensitive lookup
+    return response.getHeaders().entries().stream()
+      .filter(entry -> HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(entry.getKey()))
+      .map(Map.Entry::getValue)
+      .findFirst()
+      .orElse(null);
+  }
+
+  /**
+   * A handler that only has the topic lookup and the per-topic fetch endpoints, which it forwards to the
+   * messaging service under test. It is for testing clients against a messaging service without the
+   * multi-topic fetch endpoint.
+   */
+  @Path("/v1/namespaces/{namespace}/topics")
+  public static final class LegacyFetchHandler extends AbstractHttpHandler {
+
+    private final AtomicInteger topicLookups = new AtomicInteger();
+
+    int getTopicLookups() {
+      return topicLookups.get();
+    }
+
+    @GET
+    @Path("/{topic}")
+    public void getTopic(FullHttpRequest request, HttpResponder responder) throws IOException {
+      topicLookups.incrementAndGet();
+      forward(request, responder, HttpMethod.GET);
+    }
+
+    @POST
+    @Path("/{topic}/poll")
+    public void poll(FullHttpRequest request, HttpResponder responder) throws IOException {
+      forward(request, responder, HttpMethod.POST);
+    }
+
+    private void forward(FullHttpRequest request, HttpResponder responder, HttpMethod method) throws IOException {
+      HttpRequest.Builder builder = remoteClient.requestBuilder(
+        method, request.uri().substring("/v1/namespaces/".length()));
+      for (String name : Arrays.asList(HttpHeaders.CONTENT_TYPE, HttpHeaders.ACCEPT)) {
+        String value = request.headers().get(name);
+        if (value != null) {
+          builder.addHeader(name, value);
+        }
+      }
+      // A GET with a body would be sent as a POST by HttpURLConnection
+      if (request.content().isReadable()) {
+        builder.withBody(request.content().nioBuffer());
+      }
+      HttpResponse response = remoteClient.execute(builder.build());
+
+      DefaultHttpHeaders headers = new DefaultHttpHeaders();
+      String contentType = getContentType(response);
+      if (contentType != null) {
+        headers.set(HttpHeaderNames.CONTENT_TYPE, contentType);
+      }
+      responder.sendByteArray(HttpResponseStatus.valueOf(response.getResponseCode()),
+                              response.getResponseBody(), headers);
+    }
+  }
 }
@@ -22,7 +22,9 @@ import com.google.common.collect.ListMultimap;
 import com.google.common.util.concurrent.Uninterruptibles;
 import io.cdap.cdap.api.common.Bytes;
 import io.cdap.cdap.api.metrics.MetricsCollector;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
 import io.cdap.cdap.common.utils.TimeProvider;
+import io.cdap.cdap.messaging.RollbackDetail;
 import io.cdap.cdap.messaging.StoreRequest;
 import io.cdap.cdap.messaging.TopicMetadata;
 import io.cdap.cdap.messaging.data.MessageId;
@@ -37,12 +39,15 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -268,13 +273,97 @@ public class ConcurrentMessageWriterTest {
     }
   }
 
+  @Test
+  public void testAsyncWrites() throws Exception {
+    int payloadsPerRequest = 100;
+    int requestCount = 500;
+    long writeLatencyMillis = 10L;
+
+    TopicId topicId = NamespaceId.DEFAULT.topic("t");
+    TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+    TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider(),
+                                                                   writeLatencyMillis);
+    ExecutorService writerExecutor = Executors.newSingleThreadExecutor();
+    ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, new NoopMetricsContext(),
+                                                                 writerExecutor);
+    try {
+      List<String> payload = new ArrayList<>(payloadsPerRequest);
+      for (int i = 0; i < payloadsPerRequest; i++) {
+        payload.add(Integer.toString(i));
+      }
+
+      // Submit all requests from a single thread without waiting. Completion is done by the writer loop.
+      List<CompletableFuture<RollbackDetail>> futures = new ArrayList<>();
+      for (int i = 0; i < requestCount; i++) {
+        futures.add(writer.persistAsync(new TestStoreRequest(topicId, payload), metadata));
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(1, TimeUnit.MINUTES);
+
+      // Validate that the total number of messages written is correct
+      List<RawMessage> messages = testWriter.getMessages().get(topicId);
+      Assert.assertEquals(payloadsPerRequest * requestCount, messages.size());
+
+      // Requests should be group committed, hence much less writes than requests
+      Assert.assertTrue(testWriter.getWriteCount() < requestCount);
+
+      // The message id must be sorted
+      RawMessage lastMessage = null;
+      for (RawMessage message : messages) {
+        if (lastMessage != null) {
+          Assert.assertTrue(Bytes.compareTo(lastMessage.getId(), message.getId()) < 0);
+        }
+        lastMessage = message;
+      }
+    } finally {
+      writer.close();
+      writerExecutor.shutdown();
+    }
+
+    // Persist after close should fail
+    try {
+      writer.persistAsync(new TestStoreRequest(topicId, Collections.singletonList("x")), metadata).get();
+      Assert.fail("Expected failure when persisting to a closed writer");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+
+  @Test
+  public void testAsyncWriteFailure() throws Exception {
+    TopicId topicId = NamespaceId.DEFAULT.topic("t");
+    TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+    TimeProvider timeProvider = new TimeProvider.IncrementalTimeProvider();
+    StoreRequestWriter<TestEntry> failureWriter = new TestStoreRequestWriter(timeProvider) {
+      @Override
+      protected void doWrite(Iterator<TestEntry> entries) throws IOException {
+        throw new IOException("Write failure");
+      }
+    };
+
+    ConcurrentMessageWriter writer = new ConcurrentMessageWriter(failureWriter);
+    try {
+      writer.persistAsync(new TestStoreRequest(topicId, Collections.singletonList("x")), metadata).get();
+      Assert.fail("Expected write failure");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof IOException);
+    }
+
+    try {
+      writer.persist(new TestStoreRequest(topicId, Collections.singletonList("x")), metadata);
+      Assert.fail("Expected write failure");
+    } catch (IOException e) {
+      Assert.assertEquals("Write failure", e.getMessage());
+    }
+  }
+
   /**
    * A {@link StoreRequestWriter} that turns all payloads to {@link RawMessage} and stores it in a List.
    */
-  private static final class TestStoreRequestWriter extends StoreRequestWriter<TestEntry> {
+  private static class TestStoreRequestWriter extends StoreRequestWriter<TestEntry> {
 
     private final ListMultimap<TopicId, RawMessage> messages = ArrayListMultimap.create();
     private long writeDelayMillis;
+    private int writeCount;
 
     TestStoreRequestWriter(TimeProvider timeProvider) {
       super(timeProvider, false);
@@ -297,6 +386,7 @@ public class ConcurrentMessageWriterTest {
 
     @Override
     protected void doWrite(Iterator<TestEntry> entries) throws IOException {
+      writeCount++;
       while (entries.hasNext()) {
         TestEntry entry = entries.next();
         byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
@@ -315,6 +405,10 @@ public class ConcurrentMessageWriterTest {
       return messages;
     }
 
+    int getWriteCount() {
+      return writeCount;
+    }
+
     @Override
     public void close() throws IOException {
       // No-op
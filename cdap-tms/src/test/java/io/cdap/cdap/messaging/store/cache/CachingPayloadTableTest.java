@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.cache;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.collect.Lists;
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.api.metrics.NoopMetricsContext;
+import io.cdap.cdap.messaging.MessagingUtils;
+import io.cdap.cdap.messaging.TopicMetadata;
+import io.cdap.cdap.messaging.cache.MessageCache;
+import io.cdap.cdap.messaging.data.MessageId;
+import io.cdap.cdap.messaging.store.ImmutablePayloadTableEntry;
+import io.cdap.cdap.messaging.store.MetadataTable;
+import io.cdap.cdap.messaging.store.PayloadTable;
+import io.cdap.cdap.messaging.store.leveldb.LevelDBPayloadTableTest;
+import io.cdap.cdap.proto.id.NamespaceId;
+import io.cdap.cdap.proto.id.TopicId;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit test for {@link CachingPayloadTable}.
+ */
+public class CachingPayloadTableTest extends LevelDBPayloadTableTest {
+
+  private static PayloadTableCacheProvider cacheProvider;
+
+  @BeforeClass
+  public static void initCache() {
+    LoadingCache<TopicId, MessageCache<PayloadTable.Entry>> caches = CacheBuilder
+      .newBuilder()
+      .removalListener((RemovalListener<TopicId, MessageCache<PayloadTable.Entry>>) notification -> {
+        MessageCache<PayloadTable.Entry> cache = notification.getValue();
+        if (cache != null) {
+          cache.clear();
+        }
+      })
+      .build(new CacheLoader<TopicId, MessageCache<PayloadTable.Entry>>() {
+        @Override
+        public MessageCache<PayloadTable.Entry> load(TopicId key) {
+          return new MessageCache<>(new PayloadTableEntryComparator(), new PayloadTableEntryWeigher(),
+                                    new MessageCache.Limits(5000, 7000, 10000), new NoopMetricsContext());
+        }
+      });
+
+    cacheProvider = new PayloadTableCacheProvider() {
+      @Override
+      public MessageCache<PayloadTable.Entry> getPayloadCache(TopicId topicId) {
+        return caches.getUnchecked(topicId);
+      }
+
+      @Override
+      public void clear() {
+        caches.invalidateAll();
+      }
+    };
+  }
+
+  @Override
+  protected PayloadTable getPayloadTable(TopicMetadata topicMetadata) throws Exception {
+    return new CachingPayloadTable(super.getPayloadTable(topicMetadata), cacheProvider);
+  }
+
+  @Test
+  public void testCacheFetchAndRollback() throws Exception {
+    TopicMetadata metadata = new TopicMetadata(NamespaceId.DEFAULT.topic("cachedPayload"),
+                                               TopicMetadata.GENERATION_KEY, 1,
+                                               TopicMetadata.TTL_KEY, 86400);
+
+    try (MetadataTable metadataTable = getMetadataTable();
+         PayloadTable payloadTable = getPayloadTable(metadata)) {
+      metadataTable.createTopic(metadata);
+
+      // Store payloads from two transactions interleaved. Key is (topic, generation, tx, write time, sequence id)
+      byte[] prefix = MessagingUtils.toDataKeyPrefix(metadata.getTopicId(), metadata.getGeneration());
+      List<PayloadTable.Entry> entries = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        byte[] key = Bytes.concat(prefix, Bytes.toBytes(100L + i % 2), Bytes.toBytes((long) i),
+                                  Bytes.toBytes((short) 0));
+        entries.add(new ImmutablePayloadTableEntry(key, Bytes.toBytes("Payload " + i)));
+      }
+      payloadTable.store(entries.iterator());
+
+      // Fetch payloads of the first transaction. All of them should be from the cache.
+      List<PayloadTable.Entry> fetched = fetch(payloadTable, metadata, 100L);
+      Assert.assertEquals(5, fetched.size());
+      for (int i = 0; i < fetched.size(); i++) {
+        PayloadTable.Entry entry = fetched.get(i);
+        Assert.assertTrue(entry instanceof CachingPayloadTable.CachePayloadTableEntry);
+        Assert.assertEquals(100L, entry.getTransactionWritePointer());
+        Assert.assertEquals("Payload " + (i * 2), Bytes.toString(entry.getPayload()));
+      }
+
+      // Rollback the first transaction. Its payloads should no longer be returned from the cache,
+      // while the payloads of the second transaction are unaffected.
+      CachingPayloadTable.rollback(cacheProvider, metadata, 100L);
+      Assert.assertTrue(fetch(payloadTable, metadata, 100L).isEmpty());
+
+      fetched = fetch(payloadTable, metadata, 101L);
+      Assert.assertEquals(5, fetched.size());
+      for (int i = 0; i < fetched.size(); i++) {
+        PayloadTable.Entry entry = fetched.get(i);
+        Assert.assertTrue(entry instanceof CachingPayloadTable.CachePayloadTableEntry);
+        Assert.assertEquals("Payload " + (i * 2 + 1), Bytes.toString(entry.getPayload()));
+      }
+    }
+  }
+
+  private List<PayloadTable.Entry> fetch(PayloadTable payloadTable,
+                                         TopicMetadata metadata, long writePointer) throws Exception {
+    byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
+    MessageId.putRawId(0L, (short) 0, 0L, (short) 0, rawId, 0);
+    try (CloseableIterator<PayloadTable.Entry> iterator = payloadTable.fetch(metadata, writePointer,
+                                                                             new MessageId(rawId), true, 100)) {
+      return Lists.newArrayList(iterator);
+    }
+  }
+}
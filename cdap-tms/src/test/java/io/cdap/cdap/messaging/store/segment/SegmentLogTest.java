@@ -0,0 +1,278 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.messaging.store.segment;
+
+import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Unit tests for {@link SegmentLog}.
+ */
+public class SegmentLogTest {
+
+  @Rule
+  public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testAppendAndScan() throws IOException {
+    File dir = tmpFolder.newFolder();
+
+    // Use small segment size and index interval to have multiple segments and index entries
+    try (SegmentLog log = new SegmentLog(dir, 1024, 64)) {
+      for (int i = 0; i < 10; i++) {
+        List<LogRecord> records = new ArrayList<>();
+        for (int j = 0; j < 10; j++) {
+          int key = i * 10 + j;
+          records.add(createRecord(key * 2, key % 3 == 0 ? null : Bytes.toBytes((long) key), "payload" + key));
+        }
+        log.append(records.iterator());
+      }
+      Assert.assertTrue(dir.listFiles().length > 1);
+      verifyScan(log);
+    }
+
+    // Reopen the log and the records should be recovered
+    try (SegmentLog log = new SegmentLog(dir, 1024, 64)) {
+      verifyScan(log);
+
+      // Append with key smaller than the last one should fail
+      try {
+        log.append(Collections.singleton(createRecord(10L, null, "payload")).iterator());
+        Assert.fail("Expected failure for appending key out of order");
+      } catch (IOException e) {
+        // expected
+      }
+
+      // Append more records should continue after the last one
+      log.append(Collections.singleton(createRecord(200L, null, "payload")).iterator());
+      Assert.assertEquals(Collections.singletonList(200L), scanKeys(log, 199L, Long.MAX_VALUE));
+    }
+  }
+
+  @Test
+  public void testAbort() throws IOException {
+    File dir = tmpFolder.newFolder();
+    try (SegmentLog log = new SegmentLog(dir, 1024, 64)) {
+      log.append(Arrays.asList(createRecord(1L, null, "a"), createRecord(2L, null, "b")).iterator());
+
+      // A failure in the middle of the batch should discard the whole batch
+      Iterator<LogRecord> failingIterator = new Iterator<LogRecord>() {
+        private long key = 3L;
+
+        @Override
+        public boolean hasNext() {
+          return true;
+        }
+
+        @Override
+        public LogRecord next() {
+          if (key > 5L) {
+            throw new IllegalArgumentException("Failure");
+          }
+          return createRecord(key++, null, "c");
+        }
+      };
+      try {
+        log.append(failingIterator);
+        Assert.fail("Expected failure");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      Assert.assertEquals(Arrays.asList(1L, 2L), scanKeys(log, Long.MIN_VALUE, Long.MAX_VALUE));
+
+      log.append(Collections.singleton(createRecord(3L, null, "d")).iterator());
+    }
+
+    try (SegmentLog log = new SegmentLog(dir, 1024, 64)) {
+      Assert.assertEquals(Arrays.asList(1L, 2L, 3L), scanKeys(log, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+  }
+
+  @Test
+  public void testAbortAcrossSegments() throws IOException {
+    File dir = tmpFolder.newFolder();
+    String payload = new String(new byte[100]);
+    try (SegmentLog log = new SegmentLog(dir, 128, 64)) {
+      // Each record is 100+ bytes, hence each segment has one record
+      log.append(Collections.singleton(createRecord(1L, null, payload)).iterator());
+
+      // A failure after the batch spans multiple segments should discard the whole batch and the new segments
+      Iterator<LogRecord> failingIterator = new Iterator<LogRecord>() {
+        private long key = 2L;
+
+        @Override
+        public boolean hasNext() {
+          return true;
+        }
+
+        @Override
+        public LogRecord next() {
+          if (key > 4L) {
+            throw new IllegalArgumentException("Failure");
+          }
+          return createRecord(key++, null, payload);
+        }
+      };
+      try {
+        log.append(failingIterator);
+        Assert.fail("Expected failure");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      Assert.assertEquals(Collections.singletonList(1L), scanKeys(log, Long.MIN_VALUE, Long.MAX_VALUE));
+      Assert.assertEquals(1, dir.listFiles().length);
+
+      // A batch that spans multiple segments is committed as a whole
+      log.append(Arrays.asList(createRecord(2L, null, payload), createRecord(3L, null, payload),
+                               createRecord(4L, null, payload)).iterator());
+      Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L), scanKeys(log, Long.MIN_VALUE, Long.MAX_VALUE));
+      Assert.assertEquals(Arrays.asList(3L, 4L), scanKeys(log, 3L, Long.MAX_VALUE));
+      Assert.assertEquals(4, dir.listFiles().length);
+    }
+
+    try (SegmentLog log = new SegmentLog(dir, 128, 64)) {
+      Assert.assertEquals(Arrays.asList(1L, 2L, 3L, 4L), scanKeys(log, Long.MIN_VALUE, Long.MAX_VALUE));
+      log.append(Collections.singleton(createRecord(5L, null, payload)).iterator());
+      Assert.assertEquals(Arrays.asList(4L, 5L), scanKeys(log, 4L, Long.MAX_VALUE));
+    }
+  }
+
+  @Test
+  public void testUpdateTxPtr() throws IOException {
+    File dir = tmpFolder.newFolder();
+    try (SegmentLog log = new SegmentLog(dir, 1024, 64)) {
+      List<LogRecord> records = new ArrayList<>();
+      for (int i = 0; i < 50; i++) {
+        records.add(createRecord(i, i % 2 == 0 ? null : Bytes.toBytes(10L), i % 5 == 0 ? null : "payload"));
+      }
+      log.append(records.iterator());
+      log.updateTxPtr(10L, 40L, -10L);
+    }
+
+    // Reopen to make sure the update is persisted and the checksum is still valid
+    try (SegmentLog log = new SegmentLog(dir, 1024, 64);
+         CloseableIterator<LogRecord> iterator = log.scan(Long.MIN_VALUE, Long.MAX_VALUE)) {
+      int count = 0;
+      while (iterator.hasNext()) {
+        LogRecord record = iterator.next();
+        long key = record.getKey();
+        Assert.assertEquals(count++, key);
+        if (key % 2 == 0) {
+          Assert.assertNull(record.getTxPtr());
+        } else {
+          Assert.assertEquals(key >= 10L && key < 40L ? -10L : 10L, Bytes.toLong(record.getTxPtr()));
+        }
+      }
+      Assert.assertEquals(50, count);
+    }
+  }
+
+  @Test
+  public void testDeleteBefore() throws IOException {
+    File dir = tmpFolder.newFolder();
+    try (SegmentLog log = new SegmentLog(dir, 128, 64)) {
+      // Each record is 100+ bytes, hence each segment has one record
+      for (long key = 0; key < 5; key++) {
+        log.append(Collections.singleton(createRecord(key, null, new String(new byte[100]))).iterator());
+      }
+      Assert.assertEquals(5, dir.listFiles().length);
+
+      Assert.assertEquals(3, log.deleteBefore(3L));
+      Assert.assertEquals(2, dir.listFiles().length);
+      Assert.assertEquals(Arrays.asList(3L, 4L), scanKeys(log, Long.MIN_VALUE, Long.MAX_VALUE));
+
+      // Delete all segments and the log should still be appendable
+      Assert.assertEquals(2, log.deleteBefore(Long.MAX_VALUE));
+      Assert.assertEquals(Collections.emptyList(), scanKeys(log, Long.MIN_VALUE, Long.MAX_VALUE));
+      log.append(Collections.singleton(createRecord(5L, null, "payload")).iterator());
+      Assert.assertEquals(Collections.singletonList(5L), scanKeys(log, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+  }
+
+  @Test
+  public void testLargeRecord() throws IOException {
+    File dir = tmpFolder.newFolder();
+    try (SegmentLog log = new SegmentLog(dir, 128, 64)) {
+      log.append(Collections.singleton(createRecord(1L, null, "small")).iterator());
+      log.append(Collections.singleton(createRecord(2L, null, new String(new byte[1024]))).iterator());
+      log.append(Collections.singleton(createRecord(3L, null, "small")).iterator());
+    }
+    try (SegmentLog log = new SegmentLog(dir, 128, 64);
+         CloseableIterator<LogRecord> iterator = log.scan(2L, 3L)) {
+      Assert.assertTrue(iterator.hasNext());
+      Assert.assertEquals(1024, iterator.next().getPayload().length);
+      Assert.assertFalse(iterator.hasNext());
+    }
+  }
+
+  private void verifyScan(SegmentLog log) {
+    // Scan everything
+    List<Long> expected = new ArrayList<>();
+    for (long key = 0; key < 100; key++) {
+      expected.add(key * 2);
+    }
+    Assert.assertEquals(expected, scanKeys(log, Long.MIN_VALUE, Long.MAX_VALUE));
+
+    // Scan a range, with start key that doesn't exist
+    Assert.assertEquals(expected.subList(26, 76), scanKeys(log, 51L, 152L));
+
+    // Scan a range with start key that exists
+    Assert.assertEquals(expected.subList(50, 51), scanKeys(log, 100L, 101L));
+
+    // Scan pass the end
+    Assert.assertEquals(Collections.emptyList(), scanKeys(log, 199L, Long.MAX_VALUE));
+
+    // Validate the content
+    try (CloseableIterator<LogRecord> iterator = log.scan(68L, 69L)) {
+      LogRecord record = iterator.next();
+      Assert.assertEquals(34L, Bytes.toLong(record.getTxPtr()));
+      Assert.assertEquals("payload34", Bytes.toString(record.getPayload()));
+      Assert.assertFalse(iterator.hasNext());
+    }
+    try (CloseableIterator<LogRecord> iterator = log.scan(60L, 61L)) {
+      LogRecord record = iterator.next();
+      Assert.assertNull(record.getTxPtr());
+      Assert.assertEquals("payload30", Bytes.toString(record.getPayload()));
+      Assert.assertFalse(iterator.hasNext());
+    }
+  }
+
+  private List<Long> scanKeys(SegmentLog log, long startKey, long stopKey) {
+    List<Long> keys = new ArrayList<>();
+    try (CloseableIterator<LogRecord> iterator = log.scan(startKey, stopKey)) {
+      iterator.forEachRemaining(record -> keys.add(record.getKey()));
+    }
+    return keys;
+  }
+
+  private LogRecord createRecord(long key, @Nullable byte[] txPtr, @Nullable String payload) {
+    return new LogRecord().set(key, txPtr, payload == null ? null : Bytes.toBytes(payload));
+  }
+}
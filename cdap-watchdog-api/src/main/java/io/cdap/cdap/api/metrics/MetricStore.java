@@ -18,6 +18,7 @@ package io.cdap.cdap.api.metrics;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Stores and provides access to metrics data.
@@ -42,6 +43,25 @@ public interface MetricStore {
    */
   void add(Collection<? extends MetricValues> metricValues);
 
+  /**
+   * Adds {@link MetricValues}s to the store asynchronously. By default it calls {@link #add(Collection)} in the
+   * calling thread. Implementations that are capable of writing in the background should override this method.
+   *
+   * @param metricValues metric values to add.
+   * @return a {@link CompletableFuture} that will be completed when the metric values are persisted. If failed
+   *         to persist, the future will be completed exceptionally with the failure.
+   */
+  default CompletableFuture<Void> addAsync(Collection<? extends MetricValues> metricValues) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    try {
+      add(metricValues);
+      future.complete(null);
+    } catch (Exception e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
   /**
    * Queries metrics data.
    * @param query query to execute
@@ -72,6 +92,15 @@ public interface MetricStore {
    */
   void deleteAll();
 
+  /**
+   * Returns a number that changes after metrics data is deleted from this store through any of the delete methods.
+   * It is used by callers that cache query results to detect deletions. By default it always returns {@code 0},
+   * meaning deletions are not tracked.
+   */
+  default long getDeletionGeneration() {
+    return 0L;
+  }
+
   /**
    * Given a list of tags in the {@link MetricSearchQuery}, returns the list of next available tags
    * @param query specifies where to search
@@ -20,8 +20,11 @@ import ch.qos.logback.classic.spi.ILoggingEvent;
 import com.google.common.io.Closeables;
 import io.cdap.cdap.common.io.ByteBuffers;
 import io.cdap.cdap.common.io.Syncable;
+import io.cdap.cdap.logging.filter.TermExpression;
 import io.cdap.cdap.logging.serialize.LoggingEvent;
 import io.cdap.cdap.logging.serialize.LoggingEventSerializer;
+import io.cdap.cdap.logging.write.LogFileIndex;
+import io.cdap.cdap.logging.write.TokenBloomFilter;
 import org.apache.avro.Schema;
 import org.apache.avro.file.DataFileWriter;
 import org.apache.avro.generic.GenericDatumWriter;
@@ -41,12 +44,24 @@ import java.nio.ByteBuffer;
  *
  * Since there is no way to check the state of the underlying file on an exception,
  * all methods of this class assume that the file state is bad on any exception and close the file.
+ *
+ * A {@link LogFileIndex} of event time to Avro block position is built while writing, with an entry about every
+ * sync interval bytes, and written next to the log file when the file is closed. The index also carries a
+ * {@link TokenBloomFilter} of the event tokens, so that searches can skip files without the search terms.
  */
 
 class LogFileOutputStream implements Closeable, Flushable, Syncable {
   private static final Logger LOG = LoggerFactory.getLogger(LogFileOutputStream.class);
+  // The token filter starts at about 7KB and grows with the number of distinct tokens in the file
+  private static final int INITIAL_TOKENS = 4096;
+  private static final double TOKEN_FILTER_FPP = 0.01;
 
   private final Location location;
+  private final String filePermissions;
+  private final int syncIntervalBytes;
+  private final LogFileIndex index;
+  private final TokenBloomFilter tokenFilter;
+  private final TermExpression.TokenConsumer tokenConsumer;
   private final long createTime;
   private final Closeable closeable;
   private final LoggingEventSerializer serializer;
@@ -54,10 +69,19 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   private OutputStream outputStream;
   private DataFileWriter<GenericRecord> dataFileWriter;
   private long fileSize;
+  // position of the block the next event will be written to if it is to be indexed, -1 otherwise
+  private long indexPosition;
+  // approximate number of bytes appended since the last indexed block
+  private long bytesSinceIndex;
 
   LogFileOutputStream(Location location, String filePermissions,
                       int syncIntervalBytes, long createTime, Closeable closeable) throws IOException {
     this.location = location;
+    this.filePermissions = filePermissions;
+    this.syncIntervalBytes = syncIntervalBytes;
+    this.index = new LogFileIndex();
+    this.tokenFilter = TokenBloomFilter.create(INITIAL_TOKENS, TOKEN_FILTER_FPP);
+    this.tokenConsumer = tokenFilter::put;
     this.closeable = closeable;
     this.serializer = new LoggingEventSerializer();
 
@@ -70,6 +94,7 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
       this.dataFileWriter.setSyncInterval(syncIntervalBytes);
       this.createTime = createTime;
       this.fileSize = 0;
+      this.indexPosition = -1;
     } catch (IOException e) {
       Closeables.closeQuietly(outputStream);
       Closeables.closeQuietly(dataFileWriter);
@@ -82,18 +107,32 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   }
 
   void append(ILoggingEvent event) throws IOException {
+    if (indexPosition >= 0) {
+      index.add(event.getTimeStamp(), indexPosition);
+      indexPosition = -1;
+    }
+    TermExpression.forEachToken(event, tokenConsumer);
+
     // If the event is already a LoggingEvent, we don't need to re-encode.
     if (event instanceof LoggingEvent) {
       ByteBuffer encoded = ((LoggingEvent) event).getEncoded();
       if (encoded != null) {
+        bytesSinceIndex += encoded.remaining();
         // TODO: CDAP-8735 Remove the copying after upgraded to Avro 1.7.4+
         dataFileWriter.appendEncoded(ByteBuffers.copy(encoded));
       } else {
+        bytesSinceIndex += getApproximateSize(event);
         dataFileWriter.append(((LoggingEvent) event).getRecord());
       }
-      return;
+    } else {
+      bytesSinceIndex += getApproximateSize(event);
+      dataFileWriter.append(serializer.toGenericRecord(event));
+    }
+
+    // End the block so that the next event starts a new indexed block
+    if (bytesSinceIndex >= syncIntervalBytes) {
+      flush();
     }
-    dataFileWriter.append(serializer.toGenericRecord(event));
   }
 
   /**
@@ -115,6 +154,10 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   @Override
   public void flush() throws IOException {
     fileSize = dataFileWriter.sync();
+    if (bytesSinceIndex > 0 || index.size() == 0) {
+      indexPosition = fileSize;
+      bytesSinceIndex = 0;
+    }
   }
 
   @Override
@@ -132,8 +175,32 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
     LOG.trace("Closing file {}", location);
     try {
       dataFileWriter.close();
+      writeIndex();
     } finally {
       closeable.close();
     }
   }
+
+  private void writeIndex() {
+    if (index.size() == 0) {
+      return;
+    }
+    try {
+      index.setTokenFilter(tokenFilter);
+      index.write(location, filePermissions);
+      LOG.trace("Written index for log file {} with {} distinct tokens in a token filter of {} bytes",
+                location, tokenFilter.getTokenCount(), tokenFilter.getSizeInBytes());
+    } catch (IOException e) {
+      // Readers fall back to scan the log file if there is no index
+      LOG.warn("Failed to write index for log file {}", location, e);
+    }
+  }
+
+  /**
+   * Returns the approximate serialized size of an event without an encoded form, for deciding when to index.
+   */
+  private long getApproximateSize(ILoggingEvent event) {
+    String message = event.getFormattedMessage();
+    return message == null ? 0 : message.length();
+  }
 }
@@ -17,6 +17,8 @@
 package io.cdap.cdap.logging.clean;
 
 import io.cdap.cdap.common.io.Locations;
+import io.cdap.cdap.logging.write.LogFileIndex;
+import org.apache.twill.filesystem.Location;
 import org.apache.twill.filesystem.LocationFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,7 +57,13 @@ public class LogCleaner implements Runnable {
     int failureCount = 0;
     for (FileMetadataCleaner.DeletedEntry deletedEntry : deleteEntries) {
       try {
-        boolean status = Locations.getLocationFromAbsolutePath(locationFactory, deletedEntry.getPath()).delete();
+        Location location = Locations.getLocationFromAbsolutePath(locationFactory, deletedEntry.getPath());
+        boolean status = location.delete();
+        // Delete the index of the log file, which may not exist
+        Location indexLocation = LogFileIndex.getIndexLocation(location);
+        if (indexLocation != null) {
+          Locations.deleteQuietly(indexLocation);
+        }
         if (!status) {
           failureCount++;
           LOG.warn("File {} delete failed", deletedEntry.getPath());
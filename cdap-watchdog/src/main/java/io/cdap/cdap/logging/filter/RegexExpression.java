@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.filter;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import com.google.common.base.Objects;
+import io.cdap.cdap.common.logging.LogSamplers;
+import io.cdap.cdap.common.logging.Loggers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Represents an expression that matches log events with the message, or the class name and message of an exception,
+ * containing the given regular expression.
+ *
+ * Since the regular expression can come from the user, the length of the regular expression is limited, and the
+ * number of characters read for matching a text is bounded, so that a regular expression with catastrophic
+ * backtracking cannot hold the reader forever. A text that needs more than that is considered as not matching.
+ */
+public class RegexExpression implements Filter {
+
+  /**
+   * Maximum length of the regular expression.
+   */
+  public static final int MAX_REGEX_LENGTH = 1024;
+
+  private static final Logger LOG = LoggerFactory.getLogger(RegexExpression.class);
+  // Limit the log to once per minute to avoid flooding the log for every event
+  private static final Logger LIMIT_LOG = Loggers.sampling(LOG, LogSamplers.limitRate(TimeUnit.MINUTES.toMillis(1)));
+  // Maximum number of characters read from a text for matching it against the regular expression
+  private static final long MAX_CHARS_READ = 1000000L;
+
+  private final Pattern pattern;
+
+  /**
+   * Creates an expression with the given regular expression.
+   *
+   * @throws java.util.regex.PatternSyntaxException if the regular expression is invalid
+   * @throws IllegalArgumentException if the regular expression is longer than {@link #MAX_REGEX_LENGTH}
+   */
+  public RegexExpression(String regex) {
+    if (regex.length() > MAX_REGEX_LENGTH) {
+      throw new IllegalArgumentException(String.format("Length of the regular expression %d exceeds the limit %d",
+                                                       regex.length(), MAX_REGEX_LENGTH));
+    }
+    this.pattern = Pattern.compile(regex);
+  }
+
+  @Override
+  public boolean match(ILoggingEvent event) {
+    String message = event.getFormattedMessage();
+    if (message != null && find(message)) {
+      return true;
+    }
+    for (IThrowableProxy proxy = event.getThrowableProxy(); proxy != null; proxy = proxy.getCause()) {
+      String throwable = proxy.getMessage() == null ? proxy.getClassName()
+                                                    : proxy.getClassName() + ": " + proxy.getMessage();
+      if (find(throwable)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean find(String text) {
+    try {
+      return pattern.matcher(new BoundedCharSequence(text, MAX_CHARS_READ)).find();
+    } catch (MatchLimitExceededException e) {
+      LIMIT_LOG.warn("Regular expression '{}' takes too long to match a log message. Treating it as not matched.",
+                     pattern);
+      return false;
+    }
+  }
+
+  public Pattern getPattern() {
+    return pattern;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("pattern", pattern)
+      .toString();
+  }
+
+  /**
+   * A {@link CharSequence} that throws {@link MatchLimitExceededException} after characters are read more than the
+   * given number of times.
+   */
+  private static final class BoundedCharSequence implements CharSequence {
+
+    private final String text;
+    private long remaining;
+
+    BoundedCharSequence(String text, long maxCharsRead) {
+      this.text = text;
+      this.remaining = maxCharsRead;
+    }
+
+    @Override
+    public int length() {
+      return text.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (--remaining < 0) {
+        throw MatchLimitExceededException.INSTANCE;
+      }
+      return text.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return text.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return text;
+    }
+  }
+
+  /**
+   * Exception thrown when matching a text reads more characters than allowed. It has no stack trace, since it is
+   * used for control flow only.
+   */
+  private static final class MatchLimitExceededException extends RuntimeException {
+
+    private static final MatchLimitExceededException INSTANCE = new MatchLimitExceededException();
+
+    private MatchLimitExceededException() {
+      super("Match limit exceeded", null, false, false);
+    }
+  }
+}
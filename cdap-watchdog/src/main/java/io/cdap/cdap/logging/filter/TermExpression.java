@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.filter;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import com.google.common.base.Objects;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Represents an expression that matches log events containing all the given terms. A term is a case insensitive
+ * sequence of letters and digits, which is matched against the message and the exception class names and messages
+ * of the log event.
+ */
+public class TermExpression implements Filter {
+
+  /**
+   * Maximum number of terms in an expression.
+   */
+  public static final int MAX_TERMS = Long.SIZE;
+
+  private final Set<String> termSet;
+  private final String[] terms;
+  // bit mask with one bit set for each term
+  private final long allTermsMask;
+
+  public TermExpression(String text) {
+    Set<String> terms = new LinkedHashSet<>();
+    tokenize(text, (str, start, end) -> terms.add(toTerm(str, start, end)));
+    if (terms.isEmpty()) {
+      throw new IllegalArgumentException(String.format("No search term found in '%s'", text));
+    }
+    if (terms.size() > MAX_TERMS) {
+      throw new IllegalArgumentException(String.format("Number of search terms %d exceeds the limit %d",
+                                                       terms.size(), MAX_TERMS));
+    }
+    this.termSet = Collections.unmodifiableSet(terms);
+    this.terms = terms.toArray(new String[0]);
+    this.allTermsMask = this.terms.length == Long.SIZE ? -1L : (1L << this.terms.length) - 1;
+  }
+
+  @Override
+  public boolean match(ILoggingEvent event) {
+    // Tokens are compared in place against the terms, hence no object is created per event
+    long found = findTerms(event.getFormattedMessage(), 0L);
+    for (IThrowableProxy proxy = event.getThrowableProxy();
+         proxy != null && found != allTermsMask; proxy = proxy.getCause()) {
+      found = findTerms(proxy.getClassName(), found);
+      found = findTerms(proxy.getMessage(), found);
+    }
+    return found == allTermsMask;
+  }
+
+  public Set<String> getTerms() {
+    return termSet;
+  }
+
+  /**
+   * Returns the terms that a log event must contain to match the given filter.
+   */
+  public static Set<String> getRequiredTerms(Filter filter) {
+    if (filter instanceof TermExpression) {
+      return ((TermExpression) filter).getTerms();
+    }
+    if (filter instanceof AndFilter) {
+      Set<String> terms = new HashSet<>();
+      for (Filter expression : ((AndFilter) filter).getExpressions()) {
+        terms.addAll(getRequiredTerms(expression));
+      }
+      return terms;
+    }
+    return Collections.emptySet();
+  }
+
+  /**
+   * Calls the given consumer with each token of the given log event that can be matched by terms.
+   */
+  public static void forEachToken(ILoggingEvent event, TokenConsumer consumer) {
+    tokenize(event.getFormattedMessage(), consumer);
+    for (IThrowableProxy proxy = event.getThrowableProxy(); proxy != null; proxy = proxy.getCause()) {
+      tokenize(proxy.getClassName(), consumer);
+      tokenize(proxy.getMessage(), consumer);
+    }
+  }
+
+  /**
+   * Splits the given text into tokens of letters and digits.
+   */
+  static void tokenize(@Nullable String text, TokenConsumer consumer) {
+    if (text == null) {
+      return;
+    }
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean tokenChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      if (tokenChar && start < 0) {
+        start = i;
+      } else if (!tokenChar && start >= 0) {
+        consumer.accept(text, start, i);
+        start = -1;
+      }
+    }
+  }
+
+  /**
+   * Returns the term of the token in the given range of the text, which has all the characters in lower case.
+   */
+  static String toTerm(String text, int start, int end) {
+    char[] chars = new char[end - start];
+    for (int i = start; i < end; i++) {
+      chars[i - start] = Character.toLowerCase(text.charAt(i));
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Returns the given bit mask with the bits of the terms found in the given text set.
+   */
+  private long findTerms(@Nullable String text, long found) {
+    if (text == null) {
+      return found;
+    }
+    int start = -1;
+    for (int i = 0; i <= text.length() && found != allTermsMask; i++) {
+      boolean tokenChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+      if (tokenChar && start < 0) {
+        start = i;
+      } else if (!tokenChar && start >= 0) {
+        found |= getTermBit(text, start, i);
+        start = -1;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Returns the bit of the term that equals to the token in the given range of the text, or {@code 0} if there is
+   * no such term.
+   */
+  private long getTermBit(String text, int start, int end) {
+    for (int i = 0; i < terms.length; i++) {
+      String term = terms[i];
+      if (term.length() != end - start) {
+        continue;
+      }
+      int j = 0;
+      while (j < term.length() && term.charAt(j) == Character.toLowerCase(text.charAt(start + j))) {
+        j++;
+      }
+      if (j == term.length()) {
+        return 1L << i;
+      }
+    }
+    return 0L;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("terms", termSet)
+      .toString();
+  }
+
+  /**
+   * Consumer of tokens, which are given as ranges of a text, so that no string is created per token.
+   */
+  public interface TokenConsumer {
+
+    /**
+     * Accepts the token in the range {@code [start, end)} of the given text.
+     */
+    void accept(String text, int start, int end);
+  }
+}
@@ -16,13 +16,17 @@
 
 package io.cdap.cdap.logging.gateway.handlers;
 
+import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.logging.LoggingContext;
 import io.cdap.cdap.internal.app.store.RunRecordDetail;
 import io.cdap.cdap.logging.LoggingConfiguration;
+import io.cdap.cdap.logging.filter.AndFilter;
 import io.cdap.cdap.logging.filter.Filter;
 import io.cdap.cdap.logging.filter.FilterParser;
+import io.cdap.cdap.logging.filter.RegexExpression;
+import io.cdap.cdap.logging.filter.TermExpression;
 import io.cdap.cdap.logging.read.Callback;
 import io.cdap.cdap.logging.read.LogEvent;
 import io.cdap.cdap.logging.read.LogOffset;
@@ -34,6 +38,7 @@ import io.netty.handler.codec.http.HttpResponseStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
@@ -56,26 +61,44 @@ public abstract class AbstractLogHttpHandler extends AbstractHttpHandler {
                            @Nullable RunRecordDetail runRecord, String format, List<String> fieldsToSuppress) {
 
     try {
-      TimeRange timeRange = parseTime(fromTimeSecsParam, toTimeSecsParam, responder);
-      if (timeRange == null) {
+      sendLogs(logReader, responder, loggingContext, fromTimeSecsParam, toTimeSecsParam, escape,
+               FilterParser.parse(filterStr), Integer.MAX_VALUE, runRecord, format, fieldsToSuppress);
+    } catch (SecurityException e) {
+      responder.sendStatus(HttpResponseStatus.UNAUTHORIZED);
+    } catch (IllegalArgumentException e) {
+      responder.sendString(HttpResponseStatus.BAD_REQUEST, e.getMessage());
+    }
+  }
+
+  /**
+   * Searches logs for the events containing all the given terms and matching the given regular expression. The
+   * predicates are evaluated by the {@link LogReader} while reading, and log files that don't contain the terms are
+   * skipped.
+   */
+  protected void doSearch(LogReader logReader, HttpResponder responder, LoggingContext loggingContext,
+                          long fromTimeSecsParam, long toTimeSecsParam, String terms, String regex, int maxEvents,
+                          boolean escape, String filterStr, @Nullable RunRecordDetail runRecord, String format,
+                          List<String> fieldsToSuppress) {
+    try {
+      if (terms.isEmpty() && regex.isEmpty()) {
+        responder.sendString(HttpResponseStatus.BAD_REQUEST, "At least one of 'q' or 'regex' must be provided.");
+        return;
+      }
+      if (maxEvents <= 0) {
+        responder.sendString(HttpResponseStatus.BAD_REQUEST, "'max' should be greater than 0.");
         return;
       }
 
-      Filter filter = FilterParser.parse(filterStr);
-
-      ReadRange readRange = new ReadRange(timeRange.getFromMillis(), timeRange.getToMillis(),
-                                          LogOffset.INVALID_KAFKA_OFFSET);
-      readRange = adjustReadRange(readRange, runRecord, fromTimeSecsParam != -1);
-      try {
-        // the iterator is closed by the BodyProducer passed to the HttpResponder
-        CloseableIterator<LogEvent> logIter = logReader.getLog(loggingContext, readRange.getFromMillis(),
-                                                               readRange.getToMillis(), filter);
-        AbstractChunkedLogProducer logsProducer = getFullLogsProducer(format, logIter, fieldsToSuppress, escape);
-        responder.sendContent(HttpResponseStatus.OK, logsProducer, logsProducer.getResponseHeaders());
-      } catch (Exception ex) {
-        LOG.debug("Exception while reading logs for logging context {}", loggingContext, ex);
-        responder.sendStatus(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+      List<Filter> filters = new ArrayList<>();
+      filters.add(FilterParser.parse(filterStr));
+      if (!terms.isEmpty()) {
+        filters.add(new TermExpression(terms));
       }
+      if (!regex.isEmpty()) {
+        filters.add(new RegexExpression(regex));
+      }
+      sendLogs(logReader, responder, loggingContext, fromTimeSecsParam, toTimeSecsParam, escape,
+               new AndFilter(filters), maxEvents, runRecord, format, fieldsToSuppress);
     } catch (SecurityException e) {
       responder.sendStatus(HttpResponseStatus.UNAUTHORIZED);
     } catch (IllegalArgumentException e) {
@@ -83,6 +106,55 @@ public abstract class AbstractLogHttpHandler extends AbstractHttpHandler {
     }
   }
 
+  private void sendLogs(LogReader logReader, HttpResponder responder, LoggingContext loggingContext,
+                        long fromTimeSecsParam, long toTimeSecsParam, boolean escape, Filter filter, int maxEvents,
+                        @Nullable RunRecordDetail runRecord, String format, List<String> fieldsToSuppress) {
+    TimeRange timeRange = parseTime(fromTimeSecsParam, toTimeSecsParam, responder);
+    if (timeRange == null) {
+      return;
+    }
+
+    ReadRange readRange = new ReadRange(timeRange.getFromMillis(), timeRange.getToMillis(),
+                                        LogOffset.INVALID_KAFKA_OFFSET);
+    readRange = adjustReadRange(readRange, runRecord, fromTimeSecsParam != -1);
+    try {
+      // the iterator is closed by the BodyProducer passed to the HttpResponder
+      CloseableIterator<LogEvent> logIter = logReader.getLog(loggingContext, readRange.getFromMillis(),
+                                                             readRange.getToMillis(), filter);
+      if (maxEvents != Integer.MAX_VALUE) {
+        logIter = limit(logIter, maxEvents);
+      }
+      AbstractChunkedLogProducer logsProducer = getFullLogsProducer(format, logIter, fieldsToSuppress, escape);
+      responder.sendContent(HttpResponseStatus.OK, logsProducer, logsProducer.getResponseHeaders());
+    } catch (Exception ex) {
+      LOG.debug("Exception while reading logs for logging context {}", loggingContext, ex);
+      responder.sendStatus(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /**
+   * Returns a {@link CloseableIterator} that returns at most the given number of events from the given iterator.
+   */
+  private static CloseableIterator<LogEvent> limit(CloseableIterator<LogEvent> iterator, int maxEvents) {
+    return new AbstractCloseableIterator<LogEvent>() {
+      private int count;
+
+      @Override
+      protected LogEvent computeNext() {
+        if (count >= maxEvents || !iterator.hasNext()) {
+          return endOfData();
+        }
+        count++;
+        return iterator.next();
+      }
+
+      @Override
+      public void close() {
+        iterator.close();
+      }
+    };
+  }
+
   protected void doPrev(LogReader logReader, HttpResponder responder, LoggingContext loggingContext,
                         int maxEvents, String fromOffsetStr, boolean escape, String filterStr,
                         @Nullable RunRecordDetail runRecord, String format, List<String> fieldsToSuppress) {
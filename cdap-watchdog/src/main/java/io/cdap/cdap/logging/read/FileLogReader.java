@@ -24,6 +24,8 @@ import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
 import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.common.conf.CConfiguration;
+import io.cdap.cdap.common.conf.Constants;
 import io.cdap.cdap.common.logging.LoggingContext;
 import io.cdap.cdap.logging.context.LoggingContextHelper;
 import io.cdap.cdap.logging.filter.AndFilter;
@@ -46,10 +48,14 @@ public class FileLogReader implements LogReader {
   private static final Logger LOG = LoggerFactory.getLogger(FileLogReader.class);
 
   private final FileMetaDataReader fileMetadataReader;
+  // Null if files are read one at a time
+  private final ParallelLogFileReader parallelReader;
 
   @Inject
-  public FileLogReader(FileMetaDataReader fileMetadataReader) {
+  public FileLogReader(CConfiguration cConf, FileMetaDataReader fileMetadataReader) {
     this.fileMetadataReader = fileMetadataReader;
+    int parallelism = cConf.getInt(Constants.Logging.LOG_READER_PARALLELISM);
+    this.parallelReader = parallelism > 1 ? new ParallelLogFileReader(parallelism) : null;
   }
 
   @Override
@@ -75,6 +81,11 @@ public class FileLogReader implements LogReader {
         return;
       }
 
+      if (parallelReader != null && sortedFilesInRange.size() > 1) {
+        parallelReader.readNext(sortedFilesInRange, logFilter, fromTimeMs, maxEvents, callback);
+        return;
+      }
+
       for (LogLocation file : sortedFilesInRange) {
         LOG.trace("Reading file {}", file);
         file.readLog(logFilter, fromTimeMs, Long.MAX_VALUE, maxEvents - callback.getCount(), callback);
@@ -107,6 +118,13 @@ public class FileLogReader implements LogReader {
       long fromTimeMs = readRange.getToMillis() - 1;
 
       LOG.trace("Using fromTimeMs={}, readRange={}", fromTimeMs, readRange);
+      if (parallelReader != null && sortedFilesInRange.size() > 1) {
+        for (LogEvent event : parallelReader.readPrev(sortedFilesInRange, logFilter, fromTimeMs, maxEvents)) {
+          callback.handle(event);
+        }
+        return;
+      }
+
       List<Collection<LogEvent>> logSegments = Lists.newLinkedList();
       int count = 0;
       for (LogLocation file : Lists.reverse(sortedFilesInRange)) {
@@ -159,6 +177,10 @@ public class FileLogReader implements LogReader {
         };
       }
 
+      if (parallelReader != null && sortedFilesInRange.size() > 1) {
+        return parallelReader.read(sortedFilesInRange, logFilter, fromTimeMs, toTimeMs);
+      }
+
       final Iterator<LogLocation> filesIter = sortedFilesInRange.iterator();
 
       CloseableIterator<CloseableIterator<LogEvent>> closeableIterator =
@@ -0,0 +1,359 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.read;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import io.cdap.cdap.api.dataset.lib.AbstractCloseableIterator;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.logging.filter.Filter;
+import io.cdap.cdap.logging.write.LogLocation;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads log events from multiple log files concurrently. Files are opened and decoded ahead of time on a bounded
+ * thread pool, and the events are merged by timestamp with a k-way merge.
+ *
+ * Reading is done in batches, with at most one outstanding batch per file. Each read has its own thread pool, which
+ * is shut down when the read finishes, since there is no lifecycle to shut down a thread pool shared by the reads.
+ * Threads are only created for the files being read, which is a small cost compared to reading the files.
+ */
+final class ParallelLogFileReader {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelLogFileReader.class);
+  private static final int BATCH_SIZE = 1000;
+
+  private final int parallelism;
+
+  ParallelLogFileReader(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Reads log events from the given files in time order into the given {@link Callback}, until the callback count
+   * reaches the max events.
+   *
+   * @param sortedFiles files to read from, sorted by the event time
+   * @param logFilter filter for filtering log events
+   * @param fromTimeMs start timestamp in millis
+   * @param maxEvents max events to read
+   * @param callback callback to call with log event
+   */
+  void readNext(List<LogLocation> sortedFiles, Filter logFilter, long fromTimeMs, int maxEvents, Callback callback) {
+    try (CloseableIterator<LogEvent> events = new MergingIterator(sortedFiles, logFilter, fromTimeMs,
+                                                                  Long.MAX_VALUE, maxEvents)) {
+      while (callback.getCount() < maxEvents && events.hasNext()) {
+        callback.handle(events.next());
+      }
+    }
+  }
+
+  /**
+   * Returns a {@link CloseableIterator} of the log events in the given time range from the given files in time
+   * order. Files are prefetched as the iterator advances.
+   *
+   * @param sortedFiles files to read from, sorted by the event time
+   * @param logFilter filter for filtering log events
+   * @param fromTimeMs start timestamp in millis, inclusive
+   * @param toTimeMs end timestamp in millis, exclusive
+   * @return a {@link CloseableIterator} of log events, which must be closed to stop reading the files
+   */
+  CloseableIterator<LogEvent> read(List<LogLocation> sortedFiles, Filter logFilter, long fromTimeMs, long toTimeMs) {
+    return new MergingIterator(sortedFiles, logFilter, fromTimeMs, toTimeMs, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Reads the log events before the given time from the given files.
+   *
+   * @param sortedFiles files to read from, sorted by the event time
+   * @param logFilter filter for filtering log events
+   * @param fromTimeMs the timestamp in millis to read backward from
+   * @param maxEvents max events to read
+   * @return a list of at most max events log events in time order
+   */
+  List<LogEvent> readPrev(List<LogLocation> sortedFiles, Filter logFilter, long fromTimeMs, int maxEvents) {
+    ExecutorService executor = createExecutor();
+    Iterator<LogLocation> files = Lists.reverse(sortedFiles).iterator();
+    Deque<CompletableFuture<Collection<LogEvent>>> futures = new ArrayDeque<>();
+    // Segments in reverse time order
+    List<Collection<LogEvent>> logSegments = new ArrayList<>();
+    int count = 0;
+
+    try {
+      while (true) {
+        // Stop reading older files once there are enough events. Files already being read are still merged, since
+        // they may overlap in time with the newer files.
+        while (count < maxEvents && futures.size() < parallelism && files.hasNext()) {
+          LogLocation file = files.next();
+          futures.add(CompletableFuture.supplyAsync(() -> readPrev(file, logFilter, fromTimeMs, maxEvents), executor));
+        }
+        if (futures.isEmpty()) {
+          break;
+        }
+        Collection<LogEvent> events = join(futures.poll());
+        logSegments.add(events);
+        count += events.size();
+      }
+    } finally {
+      // Only non-empty on failure
+      for (CompletableFuture<Collection<LogEvent>> future : futures) {
+        future.cancel(false);
+      }
+      executor.shutdown();
+    }
+
+    List<LogEvent> result = new ArrayList<>(count);
+    for (Collection<LogEvent> segment : Lists.reverse(logSegments)) {
+      result.addAll(segment);
+    }
+    // Each segment is already sorted, the stable sort merges the sorted runs, preserving the file order for events
+    // with the same timestamp
+    result.sort(Comparator.comparingLong(event -> event.getLoggingEvent().getTimeStamp()));
+    return result.size() <= maxEvents ? result : result.subList(result.size() - maxEvents, result.size());
+  }
+
+  private ExecutorService createExecutor() {
+    return new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                                  Threads.createDaemonThreadFactory("log-file-reader-%d"));
+  }
+
+  private Collection<LogEvent> readPrev(LogLocation file, Filter logFilter, long fromTimeMs, int maxEvents) {
+    LOG.trace("Reading file {}", file);
+    try {
+      return file.readLogPrev(logFilter, fromTimeMs, maxEvents);
+    } catch (IOException e) {
+      LOG.warn("Got exception reading log file {}", file, e);
+      return Collections.emptyList();
+    }
+  }
+
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  /**
+   * Merges the log events of the files by timestamp, with a bounded number of files being prefetched ahead of the
+   * merge. For the same timestamp, events from the earlier file come first. The files are read by the thread pool of
+   * this iterator, which is shut down when it is closed.
+   */
+  private final class MergingIterator extends AbstractCloseableIterator<LogEvent> {
+
+    private final ExecutorService executor;
+    private final Iterator<LogLocation> files;
+    private final Filter logFilter;
+    private final long fromTimeMs;
+    private final long toTimeMs;
+    private final int maxEvents;
+    private final PriorityQueue<FileSource> heads;
+    private final Deque<FileSource> prefetching;
+    private final List<FileSource> sources;
+
+    MergingIterator(List<LogLocation> sortedFiles, Filter logFilter, long fromTimeMs, long toTimeMs, int maxEvents) {
+      this.executor = createExecutor();
+      this.files = sortedFiles.iterator();
+      this.logFilter = logFilter;
+      this.fromTimeMs = fromTimeMs;
+      this.toTimeMs = toTimeMs;
+      this.maxEvents = maxEvents;
+      this.heads = new PriorityQueue<>(Comparator.comparingLong(FileSource::getHeadTime)
+                                         .thenComparingInt(FileSource::getOrder));
+      this.prefetching = new ArrayDeque<>();
+      this.sources = new ArrayList<>();
+    }
+
+    @Override
+    protected LogEvent computeNext() {
+      while (true) {
+        while (prefetching.size() < parallelism && files.hasNext()) {
+          FileSource source = new FileSource(executor, files.next(), sources.size(), logFilter,
+                                             fromTimeMs, toTimeMs, maxEvents);
+          sources.add(source);
+          prefetching.add(source);
+          source.start();
+        }
+
+        // All events of a file are at or after the file event time. Only merge the files that can have events
+        // before the current head event.
+        FileSource next = prefetching.peek();
+        if (next != null && (heads.isEmpty() || next.getEventTimeMs() <= heads.peek().getHeadTime())) {
+          prefetching.poll();
+          if (next.hasNext()) {
+            heads.add(next);
+          } else {
+            next.close();
+          }
+          continue;
+        }
+        if (heads.isEmpty()) {
+          // All files are read, hence the threads are not needed anymore even if the iterator is not closed
+          executor.shutdown();
+          return endOfData();
+        }
+
+        FileSource source = heads.poll();
+        LogEvent event = source.next();
+        if (source.hasNext()) {
+          heads.add(source);
+        } else {
+          source.close();
+        }
+        return event;
+      }
+    }
+
+    @Override
+    public void close() {
+      // Stop reading from files that are not needed anymore
+      for (FileSource source : sources) {
+        source.close();
+      }
+      // Pending batches of closed files return without reading, hence this doesn't wait for reading the files
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Reads log events of a file in batches, with the next batch prefetched by the executor.
+   */
+  private final class FileSource {
+
+    private final ExecutorService executor;
+    private final LogLocation file;
+    private final int order;
+    private final Filter logFilter;
+    private final long fromTimeMs;
+    private final long toTimeMs;
+    private final int maxEvents;
+
+    // Only accessed by the read batch tasks, which are executed one after the other
+    private CloseableIterator<LogEvent> iterator;
+    private CompletableFuture<List<LogEvent>> pendingBatch;
+    private List<LogEvent> batch = Collections.emptyList();
+    private int index;
+    private volatile boolean closed;
+
+    FileSource(ExecutorService executor, LogLocation file, int order, Filter logFilter,
+               long fromTimeMs, long toTimeMs, int maxEvents) {
+      this.executor = executor;
+      this.file = file;
+      this.order = order;
+      this.logFilter = logFilter;
+      this.fromTimeMs = fromTimeMs;
+      this.toTimeMs = toTimeMs;
+      this.maxEvents = maxEvents;
+    }
+
+    void start() {
+      pendingBatch = CompletableFuture.supplyAsync(this::readBatch, executor);
+    }
+
+    long getEventTimeMs() {
+      return file.getEventTimeMs();
+    }
+
+    int getOrder() {
+      return order;
+    }
+
+    /**
+     * Returns the timestamp of the next event. Must only be called when {@link #hasNext()} returns {@code true}.
+     */
+    long getHeadTime() {
+      return batch.get(index).getLoggingEvent().getTimeStamp();
+    }
+
+    /**
+     * Returns whether there are more events, blocking until the next batch is read if needed.
+     */
+    boolean hasNext() {
+      if (index < batch.size()) {
+        return true;
+      }
+      if (pendingBatch == null) {
+        return false;
+      }
+      batch = join(pendingBatch);
+      index = 0;
+      // A short batch means the end of the file is reached
+      pendingBatch = batch.size() < BATCH_SIZE ? null : CompletableFuture.supplyAsync(this::readBatch, executor);
+      return !batch.isEmpty();
+    }
+
+    LogEvent next() {
+      return batch.get(index++);
+    }
+
+    void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      CompletableFuture<List<LogEvent>> pending = pendingBatch;
+      if (pending == null) {
+        closeIterator();
+      } else {
+        // Close after the pending task finished to avoid closing the iterator while it is being read
+        pending.whenComplete((events, throwable) -> closeIterator());
+      }
+    }
+
+    private List<LogEvent> readBatch() {
+      if (closed) {
+        return Collections.emptyList();
+      }
+      if (iterator == null) {
+        LOG.trace("Reading file {}", file);
+        iterator = file.readLog(logFilter, fromTimeMs, toTimeMs, maxEvents);
+      }
+      List<LogEvent> events = new ArrayList<>(BATCH_SIZE);
+      while (!closed && events.size() < BATCH_SIZE && iterator.hasNext()) {
+        events.add(iterator.next());
+      }
+      return events;
+    }
+
+    private void closeIterator() {
+      if (iterator != null) {
+        iterator.close();
+        iterator = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.write;
+
+import io.cdap.cdap.common.io.Locations;
+import org.apache.twill.filesystem.Location;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * An index of an Avro log file, which maps event time to the position of Avro blocks. The position of each entry can
+ * be passed to {@link org.apache.avro.file.DataFileReader#seek(long)}, and the time of each entry is the time of the
+ * first event in the block. Entries are ordered by position, and the time is non-decreasing.
+ *
+ * The index is stored in a sidecar file next to the log file, with the {@link #INDEX_SUFFIX} appended to the log file
+ * name. Log files written before the index was introduced, or not yet closed, don't have the sidecar file.
+ *
+ * The index can also carry a {@link TokenBloomFilter} of the tokens in the log file, which is used to skip the file
+ * when searching for terms that are not in the file.
+ */
+public final class LogFileIndex {
+
+  public static final String INDEX_SUFFIX = ".idx";
+
+  private static final int MAGIC = 0x4C494458;  // "LIDX"
+  // Version 2 added the optional token bloom filter
+  private static final int VERSION = 2;
+
+  private long[] times;
+  private long[] positions;
+  private int size;
+  private TokenBloomFilter tokenFilter;
+
+  public LogFileIndex() {
+    this(new long[16], new long[16], 0, null);
+  }
+
+  private LogFileIndex(long[] times, long[] positions, int size, @Nullable TokenBloomFilter tokenFilter) {
+    this.times = times;
+    this.positions = positions;
+    this.size = size;
+    this.tokenFilter = tokenFilter;
+  }
+
+  /**
+   * Returns the location of the index file for the given log file, or {@code null} if the log file has no parent.
+   *
+   * @throws IOException if failed to create the index file location
+   */
+  @Nullable
+  public static Location getIndexLocation(Location logLocation) throws IOException {
+    Location parent = Locations.getParent(logLocation);
+    return parent == null ? null : parent.append(logLocation.getName() + INDEX_SUFFIX);
+  }
+
+  /**
+   * Reads the index of the given log file.
+   *
+   * @return the {@link LogFileIndex} or {@code null} if the log file doesn't have an index
+   * @throws IOException if failed to read the index file
+   */
+  @Nullable
+  public static LogFileIndex read(Location logLocation) throws IOException {
+    Location indexLocation = getIndexLocation(logLocation);
+    if (indexLocation == null || !indexLocation.exists()) {
+      return null;
+    }
+    try (DataInputStream is = new DataInputStream(indexLocation.getInputStream())) {
+      if (is.readInt() != MAGIC) {
+        throw new IOException("Invalid log file index " + indexLocation);
+      }
+      int version = is.readInt();
+      if (version < 1 || version > VERSION) {
+        throw new IOException("Unsupported log file index version " + version + " in " + indexLocation);
+      }
+      int size = is.readInt();
+      long[] times = new long[size];
+      long[] positions = new long[size];
+      for (int i = 0; i < size; i++) {
+        times[i] = is.readLong();
+        positions[i] = is.readLong();
+      }
+      TokenBloomFilter tokenFilter = null;
+      if (version >= 2 && is.readBoolean()) {
+        tokenFilter = TokenBloomFilter.readFrom(is);
+      }
+      return new LogFileIndex(times, positions, size, tokenFilter);
+    }
+  }
+
+  /**
+   * Adds an entry to the index.
+   *
+   * @param timeMs time of the first event in the block
+   * @param position position of the block
+   */
+  public void add(long timeMs, long position) {
+    if (size > 0 && position <= positions[size - 1]) {
+      return;
+    }
+    if (size == times.length) {
+      times = Arrays.copyOf(times, size * 2);
+      positions = Arrays.copyOf(positions, size * 2);
+    }
+    // Keep the time non-decreasing for binary search
+    times[size] = size > 0 ? Math.max(timeMs, times[size - 1]) : timeMs;
+    positions[size] = position;
+    size++;
+  }
+
+  /**
+   * Sets the {@link TokenBloomFilter} of the tokens in the log file.
+   */
+  public void setTokenFilter(@Nullable TokenBloomFilter tokenFilter) {
+    this.tokenFilter = tokenFilter;
+  }
+
+  /**
+   * Returns the {@link TokenBloomFilter} of the tokens in the log file, or {@code null} if there is none.
+   */
+  @Nullable
+  public TokenBloomFilter getTokenFilter() {
+    return tokenFilter;
+  }
+
+  /**
+   * Returns the number of entries in this index.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the position of the last block that starts with an event before the given time, or {@code -1} if there
+   * is no such block. All events before the returned position have time smaller than the given time.
+   */
+  public long getStartPosition(long timeMs) {
+    // Index of the first entry with time >= timeMs
+    int idx = lowerBound(timeMs);
+    return idx == 0 ? -1 : positions[idx - 1];
+  }
+
+  /**
+   * Returns the position of the first block that starts with an event after the given time, or {@code -1} if there
+   * is no such block. All events starting at the returned position have time larger than the given time.
+   */
+  public long getEndPosition(long timeMs) {
+    // Index of the first entry with time > timeMs
+    int idx = timeMs == Long.MAX_VALUE ? size : lowerBound(timeMs + 1);
+    return idx == size ? -1 : positions[idx];
+  }
+
+  /**
+   * Writes this index to the sidecar file of the given log file.
+   *
+   * @param logLocation location of the log file
+   * @param filePermissions permissions of the index file, or empty to use the default
+   * @throws IOException if failed to write the index file
+   */
+  public void write(Location logLocation, String filePermissions) throws IOException {
+    Location indexLocation = getIndexLocation(logLocation);
+    if (indexLocation == null) {
+      throw new IOException("Cannot determine the index file location for log file " + logLocation);
+    }
+    try (OutputStream os = filePermissions.isEmpty() ? indexLocation.getOutputStream()
+                                                     : indexLocation.getOutputStream(filePermissions);
+         DataOutputStream dos = new DataOutputStream(os)) {
+      dos.writeInt(MAGIC);
+      dos.writeInt(VERSION);
+      dos.writeInt(size);
+      for (int i = 0; i < size; i++) {
+        dos.writeLong(times[i]);
+        dos.writeLong(positions[i]);
+      }
+      dos.writeBoolean(tokenFilter != null);
+      if (tokenFilter != null) {
+        tokenFilter.writeTo(dos);
+      }
+    } catch (IOException e) {
+      Locations.deleteQuietly(indexLocation);
+      throw e;
+    }
+  }
+
+  private int lowerBound(long timeMs) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (times[mid] < timeMs) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
@@ -27,6 +27,7 @@ import io.cdap.cdap.common.io.SeekableInputStream;
 import io.cdap.cdap.common.logging.LogSamplers;
 import io.cdap.cdap.common.logging.Loggers;
 import io.cdap.cdap.logging.filter.Filter;
+import io.cdap.cdap.logging.filter.TermExpression;
 import io.cdap.cdap.logging.read.Callback;
 import io.cdap.cdap.logging.read.LogEvent;
 import io.cdap.cdap.logging.read.LogOffset;
@@ -49,7 +50,9 @@ import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 
 /**
  * LogLocation representing a log file and methods to read the file's contents.
@@ -153,6 +156,11 @@ public class LogLocation {
     Deque<Collection<LogEvent>> logSegments = new LinkedList<>();
     int count = 0;
     try {
+      LogFileIndex index = readIndex();
+      if (!mightMatch(index, logFilter)) {
+        return ImmutableList.of();
+      }
+
       try (DataFileReader<GenericRecord> dataFileReader = createReader()) {
 
         if (!dataFileReader.hasNext()) {
@@ -167,10 +175,17 @@ public class LogLocation {
           skipLen = DEFAULT_SKIP_LEN;
         }
 
-        // For open file, endPosition sync marker is unknown so start from file length and read up to the actual EOF
-        dataFileReader.sync(length);
-        long finalSync = dataFileReader.previousSync();
-        List<LogEvent> logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, -1);
+        // All events starting from the position given by the index are after fromTimeMs, hence can be skipped
+        long finalSync = index == null ? -1L : index.getEndPosition(fromTimeMs);
+        List<LogEvent> logSegment;
+        if (finalSync < 0) {
+          // For open file, endPosition sync marker is unknown so start from file length and read up to the actual EOF
+          dataFileReader.sync(length);
+          finalSync = dataFileReader.previousSync();
+          logSegment = readToEndSyncPosition(dataFileReader, logFilter, fromTimeMs, -1);
+        } else {
+          logSegment = ImmutableList.of();
+        }
 
         if (!logSegment.isEmpty()) {
           logSegments.addFirst(logSegment);
@@ -275,8 +290,22 @@ public class LogLocation {
       this.maxEvents = maxEvents;
 
       try {
+        boolean hasTerms = !TermExpression.getRequiredTerms(logFilter).isEmpty();
+        LogFileIndex index = fromTimeMs > 0 || hasTerms ? readIndex() : null;
+        if (!mightMatch(index, logFilter)) {
+          // No need to open the file
+          return;
+        }
+
         dataFileReader = createReader();
-        if (dataFileReader.hasNext()) {
+        if (index != null && fromTimeMs > 0) {
+          // Seek to the last block that starts before fromTimeMs
+          long position = index.getStartPosition(fromTimeMs);
+          if (position >= 0) {
+            dataFileReader.seek(position);
+          }
+          LOG.trace("Seek to pos {} from index", position);
+        } else if (dataFileReader.hasNext()) {
           datum = dataFileReader.next();
           loggingEvent = new LoggingEvent(datum);
           loggingEvent.prepareForDeferredProcessing();
@@ -315,7 +344,7 @@ public class LogLocation {
     private void computeNext() {
       try {
         // read events from file
-        while (next == null && dataFileReader.hasNext()) {
+        while (next == null && dataFileReader != null && dataFileReader.hasNext()) {
           loggingEvent = new LoggingEvent(dataFileReader.next(datum));
           loggingEvent.prepareForDeferredProcessing();
 
@@ -371,6 +400,44 @@ public class LogLocation {
     }
   }
 
+  /**
+   * Reads the {@link LogFileIndex} of the log file.
+   *
+   * @return the index or {@code null} if there is no index, in which case the log file has to be scanned
+   */
+  @Nullable
+  private LogFileIndex readIndex() {
+    // Log files of the old version were written without index
+    if (VERSION_0.equals(frameworkVersion)) {
+      return null;
+    }
+    try {
+      return LogFileIndex.read(location);
+    } catch (Exception e) {
+      READ_FAILURE_LOG.warn("Failed to read index of log file {}, scanning the log file instead", location, e);
+      return null;
+    }
+  }
+
+  /**
+   * Returns whether the log file might have events matching the given filter, based on the terms required by the
+   * filter and the {@link TokenBloomFilter} in the given index.
+   */
+  private boolean mightMatch(@Nullable LogFileIndex index, Filter logFilter) {
+    TokenBloomFilter tokenFilter = index == null ? null : index.getTokenFilter();
+    if (tokenFilter == null) {
+      return true;
+    }
+    Set<String> terms = TermExpression.getRequiredTerms(logFilter);
+    for (String term : terms) {
+      if (!tokenFilter.mightContain(term)) {
+        LOG.trace("Skipping log file {} that doesn't contain term {}", location, term);
+        return false;
+      }
+    }
+    return true;
+  }
+
   private DataFileReader<GenericRecord> createReader() throws IOException {
     boolean shouldImpersonate = this.getFrameworkVersion().equals(VERSION_0);
     return new DataFileReader<>(new LocationSeekableInput(location, namespaceId, impersonator, shouldImpersonate),
@@ -0,0 +1,228 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.write;
+
+import com.google.common.base.Preconditions;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A bloom filter of the tokens in a log file, for skipping files that cannot contain the search terms.
+ *
+ * The number of distinct tokens of a file is not known until the file is closed, hence the filter is a scalable bloom
+ * filter. It starts with a slice sized for a small number of tokens, and adds a slice with twice the capacity and a
+ * tighter false positive probability every time the last slice is full. The memory used is therefore proportional
+ * to the number of distinct tokens, and the overall false positive probability stays below the one given at creation.
+ *
+ * Tokens are given as character ranges and hashed case insensitively without creating a string per token. The
+ * hashing and the serialized form are fixed so that filters written by different versions can be read.
+ */
+public final class TokenBloomFilter {
+
+  private static final int MAX_NUM_HASHES = 255;
+  // Each slice has twice the capacity and 0.8 times the false positive probability of the previous one
+  private static final double FPP_RATIO = 0.8;
+
+  private final List<Slice> slices;
+  private final double firstSliceFpp;
+
+  /**
+   * Creates a filter that starts with a slice for the given number of distinct tokens and grows as more tokens are
+   * added, with an overall false positive probability below the given one.
+   */
+  public static TokenBloomFilter create(int initialTokens, double fpp) {
+    Preconditions.checkArgument(initialTokens > 0, "Initial tokens must be > 0");
+    Preconditions.checkArgument(fpp > 0.0 && fpp < 1.0, "False positive probability must be in (0.0, 1.0)");
+    // The false positive probabilities of the slices form a geometric series, which sums up to at most fpp
+    double firstSliceFpp = fpp * (1 - FPP_RATIO);
+    List<Slice> slices = new ArrayList<>();
+    slices.add(Slice.create(initialTokens, firstSliceFpp));
+    return new TokenBloomFilter(slices, firstSliceFpp);
+  }
+
+  private TokenBloomFilter(List<Slice> slices, double firstSliceFpp) {
+    this.slices = slices;
+    this.firstSliceFpp = firstSliceFpp;
+  }
+
+  /**
+   * Adds the token in the given range of the text to this filter.
+   */
+  public void put(String text, int start, int end) {
+    long hash = hash(text, start, end);
+    if (mightContain(hash)) {
+      return;
+    }
+    Slice slice = slices.get(slices.size() - 1);
+    if (slice.count >= slice.capacity) {
+      double sliceFpp = firstSliceFpp * Math.pow(FPP_RATIO, slices.size());
+      slice = Slice.create((int) Math.min(Integer.MAX_VALUE / 2, (long) slice.capacity * 2), sliceFpp);
+      slices.add(slice);
+    }
+    slice.put(hash);
+  }
+
+  /**
+   * Returns {@code false} if the token was definitely not added to this filter, or {@code true} if it might be.
+   */
+  public boolean mightContain(String token) {
+    return mightContain(hash(token, 0, token.length()));
+  }
+
+  /**
+   * Returns the number of distinct tokens added to this filter, approximated by the number of tokens that were not
+   * found in the filter when added.
+   */
+  public long getTokenCount() {
+    long count = 0;
+    for (Slice slice : slices) {
+      count += slice.count;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the size of this filter in bytes.
+   */
+  public long getSizeInBytes() {
+    long size = 0;
+    for (Slice slice : slices) {
+      size += (long) slice.bits.length * Long.BYTES;
+    }
+    return size;
+  }
+
+  private boolean mightContain(long hash) {
+    for (Slice slice : slices) {
+      if (slice.mightContain(hash)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes this filter to the given output.
+   */
+  public void writeTo(DataOutput output) throws IOException {
+    output.writeInt(slices.size());
+    for (Slice slice : slices) {
+      output.writeByte(slice.numHashes);
+      output.writeInt(slice.bits.length);
+      for (long word : slice.bits) {
+        output.writeLong(word);
+      }
+    }
+  }
+
+  /**
+   * Reads a filter written by {@link #writeTo(DataOutput)}. The filter read is only for membership test.
+   */
+  public static TokenBloomFilter readFrom(DataInput input) throws IOException {
+    int numSlices = input.readInt();
+    if (numSlices <= 0) {
+      throw new IOException("Invalid token bloom filter with " + numSlices + " slices");
+    }
+    List<Slice> slices = new ArrayList<>(numSlices);
+    for (int i = 0; i < numSlices; i++) {
+      int numHashes = input.readUnsignedByte();
+      int length = input.readInt();
+      if (numHashes <= 0 || length <= 0) {
+        throw new IOException("Invalid token bloom filter slice with " + numHashes + " hashes and "
+                                + length + " words");
+      }
+      long[] bits = new long[length];
+      for (int j = 0; j < length; j++) {
+        bits[j] = input.readLong();
+      }
+      slices.add(new Slice(bits, numHashes, 0));
+    }
+    return new TokenBloomFilter(slices, 0.0d);
+  }
+
+  /**
+   * Returns a 64 bits hash of the given range of the text with the characters in lower case, which is FNV-1a
+   * followed by the MurmurHash3 finalizer.
+   */
+  private static long hash(String text, int start, int end) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = start; i < end; i++) {
+      hash ^= Character.toLowerCase(text.charAt(i));
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  /**
+   * A fixed size bloom filter.
+   */
+  private static final class Slice {
+
+    private final long[] bits;
+    private final int numHashes;
+    private final int capacity;
+    private int count;
+
+    static Slice create(int capacity, double fpp) {
+      long numBits = Math.max(64L, (long) (-capacity * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+      int numHashes = (int) Math.max(1, Math.min(MAX_NUM_HASHES, Math.round((double) numBits / capacity
+                                                                               * Math.log(2))));
+      return new Slice(new long[(int) ((numBits + 63) / 64)], numHashes, capacity);
+    }
+
+    private Slice(long[] bits, int numHashes, int capacity) {
+      this.bits = bits;
+      this.numHashes = numHashes;
+      this.capacity = capacity;
+    }
+
+    void put(long hash) {
+      long numBits = (long) bits.length * 64;
+      int hash1 = (int) hash;
+      int hash2 = (int) (hash >>> 32);
+      for (int i = 1; i <= numHashes; i++) {
+        int combined = hash1 + i * hash2;
+        long index = (combined < 0 ? ~combined : combined) % numBits;
+        bits[(int) (index >>> 6)] |= 1L << index;
+      }
+      count++;
+    }
+
+    boolean mightContain(long hash) {
+      long numBits = (long) bits.length * 64;
+      int hash1 = (int) hash;
+      int hash2 = (int) (hash >>> 32);
+      for (int i = 1; i <= numHashes; i++) {
+        int combined = hash1 + i * hash2;
+        long index = (combined < 0 ? ~combined : combined) % numBits;
+        if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
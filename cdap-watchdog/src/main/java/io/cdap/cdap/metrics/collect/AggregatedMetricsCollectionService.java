@@ -15,9 +15,6 @@
  */
 package io.cdap.cdap.metrics.collect;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
@@ -33,16 +30,25 @@ import io.cdap.cdap.common.conf.Constants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Base class for {@link MetricsCollectionService} which collect metrics through a set of cached
  * {@link AggregatedMetricsEmitter}.
+ *
+ * Each {@link MetricsContext} returned holds its own {@link AggregatedMetricsEmitter}s by metric name, so that
+ * emitting metrics through a context only needs a lookup by the metric name. A context that hasn't emitted any
+ * metrics for a while is removed from the service, and is added back when it is used again.
  */
 public abstract class AggregatedMetricsCollectionService extends AbstractExecutionThreadService
                                                          implements MetricsCollectionService {
@@ -50,8 +56,9 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
   private static final Logger LOG = LoggerFactory.getLogger(AggregatedMetricsCollectionService.class);
   private static final long CACHE_EXPIRE_MINUTES = 1;
 
-  private final LoadingCache<Map<String, String>, MetricsContext> collectors;
-  private final LoadingCache<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> emitters;
+  private final ConcurrentMap<Map<String, String>, MetricsContextImpl> collectors;
+  // contexts to publish metrics from
+  private final Set<MetricsContextImpl> activeCollectors;
   // maximum number of milliseconds to sleep between each publish
   private final long publishIntervalInMillis;
   private final CountDownLatch shutdownLatch;
@@ -60,28 +67,8 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
     // the longest sleep time will be 1 min
     this.publishIntervalInMillis = Math.min(publishIntervalInMillis, Constants.Metrics.PROCESS_INTERVAL_MILLIS);
     this.shutdownLatch = new CountDownLatch(1);
-    this.collectors = CacheBuilder.newBuilder()
-      .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
-      .build(createCollectorLoader());
-
-    this.emitters = CacheBuilder.newBuilder()
-      // NOTE : we don't need to have removalListener to  emit metrics, as we have expireAfterAccess set for a minute,
-      // emitters.get() is used to increment/gauge and that would reset the access time,
-      // and since runOneIteration() emits all the metrics for the scheduled duration (every 1 second)
-      // there wont be any loss of emitter entries.
-      .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
-      .build(new CacheLoader<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>() {
-        @Override
-        public LoadingCache<String, AggregatedMetricsEmitter> load(Map<String, String> tags) throws Exception {
-          return CacheBuilder.newBuilder().expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).
-            build(new CacheLoader<String, AggregatedMetricsEmitter>() {
-              @Override
-              public AggregatedMetricsEmitter load(String metricName) throws Exception {
-                return new AggregatedMetricsEmitter(metricName);
-              }
-            });
-        }
-      });
+    this.collectors = new ConcurrentHashMap<>();
+    this.activeCollectors = ConcurrentHashMap.newKeySet();
   }
 
   /**
@@ -157,7 +144,12 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
 
   @Override
   public final MetricsContext getContext(final Map<String, String> tags) {
-    return collectors.getUnchecked(tags);
+    MetricsContextImpl context = collectors.get(tags);
+    if (context == null) {
+      context = collectors.computeIfAbsent(ImmutableMap.copyOf(tags), MetricsContextImpl::new);
+    }
+    context.activate();
+    return context;
   }
 
   @Override
@@ -172,20 +164,18 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
   }
 
   private Iterator<MetricValues> getMetrics(final long timestamp) {
-    // NOTE : emitters.asMap does not reset the access time in cache,
-    // so it's the preferred way to access the cache entries. as we access and emit metrics every second.
-    final Iterator<Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>> iterator =
-      emitters.asMap().entrySet().iterator();
+    final long currentTimeMillis = TimeUnit.SECONDS.toMillis(timestamp);
+    final Iterator<MetricsContextImpl> iterator = activeCollectors.iterator();
     return new AbstractIterator<MetricValues>() {
       @Override
       protected MetricValues computeNext() {
         while (iterator.hasNext()) {
-          Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> entry = iterator.next();
-          Map<String, AggregatedMetricsEmitter> metricEmitters = entry.getValue().asMap();
+          MetricsContextImpl context = iterator.next();
+          Collection<AggregatedMetricsEmitter> metricEmitters = context.emitters.values();
           // +1 because we add extra metric about how many metric values did we emit in this context (see below)
           List<MetricValue> metricValues = Lists.newArrayListWithCapacity(metricEmitters.size() + 1);
-          for (Map.Entry<String, AggregatedMetricsEmitter> emitterEntry : metricEmitters.entrySet()) {
-            MetricValue metricValue = emitterEntry.getValue().emit();
+          for (AggregatedMetricsEmitter emitter : metricEmitters) {
+            MetricValue metricValue = emitter.emit();
             // skip increment by 0
             if (metricValue.getType() == MetricType.COUNTER && metricValue.getValue() == 0) {
               continue;
@@ -194,53 +184,62 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
           }
 
           if (metricValues.isEmpty()) {
-            // skip if there are no metric values to send
+            // skip if there are no metric values to send, and remove the context if it is idle for too long
+            if (currentTimeMillis - context.lastEmitTime >= TimeUnit.MINUTES.toMillis(CACHE_EXPIRE_MINUTES)) {
+              context.deactivate();
+            }
             continue;
           }
+          context.lastEmitTime = currentTimeMillis;
 
           // number of emitted metrics
           metricValues.add(new MetricValue("metrics.emitted.count", MetricType.COUNTER, metricValues.size() + 1));
 
           LOG.trace("Emit metric {}", metricValues);
-          return new MetricValues(entry.getKey(), timestamp, metricValues);
+          return new MetricValues(context.tags, timestamp, metricValues);
         }
         return endOfData();
       }
     };
   }
 
-  private CacheLoader<Map<String, String>, MetricsContext> createCollectorLoader() {
-    return new CacheLoader<Map<String, String>, MetricsContext>() {
-      @Override
-      public MetricsContext load(final Map<String, String> collectorKey) throws Exception {
-        return new MetricsContextImpl(collectorKey);
-      }
-    };
-  }
-
   private final class MetricsContextImpl implements MetricsContext {
 
     private final Map<String, String> tags;
+    // emitters are never removed from a live context, since removing one could lose values added through a reference
+    // held by another thread. They are bounded by the distinct metric names emitted with the tags of this context,
+    // which the program code fixes in practice. Tags that change over time, such as run ids, create new contexts,
+    // and a context is removed together with its emitters once it is idle for CACHE_EXPIRE_MINUTES.
+    private final ConcurrentMap<String, AggregatedMetricsEmitter> emitters;
+    // whether this context is in the active collectors
+    private final AtomicBoolean active;
+    // the last time this context emitted metrics. Only accessed by the publishing thread
+    private long lastEmitTime;
 
     private MetricsContextImpl(final Map<String, String> tags) {
       this.tags = ImmutableMap.copyOf(tags);
+      this.emitters = new ConcurrentHashMap<>();
+      this.active = new AtomicBoolean();
+      this.lastEmitTime = System.currentTimeMillis();
     }
 
     @Override
     public void increment(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).increment(value);
+      getEmitter(metricName).increment(value);
+      activate();
     }
 
     @Override
     public void gauge(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).gauge(value);
+      getEmitter(metricName).gauge(value);
+      activate();
     }
 
     @Override
     public MetricsContext childContext(String tagName, String tagValue) {
       ImmutableMap<String, String> allTags = ImmutableMap.<String, String>builder()
         .putAll(tags).put(tagName, tagValue).build();
-      return collectors.getUnchecked(allTags);
+      return getContext(allTags);
     }
 
     @Override
@@ -257,7 +256,52 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
       Map<String, String> allTags = Maps.newHashMap();
       allTags.putAll(this.tags);
       allTags.putAll(tags);
-      return collectors.getUnchecked(allTags);
+      return getContext(allTags);
+    }
+
+    private AggregatedMetricsEmitter getEmitter(String metricName) {
+      AggregatedMetricsEmitter emitter = emitters.get(metricName);
+      if (emitter == null) {
+        emitter = emitters.computeIfAbsent(metricName, AggregatedMetricsEmitter::new);
+      }
+      return emitter;
+    }
+
+    /**
+     * Adds this context back to the service if it was removed. It must be called after values are added to emitters.
+     */
+    private void activate() {
+      // it is called on every metric update, hence the plain read, which keeps the flag's cache line shared
+      // while the context is active, as a failed compareAndSet would still take it exclusive
+      if (!active.get() && active.compareAndSet(false, true)) {
+        add();
+      }
+    }
+
+    /**
+     * Removes this context from the service. Only called from the publishing thread.
+     */
+    private void deactivate() {
+      if (!active.compareAndSet(true, false)) {
+        return;
+      }
+      activeCollectors.remove(this);
+      collectors.remove(tags, this);
+
+      // A concurrent activate between the flag change and the removal above is undone by the removal while leaving
+      // the flag set, hence this context is added back unconditionally if there are values pending
+      for (AggregatedMetricsEmitter emitter : emitters.values()) {
+        if (emitter.hasPendingValue()) {
+          active.set(true);
+          add();
+          return;
+        }
+      }
+    }
+
+    private void add() {
+      activeCollectors.add(this);
+      collectors.putIfAbsent(tags, this);
     }
   }
 }
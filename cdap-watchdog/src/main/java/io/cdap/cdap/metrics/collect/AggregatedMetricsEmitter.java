@@ -22,19 +22,31 @@ import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * {@link MetricsEmitter} that aggregates  values for a metric
  * during collection and emit the aggregated value when emit.
+ *
+ * Increments are accumulated in a {@link LongAdder}, which spreads contended updates across multiple cells instead
+ * of retrying CAS on a single value. The adder is never reset. Instead, each {@link #emit()} returns the difference
+ * from the sum seen by the previous call, so that no increment racing with {@link #emit()} is lost.
+ *
+ * If {@link #gauge(long)} is called since the last {@link #emit()}, the latest gauge value is emitted and the
+ * increments in the same interval are discarded.
  */
 final class AggregatedMetricsEmitter implements MetricsEmitter {
   private static final Logger LOG = LoggerFactory.getLogger(AggregatedMetricsEmitter.class);
 
   private final String name;
-  // metric value
-  private final AtomicLong value;
+  // accumulated increments since creation
+  private final LongAdder value;
+  // the latest gauge value
+  private final AtomicLong gaugeValue;
   // specifies if the metric type is gauge or counter
   private final AtomicBoolean gaugeUsed;
+  // sum of the increments when last emitted. Only accessed by emit, which is never called concurrently
+  private long emittedSum;
 
   AggregatedMetricsEmitter(String name) {
     if (name == null || name.isEmpty()) {
@@ -42,25 +54,36 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
     }
 
     this.name = name;
-    this.value = new AtomicLong();
+    this.value = new LongAdder();
+    this.gaugeValue = new AtomicLong();
     this.gaugeUsed = new AtomicBoolean(false);
   }
 
   void increment(long value) {
-    this.value.addAndGet(value);
+    this.value.add(value);
   }
 
-
   @Override
   public MetricValue emit() {
-    // todo CDAP-2195 - potential race condition , reseting value and type has to be done together
-    long value = this.value.getAndSet(0);
-    MetricType type = gaugeUsed.getAndSet(false) ? MetricType.GAUGE : MetricType.COUNTER;
-    return new MetricValue(name, type, value);
+    long sum = value.sum();
+    long delta = sum - emittedSum;
+    emittedSum = sum;
+    if (gaugeUsed.getAndSet(false)) {
+      return new MetricValue(name, MetricType.GAUGE, gaugeValue.get());
+    }
+    return new MetricValue(name, MetricType.COUNTER, delta);
+  }
+
+  /**
+   * Returns {@code true} if there is value not yet emitted. This method must not be called concurrently with
+   * {@link #emit()}.
+   */
+  boolean hasPendingValue() {
+    return gaugeUsed.get() || value.sum() != emittedSum;
   }
 
   public void gauge(long value) {
-    this.value.set(value);
+    this.gaugeValue.set(value);
     this.gaugeUsed.set(true);
   }
 }
@@ -39,9 +39,9 @@ import io.cdap.cdap.common.logging.LogSamplers;
 import io.cdap.cdap.common.logging.Loggers;
 import io.cdap.cdap.internal.io.DatumReaderFactory;
 import io.cdap.cdap.internal.io.SchemaGenerator;
-import io.cdap.cdap.messaging.MessageFetcher;
 import io.cdap.cdap.messaging.MessagingService;
-import io.cdap.cdap.messaging.data.RawMessage;
+import io.cdap.cdap.messaging.TopicFetchRequest;
+import io.cdap.cdap.messaging.data.TopicRawMessage;
 import io.cdap.cdap.metrics.store.MetricDatasetFactory;
 import io.cdap.cdap.proto.id.NamespaceId;
 import io.cdap.cdap.proto.id.TopicId;
@@ -54,18 +54,21 @@ import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
-import javax.annotation.Nullable;
 
 /**
  * Process metrics by consuming metrics being published to TMS.
@@ -89,10 +92,11 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   private final BlockingDeque<MetricValues> metricsFromAllTopics;
   private final ConcurrentMap<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap;
   private final AtomicBoolean persistingFlag;
+  // Metrics being written asynchronously, in the order of writes. Only accessed by the thread that is persisting.
+  private final Deque<PendingPersist> pendingPersists;
   // maximum number of milliseconds to sleep between each run of fetching & processing new metrics, the max sleep time
   // is 1 min
   private final long metricsProcessIntervalMillis;
-  private final List<ProcessMetricsThread> processMetricsThreads;
   private final String processMetricName;
   private final String metricsPrefixForDelayMetrics;
   private long metricsProcessedCount;
@@ -100,6 +104,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   private MetricsConsumerMetaTable metaTable;
 
   private volatile boolean stopping;
+  private volatile ProcessMetricsThread processMetricsThread;
 
   @Inject
   MessagingMetricsProcessorService(CConfiguration cConf,
@@ -147,10 +152,10 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     this.queueSize = cConf.getInt(Constants.Metrics.QUEUE_SIZE);
     this.fetcherLimit = Math.max(1, queueSize / topicNumbers.size()); // fetcherLimit is at least one
     this.metricsContextMap = metricsContext.getTags();
-    this.processMetricsThreads = new ArrayList<>();
     this.metricsFromAllTopics = new LinkedBlockingDeque<>(queueSize);
     this.topicProcessMetaMap = new ConcurrentHashMap<>();
     this.persistingFlag = new AtomicBoolean();
+    this.pendingPersists = new LinkedList<>();
     // the max sleep time will be 1 min
     this.metricsProcessIntervalMillis = metricsProcessIntervalMillis < Constants.Metrics.PROCESS_INTERVAL_MILLIS ?
       metricsProcessIntervalMillis : Constants.Metrics.PROCESS_INTERVAL_MILLIS;
@@ -187,6 +192,7 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       return;
     }
 
+    Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetas = new LinkedHashMap<>();
     for (TopicId topic : metricsTopics) {
       TopicProcessMeta topicProcessMeta = null;
       TopicIdMetaKey topicRowKey = new TopicIdMetaKey(topic);
@@ -195,36 +201,44 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       } catch (Exception e) {
         LOG.warn("Cannot retrieve last processed MessageId for topic: {}", topic, e);
       }
-      processMetricsThreads.add(new ProcessMetricsThread(topicRowKey, topicProcessMeta));
+      topicProcessMetas.put(topicRowKey, topicProcessMeta);
     }
+    ProcessMetricsThread thread = new ProcessMetricsThread(topicProcessMetas);
+    processMetricsThread = thread;
 
     if (!isRunning()) {
       return;
     }
 
-    for (ProcessMetricsThread thread : processMetricsThreads) {
-      thread.start();
+    thread.start();
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      LOG.info("Thread {} is being terminated while waiting for it to finish.", thread.getName());
+      Thread.currentThread().interrupt();
     }
 
-    for (ProcessMetricsThread thread : processMetricsThreads) {
+    // Persist metricsFromAllTopics and messageId's after the ProcessMetricsThread completes.
+    // No need to make a copy of metricsFromAllTopics and topicProcessMetaMap because no thread is writing to them
+    persistMetricsAndTopicProcessMeta(metricsFromAllTopics, topicProcessMetaMap);
+
+    // Wait for all pending writes to complete so that the messageId's of all written metrics are persisted
+    for (PendingPersist pendingPersist : pendingPersists) {
       try {
-        thread.join();
-      } catch (InterruptedException e) {
-        LOG.info("Thread {} is being terminated while waiting for it to finish.", thread.getName());
-        Thread.currentThread().interrupt();
+        pendingPersist.getCompletion().join();
+      } catch (Exception e) {
+        // Failure will be logged when persisting the messageId's
       }
     }
-
-    // Persist metricsFromAllTopics and messageId's after all ProcessMetricsThread's complete.
-    // No need to make a copy of metricsFromAllTopics and topicProcessMetaMap because no thread is writing to them
-    persistMetricsAndTopicProcessMeta(metricsFromAllTopics, topicProcessMetaMap);
+    persistCompletedTopicProcessMeta();
   }
 
   @Override
   protected void triggerShutdown() {
     LOG.info("Stopping Metrics Processing Service.");
     stopping = true;
-    for (ProcessMetricsThread thread : processMetricsThreads) {
+    ProcessMetricsThread thread = processMetricsThread;
+    if (thread != null) {
       thread.interrupt();
     }
     LOG.info("Metrics Processing Service stopped.");
@@ -232,7 +246,8 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
 
   /**
    * Persist metrics from all topics into metric store and messageId's of the last persisted metrics of each topic into
-   * metrics meta table
+   * metrics meta table. Metrics are written asynchronously, hence the messageId's are persisted once the
+   * corresponding metrics are written, which could be in a later call to this method.
    *
    * @param metricValues        a deque of {@link MetricValues}
    * @param topicProcessMetaMap a map with each key {@link TopicIdMetaKey} representing a topic and {@link
@@ -241,13 +256,32 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
   private void persistMetricsAndTopicProcessMeta(Deque<MetricValues> metricValues,
                                                  Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap) {
     try {
-      if (!metricValues.isEmpty()) {
-        persistMetrics(metricValues, topicProcessMetaMap);
-      }
-      persistTopicProcessMeta(topicProcessMetaMap);
+      CompletableFuture<Void> completion = metricValues.isEmpty() ?
+        CompletableFuture.completedFuture(null) : persistMetrics(metricValues, topicProcessMetaMap);
+      pendingPersists.add(new PendingPersist(completion, topicProcessMetaMap));
     } catch (Exception e) {
       LOG.warn("Failed to persist metrics.", e);
     }
+    persistCompletedTopicProcessMeta();
+  }
+
+  /**
+   * Persist the messageId's of the most recent metrics that are completely written.
+   */
+  private void persistCompletedTopicProcessMeta() {
+    Map<TopicIdMetaKey, TopicProcessMeta> completedTopicProcessMetaMap = null;
+    while (!pendingPersists.isEmpty() && pendingPersists.peek().getCompletion().isDone()) {
+      PendingPersist pendingPersist = pendingPersists.poll();
+      try {
+        pendingPersist.getCompletion().join();
+        completedTopicProcessMetaMap = pendingPersist.getTopicProcessMetaMap();
+      } catch (CompletionException | CancellationException e) {
+        LOG.warn("Failed to persist metrics.", e.getCause() == null ? e : e.getCause());
+      }
+    }
+    if (completedTopicProcessMetaMap != null) {
+      persistTopicProcessMeta(completedTopicProcessMetaMap);
+    }
   }
 
   private void persistTopicProcessMeta(Map<TopicIdMetaKey, TopicProcessMeta> messageIds) {
@@ -266,8 +300,9 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
    * Persist metrics into metric store
    *
    * @param metricValues a non-empty deque of {@link MetricValues}
+   * @return a {@link CompletableFuture} that will be completed when the metrics are persisted
    */
-  private void persistMetrics(Deque<MetricValues> metricValues,
+  private CompletableFuture<Void> persistMetrics(Deque<MetricValues> metricValues,
                               Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap) {
     long now = System.currentTimeMillis();
     long lastMetricTime = metricValues.peekLast().getTimestamp();
@@ -287,40 +322,66 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     processorMetrics.add(new MetricValue(processMetricName, MetricType.COUNTER, metricValues.size()));
 
     metricValues.add(new MetricValues(metricsContextMap, TimeUnit.MILLISECONDS.toSeconds(now), processorMetrics));
-    metricsWriter.write(metricValues);
+    CompletableFuture<Void> completion = metricsWriter.writeAsync(metricValues);
     metricsProcessedCount += metricValues.size();
-    PROGRESS_LOG.debug("{} metrics persisted. Last metric's timestamp: {}",
+    PROGRESS_LOG.debug("{} metrics written. Last metric's timestamp: {}",
                        metricsProcessedCount, lastMetricTime);
+    return completion;
   }
 
+  /**
+   * Metrics being written together with the messageId's to be persisted once the write completed.
+   */
+  private static final class PendingPersist {
+
+    private final CompletableFuture<Void> completion;
+    private final Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap;
+
+    PendingPersist(CompletableFuture<Void> completion, Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetaMap) {
+      this.completion = completion;
+      this.topicProcessMetaMap = topicProcessMetaMap;
+    }
+
+    CompletableFuture<Void> getCompletion() {
+      return completion;
+    }
+
+    Map<TopicIdMetaKey, TopicProcessMeta> getTopicProcessMetaMap() {
+      return topicProcessMetaMap;
+    }
+  }
+
+  /**
+   * Thread that fetches metrics from all the topics with one call to the messaging service in each run.
+   */
   private class ProcessMetricsThread extends Thread {
 
-    private final TopicIdMetaKey topicIdMetaKey;
+    private final Map<TopicId, TopicIdMetaKey> topicIdMetaKeys;
     private final PayloadInputStream payloadInput;
     private final BinaryDecoder decoder;
-    private final String oldestTsMetricName;
-    private final String latestTsMetricName;
-    private long lastMetricTimeSecs;
 
-    ProcessMetricsThread(TopicIdMetaKey topicIdMetaKey, @Nullable TopicProcessMeta topicProcessMeta) {
-      super(String.format("ProcessMetricsThread-%s", topicIdMetaKey.getTopicId()));
+    ProcessMetricsThread(Map<TopicIdMetaKey, TopicProcessMeta> topicProcessMetas) {
+      super(String.format("ProcessMetricsThread-%s", metricsPrefixForDelayMetrics));
       setDaemon(true);
-      oldestTsMetricName = String.format("%s.topic.%s.oldest.delay.ms",
-                                         metricsPrefixForDelayMetrics, topicIdMetaKey.getTopicId().getTopic());
-      latestTsMetricName = String.format("%s.topic.%s.latest.delay.ms",
-                                         metricsPrefixForDelayMetrics, topicIdMetaKey.getTopicId().getTopic());
-      if (topicProcessMeta != null && topicProcessMeta.getMessageId() != null) {
-        // message-id already for this topic in metaTable, we create a new TopicProcessMeta with existing values,
-        // write metric names and put it in map
-        byte[] persistedMessageId = topicProcessMeta.getMessageId();
-        topicProcessMetaMap.put(topicIdMetaKey,
-                                new TopicProcessMeta(persistedMessageId, topicProcessMeta.getOldestMetricsTimestamp(),
-                                                     topicProcessMeta.getLatestMetricsTimestamp(),
-                                                     topicProcessMeta.getMessagesProcessed(),
-                                                     topicProcessMeta.getLastProcessedTimestamp(),
-                                                     oldestTsMetricName, latestTsMetricName));
+      this.topicIdMetaKeys = new LinkedHashMap<>();
+      for (Map.Entry<TopicIdMetaKey, TopicProcessMeta> entry : topicProcessMetas.entrySet()) {
+        TopicIdMetaKey topicIdMetaKey = entry.getKey();
+        TopicProcessMeta topicProcessMeta = entry.getValue();
+        topicIdMetaKeys.put(topicIdMetaKey.getTopicId(), topicIdMetaKey);
+        if (topicProcessMeta != null && topicProcessMeta.getMessageId() != null) {
+          // message-id already for this topic in metaTable, we create a new TopicProcessMeta with existing values,
+          // write metric names and put it in map
+          byte[] persistedMessageId = topicProcessMeta.getMessageId();
+          topicProcessMetaMap.put(topicIdMetaKey,
+                                  new TopicProcessMeta(persistedMessageId,
+                                                       topicProcessMeta.getOldestMetricsTimestamp(),
+                                                       topicProcessMeta.getLatestMetricsTimestamp(),
+                                                       topicProcessMeta.getMessagesProcessed(),
+                                                       topicProcessMeta.getLastProcessedTimestamp(),
+                                                       getDelayMetricName(topicIdMetaKey.getTopicId(), "oldest"),
+                                                       getDelayMetricName(topicIdMetaKey.getTopicId(), "latest")));
+        }
       }
-      this.topicIdMetaKey = topicIdMetaKey;
       this.payloadInput = new PayloadInputStream();
       this.decoder = new BinaryDecoder(payloadInput);
     }
@@ -342,8 +403,8 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     }
 
     /**
-     * Fetch at most {@code fetcherLimit} metrics to process, and calculate the estimated sleep time before the next run
-     * with the best effort to avoid accumulating unprocessed metrics
+     * Fetch at most {@code fetcherLimit} metrics from each topic to process, and calculate the estimated sleep time
+     * before the next run with the best effort to avoid accumulating unprocessed metrics
      *
      * @return the estimated sleep time before the next run with the best effort to avoid accumulating unprocessed
      * metrics, or {@code 0} if no sleep to catch-up with new metrics at best effort
@@ -351,66 +412,65 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
     private long processMetrics() {
       long startTime = System.currentTimeMillis();
       try {
-        MessageFetcher fetcher = messagingService.prepareFetch(topicIdMetaKey.getTopicId());
-        fetcher.setLimit(fetcherLimit);
-        TopicProcessMeta persistMetaInfo = topicProcessMetaMap.get(topicIdMetaKey);
-        byte[] lastMessageId = null;
-
-        if (persistMetaInfo != null) {
-          lastMessageId = persistMetaInfo.getMessageId();
+        List<TopicFetchRequest> requests = new ArrayList<>(topicIdMetaKeys.size());
+        Map<TopicId, TopicProcessMeta> localTopicProcessMetas = new HashMap<>();
+        for (Map.Entry<TopicId, TopicIdMetaKey> entry : topicIdMetaKeys.entrySet()) {
+          TopicId topicId = entry.getKey();
+          TopicProcessMeta persistMetaInfo = topicProcessMetaMap.get(entry.getValue());
+          byte[] lastMessageId = persistMetaInfo == null ? null : persistMetaInfo.getMessageId();
+
+          // Fetch from the beginning of the topic if nothing was processed from it yet
+          requests.add(new TopicFetchRequest(topicId, lastMessageId, fetcherLimit));
+          localTopicProcessMetas.put(topicId, new TopicProcessMeta(
+            lastMessageId, Long.MAX_VALUE, Long.MIN_VALUE, 0,
+            TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()),
+            getDelayMetricName(topicId, "oldest"), getDelayMetricName(topicId, "latest")));
         }
 
-        if (lastMessageId != null) {
-          fetcher.setStartMessage(lastMessageId, false);
-        } else {
-          fetcher.setStartTime(0L);
-        }
-
-        byte[] currentMessageId = null;
-        TopicProcessMeta localTopicProcessMeta =
-          new TopicProcessMeta(lastMessageId, Long.MAX_VALUE, Long.MIN_VALUE, 0,
-                               TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()),
-                               oldestTsMetricName, latestTsMetricName);
-        try (CloseableIterator<RawMessage> iterator = fetcher.fetch()) {
+        // The timestamp of the last metric processed from each topic in this run
+        Map<TopicId, Long> lastMetricTimes = new HashMap<>();
+        try (CloseableIterator<TopicRawMessage> iterator = messagingService.fetch(requests)) {
           while (iterator.hasNext() && isRunning()) {
-            RawMessage input = iterator.next();
+            TopicRawMessage input = iterator.next();
             try {
               payloadInput.reset(input.getPayload());
               MetricValues metricValues = metricReader.read(decoder, metricSchema);
               if (!metricsFromAllTopics.offer(metricValues)) {
                 break;
               }
-              lastMetricTimeSecs = metricValues.getTimestamp();
-              currentMessageId = input.getId();
+              lastMetricTimes.put(input.getTopicId(), metricValues.getTimestamp());
               if (LOG.isTraceEnabled()) {
-                LOG.trace("Received message {} with metrics: {}", Bytes.toStringBinary(currentMessageId), metricValues);
+                LOG.trace("Received message {} from topic {} with metrics: {}",
+                          Bytes.toStringBinary(input.getId()), input.getTopicId(), metricValues);
               }
-              localTopicProcessMeta.updateTopicProcessingStats(currentMessageId, lastMetricTimeSecs);
+              localTopicProcessMetas.get(input.getTopicId())
+                .updateTopicProcessingStats(input.getId(), metricValues.getTimestamp());
             } catch (IOException e) {
               LOG.warn("Failed to decode message to MetricValue. Skipped. {}", e.getMessage());
             }
           }
         }
 
-        if (currentMessageId != null) {
+        for (TopicId topicId : lastMetricTimes.keySet()) {
           // update the last processed timestamp in local topic meta and update the topicProcessMetaMap with this
           // local topic meta for the topic
+          TopicProcessMeta localTopicProcessMeta = localTopicProcessMetas.get(topicId);
           localTopicProcessMeta.updateLastProcessedTimestamp();
-          topicProcessMetaMap.put(topicIdMetaKey, localTopicProcessMeta);
+          topicProcessMetaMap.put(topicIdMetaKeys.get(topicId), localTopicProcessMeta);
         }
         // Try to persist metrics and messageId's of the last metrics to be persisted if no other thread is persisting
         tryPersist();
 
         long endTime = System.currentTimeMillis();
-        // use currentMessageId != null to ensure that the current fetching is not empty and
-        // lastMetricTimeSecs is updated
-        if (currentMessageId != null && endTime - TimeUnit.SECONDS.toMillis(lastMetricTimeSecs) > maxDelayMillis) {
-          // Don't sleep if falling behind
-          return 0L;
-        } else {
-          long timeSpent = endTime - startTime;
-          return Math.max(0L, metricsProcessIntervalMillis - timeSpent);
+        // Only topics with metrics fetched in this run are checked, since their last metric time is known
+        for (long lastMetricTimeSecs : lastMetricTimes.values()) {
+          if (endTime - TimeUnit.SECONDS.toMillis(lastMetricTimeSecs) > maxDelayMillis) {
+            // Don't sleep if falling behind
+            return 0L;
+          }
         }
+        long timeSpent = endTime - startTime;
+        return Math.max(0L, metricsProcessIntervalMillis - timeSpent);
       } catch (ServiceUnavailableException e) {
         LOG.trace("Could not fetch metrics. Will be retried in next iteration.", e);
       } catch (Exception e) {
@@ -419,6 +479,10 @@ public class MessagingMetricsProcessorService extends AbstractExecutionThreadSer
       return metricsProcessIntervalMillis;
     }
 
+    private String getDelayMetricName(TopicId topicId, String type) {
+      return String.format("%s.topic.%s.%s.delay.ms", metricsPrefixForDelayMetrics, topicId.getTopic(), type);
+    }
+
     /**
      * Persist metrics and messageId's of the last metrics to be persisted if no other thread is persisting
      */
@@ -23,6 +23,7 @@ import io.cdap.cdap.api.metrics.MetricsContext;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Metrics Forwarder for the MetricStore
@@ -41,6 +42,11 @@ public class MetricStoreMetricsWriter implements MetricsWriter {
     this.metricStore.add(metricValues);
   }
 
+  @Override
+  public CompletableFuture<Void> writeAsync(Collection<MetricValues> metricValues) {
+    return this.metricStore.addAsync(metricValues);
+  }
+
   @Override
   public void initialize(MetricsContext metricsContext) {
     this.metricStore.setMetricsContext(metricsContext);
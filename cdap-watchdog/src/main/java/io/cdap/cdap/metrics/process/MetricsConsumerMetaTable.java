@@ -17,9 +17,14 @@
 package io.cdap.cdap.metrics.process;
 
 import io.cdap.cdap.api.common.Bytes;
+import io.cdap.cdap.api.dataset.table.Row;
+import io.cdap.cdap.api.dataset.table.Scanner;
 import io.cdap.cdap.data2.dataset2.lib.table.MetricsTable;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import javax.annotation.Nullable;
@@ -34,6 +39,9 @@ public class MetricsConsumerMetaTable {
   private static final byte[] PROCESS_TIMESTAMP_OLDEST = Bytes.toBytes("pto");
   private static final byte[] LAST_PROCESS_TIMESTAMP = Bytes.toBytes("lpt");
   private static final byte[] PROCESS_TIMESTAMP_LATEST = Bytes.toBytes("ptl");
+  // Row key prefix for the resolution table start times. It never clashes with the topic keys, which contain ':'.
+  private static final String RESOLUTION_START_PREFIX = "resolution.start.";
+  private static final byte[] START_TIME_COLUMN = Bytes.toBytes("st");
 
   private final MetricsTable metaTable;
 
@@ -79,6 +87,71 @@ public class MetricsConsumerMetaTable {
     return new TopicProcessMeta(messageId, oldestTs, latestTs, processedCount, lastProcessedTs);
   }
 
+  /**
+   * Records the given time as the time when metrics started to be written to the table of the given resolution,
+   * unless there is already a time recorded for the resolution.
+   *
+   * @param resolution the resolution of the table
+   * @param startTime the time in seconds
+   * @return the recorded start time of the table
+   */
+  public long recordResolutionStartTime(int resolution, long startTime) {
+    byte[] rowKey = Bytes.toBytes(RESOLUTION_START_PREFIX + resolution);
+    if (metaTable.swap(rowKey, START_TIME_COLUMN, null, Bytes.toBytes(startTime))) {
+      return startTime;
+    }
+    return getLong(rowKey, START_TIME_COLUMN);
+  }
+
+  /**
+   * Records the given time as the time when metrics started to be written to the table of the given resolution,
+   * replacing the time recorded before. It is called when the table is created, since the new table has no data
+   * from before.
+   *
+   * @param resolution the resolution of the table
+   * @param startTime the time in seconds
+   */
+  public void resetResolutionStartTime(int resolution, long startTime) {
+    SortedMap<byte[], byte[]> columns = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    columns.put(START_TIME_COLUMN, Bytes.toBytes(startTime));
+    SortedMap<byte[], SortedMap<byte[], byte[]>> updates = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+    updates.put(Bytes.toBytes(RESOLUTION_START_PREFIX + resolution), columns);
+    metaTable.putBytes(updates);
+  }
+
+  /**
+   * Deletes the recorded start times of the resolutions other than the given ones. Metrics are not written to the
+   * tables of those resolutions, hence the start time is recorded again if a resolution is enabled later.
+   *
+   * @param resolutions the resolutions to keep the start times for
+   */
+  public void retainResolutionStartTimes(Set<Integer> resolutions) {
+    byte[] prefix = Bytes.toBytes(RESOLUTION_START_PREFIX);
+    List<byte[]> deletes = new ArrayList<>();
+    try (Scanner scanner = metaTable.scan(prefix, Bytes.stopKeyForPrefix(prefix), null)) {
+      Row row;
+      while ((row = scanner.next()) != null) {
+        int resolution = Integer.parseInt(Bytes.toString(row.getRow(), prefix.length,
+                                                         row.getRow().length - prefix.length));
+        if (!resolutions.contains(resolution)) {
+          deletes.add(row.getRow());
+        }
+      }
+    }
+    for (byte[] rowKey : deletes) {
+      metaTable.delete(rowKey, new byte[][] { START_TIME_COLUMN });
+    }
+  }
+
+  /**
+   * Returns the time in seconds when metrics started to be written to the table of the given resolution,
+   * or {@code null} if it is not recorded yet.
+   */
+  @Nullable
+  public Long getResolutionStartTime(int resolution) {
+    byte[] value = metaTable.get(Bytes.toBytes(RESOLUTION_START_PREFIX + resolution), START_TIME_COLUMN);
+    return value == null ? null : Bytes.toLong(value);
+  }
 
   private synchronized long getLong(byte[] rowKey, byte[] column) {
     byte[] result = metaTable.get(rowKey, column);
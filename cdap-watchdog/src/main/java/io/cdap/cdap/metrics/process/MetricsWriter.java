@@ -22,6 +22,7 @@ import io.cdap.cdap.api.metrics.MetricsContext;
 
 import java.io.Closeable;
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Interface for extensions that will forward CDAP metrics to another metrics system
@@ -35,6 +36,25 @@ public interface MetricsWriter extends Closeable {
    */
   void write(Collection<MetricValues> metricValues);
 
+  /**
+   * Method to write metrics to the target endpoint asynchronously. By default it calls {@link #write(Collection)}
+   * in the calling thread.
+   *
+   * @param metricValues Deque of MetricValues to write to the endpoint
+   * @return a {@link CompletableFuture} that will be completed when the metrics are written. If failed to write,
+   *         the future will be completed exceptionally with the failure.
+   */
+  default CompletableFuture<Void> writeAsync(Collection<MetricValues> metricValues) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    try {
+      write(metricValues);
+      future.complete(null);
+    } catch (Exception e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
   /**
    * Init method to setup configurations for this MetricsWriter
    *
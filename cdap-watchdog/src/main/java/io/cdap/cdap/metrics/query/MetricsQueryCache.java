@@ -0,0 +1,325 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metrics.query;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationOption;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.api.metrics.MetricDataQuery;
+import io.cdap.cdap.api.metrics.MetricStore;
+import io.cdap.cdap.api.metrics.MetricTimeSeries;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.common.utils.ImmutablePair;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * A cache of time range {@link MetricDataQuery} results, for clients that poll the same query with a sliding time
+ * range.
+ *
+ * Queries are keyed by everything except the time range and the limit. For each key, the data points of the buckets
+ * that are closed, meaning no more metrics are expected for them, are kept in memory. When the same query is made
+ * again with a time range that starts within the cached range, only the time range after the last closed bucket is
+ * queried from the {@link MetricStore}, and the result is merged with the cached data points.
+ *
+ * Only queries without aggregation option and interpolator, and with a limit that covers all the buckets in the time
+ * range are cached, since the result of other queries depends on all the data points in the time range.
+ *
+ * The total number of cached data points is bounded, with the least recently used entries evicted first. Entries
+ * created before the last deletion through the {@link MetricStore}, as told by
+ * {@link MetricStore#getDeletionGeneration()}, are not used. Entries also expire after a fixed time so that late
+ * arriving metrics and deletions made through other processes are eventually reflected.
+ */
+final class MetricsQueryCache {
+
+  private final MetricStore metricStore;
+  private final long maxDataPoints;
+  private final long closedBucketDelaySeconds;
+  private final long expirationSeconds;
+  // Access ordered for LRU eviction. Access must be synchronized on the map.
+  private final LinkedHashMap<CacheKey, CacheEntry> entries;
+  private long totalDataPoints;
+  private volatile MetricsContext metricsContext;
+
+  /**
+   * Constructor.
+   *
+   * @param metricStore the {@link MetricStore} to query from
+   * @param maxDataPoints maximum number of data points to cache
+   * @param closedBucketDelaySeconds number of seconds after the end of a bucket until it is considered as closed
+   * @param expirationSeconds number of seconds after an entry is created until it expires
+   */
+  MetricsQueryCache(MetricStore metricStore, long maxDataPoints,
+                    long closedBucketDelaySeconds, long expirationSeconds) {
+    this.metricStore = metricStore;
+    this.maxDataPoints = maxDataPoints;
+    this.closedBucketDelaySeconds = closedBucketDelaySeconds;
+    this.expirationSeconds = expirationSeconds;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  void setMetricsContext(@Nullable MetricsContext metricsContext) {
+    this.metricsContext = metricsContext;
+  }
+
+  /**
+   * Executes the given query, using the cached result if possible.
+   */
+  Collection<MetricTimeSeries> query(MetricDataQuery query) {
+    return query(query, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+  }
+
+  @VisibleForTesting
+  Collection<MetricTimeSeries> query(MetricDataQuery query, long currentTime) {
+    if (!isCacheable(query)) {
+      return metricStore.query(query);
+    }
+
+    int resolution = query.getResolution();
+    long startTs = query.getStartTs();
+    long endTs = query.getEndTs();
+    CacheKey key = new CacheKey(query);
+    // Read before querying the store, so that a result that may be affected by a concurrent deletion is not used
+    long generation = metricStore.getDeletionGeneration();
+
+    CacheEntry entry;
+    synchronized (entries) {
+      entry = entries.get(key);
+      if (entry != null && (currentTime - entry.createTime >= expirationSeconds || entry.generation != generation)) {
+        removeEntry(key);
+        entry = null;
+      }
+    }
+
+    Map<ImmutablePair<String, Map<String, String>>, List<TimeValue>> result = new LinkedHashMap<>();
+    long createTime = currentTime;
+    if (entry != null && entry.startTs <= startTs && entry.closedEndTs > startTs) {
+      incrementMetric("metrics.query.cache.hit", 1);
+      createTime = entry.createTime;
+      entry.collect(startTs, Math.min(entry.closedEndTs - 1, endTs), result);
+      if (entry.closedEndTs <= endTs) {
+        addAll(metricStore.query(new MetricDataQuery(entry.closedEndTs, endTs, resolution, query.getLimit(),
+                                                     query.getMetrics(), query.getSliceByTags(),
+                                                     query.getGroupByTags(), query.getAggregationOption(),
+                                                     query.getInterpolator())), result);
+      }
+    } else {
+      incrementMetric("metrics.query.cache.miss", 1);
+      addAll(metricStore.query(query), result);
+    }
+
+    // Buckets with timestamp smaller than the closed end timestamp won't change anymore
+    long closedEndTs = Math.min((currentTime - closedBucketDelaySeconds) / resolution * resolution, endTs + 1);
+    if (closedEndTs > startTs) {
+      CacheEntry newEntry = new CacheEntry(startTs, closedEndTs, createTime, generation, result);
+      synchronized (entries) {
+        removeEntry(key);
+        if (newEntry.size <= maxDataPoints) {
+          entries.put(key, newEntry);
+          totalDataPoints += newEntry.size;
+          evict();
+        }
+      }
+    }
+
+    List<MetricTimeSeries> timeSeries = new ArrayList<>(result.size());
+    for (Map.Entry<ImmutablePair<String, Map<String, String>>, List<TimeValue>> series : result.entrySet()) {
+      List<TimeValue> timeValues = series.getValue();
+      if (timeValues.size() > query.getLimit()) {
+        timeValues = timeValues.subList(0, query.getLimit());
+      }
+      timeSeries.add(new MetricTimeSeries(series.getKey().getFirst(), series.getKey().getSecond(), timeValues));
+    }
+    return timeSeries;
+  }
+
+  /**
+   * Returns the number of data points cached.
+   */
+  @VisibleForTesting
+  long getTotalDataPoints() {
+    synchronized (entries) {
+      return totalDataPoints;
+    }
+  }
+
+  private boolean isCacheable(MetricDataQuery query) {
+    int resolution = query.getResolution();
+    if (maxDataPoints <= 0 || resolution == Integer.MAX_VALUE || query.getInterpolator() != null
+      || query.getAggregationOption() != AggregationOption.FALSE || query.getStartTs() > query.getEndTs()) {
+      return false;
+    }
+    // If the limit doesn't cover all the buckets, the result of the time range is not complete
+    long buckets = query.getEndTs() / resolution - query.getStartTs() / resolution + 1;
+    return query.getLimit() >= buckets;
+  }
+
+  /**
+   * Adds the given query result to the result map, with data points of the same series appended in order.
+   */
+  private void addAll(Collection<MetricTimeSeries> queryResult,
+                      Map<ImmutablePair<String, Map<String, String>>, List<TimeValue>> result) {
+    for (MetricTimeSeries series : queryResult) {
+      if (series.getTimeValues().isEmpty()) {
+        continue;
+      }
+      result.computeIfAbsent(new ImmutablePair<>(series.getMetricName(), series.getTagValues()),
+                             k -> new ArrayList<>()).addAll(series.getTimeValues());
+    }
+  }
+
+  private void removeEntry(CacheKey key) {
+    CacheEntry removed = entries.remove(key);
+    if (removed != null) {
+      totalDataPoints -= removed.size;
+    }
+  }
+
+  /**
+   * Evicts the least recently used entries until the total number of data points is within the limit.
+   */
+  private void evict() {
+    Iterator<CacheEntry> iterator = entries.values().iterator();
+    int evicted = 0;
+    while (totalDataPoints > maxDataPoints && iterator.hasNext()) {
+      totalDataPoints -= iterator.next().size;
+      iterator.remove();
+      evicted++;
+    }
+    if (evicted > 0) {
+      incrementMetric("metrics.query.cache.evicted", evicted);
+    }
+  }
+
+  private void incrementMetric(String metricName, long value) {
+    MetricsContext context = metricsContext;
+    if (context != null) {
+      context.increment(metricName, value);
+    }
+  }
+
+  /**
+   * Key of a cached query, which is the query without the time range and the limit.
+   */
+  private static final class CacheKey {
+
+    private final int resolution;
+    private final Map<String, AggregationFunction> metrics;
+    private final Map<String, String> sliceByTags;
+    private final List<String> groupByTags;
+    private final int hashCode;
+
+    CacheKey(MetricDataQuery query) {
+      this.resolution = query.getResolution();
+      // Copy since the query may carry lazily transformed views
+      this.metrics = new HashMap<>(query.getMetrics());
+      this.sliceByTags = new HashMap<>(query.getSliceByTags());
+      this.groupByTags = new ArrayList<>(query.getGroupByTags());
+      this.hashCode = Objects.hash(resolution, metrics, sliceByTags, groupByTags);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CacheKey other = (CacheKey) o;
+      return resolution == other.resolution && metrics.equals(other.metrics)
+        && sliceByTags.equals(other.sliceByTags) && groupByTags.equals(other.groupByTags);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * Immutable cached data points of the closed buckets in the time range {@code [startTs, closedEndTs)}.
+   */
+  private static final class CacheEntry {
+
+    private final long startTs;
+    private final long closedEndTs;
+    private final long createTime;
+    private final long generation;
+    private final Map<ImmutablePair<String, Map<String, String>>, long[][]> series;
+    private final long size;
+
+    CacheEntry(long startTs, long closedEndTs, long createTime, long generation,
+               Map<ImmutablePair<String, Map<String, String>>, List<TimeValue>> result) {
+      this.startTs = startTs;
+      this.closedEndTs = closedEndTs;
+      this.createTime = createTime;
+      this.generation = generation;
+      this.series = new LinkedHashMap<>();
+
+      long size = 0;
+      for (Map.Entry<ImmutablePair<String, Map<String, String>>, List<TimeValue>> entry : result.entrySet()) {
+        List<TimeValue> timeValues = entry.getValue();
+        int count = 0;
+        while (count < timeValues.size() && timeValues.get(count).getTimestamp() < closedEndTs) {
+          count++;
+        }
+        if (count == 0) {
+          continue;
+        }
+        // Store as primitive arrays of timestamps and values to keep the memory footprint small
+        long[][] points = new long[2][count];
+        for (int i = 0; i < count; i++) {
+          points[0][i] = timeValues.get(i).getTimestamp();
+          points[1][i] = timeValues.get(i).getValue();
+        }
+        series.put(entry.getKey(), points);
+        size += count;
+      }
+      this.size = size;
+    }
+
+    /**
+     * Adds the cached data points within the given inclusive time range to the result map.
+     */
+    void collect(long startTs, long endTs, Map<ImmutablePair<String, Map<String, String>>, List<TimeValue>> result) {
+      for (Map.Entry<ImmutablePair<String, Map<String, String>>, long[][]> entry : series.entrySet()) {
+        long[] timestamps = entry.getValue()[0];
+        long[] values = entry.getValue()[1];
+        List<TimeValue> timeValues = null;
+        for (int i = 0; i < timestamps.length && timestamps[i] <= endTs; i++) {
+          if (timestamps[i] >= startTs) {
+            if (timeValues == null) {
+              timeValues = result.computeIfAbsent(entry.getKey(), k -> new ArrayList<>());
+            }
+            timeValues.add(new TimeValue(timestamps[i], values[i]));
+          }
+        }
+      }
+    }
+  }
+}
@@ -35,6 +35,7 @@ import io.cdap.cdap.api.metrics.MetricDataQuery;
 import io.cdap.cdap.api.metrics.MetricSearchQuery;
 import io.cdap.cdap.api.metrics.MetricStore;
 import io.cdap.cdap.api.metrics.MetricTimeSeries;
+import io.cdap.cdap.api.metrics.MetricsCollectionService;
 import io.cdap.cdap.api.metrics.TagValue;
 import io.cdap.cdap.common.conf.CConfiguration;
 import io.cdap.cdap.common.conf.Constants;
@@ -42,6 +43,7 @@ import io.cdap.cdap.common.utils.TimeMathParser;
 import io.cdap.cdap.proto.MetricQueryRequest;
 import io.cdap.cdap.proto.MetricQueryResult;
 import io.cdap.cdap.proto.MetricTagValue;
+import io.cdap.cdap.proto.id.NamespaceId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -75,6 +77,7 @@ public class MetricsQueryHelper {
   private static final String ANY_TAG_VALUE = "*";
 
   private final MetricStore metricStore;
+  private final MetricsQueryCache queryCache;
   private final int minResolution;
 
   private static final Map<String, String> tagNameToHuman;
@@ -125,10 +128,25 @@ public class MetricsQueryHelper {
   @Inject
   public MetricsQueryHelper(MetricStore metricStore, CConfiguration cConf) {
     this.metricStore = metricStore;
+    this.queryCache = new MetricsQueryCache(metricStore,
+                                            cConf.getLong(Constants.Metrics.Query.CACHE_MAX_DATA_POINTS),
+                                            cConf.getLong(Constants.Metrics.Query.CACHE_CLOSED_BUCKET_DELAY_SECONDS),
+                                            cConf.getLong(Constants.Metrics.Query.CACHE_EXPIRATION_SECONDS));
     int minimumResolution = cConf.getInt(Constants.Metrics.METRICS_MINIMUM_RESOLUTION_SECONDS);
     this.minResolution = minimumResolution < 60 ? minimumResolution : 60;
   }
 
+  /**
+   * Setter method for the optional binding of {@link MetricsCollectionService}, which is used for emitting
+   * metrics of the query cache.
+   */
+  @Inject(optional = true)
+  public void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    queryCache.setMetricsContext(metricsCollectionService.getContext(ImmutableMap.of(
+      Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+      Constants.Metrics.Tag.COMPONENT, Constants.Service.METRICS)));
+  }
+
   public List<MetricTagValue> searchTags(List<String> tags) {
     // we want to search the entire range, so startTimestamp is '0' and end Timestamp is Integer.MAX_VALUE and
     // limit is -1 , to include the entire search result.
@@ -367,7 +385,7 @@ public class MetricsQueryHelper {
                                                 timeRange.getCount(), toMetrics(queryRequest.getMetrics()),
                                                 tagsSliceBy, transformGroupByTags(queryRequest.getGroupBy()),
                                                 aggregation, timeRange.getInterpolate());
-    Collection<MetricTimeSeries> queryResult = metricStore.query(query);
+    Collection<MetricTimeSeries> queryResult = queryCache.query(query);
 
     long endTime = timeRange.getEnd();
     if (timeRange.getResolutionInSeconds() == Integer.MAX_VALUE && endTime == 0) {
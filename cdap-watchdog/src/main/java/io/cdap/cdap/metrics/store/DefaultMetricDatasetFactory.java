@@ -39,6 +39,7 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Default implementation of {@link MetricDatasetFactory}, which uses {@link DatasetDefinition} to create
@@ -81,7 +82,9 @@ public class DefaultMetricDatasetFactory implements MetricDatasetFactory {
       }
     }
 
-    MetricsTable table = getOrCreateMetricsTable(tableName, props.build());
+    // The new table has no metrics from before, hence reset the time from which it has complete data
+    MetricsTable table = getOrCreateMetricsTable(tableName, props.build(), () -> createConsumerMeta()
+      .resetResolutionStartTime(resolution, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis())));
     return new FactTable(table, entityTable.get(), resolution, getRollTime(resolution));
   }
 
@@ -93,15 +96,25 @@ public class DefaultMetricDatasetFactory implements MetricDatasetFactory {
   }
 
   private MetricsTable getOrCreateMetricsTable(String tableName, DatasetProperties props) {
+    return getOrCreateMetricsTable(tableName, props, () -> { });
+  }
+
+  /**
+   * Gets the metrics table of the given name, creating it if it doesn't exist.
+   *
+   * @param onCreate called after the table is created by this call
+   */
+  private MetricsTable getOrCreateMetricsTable(String tableName, DatasetProperties props, Runnable onCreate) {
     try {
       // metrics tables are in the system namespace
-      return getOrCreateTable(NamespaceId.SYSTEM.dataset(tableName), props);
+      return getOrCreateTable(NamespaceId.SYSTEM.dataset(tableName), props, onCreate);
     } catch (Exception e) {
       throw Throwables.propagate(e);
     }
   }
 
-  private MetricsTable getOrCreateTable(DatasetId tableId, DatasetProperties props) throws IOException {
+  private MetricsTable getOrCreateTable(DatasetId tableId, DatasetProperties props,
+                                       Runnable onCreate) throws IOException {
     DatasetContext datasetContext = DatasetContext.from(NamespaceId.SYSTEM.getNamespace());
     DatasetSpecification spec = metricsTableDefinition.configure(tableId.getDataset(), props);
 
@@ -113,6 +126,7 @@ public class DefaultMetricDatasetFactory implements MetricDatasetFactory {
         // Not sure if that's the API contract or just the implementations since it is not specified in the API
         // But from the dataset op executor implementation, it seems it is a required contract.
         admin.create();
+        onCreate.run();
       }
       existingDatasets.add(tableId);
     }
@@ -24,7 +24,6 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
-import io.cdap.cdap.api.dataset.lib.cube.Cube;
 import io.cdap.cdap.api.dataset.lib.cube.CubeDeleteQuery;
 import io.cdap.cdap.api.dataset.lib.cube.CubeExploreQuery;
 import io.cdap.cdap.api.dataset.lib.cube.CubeFact;
@@ -65,7 +64,10 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 
 /**
@@ -90,11 +92,14 @@ public class DefaultMetricStore implements MetricStore {
                     new AggregationAlias(ImmutableMap.of(Constants.Metrics.Tag.RUN_ID,
                                                          Constants.Metrics.Tag.WORKFLOW_RUN_ID)));
 
-  private final Supplier<Cube> cube;
+  private final Supplier<DefaultCube> cube;
   private final Supplier<MetricsConsumerMetaTable> metaTableSupplier;
   private MetricsContext metricsContext;
   private final List<TopicId> metricsTopics;
   private final Map<Integer, Long> resolutionTTLMap;
+  private final Map<Integer, Long> resolutionStartTimes;
+  private volatile boolean resolutionStartTimesRecorded;
+  private final AtomicLong deletionGeneration = new AtomicLong();
 
 
   static {
@@ -199,8 +204,18 @@ public class DefaultMetricStore implements MetricStore {
   @Inject
   DefaultMetricStore(MetricDatasetFactory dsFactory, CConfiguration cConf) {
     int minimumResolution = cConf.getInt(Constants.Metrics.METRICS_MINIMUM_RESOLUTION_SECONDS);
-    int[] resolutions = minimumResolution < 60 ?
-      new int[] {minimumResolution, 60, 3600, TOTALS_RESOLUTION} : new int[] {60, 3600, TOTALS_RESOLUTION};
+    boolean dayResolutionEnabled = cConf.getBoolean(Constants.Metrics.DAY_RESOLUTION_ENABLED);
+    List<Integer> resolutionList = new ArrayList<>();
+    if (minimumResolution < 60) {
+      resolutionList.add(minimumResolution);
+    }
+    resolutionList.add(60);
+    resolutionList.add(3600);
+    if (dayResolutionEnabled) {
+      resolutionList.add(Constants.Metrics.DAY_RESOLUTION);
+    }
+    resolutionList.add(TOTALS_RESOLUTION);
+    int[] resolutions = resolutionList.stream().mapToInt(Integer::intValue).toArray();
     long minRetentionSecs = cConf.getLong(Constants.Metrics.RETENTION_SECONDS + Constants.Metrics.MINUTE_RESOLUTION +
                                             Constants.Metrics.RETENTION_SECONDS_SUFFIX);
     long hourRetentionSecs = cConf.getLong(Constants.Metrics.RETENTION_SECONDS + Constants.Metrics.HOUR_RESOLUTION +
@@ -211,16 +226,24 @@ public class DefaultMetricStore implements MetricStore {
     if (minimumResolution < 60) {
       builder.put(minimumResolution, cConf.getLong(Constants.Metrics.MINIMUM_RESOLUTION_RETENTION_SECONDS));
     }
+    if (dayResolutionEnabled) {
+      builder.put(Constants.Metrics.DAY_RESOLUTION,
+                  cConf.getLong(Constants.Metrics.RETENTION_SECONDS + Constants.Metrics.DAY_RESOLUTION +
+                                  Constants.Metrics.RETENTION_SECONDS_SUFFIX));
+    }
     this.resolutionTTLMap = builder.build();
+    this.resolutionStartTimes = new ConcurrentHashMap<>();
     FactTableSupplier factTableSupplier = (resolution, ignoredRollTime) -> {
       // roll time will be taken from configuration
       // TODO: remove roll time from the supplier api, https://issues.cask.co/browse/CDAP-14730
       return dsFactory.getOrCreateFactTable(resolution);
     };
-    this.cube = Suppliers.memoize(new Supplier<Cube>() {
+    int maxBufferedCells = cConf.getInt(Constants.Metrics.PROCESSOR_MAX_BUFFERED_CELLS);
+    this.cube = Suppliers.memoize(new Supplier<DefaultCube>() {
       @Override
-      public Cube get() {
-        DefaultCube cube = new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS, AGGREGATIONS_ALIAS_DIMENSIONS);
+      public DefaultCube get() {
+        DefaultCube cube = new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS, AGGREGATIONS_ALIAS_DIMENSIONS,
+                                           maxBufferedCells, DefaultMetricStore.this::getDataStartTime);
         cube.setMetricsCollector(metricsContext);
         return cube;
       }
@@ -247,6 +270,64 @@ public class DefaultMetricStore implements MetricStore {
 
   @Override
   public void add(Collection<? extends MetricValues> metricValues) {
+    recordResolutionStartTimes();
+    cube.get().add(createCubeFacts(metricValues));
+  }
+
+  @Override
+  public CompletableFuture<Void> addAsync(Collection<? extends MetricValues> metricValues) {
+    recordResolutionStartTimes();
+    try {
+      return cube.get().addAsync(createCubeFacts(metricValues));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      CompletableFuture<Void> future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+      return future;
+    }
+  }
+
+  /**
+   * Records the current time as the time when metrics started to be written to the resolution tables, for the ones
+   * that don't have it recorded yet. The start times of the resolutions that are not enabled are deleted.
+   */
+  private void recordResolutionStartTimes() {
+    if (resolutionStartTimesRecorded) {
+      return;
+    }
+    // Get the cube first, which creates the missing resolution tables and resets their start times
+    cube.get();
+    MetricsConsumerMetaTable metaTable = metaTableSupplier.get();
+    metaTable.retainResolutionStartTimes(resolutionTTLMap.keySet());
+    long currentTime = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    for (int resolution : resolutionTTLMap.keySet()) {
+      resolutionStartTimes.put(resolution, metaTable.recordResolutionStartTime(resolution, currentTime));
+    }
+    resolutionStartTimesRecorded = true;
+  }
+
+  /**
+   * Returns the earliest timestamp in seconds from which the table of the given resolution has complete data, which
+   * is after metrics started to be written to the table and within the retention of the table.
+   */
+  private long getDataStartTime(int resolution) {
+    Long startTime = resolutionStartTimes.get(resolution);
+    if (startTime == null) {
+      startTime = metaTableSupplier.get().getResolutionStartTime(resolution);
+      if (startTime == null) {
+        // metrics have not been written to the table yet
+        return Long.MAX_VALUE;
+      }
+      resolutionStartTimes.put(resolution, startTime);
+    }
+    Long ttl = resolutionTTLMap.get(resolution);
+    if (ttl == null) {
+      return startTime;
+    }
+    return Math.max(startTime, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - ttl);
+  }
+
+  private List<CubeFact> createCubeFacts(Collection<? extends MetricValues> metricValues) {
     List<CubeFact> facts = Lists.newArrayListWithCapacity(metricValues.size());
     for (MetricValues metricValue : metricValues) {
       String scope = metricValue.getTags().get(Constants.Metrics.Tag.SCOPE);
@@ -263,7 +344,7 @@ public class DefaultMetricStore implements MetricStore {
         .addMeasurements(metrics);
       facts.add(fact);
     }
-    cube.get().add(facts);
+    return facts;
   }
 
   @Override
@@ -287,23 +368,40 @@ public class DefaultMetricStore implements MetricStore {
 
   @Override
   public void deleteBefore(long timestamp) {
-    for (int resolution : resolutionTTLMap.keySet()) {
-      // Delete all data before the timestamp. null for MeasureName indicates match any MeasureName.
-      deleteMetricsBeforeTimestamp(timestamp, resolution);
+    try {
+      for (int resolution : resolutionTTLMap.keySet()) {
+        // Delete all data before the timestamp. null for MeasureName indicates match any MeasureName.
+        deleteMetricsBeforeTimestamp(timestamp, resolution);
+      }
+    } finally {
+      deletionGeneration.incrementAndGet();
     }
   }
 
   @Override
   public void deleteTTLExpired() {
     long currentTime = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
-    for (Map.Entry<Integer, Long> resolutionTTL : resolutionTTLMap.entrySet()) {
-      deleteMetricsBeforeTimestamp(currentTime - resolutionTTL.getValue(), resolutionTTL.getKey());
+    try {
+      for (Map.Entry<Integer, Long> resolutionTTL : resolutionTTLMap.entrySet()) {
+        deleteMetricsBeforeTimestamp(currentTime - resolutionTTL.getValue(), resolutionTTL.getKey());
+      }
+    } finally {
+      deletionGeneration.incrementAndGet();
     }
   }
 
   @Override
   public void delete(MetricDeleteQuery query) {
-    cube.get().delete(buildCubeDeleteQuery(query));
+    try {
+      cube.get().delete(buildCubeDeleteQuery(query));
+    } finally {
+      deletionGeneration.incrementAndGet();
+    }
+  }
+
+  @Override
+  public long getDeletionGeneration() {
+    return deletionGeneration.get();
   }
 
   @Override
@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.read;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.common.utils.Tasks;
+import io.cdap.cdap.logging.filter.Filter;
+import io.cdap.cdap.logging.serialize.LoggingEventSerializer;
+import io.cdap.cdap.logging.write.LogLocation;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.apache.twill.filesystem.LocationFactory;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit test for {@link ParallelLogFileReader}.
+ */
+public class ParallelLogFileReaderTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  private static final int NUM_FILES = 3;
+  private static final int EVENTS_PER_FILE = 1500;
+
+  @Test
+  public void testReadNext() throws Exception {
+    List<LogLocation> files = createFiles();
+    ParallelLogFileReader reader = new ParallelLogFileReader(2);
+
+    // Files are overlapping in time, events should come out in time order
+    CollectingCallback callback = new CollectingCallback();
+    reader.readNext(files, Filter.EMPTY_FILTER, 10, 4000, callback);
+    Assert.assertEquals(expected(10, 4009), callback.timestamps);
+
+    // Stops at max events
+    callback = new CollectingCallback();
+    reader.readNext(files, Filter.EMPTY_FILTER, 0, 5, callback);
+    Assert.assertEquals(expected(0, 4), callback.timestamps);
+
+    // Read to the end of all files
+    callback = new CollectingCallback();
+    reader.readNext(files, Filter.EMPTY_FILTER, 4400, Integer.MAX_VALUE, callback);
+    Assert.assertEquals(expected(4400, NUM_FILES * EVENTS_PER_FILE - 1), callback.timestamps);
+
+    // The threads of each read are stopped when it finishes
+    Tasks.waitFor(0L, () -> Thread.getAllStackTraces().keySet().stream()
+      .filter(thread -> thread.getName().startsWith("log-file-reader-"))
+      .count(), 10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testRead() throws Exception {
+    List<LogLocation> files = createFiles();
+    ParallelLogFileReader reader = new ParallelLogFileReader(2);
+
+    // Events in the time range should come out in time order
+    List<Long> timestamps = new ArrayList<>();
+    try (CloseableIterator<LogEvent> iterator = reader.read(files, Filter.EMPTY_FILTER, 10, 3500)) {
+      iterator.forEachRemaining(event -> timestamps.add(event.getLoggingEvent().getTimeStamp()));
+    }
+    Assert.assertEquals(expected(10, 3499), timestamps);
+
+    // Closing before reaching the end should be fine
+    try (CloseableIterator<LogEvent> iterator = reader.read(files, Filter.EMPTY_FILTER, 0, Long.MAX_VALUE)) {
+      Assert.assertEquals(0L, iterator.next().getLoggingEvent().getTimeStamp());
+      Assert.assertEquals(1L, iterator.next().getLoggingEvent().getTimeStamp());
+    }
+  }
+
+  @Test
+  public void testReadPrev() throws Exception {
+    List<LogLocation> files = createFiles();
+    ParallelLogFileReader reader = new ParallelLogFileReader(NUM_FILES);
+
+    List<Long> timestamps = new ArrayList<>();
+    for (LogEvent event : reader.readPrev(files, Filter.EMPTY_FILTER, 2000, 10)) {
+      timestamps.add(event.getLoggingEvent().getTimeStamp());
+    }
+    Assert.assertEquals(expected(1991, 2000), timestamps);
+  }
+
+  /**
+   * Creates log files with interleaving events, such that file {@code i} contains events with timestamps
+   * {@code i, i + NUM_FILES, i + 2 * NUM_FILES, ...}.
+   */
+  private List<LogLocation> createFiles() throws Exception {
+    LocationFactory locationFactory = new LocalLocationFactory(TMP_FOLDER.newFolder());
+    LoggingEventSerializer serializer = new LoggingEventSerializer();
+    Schema schema = serializer.getAvroSchema();
+    Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    List<LogLocation> files = new ArrayList<>();
+    for (int i = 0; i < NUM_FILES; i++) {
+      Location location = locationFactory.create(i + ".avro");
+      try (DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<>(schema))) {
+        writer.create(schema, location.getOutputStream());
+        for (int j = 0; j < EVENTS_PER_FILE; j++) {
+          LoggingEvent event = new LoggingEvent("io.cdap.Test", logger, Level.INFO, "message", null, null);
+          event.setTimeStamp(i + j * NUM_FILES);
+          writer.append(serializer.toGenericRecord(event));
+        }
+      }
+      files.add(new LogLocation(LogLocation.VERSION_1, i, 0, location, "default", null));
+    }
+    return files;
+  }
+
+  private static List<Long> expected(long from, long to) {
+    List<Long> expected = new ArrayList<>();
+    for (long i = from; i <= to; i++) {
+      expected.add(i);
+    }
+    return expected;
+  }
+
+  /**
+   * A {@link Callback} that collects the event timestamps.
+   */
+  private static final class CollectingCallback implements Callback {
+
+    private final List<Long> timestamps = new ArrayList<>();
+
+    @Override
+    public void init() {
+      // no-op
+    }
+
+    @Override
+    public void handle(LogEvent event) {
+      timestamps.add(event.getLoggingEvent().getTimeStamp());
+    }
+
+    @Override
+    public int getCount() {
+      return timestamps.size();
+    }
+
+    @Override
+    public void close() {
+      // no-op
+    }
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.logging.write;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import io.cdap.cdap.api.dataset.lib.CloseableIterator;
+import io.cdap.cdap.logging.filter.AndFilter;
+import io.cdap.cdap.logging.filter.Filter;
+import io.cdap.cdap.logging.filter.RegexExpression;
+import io.cdap.cdap.logging.filter.TermExpression;
+import io.cdap.cdap.logging.read.LogEvent;
+import io.cdap.cdap.logging.serialize.LoggingEventSerializer;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Unit test for {@link LogFileIndex} and reading log files with index through {@link LogLocation}.
+ */
+public class LogFileIndexTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testIndex() throws Exception {
+    LogFileIndex index = new LogFileIndex();
+    Assert.assertEquals(-1L, index.getStartPosition(100L));
+    Assert.assertEquals(-1L, index.getEndPosition(100L));
+
+    for (int i = 0; i < 100; i++) {
+      index.add(i * 10, 1000 + i * 100);
+    }
+    // position not increasing is ignored
+    index.add(2000, 1000);
+    Assert.assertEquals(100, index.size());
+
+    // no block starts before time 0
+    Assert.assertEquals(-1L, index.getStartPosition(0L));
+    Assert.assertEquals(1000L, index.getStartPosition(1L));
+    Assert.assertEquals(1000L, index.getStartPosition(10L));
+    Assert.assertEquals(1100L, index.getStartPosition(11L));
+    Assert.assertEquals(10900L, index.getStartPosition(Long.MAX_VALUE));
+
+    Assert.assertEquals(1000L, index.getEndPosition(-1L));
+    Assert.assertEquals(1100L, index.getEndPosition(0L));
+    Assert.assertEquals(1200L, index.getEndPosition(10L));
+    Assert.assertEquals(-1L, index.getEndPosition(990L));
+
+    // Write and read back
+    Location logLocation = new LocalLocationFactory(TMP_FOLDER.newFolder()).create("test.avro");
+    Assert.assertNull(LogFileIndex.read(logLocation));
+    index.write(logLocation, "");
+    LogFileIndex readIndex = LogFileIndex.read(logLocation);
+    Assert.assertNotNull(readIndex);
+    Assert.assertEquals(index.size(), readIndex.size());
+    for (long time = -1; time <= 1000; time++) {
+      Assert.assertEquals(index.getStartPosition(time), readIndex.getStartPosition(time));
+      Assert.assertEquals(index.getEndPosition(time), readIndex.getEndPosition(time));
+    }
+  }
+
+  @Test
+  public void testReadWithIndex() throws Exception {
+    Location logLocation = new LocalLocationFactory(TMP_FOLDER.newFolder()).create("test.avro");
+
+    // Write 1000 events with one event per ms, with an index entry for every 10 events
+    LoggingEventSerializer serializer = new LoggingEventSerializer();
+    Schema schema = serializer.getAvroSchema();
+    LogFileIndex index = new LogFileIndex();
+    Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+    try (DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema))) {
+      writer.create(schema, logLocation.getOutputStream());
+      for (int i = 0; i < 1000; i++) {
+        if (i % 10 == 0) {
+          index.add(i, writer.sync());
+        }
+        LoggingEvent event = new LoggingEvent("io.cdap.Test", logger, Level.INFO, "message " + i, null, null);
+        event.setTimeStamp(i);
+        writer.append(serializer.toGenericRecord(event));
+      }
+    }
+
+    // Read without the index and with the index should give the same result
+    List<List<Long>> results = new ArrayList<>();
+    for (boolean withIndex : new boolean[] { false, true }) {
+      if (withIndex) {
+        index.write(logLocation, "");
+      }
+      LogLocation location = new LogLocation(LogLocation.VERSION_1, 0, 0, logLocation, "default", null);
+      List<Long> result = new ArrayList<>();
+      try (CloseableIterator<LogEvent> iterator = location.readLog(Filter.EMPTY_FILTER, 505, 520, 100)) {
+        while (iterator.hasNext()) {
+          result.add(iterator.next().getLoggingEvent().getTimeStamp());
+        }
+      }
+      Collection<LogEvent> prevEvents = location.readLogPrev(Filter.EMPTY_FILTER, 505, 10);
+      for (LogEvent event : prevEvents) {
+        result.add(event.getLoggingEvent().getTimeStamp());
+      }
+      results.add(result);
+    }
+
+    List<Long> expected = new ArrayList<>();
+    for (long i = 505; i < 520; i++) {
+      expected.add(i);
+    }
+    for (long i = 496; i <= 505; i++) {
+      expected.add(i);
+    }
+    Assert.assertEquals(expected, results.get(0));
+    Assert.assertEquals(expected, results.get(1));
+  }
+
+  @Test
+  public void testTokenFilter() throws Exception {
+    Location logLocation = new LocalLocationFactory(TMP_FOLDER.newFolder()).create("test.avro");
+
+    LoggingEventSerializer serializer = new LoggingEventSerializer();
+    Schema schema = serializer.getAvroSchema();
+    LogFileIndex index = new LogFileIndex();
+    TokenBloomFilter tokenFilter = TokenBloomFilter.create(1000, 0.01);
+    Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+    try (DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema))) {
+      writer.create(schema, logLocation.getOutputStream());
+      index.add(0, writer.sync());
+      for (int i = 0; i < 100; i++) {
+        LoggingEvent event = new LoggingEvent("io.cdap.Test", logger, Level.INFO, "Processed record-" + i,
+                                              i % 10 == 0 ? new IllegalStateException("Invalid record " + i) : null,
+                                              null);
+        event.setTimeStamp(i);
+        TermExpression.forEachToken(event, tokenFilter::put);
+        writer.append(serializer.toGenericRecord(event));
+      }
+    }
+    index.setTokenFilter(tokenFilter);
+    index.write(logLocation, "");
+
+    LogFileIndex readIndex = LogFileIndex.read(logLocation);
+    Assert.assertNotNull(readIndex);
+    Assert.assertNotNull(readIndex.getTokenFilter());
+    for (String token : Arrays.asList("processed", "record", "42", "illegalstateexception", "invalid")) {
+      Assert.assertTrue(readIndex.getTokenFilter().mightContain(token));
+    }
+
+    LogLocation location = new LogLocation(LogLocation.VERSION_1, 0, 0, logLocation, "default", null);
+    Assert.assertEquals(Arrays.asList(42L), readTimestamps(location, new TermExpression("RECORD 42")));
+    Assert.assertEquals(Arrays.asList(10L, 20L, 30L),
+                        readTimestamps(location, new AndFilter(Arrays.asList(
+                          new TermExpression("IllegalStateException"), new RegexExpression("record [1-3]0$")))));
+    Assert.assertTrue(readTimestamps(location, new TermExpression("NullPointerException")).isEmpty());
+    Assert.assertTrue(location.readLogPrev(new TermExpression("NullPointerException"), 100, 10).isEmpty());
+    Assert.assertEquals(1, location.readLogPrev(new TermExpression("record 42"), 100, 10).size());
+  }
+
+  @Test
+  public void testTokenFilterSkipsFile() throws Exception {
+    Location logLocation = new LocalLocationFactory(TMP_FOLDER.newFolder()).create("test.avro");
+    LoggingEventSerializer serializer = new LoggingEventSerializer();
+    Schema schema = serializer.getAvroSchema();
+    Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+
+    // Write the index with a token filter of a log file without the search term
+    LogFileIndex index = new LogFileIndex();
+    index.add(0, 0);
+    TokenBloomFilter tokenFilter = TokenBloomFilter.create(1000, 0.01);
+    TermExpression.forEachToken(new LoggingEvent("io.cdap.Test", logger, Level.INFO, "Processed record", null, null),
+                                tokenFilter::put);
+    index.setTokenFilter(tokenFilter);
+    index.write(logLocation, "");
+
+    // Write a log file that has the search term. It is not the file the index was built from, so that reading it
+    // would return the event.
+    try (DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema))) {
+      writer.create(schema, logLocation.getOutputStream());
+      LoggingEvent event = new LoggingEvent("io.cdap.Test", logger, Level.ERROR, "Failed to process record",
+                                            new NullPointerException(), null);
+      event.setTimeStamp(1);
+      writer.append(serializer.toGenericRecord(event));
+    }
+
+    // The file is skipped based on the token filter without being read
+    LogLocation location = new LogLocation(LogLocation.VERSION_1, 0, 0, logLocation, "default", null);
+    Filter filter = new TermExpression("NullPointerException");
+    Assert.assertTrue(readTimestamps(location, filter).isEmpty());
+    Assert.assertTrue(location.readLogPrev(filter, 100, 10).isEmpty());
+
+    // Without the index, the file is read and the event is found
+    LogFileIndex.getIndexLocation(logLocation).delete();
+    Assert.assertEquals(Arrays.asList(1L), readTimestamps(location, filter));
+    Assert.assertEquals(1, location.readLogPrev(filter, 100, 10).size());
+  }
+
+  @Test
+  public void testTokenFilterSize() {
+    TokenBloomFilter tokenFilter = TokenBloomFilter.create(100, 0.01);
+    long initialSize = tokenFilter.getSizeInBytes();
+    for (int i = 0; i < 100000; i++) {
+      String token = "token" + i;
+      tokenFilter.put(token, 0, token.length());
+    }
+    // The filter grows with the number of distinct tokens
+    Assert.assertEquals(100000L, tokenFilter.getTokenCount(), 1000L);
+    Assert.assertTrue(tokenFilter.getSizeInBytes() > 100 * initialSize);
+    for (int i = 0; i < 100000; i++) {
+      Assert.assertTrue(tokenFilter.mightContain("token" + i));
+    }
+
+    // The false positive probability stays within the given one
+    int falsePositives = 0;
+    for (int i = 0; i < 100000; i++) {
+      if (tokenFilter.mightContain("absent" + i)) {
+        falsePositives++;
+      }
+    }
+    Assert.assertTrue("False positives " + falsePositives, falsePositives <= 1000);
+  }
+
+  private List<Long> readTimestamps(LogLocation location, Filter filter) {
+    List<Long> result = new ArrayList<>();
+    try (CloseableIterator<LogEvent> iterator = location.readLog(filter, 0, Long.MAX_VALUE, 100)) {
+      while (iterator.hasNext()) {
+        result.add(iterator.next().getLoggingEvent().getTimeStamp());
+      }
+    }
+    return result;
+  }
+}
@@ -26,11 +26,16 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -139,6 +144,46 @@ public class AggregatedMetricsCollectionServiceTest {
     }
   }
 
+  @Test
+  public void testConcurrentIncrement() throws Exception {
+    final BlockingQueue<MetricValues> published = new LinkedBlockingQueue<>();
+
+    AggregatedMetricsCollectionService service = new AggregatedMetricsCollectionService(100L) {
+      @Override
+      protected void publish(Iterator<MetricValues> metrics) {
+        Iterators.addAll(published, metrics);
+      }
+    };
+
+    service.startAndWait();
+    try {
+      // Increments from multiple threads while metrics are being published should not be lost
+      MetricsContext context = service.getContext(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NAMESPACE));
+      int threads = 4;
+      int increments = 100000;
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+          futures.add(executor.submit(() -> {
+            for (int j = 0; j < increments; j++) {
+              context.increment(METRIC, 1);
+            }
+          }));
+        }
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+
+      verifyCounterMetricsValue(published, ImmutableMap.of(1, ImmutableMap.of(METRIC, (long) threads * increments)));
+    } finally {
+      service.stopAndWait();
+    }
+  }
+
   private void verifyCounterMetricsValue(BlockingQueue<MetricValues> published,
                                          Map<Integer, Map<String, Long>> expected) throws InterruptedException {
     Map<Integer, Map<String, Long>> received = new HashMap<>();
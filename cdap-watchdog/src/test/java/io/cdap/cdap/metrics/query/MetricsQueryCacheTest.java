@@ -0,0 +1,212 @@
+/*
+ * Copyright © 2020 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.cdap.metrics.query;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationFunction;
+import io.cdap.cdap.api.dataset.lib.cube.AggregationOption;
+import io.cdap.cdap.api.dataset.lib.cube.TimeValue;
+import io.cdap.cdap.api.metrics.MetricDataQuery;
+import io.cdap.cdap.api.metrics.MetricDeleteQuery;
+import io.cdap.cdap.api.metrics.MetricSearchQuery;
+import io.cdap.cdap.api.metrics.MetricStore;
+import io.cdap.cdap.api.metrics.MetricTimeSeries;
+import io.cdap.cdap.api.metrics.MetricValues;
+import io.cdap.cdap.api.metrics.MetricsContext;
+import io.cdap.cdap.api.metrics.MetricsProcessorStatus;
+import io.cdap.cdap.api.metrics.TagValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit test for {@link MetricsQueryCache}.
+ */
+public class MetricsQueryCacheTest {
+
+  private static final int RESOLUTION = 60;
+
+  @Test
+  public void testIncrementalQuery() {
+    RecordingMetricStore store = new RecordingMetricStore();
+    MetricsQueryCache cache = new MetricsQueryCache(store, 1000, 120, 3600);
+
+    // The first query is a miss and caches the buckets that ended more than 120 seconds ago
+    long now = 6000;
+    Assert.assertEquals(expected(3000, 6000), cache.query(createQuery(3000, 6000), now));
+    Assert.assertEquals(ImmutableList.of(3000L), store.queriedStartTs);
+    Assert.assertEquals(48L, cache.getTotalDataPoints());
+
+    // Sliding the time range only queries the time range after the closed buckets
+    now = 6300;
+    Assert.assertEquals(expected(3300, 6300), cache.query(createQuery(3300, 6300), now));
+    Assert.assertEquals(ImmutableList.of(3000L, 5880L), store.queriedStartTs);
+    Assert.assertEquals(48L, cache.getTotalDataPoints());
+
+    // Query starting before the cached range is a miss
+    Assert.assertEquals(expected(3000, 6300), cache.query(createQuery(3000, 6300), now));
+    Assert.assertEquals(ImmutableList.of(3000L, 5880L, 3000L), store.queriedStartTs);
+
+    // Aggregated query is not cached
+    MetricDataQuery query = new MetricDataQuery(3000, 6300, RESOLUTION, 1,
+                                                ImmutableMap.of("metric", AggregationFunction.SUM),
+                                                Collections.emptyMap(), Collections.emptyList(),
+                                                AggregationOption.SUM, null);
+    cache.query(query, now);
+    cache.query(query, now);
+    Assert.assertEquals(ImmutableList.of(3000L, 5880L, 3000L, 3000L, 3000L), store.queriedStartTs);
+  }
+
+  @Test
+  public void testExpirationAndEviction() {
+    RecordingMetricStore store = new RecordingMetricStore();
+    MetricsQueryCache cache = new MetricsQueryCache(store, 60, 0, 600);
+
+    cache.query(createQuery(0, 3000), 6000);
+    Assert.assertEquals(51L, cache.getTotalDataPoints());
+
+    // Expired entry is not used
+    cache.query(createQuery(0, 3000), 6600);
+    Assert.assertEquals(ImmutableList.of(0L, 0L), store.queriedStartTs);
+
+    // Another query evicts the least recently used entry to stay within the limit
+    MetricDataQuery query = new MetricDataQuery(0, 3000, RESOLUTION, 100,
+                                                ImmutableMap.of("metric", AggregationFunction.SUM),
+                                                ImmutableMap.of("tag", "value"), Collections.emptyList(), null);
+    cache.query(query, 6600);
+    Assert.assertEquals(51L, cache.getTotalDataPoints());
+    cache.query(createQuery(0, 3000), 6600);
+    Assert.assertEquals(ImmutableList.of(0L, 0L, 0L, 0L), store.queriedStartTs);
+  }
+
+  @Test
+  public void testInvalidateOnDelete() {
+    RecordingMetricStore store = new RecordingMetricStore();
+    MetricsQueryCache cache = new MetricsQueryCache(store, 1000, 0, 3600);
+
+    cache.query(createQuery(0, 3000), 6000);
+    cache.query(createQuery(0, 3000), 6000);
+    Assert.assertEquals(ImmutableList.of(0L), store.queriedStartTs);
+
+    // Entries cached before a deletion are not used
+    store.delete(new MetricDeleteQuery(0, 3000, Collections.emptySet(), Collections.emptyMap(),
+                                       Collections.emptyList()));
+    cache.query(createQuery(0, 3000), 6000);
+    Assert.assertEquals(ImmutableList.of(0L, 0L), store.queriedStartTs);
+
+    // The entry cached after the deletion is used
+    cache.query(createQuery(0, 3000), 6000);
+    Assert.assertEquals(ImmutableList.of(0L, 0L), store.queriedStartTs);
+  }
+
+  private MetricDataQuery createQuery(long startTs, long endTs) {
+    return new MetricDataQuery(startTs, endTs, RESOLUTION, 100, ImmutableMap.of("metric", AggregationFunction.SUM),
+                               Collections.emptyMap(), Collections.emptyList(), null);
+  }
+
+  private static List<MetricTimeSeries> expected(long startTs, long endTs) {
+    return ImmutableList.of(new MetricTimeSeries("metric", Collections.emptyMap(), timeValues(startTs, endTs)));
+  }
+
+  /**
+   * Returns one data point for each bucket in the given time range, with the value equals to the timestamp.
+   */
+  private static List<TimeValue> timeValues(long startTs, long endTs) {
+    List<TimeValue> timeValues = new ArrayList<>();
+    for (long ts = (startTs + RESOLUTION - 1) / RESOLUTION * RESOLUTION; ts <= endTs; ts += RESOLUTION) {
+      timeValues.add(new TimeValue(ts, ts));
+    }
+    return timeValues;
+  }
+
+  /**
+   * A {@link MetricStore} that records the start time of queries.
+   */
+  private static final class RecordingMetricStore implements MetricStore {
+
+    private final List<Long> queriedStartTs = new ArrayList<>();
+    private long deletionGeneration;
+
+    @Override
+    public Collection<MetricTimeSeries> query(MetricDataQuery query) {
+      queriedStartTs.add(query.getStartTs());
+      return ImmutableList.of(new MetricTimeSeries("metric", Collections.emptyMap(),
+                                                   timeValues(query.getStartTs(), query.getEndTs())));
+    }
+
+    @Override
+    public void setMetricsContext(MetricsContext metricsContext) {
+      // no-op
+    }
+
+    @Override
+    public void add(MetricValues metricValues) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void add(Collection<? extends MetricValues> metricValues) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteBefore(long timestamp) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteTTLExpired() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void delete(MetricDeleteQuery query) {
+      deletionGeneration++;
+    }
+
+    @Override
+    public long getDeletionGeneration() {
+      return deletionGeneration;
+    }
+
+    @Override
+    public void deleteAll() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<TagValue> findNextAvailableTags(MetricSearchQuery query) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Collection<String> findMetricNames(MetricSearchQuery query) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, MetricsProcessorStatus> getMetricsProcessorStats() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}